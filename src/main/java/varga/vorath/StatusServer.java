@@ -0,0 +1,146 @@
+package varga.vorath;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import varga.vorath.controller.DelegationTokenIssuer;
+import varga.vorath.hdfs.HdfsConnectionRegistry;
+import varga.vorath.hdfs.HdfsMountResources;
+import varga.vorath.hdfs.HdfsMountService;
+import varga.vorath.hdfs.KerberosLoginManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * HTTP endpoint reporting the state of the plugin as JSON: the metrics and effective options of every
+ * volume mounted on the node, and the state of the node-wide components the mounts share.
+ * <p>
+ * {@code GET /status} answers on STATUS_PORT, 9810 by default, or not at all when it is 0. It is served by
+ * the HTTP server of the JDK, as the plugin otherwise only serves gRPC on the CSI socket.
+ */
+@Slf4j
+@Component
+public class StatusServer {
+
+    static final String PATH = "/status";
+
+    private final int port;
+    private final HdfsMountService mountService;
+    private final HdfsMountResources mountResources;
+    private final HdfsConnectionRegistry connectionRegistry;
+    private final KerberosLoginManager kerberosLoginManager;
+    private final DelegationTokenIssuer delegationTokenIssuer;
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private HttpServer server;
+
+    public StatusServer(@Value("${STATUS_PORT:9810}") int port, HdfsMountService mountService,
+                        HdfsMountResources mountResources, HdfsConnectionRegistry connectionRegistry,
+                        KerberosLoginManager kerberosLoginManager, DelegationTokenIssuer delegationTokenIssuer) {
+        this.port = port;
+        this.mountService = mountService;
+        this.mountResources = mountResources;
+        this.connectionRegistry = connectionRegistry;
+        this.kerberosLoginManager = kerberosLoginManager;
+        this.delegationTokenIssuer = delegationTokenIssuer;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (this.port <= 0) {
+            log.info("Status endpoint disabled");
+            return;
+        }
+        this.server = HttpServer.create(new InetSocketAddress(this.port), 0);
+        this.server.createContext(PATH, this::handle);
+        this.server.start();
+        log.info("Status endpoint listening on port {} at {}", this.port, PATH);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (this.server != null) {
+            this.server.stop(0);
+        }
+    }
+
+    /**
+     * Collects the state of the plugin, keyed by component.
+     *
+     * @return The status document served by the endpoint.
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> mounts = new LinkedHashMap<>();
+        Map<String, Map<String, String>> mountStatus = this.mountService.getMountStatus();
+        this.mountService.getMountMetrics().forEach((targetPath, metrics) -> {
+            Map<String, Object> mount = new LinkedHashMap<>();
+            mount.put("status", mountStatus.get(targetPath));
+            mount.put("metrics", metrics);
+            mounts.put(targetPath, mount);
+        });
+
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("mounts", mounts);
+        status.put("writeJournal", this.mountService.getWriteJournalStatus());
+        status.put("clientPool", this.mountService.getClientPoolStatus());
+        status.put("readahead", this.mountService.getReadaheadStatus());
+        status.put("blockCache", this.mountResources.getBlockCache().snapshot());
+        status.put("staging", this.mountResources.getStagingArea().snapshot());
+        status.put("uploads", this.mountResources.getUploadScheduler().snapshot());
+        status.put("connections", this.connectionRegistry.snapshot());
+        status.put("kerberos", this.kerberosLoginManager.snapshot());
+        status.put("delegationTokens", this.delegationTokenIssuer.snapshot());
+        return status;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1); // Method Not Allowed
+                return;
+            }
+            byte[] body;
+            try {
+                body = this.objectMapper.writeValueAsBytes(status());
+            } catch (RuntimeException e) {
+                log.error("Failed to collect the plugin status: {}", e.getMessage(), e);
+                exchange.sendResponseHeaders(500, -1); // Internal Server Error
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
@@ -28,6 +28,8 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import varga.vorath.Utils;
 import varga.vorath.hdfs.HdfsConnection;
+import varga.vorath.hdfs.HdfsConnectionRegistry;
+import varga.vorath.hdfs.HdfsMountOptions;
 import varga.vorath.hdfs.HdfsVolumeService;
 
 @Slf4j
@@ -36,6 +38,7 @@ import varga.vorath.hdfs.HdfsVolumeService;
 public class CreateVolumeRequestHandler {
 
     private final HdfsVolumeService hdfsVolumeService;
+    private final HdfsConnectionRegistry connectionRegistry;
 
     @Value("${csi.storage.basePath:/volumes}")
     private String defaultBasePath;
@@ -68,11 +71,23 @@ public class CreateVolumeRequestHandler {
             //  location: "hdfs://xxx:9090"
             //  secretName: "hdfs-secret"
             //  secretNamespace: "expense"
+            //  hedgedReadThreadPoolSize: "16" # optional, enables hedged reads
+            //  hedgedReadThresholdMillis: "50"
+            //  shortCircuitRead: "true" # optional, on nodes that also run a DataNode
+            //  fuseWorkerThreads: "16" # optional, FUSE tunables
+            //  fuseMaxBackground: "64"
+            //  fuseMaxWriteKb: "128" # optional, FUSE request sizes, up to 128
+            //  fuseMaxReadKb: "128"
+            //  uploadMaxInFlightMb: "128" # optional, asynchronous upload budget of the mount
+            //  fsyncMode: "hsync" # optional, none | hflush | hsync
+            //  fsyncGroupCommitMillis: "2" # optional, window grouping concurrent fsyncs of a file
+            //  writeMode: "parts" # optional, stream | parts: parallel part uploads of large files
+            //  uploadPartMb: "256"
             //reclaimPolicy: Delete # Retain
             //volumeBindingMode: WaitForFirstConsumer # Immediate
             //mountOptions:
             //  - -o allow_other
-            //  - --file-cache-timeout-in-seconds=120
+            //  - --file-cache-timeout-in-seconds=120 # attribute cache TTL, applied by the node plugin
             //  - --use-attr-cache=true
 
             String location = request.getParametersMap().get("location"); // optional path (full HDFS path)
@@ -80,7 +95,7 @@ public class CreateVolumeRequestHandler {
             String secretNamespace = request.getParametersMap().get("secretNamespace");
 
             // Secrets are mandatory according to requirements
-            HdfsConnection hdfsConnection = HdfsConnection.createHdfsConnection(secretName, secretNamespace, Utils.extractClusterUri(location));
+            HdfsConnection hdfsConnection = this.connectionRegistry.getConnection(secretName, secretNamespace, Utils.extractClusterUri(location));
 
             // Compute the HDFS path to create (volumeId)
             String hdfsPath;
@@ -112,6 +127,13 @@ public class CreateVolumeRequestHandler {
                 volumeBuilder.putVolumeContext("secretNamespace", secretNamespace);
             }
 
+            // Mount options are applied by the node plugin when the volume is published
+            request.getParametersMap().forEach((key, value) -> {
+                if (HdfsMountOptions.PARAMETERS.contains(key)) {
+                    volumeBuilder.putVolumeContext(key, value);
+                }
+            });
+
             // Step 4: Build the response
             Csi.CreateVolumeResponse response = Csi.CreateVolumeResponse.newBuilder()
                     .setVolume(volumeBuilder.build())
@@ -151,6 +173,8 @@ public class CreateVolumeRequestHandler {
         if (request.hasCapacityRange() && request.getCapacityRange().getRequiredBytes() <= 0) {
             throw new IllegalArgumentException("CapacityRange.requiredBytes must be > 0 when provided.");
         }
+        // Fail at provisioning rather than at mount time on invalid mount options
+        HdfsMountOptions.fromVolumeContext(request.getParametersMap());
 
         log.debug("CreateVolumeRequest validated successfully.");
     }
@@ -0,0 +1,320 @@
+package varga.vorath.controller;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import io.kubernetes.client.openapi.ApiClient;
+import io.kubernetes.client.openapi.ApiException;
+import io.kubernetes.client.openapi.apis.CoreV1Api;
+import io.kubernetes.client.openapi.models.V1CSIPersistentVolumeSource;
+import io.kubernetes.client.openapi.models.V1ObjectMeta;
+import io.kubernetes.client.openapi.models.V1OwnerReference;
+import io.kubernetes.client.openapi.models.V1PersistentVolume;
+import io.kubernetes.client.openapi.models.V1Secret;
+import io.kubernetes.client.util.ClientBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.security.Credentials;
+import org.apache.hadoop.security.token.Token;
+import org.apache.hadoop.security.token.TokenIdentifier;
+import org.apache.hadoop.security.token.delegation.AbstractDelegationTokenIdentifier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import varga.vorath.CsiPluginProperties;
+import varga.vorath.Utils;
+import varga.vorath.hdfs.DelegationTokens;
+import varga.vorath.hdfs.HdfsConnection;
+import varga.vorath.hdfs.HdfsConnectionRegistry;
+import varga.vorath.kubernetes.KubernetesLease;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Issues and renews the HDFS delegation tokens used by the node plugins, so that only one instance of
+ * the plugin logs in to the KDC with each keytab.
+ * <p>
+ * A single instance, elected through a coordination Lease, periodically lists the PersistentVolumes of
+ * the driver and, for each Secret they use, keeps a managed Secret holding delegation tokens for every
+ * cluster of its volumes (see {@link DelegationTokens}). Tokens are renewed before they expire, and
+ * issued again before they reach their maximum lifetime, when a volume uses a new cluster, or when the
+ * Secret changes. Node plugins read and watch the managed Secrets through the {@link HdfsConnectionRegistry}.
+ */
+@Slf4j
+@Component
+public class DelegationTokenIssuer {
+
+    private static final String LEASE_NAME = "hdfs-csi-token-issuer";
+    private static final int HTTP_NOT_FOUND = 404;
+
+    private final HdfsConnectionRegistry connectionRegistry;
+    private final CsiPluginProperties csiPluginProperties;
+    private final CoreV1Api coreV1Api;
+    private final KubernetesLease lease;
+    private final long renewBeforeMillis;
+
+    private final AtomicLong leader = new AtomicLong();
+    private final AtomicLong managedSecrets = new AtomicLong();
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder renewed = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    @Autowired
+    public DelegationTokenIssuer(HdfsConnectionRegistry connectionRegistry, CsiPluginProperties csiPluginProperties,
+                                 @Value("${HDFS_DELEGATION_TOKENS_ENABLED:false}") boolean enabled,
+                                 @Value("${HDFS_DELEGATION_TOKEN_CHECK_INTERVAL_SECONDS:300}") long checkIntervalSeconds,
+                                 @Value("${HDFS_DELEGATION_TOKEN_RENEW_BEFORE_SECONDS:3600}") long renewBeforeSeconds,
+                                 @Value("${POD_NAMESPACE:default}") String namespace,
+                                 @Value("${POD_NAME:${HOSTNAME:hdfs-csi-plugin}}") String podName) throws IOException {
+        this(ClientBuilder.defaultClient(), connectionRegistry, csiPluginProperties, enabled, checkIntervalSeconds,
+                renewBeforeSeconds, namespace, podName);
+    }
+
+    DelegationTokenIssuer(ApiClient apiClient, HdfsConnectionRegistry connectionRegistry,
+                          CsiPluginProperties csiPluginProperties, boolean enabled, long checkIntervalSeconds,
+                          long renewBeforeSeconds, String namespace, String podName) {
+        this.connectionRegistry = connectionRegistry;
+        this.csiPluginProperties = csiPluginProperties;
+        this.coreV1Api = new CoreV1Api(apiClient);
+        long intervalSeconds = Math.max(1, checkIntervalSeconds);
+        // Held for a few checks, so that a slow check does not hand the Lease over
+        this.lease = new KubernetesLease(apiClient, namespace, LEASE_NAME, podName, (int) (3 * intervalSeconds));
+        this.renewBeforeMillis = TimeUnit.SECONDS.toMillis(renewBeforeSeconds);
+        if (enabled) {
+            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "delegation-token-issuer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // Spread the first checks of the instances of a rollout
+            scheduler.scheduleWithFixedDelay(this::refreshAll, ThreadLocalRandom.current().nextLong(intervalSeconds),
+                    intervalSeconds, TimeUnit.SECONDS);
+            log.info("Delegation token issuer enabled, checking tokens every {} s and renewing them {} s before expiry",
+                    intervalSeconds, renewBeforeSeconds);
+        }
+    }
+
+    /**
+     * Issues or renews the tokens of every Secret used by a volume, if this instance holds the Lease.
+     */
+    void refreshAll() {
+        try {
+            if (!this.lease.tryAcquire()) {
+                this.leader.set(0);
+                return;
+            }
+            this.leader.set(1);
+
+            Map<SecretRef, Set<String>> clustersBySecret = listVolumeSecrets();
+            for (Map.Entry<SecretRef, Set<String>> entry : clustersBySecret.entrySet()) {
+                try {
+                    refresh(entry.getKey(), entry.getValue());
+                } catch (ApiException e) {
+                    this.failures.increment();
+                    log.warn("Failed to refresh delegation tokens of Secret '{}/{}': {} {}", entry.getKey().namespace(),
+                            entry.getKey().name(), e.getCode(), e.getMessage());
+                } catch (IOException | RuntimeException e) {
+                    this.failures.increment();
+                    log.warn("Failed to refresh delegation tokens of Secret '{}/{}': {}", entry.getKey().namespace(),
+                            entry.getKey().name(), e.getMessage());
+                }
+            }
+            this.managedSecrets.set(clustersBySecret.size());
+        } catch (Exception e) {
+            // Must not escape, which would cancel the next checks
+            this.failures.increment();
+            log.warn("Failed to refresh delegation tokens: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the counters of the issuer.
+     *
+     * @return The metric values keyed by name.
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        snapshot.put("leader", this.leader.get());
+        snapshot.put("managedSecrets", this.managedSecrets.get());
+        snapshot.put("issued", this.issued.sum());
+        snapshot.put("renewed", this.renewed.sum());
+        snapshot.put("failures", this.failures.sum());
+        return snapshot;
+    }
+
+    /**
+     * @return The clusters used with each Secret by the PersistentVolumes of the driver.
+     */
+    private Map<SecretRef, Set<String>> listVolumeSecrets() throws ApiException {
+        Map<SecretRef, Set<String>> clustersBySecret = new HashMap<>();
+        List<V1PersistentVolume> volumes = this.coreV1Api.listPersistentVolume(
+                null, null, null, null, null, null, null, null, null, false).getItems();
+        for (V1PersistentVolume volume : volumes) {
+            V1CSIPersistentVolumeSource csi = volume.getSpec() != null ? volume.getSpec().getCsi() : null;
+            if (csi == null || !this.csiPluginProperties.getName().equals(csi.getDriver()) || csi.getVolumeAttributes() == null) {
+                continue;
+            }
+            Map<String, String> attributes = csi.getVolumeAttributes();
+            String secretName = attributes.get("secretName");
+            String secretNamespace = attributes.get("secretNamespace");
+            if (secretName == null || secretNamespace == null) {
+                continue;
+            }
+            clustersBySecret.computeIfAbsent(new SecretRef(secretNamespace, secretName), ref -> new HashSet<>())
+                    .add(Utils.extractClusterUri(attributes.get("location")));
+        }
+        return clustersBySecret;
+    }
+
+    /**
+     * Issues or renews the tokens of a Secret when needed, and stores them in the managed Secret.
+     */
+    private void refresh(SecretRef ref, Set<String> clusterUris) throws ApiException, IOException {
+        V1Secret source = this.coreV1Api.readNamespacedSecret(ref.name(), ref.namespace(), null);
+        String sourceVersion = source.getMetadata().getResourceVersion();
+        V1Secret tokenSecret = readTokenSecret(ref);
+
+        DelegationTokens current = null;
+        if (tokenSecret != null && tokenSecret.getData() != null) {
+            try {
+                current = DelegationTokens.fromSecretData(tokenSecret.getData());
+            } catch (IOException e) {
+                log.warn("Replacing invalid delegation tokens of Secret '{}/{}': {}", ref.namespace(), ref.name(), e.getMessage());
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        DelegationTokens updated;
+        if (current == null || !current.sourceVersion().equals(sourceVersion) || !current.covers(clusterUris)
+                || current.maxDate() - now < this.renewBeforeMillis) {
+            updated = issue(ref, clusterUris, sourceVersion);
+        } else if (current.expiration() - now < this.renewBeforeMillis) {
+            try {
+                updated = renew(ref, clusterUris, current.credentials(), sourceVersion);
+                this.renewed.increment();
+                log.info("Renewed delegation tokens of Secret '{}/{}'", ref.namespace(), ref.name());
+            } catch (IOException e) {
+                // Such as tokens cancelled or expired while the issuer was down
+                log.warn("Failed to renew delegation tokens of Secret '{}/{}', issuing new ones: {}", ref.namespace(),
+                        ref.name(), e.getMessage());
+                updated = issue(ref, clusterUris, sourceVersion);
+            }
+        } else {
+            return;
+        }
+        writeTokenSecret(ref, source, tokenSecret, updated);
+    }
+
+    /**
+     * Issues new tokens for every cluster, logged in with the keytab of the Secret.
+     */
+    private DelegationTokens issue(SecretRef ref, Set<String> clusterUris, String sourceVersion) throws ApiException, IOException {
+        Credentials credentials = new Credentials();
+        for (String clusterUri : clusterUris) {
+            HdfsConnection connection = this.connectionRegistry.getLoginConnection(ref.name(), ref.namespace(), clusterUri);
+            // Only the user of the login may renew the tokens
+            String renewer = connection.getUserGroupInformation().getShortUserName();
+            // A client of its own, closed once the token is issued: FileSystem.get would cache one per login for good
+            Token<?> token = connection.doAs(() -> {
+                try (FileSystem fileSystem = FileSystem.newInstance(connection.getConfiguration())) {
+                    return fileSystem.getDelegationToken(renewer);
+                }
+            });
+            if (token == null) {
+                throw new IOException("Cluster '" + clusterUri + "' issued no delegation token: is Kerberos enabled?");
+            }
+            credentials.addToken(DelegationTokens.alias(clusterUri), token);
+        }
+        DelegationTokens tokens = renew(ref, clusterUris, credentials, sourceVersion);
+        this.issued.increment();
+        log.info("Issued delegation tokens of Secret '{}/{}' for {}", ref.namespace(), ref.name(), clusterUris);
+        return tokens;
+    }
+
+    /**
+     * Renews the tokens of every cluster, which also returns the time they expire.
+     */
+    private DelegationTokens renew(SecretRef ref, Set<String> clusterUris, Credentials credentials, String sourceVersion)
+            throws ApiException, IOException {
+        long expiration = Long.MAX_VALUE;
+        long maxDate = Long.MAX_VALUE;
+        for (String clusterUri : clusterUris) {
+            Token<? extends TokenIdentifier> token = credentials.getToken(DelegationTokens.alias(clusterUri));
+            HdfsConnection connection = this.connectionRegistry.getLoginConnection(ref.name(), ref.namespace(), clusterUri);
+            long tokenExpiration = connection.doAs(() -> token.renew(connection.getConfiguration()));
+            expiration = Math.min(expiration, tokenExpiration);
+            TokenIdentifier identifier = token.decodeIdentifier();
+            maxDate = Math.min(maxDate, identifier instanceof AbstractDelegationTokenIdentifier delegationTokenIdentifier
+                    ? delegationTokenIdentifier.getMaxDate() : tokenExpiration);
+        }
+        return new DelegationTokens(credentials, expiration, maxDate, sourceVersion);
+    }
+
+    private V1Secret readTokenSecret(SecretRef ref) throws ApiException {
+        try {
+            return this.coreV1Api.readNamespacedSecret(DelegationTokens.secretName(ref.name()), ref.namespace(), null);
+        } catch (ApiException e) {
+            if (e.getCode() == HTTP_NOT_FOUND) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private void writeTokenSecret(SecretRef ref, V1Secret source, V1Secret existing, DelegationTokens tokens)
+            throws ApiException, IOException {
+        String name = DelegationTokens.secretName(ref.name());
+        V1Secret secret = new V1Secret()
+                .metadata(new V1ObjectMeta()
+                        .name(name)
+                        .namespace(ref.namespace())
+                        .labels(Map.of("app.kubernetes.io/managed-by", "hdfs-csi-plugin"))
+                        // Deleted with the Secret the tokens were issued for
+                        .ownerReferences(List.of(new V1OwnerReference()
+                                .apiVersion("v1")
+                                .kind("Secret")
+                                .name(ref.name())
+                                .uid(source.getMetadata().getUid()))))
+                .type("Opaque")
+                .data(tokens.toSecretData());
+        if (existing == null) {
+            this.coreV1Api.createNamespacedSecret(ref.namespace(), secret, null, null, null, null);
+        } else {
+            // Fails with a conflict if another instance wrote the Secret since it was read
+            secret.getMetadata().resourceVersion(existing.getMetadata().getResourceVersion());
+            this.coreV1Api.replaceNamespacedSecret(name, ref.namespace(), secret, null, null, null, null);
+        }
+    }
+
+    private record SecretRef(String namespace, String name) {
+    }
+}
@@ -28,6 +28,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import varga.vorath.Utils;
 import varga.vorath.hdfs.HdfsConnection;
+import varga.vorath.hdfs.HdfsConnectionRegistry;
 import varga.vorath.hdfs.HdfsVolumeService;
 import varga.vorath.kubernetes.KubernetesVolumeService;
 
@@ -41,6 +42,7 @@ public class DeleteVolumeRequestHandler {
 
     private final HdfsVolumeService hdfsVolumeService;
     private final KubernetesVolumeService kubernetesVolumeService;
+    private final HdfsConnectionRegistry connectionRegistry;
 
     public void handleDeleteVolume(Csi.DeleteVolumeRequest request,
                                    StreamObserver<Csi.DeleteVolumeResponse> responseObserver) {
@@ -73,7 +75,7 @@ public class DeleteVolumeRequestHandler {
             String secretNamespace = persistentVolume.getSpec().getCsi().getVolumeAttributes().get("secretNamespace");
 
             // Secrets are mandatory according to requirements
-            HdfsConnection hdfsConnection = HdfsConnection.createHdfsConnection(secretName, secretNamespace, Utils.extractClusterUri(location));
+            HdfsConnection hdfsConnection = this.connectionRegistry.getConnection(secretName, secretNamespace, Utils.extractClusterUri(location));
 
             // For deletion, we can operate without rebuilding an HDFS connection since we delete by path
             this.hdfsVolumeService.deleteVolume(hdfsConnection, hdfsPath);
@@ -0,0 +1,246 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.hadoop.fs.FileStatus;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-mount cache of file attributes and directory listings, so that repeated getattr and readdir calls
+ * ({@code ls -l}, {@code stat} storms, Python import scans) do not each cost a NameNode RPC.
+ * <p>
+ * Entries expire after the mount's attribute timeout. Paths that do not exist are cached too, as import
+ * scans mostly probe for missing files. Listing a directory also caches the attributes of its entries, so
+ * the getattr calls following a readdir are answered locally. Changes made through this mount invalidate
+ * the affected entries immediately; changes made by other HDFS clients become visible once the entries expire.
+ * <p>
+ * A lookup racing with a change can read the old state from the NameNode and store it after the change
+ * invalidated the path. To keep such results out, callers read the {@link #generation(String)} of the path
+ * before calling the NameNode and pass it to the put methods, which drop the result when the path was
+ * invalidated meanwhile. Generations are counted per stripe of paths, so that writes to one file do not keep
+ * the lookups of the others out of the cache; a change to a path also moves the generation of its parent
+ * directory, whose listing it changes, and renames and clears move every generation.
+ */
+class AttributeCache {
+
+    static final long DEFAULT_MAX_ENTRIES = 100_000;
+    static final long DEFAULT_MAX_LISTINGS = 1_000;
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final HdfsMountMetrics metrics;
+    private final Cache<String, CachedStatus> entries;
+    private final Cache<String, List<FileStatus>> listings;
+    // Invalidations by stripe of paths, and the renames and clears that move many paths at once
+    private final AtomicLongArray invalidations = new AtomicLongArray(GENERATION_STRIPES);
+    private final AtomicLong moves = new AtomicLong();
+    private final AtomicLong changes = new AtomicLong();
+
+    AttributeCache(Duration timeout, long maxEntries, HdfsMountMetrics metrics) {
+        this.metrics = metrics;
+        this.entries = Caffeine.newBuilder()
+                .expireAfterWrite(timeout)
+                .maximumSize(maxEntries)
+                .build();
+        this.listings = Caffeine.newBuilder()
+                .expireAfterWrite(timeout)
+                .maximumSize(DEFAULT_MAX_LISTINGS)
+                .build();
+    }
+
+    /**
+     * @param path The FUSE path.
+     * @return The cached attributes, or null when the path must be looked up in HDFS.
+     */
+    CachedStatus get(String path) {
+        CachedStatus cached = this.entries.getIfPresent(path);
+        if (cached == null) {
+            this.metrics.getAttrCacheMisses().increment();
+        } else if (cached.exists()) {
+            this.metrics.getAttrCacheHits().increment();
+        } else {
+            this.metrics.getAttrCacheNegativeHits().increment();
+        }
+        return cached;
+    }
+
+    /**
+     * @return The invalidation counter of a path, to read before looking up what is then put in the cache.
+     */
+    long generation(String path) {
+        // Both counters only grow, so their sum moves whenever either does
+        return this.moves.get() + this.invalidations.get(stripe(path));
+    }
+
+    /**
+     * @return The counter of every change made through this mount, for lookups not tied to a FUSE path.
+     */
+    long generation() {
+        return this.changes.get();
+    }
+
+    /**
+     * @param generation The {@link #generation(String)} of the path read before looking it up in HDFS.
+     */
+    void put(String path, FileStatus fileStatus, long generation) {
+        putIfCurrent(this.entries.asMap(), path, new CachedStatus(fileStatus), path, generation);
+    }
+
+    /**
+     * Caches the attributes of an entry found by listing its directory.
+     *
+     * @param generation The {@link #generation(String)} of the directory read before listing it in HDFS.
+     */
+    void putListed(String directory, String path, FileStatus fileStatus, long generation) {
+        // A change to the entry moves the generation of its directory too
+        putIfCurrent(this.entries.asMap(), path, new CachedStatus(fileStatus), directory, generation);
+    }
+
+    /**
+     * @param generation The {@link #generation(String)} of the path read before looking it up in HDFS.
+     */
+    void putMissing(String path, long generation) {
+        putIfCurrent(this.entries.asMap(), path, CachedStatus.MISSING, path, generation);
+    }
+
+    /**
+     * @param path The FUSE path of a directory.
+     * @return The cached entries of the directory, or null when it must be listed in HDFS.
+     */
+    List<FileStatus> getListing(String path) {
+        List<FileStatus> listing = this.listings.getIfPresent(path);
+        if (listing == null) {
+            this.metrics.getListingCacheMisses().increment();
+        } else {
+            this.metrics.getListingCacheHits().increment();
+        }
+        return listing;
+    }
+
+    /**
+     * @param generation The {@link #generation(String)} of the directory read before listing it in HDFS.
+     */
+    void putListing(String path, List<FileStatus> listing, long generation) {
+        putIfCurrent(this.listings.asMap(), path, listing, path, generation);
+    }
+
+    /**
+     * Forgets a path changed through this mount, together with its parent directory whose
+     * modification time and listing change with it.
+     *
+     * @param path The FUSE path.
+     */
+    void invalidate(String path) {
+        this.changes.incrementAndGet();
+        this.invalidations.incrementAndGet(stripe(path));
+        this.entries.invalidate(path);
+        this.listings.invalidate(path);
+        int slash = path.lastIndexOf('/');
+        if (slash >= 0) {
+            String parent = slash == 0 ? "/" : path.substring(0, slash);
+            this.invalidations.incrementAndGet(stripe(parent));
+            this.entries.invalidate(parent);
+            this.listings.invalidate(parent);
+        }
+    }
+
+    /**
+     * Moves the cached attributes of a path renamed through this mount, and of the paths under it, to the
+     * new path, rather than dropping them: a rename does not change the attributes of what it moves.
+     *
+     * @param from The FUSE path before the rename.
+     * @param to   The FUSE path after the rename.
+     */
+    void rename(String from, String to) {
+        // Moves the generation of every path: the paths under the source are not known
+        this.moves.incrementAndGet();
+        CachedStatus moved = this.entries.getIfPresent(from);
+        if (moved == null || (moved.exists() && moved.fileStatus().isDirectory())) {
+            String prefix = from + "/";
+            moveUnder(this.entries.asMap(), prefix, from, to);
+            moveUnder(this.listings.asMap(), prefix, from, to);
+        }
+        List<FileStatus> listing = this.listings.getIfPresent(from);
+        invalidate(to);
+        invalidate(from);
+        if (moved != null && moved.exists()) {
+            this.entries.put(to, moved);
+        }
+        if (listing != null) {
+            this.listings.put(to, listing);
+        }
+        this.entries.put(from, CachedStatus.MISSING);
+    }
+
+    void clear() {
+        this.changes.incrementAndGet();
+        this.moves.incrementAndGet();
+        this.entries.invalidateAll();
+        this.listings.invalidateAll();
+    }
+
+    /**
+     * Stores a lookup result unless the checked path was invalidated since the lookup started. The generation
+     * is checked again after the put, as an invalidation may run between the first check and the put.
+     */
+    private <V> void putIfCurrent(Map<String, V> map, String path, V value, String checkedPath, long generation) {
+        if (generation(checkedPath) != generation) {
+            return;
+        }
+        map.put(path, value);
+        if (generation(checkedPath) != generation) {
+            map.remove(path, value);
+        }
+    }
+
+    private static int stripe(String path) {
+        return path.hashCode() & (GENERATION_STRIPES - 1);
+    }
+
+    private static <V> void moveUnder(Map<String, V> map, String prefix, String from, String to) {
+        for (String key : List.copyOf(map.keySet())) {
+            if (key.startsWith(prefix)) {
+                V value = map.remove(key);
+                if (value != null) {
+                    map.put(to + key.substring(from.length()), value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Attributes of a path, or the fact that it does not exist when {@code fileStatus} is null.
+     */
+    record CachedStatus(FileStatus fileStatus) {
+
+        static final CachedStatus MISSING = new CachedStatus(null);
+
+        boolean exists() {
+            return this.fileStatus != null;
+        }
+    }
+}
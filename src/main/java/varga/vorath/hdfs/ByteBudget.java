@@ -0,0 +1,79 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.InterruptedIOException;
+
+/**
+ * Bounded number of bytes that callers take before buffering data and give back once it is written.
+ * Callers block while the budget is exhausted.
+ */
+class ByteBudget {
+
+    private final long capacity;
+    private long used;
+
+    ByteBudget(long capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Takes bytes from the budget, waiting until enough are available. A request larger than the whole
+     * budget takes all of it, so it waits for the budget to be idle instead of never proceeding.
+     *
+     * @param bytes The number of bytes wanted.
+     * @return The number of bytes taken, to be given back with {@link #release(long)}.
+     * @throws InterruptedIOException If the thread is interrupted while waiting.
+     */
+    synchronized long acquire(long bytes) throws InterruptedIOException {
+        long wanted = Math.min(bytes, this.capacity);
+        while (this.used + wanted > this.capacity) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for " + wanted + " bytes of upload budget");
+            }
+        }
+        this.used += wanted;
+        return wanted;
+    }
+
+    /**
+     * @return true if the bytes could be taken without waiting.
+     */
+    synchronized boolean isAvailable(long bytes) {
+        return this.used + Math.min(bytes, this.capacity) <= this.capacity;
+    }
+
+    synchronized void release(long bytes) {
+        this.used -= bytes;
+        notifyAll();
+    }
+
+    synchronized long getUsed() {
+        return this.used;
+    }
+
+    long getCapacity() {
+        return this.capacity;
+    }
+}
@@ -0,0 +1,135 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.security.Credentials;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * HDFS delegation tokens issued by the controller for the volumes using a Secret, as stored in the
+ * Secret it manages next to it, named after the Secret with {@value #SECRET_SUFFIX}.
+ * <p>
+ * The tokens of every cluster used with the Secret are held in one set of credentials, each under the
+ * alias of its cluster URI. The Secret also records the resourceVersion of the Secret they were issued
+ * with, so that tokens are issued again when its principal or keytab change.
+ *
+ * @param credentials   The tokens, by cluster alias.
+ * @param expiration    Time the first token expires unless renewed, in milliseconds since the epoch.
+ * @param maxDate       Time the first token can no longer be renewed, in milliseconds since the epoch.
+ * @param sourceVersion The resourceVersion of the Secret the tokens were issued with.
+ */
+public record DelegationTokens(Credentials credentials, long expiration, long maxDate, String sourceVersion) {
+
+    public static final String SECRET_SUFFIX = "-hdfs-tokens";
+
+    private static final String TOKENS = "tokens";
+    private static final String EXPIRATION = "expiration";
+    private static final String MAX_DATE = "maxDate";
+    private static final String SOURCE_VERSION = "sourceResourceVersion";
+    private static final String DEFAULT_CLUSTER = "default";
+
+    /**
+     * @return The name of the Secret holding the tokens issued for another Secret.
+     */
+    public static String secretName(String sourceSecretName) {
+        return sourceSecretName + SECRET_SUFFIX;
+    }
+
+    /**
+     * @param clusterUri The cluster URI, or null for the default file system of core-site.xml.
+     * @return The alias of the tokens of a cluster.
+     */
+    public static Text alias(String clusterUri) {
+        return new Text(clusterUri != null ? clusterUri : DEFAULT_CLUSTER);
+    }
+
+    /**
+     * @return true if the tokens include some for every given cluster.
+     */
+    public boolean covers(Collection<String> clusterUris) {
+        return clusterUris.stream().allMatch(clusterUri -> this.credentials.getToken(alias(clusterUri)) != null);
+    }
+
+    /**
+     * @return true if the tokens include some for the given cluster, and are not expired.
+     */
+    public boolean isUsableFor(String clusterUri, long now) {
+        return this.credentials.getToken(alias(clusterUri)) != null && now < this.expiration && now < this.maxDate;
+    }
+
+    /**
+     * Decodes the tokens from the entries of their Secret.
+     *
+     * @param secretData The entries of the Secret.
+     * @return The tokens.
+     * @throws IOException If an entry is missing or invalid.
+     */
+    public static DelegationTokens fromSecretData(Map<String, byte[]> secretData) throws IOException {
+        byte[] tokens = secretData.get(TOKENS);
+        byte[] expiration = secretData.get(EXPIRATION);
+        byte[] maxDate = secretData.get(MAX_DATE);
+        byte[] sourceVersion = secretData.get(SOURCE_VERSION);
+        if (tokens == null || expiration == null || maxDate == null || sourceVersion == null) {
+            throw new IOException("Delegation token Secret is missing required fields: "
+                    + String.join(", ", TOKENS, EXPIRATION, MAX_DATE, SOURCE_VERSION));
+        }
+
+        Credentials credentials = new Credentials();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(tokens))) {
+            credentials.readTokenStorageStream(in);
+        }
+        try {
+            return new DelegationTokens(credentials, Long.parseLong(decode(expiration)), Long.parseLong(decode(maxDate)),
+                    decode(sourceVersion));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid expiration of delegation tokens", e);
+        }
+    }
+
+    /**
+     * @return The entries of the Secret holding the tokens.
+     * @throws IOException If the tokens cannot be serialized.
+     */
+    public Map<String, byte[]> toSecretData() throws IOException {
+        ByteArrayOutputStream tokens = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(tokens)) {
+            this.credentials.writeTokenStorageToStream(out);
+        }
+        return Map.of(
+                TOKENS, tokens.toByteArray(),
+                EXPIRATION, String.valueOf(this.expiration).getBytes(StandardCharsets.UTF_8),
+                MAX_DATE, String.valueOf(this.maxDate).getBytes(StandardCharsets.UTF_8),
+                SOURCE_VERSION, this.sourceVersion.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8).trim();
+    }
+}
@@ -0,0 +1,138 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.Getter;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Listing cursor of a directory opened through FUSE, identified by the handle stored in {@code FuseFileInfo.fh}.
+ * <p>
+ * Entries are streamed from {@code listStatusIterator}, which fetches them from the NameNode in pages, so
+ * a directory with millions of entries never needs to fit in memory. FUSE reads a directory through
+ * several readdir calls, each resuming at the offset of the last entry it accepted; the cursor keeps its
+ * position between calls and only restarts the listing when FUSE asks for an offset it is not at.
+ */
+class DirectoryHandle {
+
+    static final int MAX_CACHED_ENTRIES = 10_000;
+
+    @Getter
+    private final String path;
+    private final Path hdfsPath;
+    private final List<FileStatus> cachedListing;
+    @Getter
+    private final long generation; // Attribute cache generation read before listing the directory
+
+    private RemoteIterator<FileStatus> iterator;
+    private int cachedIndex;
+    private FileStatus pending;
+    @Getter
+    private long position; // Index of the next child entry to return
+    private List<FileStatus> collected = new ArrayList<>();
+    private boolean complete;
+
+    /**
+     * @param cachedListing The entries of the directory from the listing cache, or null to list it from HDFS.
+     * @param generation    The attribute cache generation read before opening the directory.
+     */
+    DirectoryHandle(String path, Path hdfsPath, List<FileStatus> cachedListing, long generation) {
+        this.path = path;
+        this.hdfsPath = hdfsPath;
+        this.cachedListing = cachedListing;
+        this.generation = generation;
+    }
+
+    /**
+     * Moves the cursor to a child entry, restarting the listing when moving backwards or past unread entries.
+     *
+     * @param index Index of the child entry, 0 being the first entry after "." and "..".
+     */
+    void seek(long index, FileSystem fileSystem) throws IOException {
+        if (index == this.position && (this.iterator != null || this.cachedListing != null)) {
+            return;
+        }
+        if (this.cachedListing == null && (this.iterator == null || index < this.position)) {
+            this.iterator = fileSystem.listStatusIterator(this.hdfsPath);
+            this.position = 0;
+            this.pending = null;
+            this.collected = new ArrayList<>();
+        }
+        if (this.cachedListing != null) {
+            this.position = index;
+            this.cachedIndex = (int) Math.min(index, this.cachedListing.size());
+            this.pending = null;
+            return;
+        }
+        // Skipping entries makes the collected listing incomplete
+        this.collected = index == this.position ? this.collected : null;
+        while (this.position < index && peek() != null) {
+            this.pending = null;
+            this.position++;
+        }
+    }
+
+    /**
+     * @return The entry at the cursor without consuming it, or null at the end of the directory.
+     */
+    FileStatus peek() throws IOException {
+        if (this.pending != null) {
+            return this.pending;
+        }
+        if (this.cachedListing != null) {
+            this.pending = this.cachedIndex < this.cachedListing.size() ? this.cachedListing.get(this.cachedIndex) : null;
+        } else if (this.iterator.hasNext()) {
+            this.pending = this.iterator.next();
+        } else {
+            this.complete = true;
+        }
+        return this.pending;
+    }
+
+    /**
+     * Consumes the entry returned by {@link #peek()}.
+     */
+    void advance() {
+        if (this.collected != null && this.cachedListing == null) {
+            this.collected.add(this.pending);
+            if (this.collected.size() > MAX_CACHED_ENTRIES) {
+                this.collected = null; // Too large to cache
+            }
+        }
+        this.pending = null;
+        this.position++;
+        this.cachedIndex++;
+    }
+
+    /**
+     * @return The whole listing once it has been read from HDFS from start to end, if small enough to cache, else null.
+     */
+    List<FileStatus> getCompleteListing() {
+        return this.complete && this.collected != null ? List.copyOf(this.collected) : null;
+    }
+}
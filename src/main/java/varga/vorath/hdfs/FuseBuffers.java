@@ -0,0 +1,57 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.kenai.jffi.MemoryIO;
+import jnr.ffi.Pointer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Access to the memory of the buffers FUSE hands to the file system callbacks.
+ */
+@Slf4j
+final class FuseBuffers {
+
+    private FuseBuffers() {
+    }
+
+    /**
+     * Wraps the native memory behind a FUSE buffer as a direct ByteBuffer, so HDFS data can be read
+     * straight into it without an intermediate heap array.
+     *
+     * @param pointer The buffer passed by FUSE.
+     * @param size    The size of the buffer.
+     * @return A ByteBuffer positioned at 0 with a limit of {@code size}, or null if the buffer is not direct memory.
+     */
+    static ByteBuffer wrap(Pointer pointer, int size) {
+        if (pointer == null || !pointer.isDirect() || size <= 0) {
+            return null;
+        }
+        try {
+            return MemoryIO.getInstance().newDirectByteBuffer(pointer.address(), size);
+        } catch (Throwable t) {
+            log.debug("Cannot wrap FUSE buffer as a direct ByteBuffer: {}", t.getMessage());
+            return null;
+        }
+    }
+}
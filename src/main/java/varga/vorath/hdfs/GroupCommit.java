@@ -0,0 +1,134 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Coalesces concurrent requests for an expensive operation whose single run serves every request made
+ * before it started, such as an hsync of an output stream.
+ * <p>
+ * The first request leads a round: it optionally waits for a short window so that concurrent requests
+ * can join, then runs the operation once for the whole round. Requests arriving once the operation has
+ * started join the next round, led by one of them when the current round completes. N concurrent
+ * requests therefore cost at most two runs.
+ */
+class GroupCommit {
+
+    private Round running;
+    private Round waiting;
+
+    /**
+     * Runs the operation for this request, or waits for a run that covers it.
+     *
+     * @param windowNanos How long the leader of a round waits for other requests before running the operation.
+     * @param operation   The operation.
+     * @return true if the request was served by a run led by another thread.
+     * @throws IOException If the run serving the request failed, or the thread was interrupted.
+     */
+    boolean execute(long windowNanos, Operation operation) throws IOException {
+        Round round;
+        boolean leader = false;
+        synchronized (this) {
+            if (this.running == null) {
+                this.running = round = new Round();
+                leader = true;
+            } else if (!this.running.started) {
+                round = this.running;
+            } else {
+                if (this.waiting == null) {
+                    this.waiting = new Round();
+                }
+                round = this.waiting;
+            }
+            while (!leader && !round.result.isDone()) {
+                if (this.running == null) {
+                    // The previous round completed: run the one this request joined
+                    this.running = round;
+                    this.waiting = null;
+                    leader = true;
+                } else {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for a grouped operation");
+                    }
+                }
+            }
+        }
+
+        if (leader) {
+            if (windowNanos > 0) {
+                LockSupport.parkNanos(windowNanos);
+            }
+            synchronized (this) {
+                round.started = true;
+            }
+            try {
+                operation.run();
+                round.result.complete(null);
+            } catch (IOException | RuntimeException | Error e) {
+                round.result.completeExceptionally(e);
+            } finally {
+                synchronized (this) {
+                    this.running = null;
+                    notifyAll();
+                }
+            }
+        }
+
+        try {
+            round.result.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw leader ? (IOException) cause : new IOException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            // Not reached: the round is complete at this point
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        return !leader;
+    }
+
+    /**
+     * The operation whose runs are shared.
+     */
+    @FunctionalInterface
+    interface Operation {
+        void run() throws IOException;
+    }
+
+    private static final class Round {
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private boolean started;
+    }
+}
@@ -0,0 +1,177 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Node-wide cache of file data shared by every HDFS mount of the plugin.
+ * <p>
+ * Files are split into fixed-size chunks kept off-heap in direct buffers, keyed by cluster, path,
+ * modification time, length and chunk index, so a file rewritten or still being appended to in HDFS
+ * never serves stale bytes. The cache is bounded by a total size in bytes and uses Caffeine's W-TinyLFU
+ * eviction policy, which keeps frequently read chunks (shared models, reference datasets) resident while
+ * large one-off scans pass through without flushing them. Concurrent misses on the same chunk are loaded
+ * only once.
+ */
+@Slf4j
+@Component
+public class HdfsBlockCache {
+
+    private final long maxSizeBytes;
+    private final int chunkSize;
+    private final Cache<ChunkKey, ByteBuffer> chunks;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public HdfsBlockCache(@Value("${HDFS_BLOCK_CACHE_SIZE_MB:128}") long maxSizeMb,
+                          @Value("${HDFS_BLOCK_CACHE_CHUNK_SIZE_KB:1024}") int chunkSizeKb) {
+        this.maxSizeBytes = maxSizeMb * 1024 * 1024;
+        this.chunkSize = chunkSizeKb * 1024;
+        this.chunks = Caffeine.newBuilder()
+                .maximumWeight(this.maxSizeBytes)
+                .weigher((ChunkKey key, ByteBuffer chunk) -> chunk.capacity())
+                .removalListener((ChunkKey key, ByteBuffer chunk, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) {
+                        this.evictions.increment();
+                    }
+                })
+                .build();
+        log.info("HDFS block cache configured with {} MB of {} KB chunks", maxSizeMb, chunkSizeKb);
+    }
+
+    /**
+     * @return false when the cache is configured with a size of 0, in which case reads must bypass it.
+     */
+    public boolean isEnabled() {
+        return this.maxSizeBytes > 0 && this.chunkSize > 0;
+    }
+
+    /**
+     * Reads a range of a file through the cache, loading missing chunks with the given reader.
+     *
+     * @param file        Identity of the file: cluster, path, modification time and length.
+     * @param position    Offset of the first byte to read.
+     * @param destination Buffer receiving the bytes, up to its remaining capacity.
+     * @param reader      Positional reader used to load missing chunks from HDFS.
+     * @param metrics     Metrics of the mount performing the read.
+     * @return The number of bytes read, stopping early only at the end of the file.
+     * @throws IOException If a missing chunk cannot be loaded.
+     */
+    int read(CachedFile file, long position, ByteBuffer destination,
+             PositionalReader reader, HdfsMountMetrics metrics) throws IOException {
+        int length = destination.remaining();
+        int total = 0;
+        while (total < length && position + total < file.length()) {
+            long current = position + total;
+            long index = current / this.chunkSize;
+            ByteBuffer chunk = getChunk(new ChunkKey(file.cluster(), file.path(), file.modificationTime(), file.length(), index),
+                    reader, metrics);
+
+            int inChunk = (int) (current - index * this.chunkSize);
+            if (inChunk >= chunk.limit()) {
+                break; // HDFS returned less than the expected length, e.g. the file was truncated
+            }
+            int n = Math.min(length - total, chunk.limit() - inChunk);
+            destination.put(chunk.slice(inChunk, n));
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the node-wide counters of the cache.
+     *
+     * @return The metric values keyed by name.
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        snapshot.put("hits", this.hits.sum());
+        snapshot.put("misses", this.misses.sum());
+        snapshot.put("evictions", this.evictions.sum());
+        snapshot.put("sizeBytes", this.chunks.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L));
+        snapshot.put("maxSizeBytes", this.maxSizeBytes);
+        return snapshot;
+    }
+
+    private ByteBuffer getChunk(ChunkKey key, PositionalReader reader, HdfsMountMetrics metrics) throws IOException {
+        ByteBuffer chunk = this.chunks.getIfPresent(key);
+        if (chunk != null) {
+            this.hits.increment();
+            metrics.getBlockCacheHits().increment();
+            return chunk;
+        }
+
+        try {
+            return this.chunks.get(key, k -> {
+                this.misses.increment();
+                metrics.getBlockCacheMisses().increment();
+                try {
+                    return loadChunk(k, reader);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private ByteBuffer loadChunk(ChunkKey key, PositionalReader reader) throws IOException {
+        long start = key.index() * this.chunkSize;
+        int length = (int) Math.min(this.chunkSize, key.length() - start);
+
+        // Filled straight from the DataNode stream, without going through the heap
+        ByteBuffer chunk = ByteBuffer.allocateDirect(length);
+        while (chunk.hasRemaining()) {
+            if (reader.read(start + chunk.position(), chunk) <= 0) {
+                break;
+            }
+        }
+        chunk.flip();
+        return chunk.asReadOnlyBuffer();
+    }
+
+    /**
+     * Identity of a file whose data is cached.
+     */
+    record CachedFile(String cluster, String path, long modificationTime, long length) {
+    }
+
+    private record ChunkKey(String cluster, String path, long modificationTime, long length, long index) {
+    }
+}
@@ -0,0 +1,255 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Node-wide pool of the HDFS clients used by the mounts and the volume operations of the plugin.
+ * <p>
+ * Clients are keyed by connection, by cluster, by the user they authenticate as, and by the client settings
+ * that differ from the configuration of their connection, such as hedged reads: every mount and operation
+ * for the same key shares one client, its NameNode connection and its lease renewer. A client keeps the
+ * credentials and NameNode addresses of the connection it was created for, so connections replaced by the
+ * {@link HdfsConnectionRegistry}, after a Secret changed or for a keytab login instead of delegation tokens,
+ * never share it, even for the same principal. The pool counts
+ * the references to each client, and closes it once it has been unused for the idle timeout, so that
+ * short controller operations do not reconnect every time while the client of the last unmounted
+ * volume of a cluster does not outlive it for long.
+ */
+@Slf4j
+@Component
+public class HdfsClientPool {
+
+    // Threads started by HDFS clients: RPC connections, lease renewers, hedged reads, socket cache and output streams
+    private static final List<String> CLIENT_THREAD_PREFIXES = List.of("IPC Client", "IPC Parameter Sending Thread",
+            "LeaseRenewer:", "hedgedRead-", "org.apache.hadoop.hdfs.PeerCache", "DataStreamer for file",
+            "ResponseProcessor for block");
+
+    private final long idleTimeoutMillis;
+    private final ScheduledExecutorService closer;
+    // Guarded by this
+    private final Map<ClientKey, PooledClient> clients = new HashMap<>();
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder reuses = new LongAdder();
+    private final LongAdder closed = new LongAdder();
+
+    public HdfsClientPool(@Value("${HDFS_CLIENT_IDLE_TIMEOUT_SECONDS:60}") long idleTimeoutSeconds) {
+        this.idleTimeoutMillis = TimeUnit.SECONDS.toMillis(Math.max(0, idleTimeoutSeconds));
+        this.closer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hdfs-client-closer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("HDFS client pool configured with an idle timeout of {} s", idleTimeoutSeconds);
+    }
+
+    /**
+     * Returns a client of the cluster of a configuration, authenticated as the user of a connection, creating
+     * it if no client of the pool matches. The client must be released by closing the returned reference.
+     *
+     * @param connection    The connection whose user the client authenticates as.
+     * @param configuration The client configuration: the one of the connection, or a copy with other client settings.
+     * @return A reference to the client.
+     * @throws IOException If the client cannot be created.
+     */
+    public Client acquire(HdfsConnection connection, Configuration configuration) throws IOException {
+        String user = connection.doAs(() -> UserGroupInformation.getCurrentUser().getUserName());
+        ClientKey key = new ClientKey(connection, FileSystem.getDefaultUri(configuration).toString(), user,
+                overrides(connection.getConfiguration(), configuration));
+        synchronized (this) {
+            PooledClient pooled = this.clients.get(key);
+            if (pooled != null) {
+                this.reuses.increment();
+                return pooled.reference();
+            }
+        }
+
+        // Created outside the lock; a client created concurrently for the same key is closed
+        FileSystem fileSystem = connection.doAs(() -> FileSystem.newInstance(configuration));
+        Client client;
+        boolean duplicate;
+        synchronized (this) {
+            PooledClient pooled = this.clients.get(key);
+            duplicate = pooled != null;
+            if (pooled == null) {
+                pooled = new PooledClient(key, fileSystem);
+                this.clients.put(key, pooled);
+                this.created.increment();
+                log.info("Created HDFS client of '{}' for '{}' (settings: {})", key.cluster(), key.user(), key.overrides());
+            } else {
+                this.reuses.increment();
+            }
+            client = pooled.reference();
+        }
+        if (duplicate) {
+            closeQuietly(key, fileSystem);
+        }
+        return client;
+    }
+
+    /**
+     * Returns the state of the pool.
+     *
+     * @return The metric values keyed by name.
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        synchronized (this) {
+            snapshot.put("clients", (long) this.clients.size());
+            snapshot.put("idleClients", this.clients.values().stream().filter(pooled -> pooled.references == 0).count());
+            snapshot.put("references", this.clients.values().stream().mapToLong(pooled -> pooled.references).sum());
+        }
+        snapshot.put("created", this.created.sum());
+        snapshot.put("reuses", this.reuses.sum());
+        snapshot.put("closed", this.closed.sum());
+        snapshot.put("clientThreads", Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> CLIENT_THREAD_PREFIXES.stream().anyMatch(thread.getName()::startsWith))
+                .count());
+        return snapshot;
+    }
+
+    private void release(PooledClient pooled) {
+        long generation;
+        synchronized (this) {
+            if (--pooled.references > 0) {
+                return;
+            }
+            generation = ++pooled.generation;
+        }
+        if (this.idleTimeoutMillis == 0) {
+            closeIfIdle(pooled, generation);
+        } else {
+            this.closer.schedule(() -> closeIfIdle(pooled, generation), this.idleTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Closes a client if it was not acquired again since it was last released.
+     */
+    private void closeIfIdle(PooledClient pooled, long generation) {
+        synchronized (this) {
+            if (pooled.references > 0 || pooled.generation != generation || !this.clients.remove(pooled.key, pooled)) {
+                return;
+            }
+        }
+        log.info("Closing idle HDFS client of '{}' for '{}'", pooled.key.cluster(), pooled.key.user());
+        // Stops its lease renewer and NameNode connection; pooled DataNode sockets expire on their own
+        closeQuietly(pooled.key, pooled.fileSystem);
+        this.closed.increment();
+    }
+
+    private static void closeQuietly(ClientKey key, FileSystem fileSystem) {
+        try {
+            fileSystem.close();
+        } catch (IOException e) {
+            log.warn("Failed to close the HDFS client of '{}': {}", key.cluster(), e.getMessage());
+        }
+    }
+
+    /**
+     * @return The settings of a configuration that differ from the base one, sorted by name.
+     */
+    private static Map<String, String> overrides(Configuration base, Configuration configuration) {
+        Map<String, String> overrides = new TreeMap<>();
+        if (configuration == base) {
+            return overrides;
+        }
+        for (Map.Entry<String, String> entry : configuration) {
+            if (!entry.getValue().equals(base.getRaw(entry.getKey()))) {
+                overrides.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return overrides;
+    }
+
+    /**
+     * A reference to a pooled client, released once closed.
+     */
+    public final class Client implements Closeable {
+
+        private final PooledClient pooled;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Client(PooledClient pooled) {
+            this.pooled = pooled;
+        }
+
+        /**
+         * @return The client, which must not be closed directly.
+         */
+        public FileSystem getFileSystem() {
+            return this.pooled.fileSystem;
+        }
+
+        @Override
+        public void close() {
+            if (this.released.compareAndSet(false, true)) {
+                release(this.pooled);
+            }
+        }
+    }
+
+    private final class PooledClient {
+
+        private final ClientKey key;
+        private final FileSystem fileSystem;
+        // Guarded by the pool
+        private int references;
+        private long generation;
+
+        private PooledClient(ClientKey key, FileSystem fileSystem) {
+            this.key = key;
+            this.fileSystem = fileSystem;
+        }
+
+        private Client reference() {
+            this.references++;
+            this.generation++;
+            return new Client(this);
+        }
+    }
+
+    /**
+     * @param connection Compared by identity: the connection whose credentials and configuration the client uses.
+     */
+    private record ClientKey(HdfsConnection connection, String cluster, String user, Map<String, String> overrides) {
+    }
+}
@@ -20,19 +20,16 @@ package varga.vorath.hdfs;
  * #L%
  */
 
-import io.kubernetes.client.openapi.ApiClient;
-import io.kubernetes.client.openapi.ApiException;
-import io.kubernetes.client.openapi.apis.CoreV1Api;
-import io.kubernetes.client.openapi.models.V1Secret;
-import io.kubernetes.client.util.Config;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.security.Credentials;
 import org.apache.hadoop.security.UserGroupInformation;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.charset.StandardCharsets;
-import java.util.Base64;
+import java.security.PrivilegedExceptionAction;
 import java.util.Map;
 
 @Slf4j
@@ -40,44 +37,75 @@ public class HdfsConnection {
 
     private final Configuration configuration; // Isolated Hadoop configuration
     private final UserGroupInformation userGroupInformation; // Isolated authentication context
+    private final boolean tokenAuthenticated; // Delegation tokens instead of a Kerberos login
 
     /**
      * Constructor for the HdfsConnection.
      *
      * @param hdfsUri         The HDFS URI (e.g., hdfs://cluster1:8020).
-     * @param keytabPath      The path to the Kerberos keytab.
+     * @param keytab          The content of the Kerberos keytab.
      * @param principal       The Kerberos principal.
      * @param coreSiteContent Content to core-site.xml
      * @param hdfsSiteContent Content to hdfs-site.xml
+     * @param loginManager    Owner of the login, which keeps its TGT renewed.
      * @throws IOException If there is an issue loading configuration or performing authentication.
      */
-    public HdfsConnection(String hdfsUri, String keytabPath, String principal, String coreSiteContent, String hdfsSiteContent) throws IOException {
+    public HdfsConnection(String hdfsUri, byte[] keytab, String principal, String coreSiteContent, String hdfsSiteContent,
+                          KerberosLoginManager loginManager) throws IOException {
+        this.configuration = loadConfiguration(hdfsUri, coreSiteContent, hdfsSiteContent);
 
+        // Step 3: Perform user authentication using provided keytab and principal
+        this.userGroupInformation = loginManager.login(principal, keytab);
+        this.tokenAuthenticated = false;
+    }
+
+    private HdfsConnection(Configuration configuration, UserGroupInformation userGroupInformation) {
+        this.configuration = configuration;
+        this.userGroupInformation = userGroupInformation;
+        this.tokenAuthenticated = true;
+    }
+
+    private static Configuration loadConfiguration(String hdfsUri, String coreSiteContent, String hdfsSiteContent) {
         // Step 1: Load Hadoop configuration files
-        this.configuration = new Configuration();
+        Configuration configuration = new Configuration();
 
         // Add "core-site.xml" content
         if (coreSiteContent != null && !coreSiteContent.isEmpty()) {
             ByteArrayInputStream coreSiteStream = new ByteArrayInputStream(coreSiteContent.getBytes(StandardCharsets.UTF_8));
-            this.configuration.addResource(coreSiteStream);
+            configuration.addResource(coreSiteStream);
         }
 
         // Add "hdfs-site.xml" content
         if (hdfsSiteContent != null && !hdfsSiteContent.isEmpty()) {
             ByteArrayInputStream hdfsSiteStream = new ByteArrayInputStream(hdfsSiteContent.getBytes(StandardCharsets.UTF_8));
-            this.configuration.addResource(hdfsSiteStream);
+            configuration.addResource(hdfsSiteStream);
         }
 
         if (hdfsUri != null && !hdfsUri.isEmpty()) {
-            this.configuration.set("fs.defaultFS", hdfsUri); // Configure cluster URI when provided
+            configuration.set("fs.defaultFS", hdfsUri); // Configure cluster URI when provided
         }
 
         // Step 2: Set up Kerberos authentication
-        this.configuration.set("hadoop.security.authentication", "kerberos"); // Enable Kerberos in local config
-        UserGroupInformation.setConfiguration(this.configuration); // Does not affect global state
+        configuration.set("hadoop.security.authentication", "kerberos"); // Enable Kerberos in local config
+        UserGroupInformation.setConfiguration(configuration); // Does not affect global state
+        return configuration;
+    }
 
-        // Step 3: Perform user authentication using provided keytab and principal
-        this.userGroupInformation = UserGroupInformation.loginUserFromKeytabAndReturnUGI(principal, keytabPath);
+    /**
+     * Runs an action as the authenticated user: HDFS clients created by the action authenticate with the
+     * credentials of this connection for their whole life.
+     *
+     * @param action The action to run.
+     * @return The result of the action.
+     * @throws IOException If the action fails.
+     */
+    public <T> T doAs(PrivilegedExceptionAction<T> action) throws IOException {
+        try {
+            return this.userGroupInformation.doAs(action);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while running as " + this.userGroupInformation.getUserName());
+        }
     }
 
     /**
@@ -108,57 +136,79 @@ public class HdfsConnection {
         return userGroupInformation;
     }
 
-    interface Operation<T> {
-        T run(Configuration configuration);
+    /**
+     * @return true when the connection authenticates with delegation tokens rather than a Kerberos login.
+     */
+    public boolean isTokenAuthenticated() {
+        return tokenAuthenticated;
     }
 
-    public static HdfsConnection createHdfsConnection(String secretName, String secretNamespace, String location) throws ApiException, IOException {
-        // Step 3: Fetch and decode secret data
-        Map<String, String> secretData = getSecret(secretName, secretNamespace);
+    /**
+     * Replaces the delegation tokens of the connection, such as after they were issued again. Clients
+     * already connected keep their connections; new connections to the NameNode use the new tokens.
+     *
+     * @param tokens The new tokens.
+     */
+    public void updateTokens(Credentials tokens) {
+        userGroupInformation.addCredentials(tokens);
+    }
 
-        // Extract required fields from the secret
-        String principal = secretData.get("principal");
-        String keytabContent = secretData.get("keytab");
-        String coreSiteContent = secretData.get("core-site.xml");
-        String hdfsSiteContent = secretData.get("hdfs-site.xml");
+    interface Operation<T> {
+        T run(Configuration configuration);
+    }
 
-        if (principal == null || keytabContent == null || coreSiteContent == null || hdfsSiteContent == null) {
+    /**
+     * Creates a connection from the entries of its Kubernetes Secret, logging in with its keytab.
+     *
+     * @param secretData   The entries of the Secret: principal, keytab, core-site.xml and hdfs-site.xml.
+     * @param location     The cluster URI, or null to use the default file system of core-site.xml.
+     * @param loginManager Owner of the login, which keeps its TGT renewed.
+     * @return The connection.
+     * @throws IOException If an entry is missing, or the login fails.
+     */
+    public static HdfsConnection fromSecretData(Map<String, byte[]> secretData, String location,
+                                                KerberosLoginManager loginManager) throws IOException {
+        // Extract required fields from the secret; the keytab is binary and kept as is
+        String principal = decode(secretData.get("principal"));
+        byte[] keytab = secretData.get("keytab");
+        String coreSiteContent = decode(secretData.get("core-site.xml"));
+        String hdfsSiteContent = decode(secretData.get("hdfs-site.xml"));
+
+        if (principal == null || keytab == null || coreSiteContent == null || hdfsSiteContent == null) {
             throw new IOException("Secret is missing required fields: principal, keytab, core-site.xml, or hdfs-site.xml");
         }
 
         log.info("Fetched secret data successfully for principal: {}", principal);
-        HdfsConnection hdfsConnection = new HdfsConnection(location, keytabContent, principal, coreSiteContent, hdfsSiteContent);
-        return hdfsConnection;
+        return new HdfsConnection(location, keytab, principal.trim(), coreSiteContent, hdfsSiteContent, loginManager);
     }
 
     /**
-     * Fetches a Kubernetes secret using the Kubernetes API.
+     * Creates a connection authenticated with delegation tokens, which does not reach the KDC.
      *
-     * @param secretName      Name of the secret.
-     * @param secretNamespace Namespace of the secret.
-     * @return A map of data entries from the secret, decoded as strings.
-     * @throws ApiException If there is an error interacting with the Kubernetes API.
+     * @param secretData The entries of the Secret the tokens were issued for: principal, core-site.xml and hdfs-site.xml.
+     * @param tokens     The delegation tokens.
+     * @param location   The cluster URI, or null to use the default file system of core-site.xml.
+     * @return The connection.
+     * @throws IOException If an entry is missing.
      */
-    private static Map<String, String> getSecret(String secretName, String secretNamespace) throws ApiException, IOException {
-        log.info("Fetching secret '{}' from namespace '{}'", secretName, secretNamespace);
-
-        // Initialize Kubernetes API client
-        ApiClient client = Config.defaultClient();
-        CoreV1Api api = new CoreV1Api(client);
-
-        // Get the secret
-        V1Secret secret = api.readNamespacedSecret(secretName, secretNamespace, null);
-
-        Map<String, byte[]> data = secret.getData();
-        if (data == null) {
-            throw new IOException("Secret '" + secretName + "' in namespace '" + secretNamespace + "' has no data");
+    public static HdfsConnection fromDelegationTokens(Map<String, byte[]> secretData, Credentials tokens,
+                                                      String location) throws IOException {
+        String principal = decode(secretData.get("principal"));
+        String coreSiteContent = decode(secretData.get("core-site.xml"));
+        String hdfsSiteContent = decode(secretData.get("hdfs-site.xml"));
+
+        if (principal == null || coreSiteContent == null || hdfsSiteContent == null) {
+            throw new IOException("Secret is missing required fields: principal, core-site.xml, or hdfs-site.xml");
         }
 
-        // Return the decoded secret data.
-        return data.entrySet().stream()
-                .collect(java.util.stream.Collectors.toMap(
-                        Map.Entry::getKey,
-                        e -> new String(e.getValue(), StandardCharsets.UTF_8)
-                ));
+        Configuration configuration = loadConfiguration(location, coreSiteContent, hdfsSiteContent);
+        UserGroupInformation userGroupInformation = UserGroupInformation.createRemoteUser(principal.trim());
+        userGroupInformation.setAuthenticationMethod(UserGroupInformation.AuthenticationMethod.TOKEN);
+        userGroupInformation.addCredentials(tokens);
+        return new HdfsConnection(configuration, userGroupInformation);
+    }
+
+    private static String decode(byte[] value) {
+        return value != null ? new String(value, StandardCharsets.UTF_8) : null;
     }
 }
@@ -0,0 +1,434 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.google.gson.reflect.TypeToken;
+import io.kubernetes.client.openapi.ApiClient;
+import io.kubernetes.client.openapi.ApiException;
+import io.kubernetes.client.openapi.apis.CoreV1Api;
+import io.kubernetes.client.openapi.models.V1Secret;
+import io.kubernetes.client.util.ClientBuilder;
+import io.kubernetes.client.util.Watch;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of the connections to HDFS clusters, shared by every volume operation of the plugin.
+ * <p>
+ * Building a connection costs a read of its Kubernetes Secret, the parsing of the cluster's core-site.xml
+ * and hdfs-site.xml, and a Kerberos login. Connections are keyed by the namespace, name and resourceVersion
+ * of their Secret and by the cluster URI, and reused by every volume using the same pair; concurrent
+ * requests for a connection not built yet share a single login. A Secret is read once, then followed by
+ * a watch: once it is modified or deleted, its connections are no longer handed out, and the next request
+ * reads it again. Mounts already using an evicted connection keep it.
+ * <p>
+ * When delegation tokens are enabled, connections authenticate with the tokens the controller issued
+ * for their Secret, read from the Secret it manages next to it (see {@link DelegationTokens}), so that
+ * nodes do not reach the KDC; they fall back to a keytab login while no usable tokens exist for their
+ * cluster. Tokens issued again are pushed to the live connections built from previous ones.
+ */
+@Slf4j
+@Component
+public class HdfsConnectionRegistry {
+
+    // Watches are closed by the API server after this time, and started again from the last resourceVersion
+    private static final int WATCH_TIMEOUT_SECONDS = 300;
+    // A missing tokens Secret is read again after this time, such as once the controller has issued tokens
+    private static final long MISSING_TOKENS_TTL_MILLIS = 60_000;
+
+    private final ApiClient apiClient;
+    private final CoreV1Api coreV1Api;
+    private final ConnectionFactory connectionFactory;
+    private final boolean tokensEnabled;
+    private final Map<SecretRef, CompletableFuture<CachedSecret>> secrets = new ConcurrentHashMap<>();
+    private final Map<ConnectionKey, CompletableFuture<HdfsConnection>> connections = new ConcurrentHashMap<>();
+    // Tokens Secrets found missing, with the time until which they are not read again
+    private final Map<SecretRef, Long> missingTokens = new ConcurrentHashMap<>();
+
+    private final LongAdder secretReads = new LongAdder();
+    private final LongAdder logins = new LongAdder();
+    private final LongAdder reuses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder tokenFallbacks = new LongAdder();
+    private final LongAdder tokenUpdates = new LongAdder();
+
+    @Autowired
+    public HdfsConnectionRegistry(KerberosLoginManager loginManager,
+                                  @Value("${HDFS_DELEGATION_TOKENS_ENABLED:false}") boolean tokensEnabled) throws IOException {
+        this(ClientBuilder.defaultClient(), (secretData, clusterUri) ->
+                HdfsConnection.fromSecretData(secretData, clusterUri, loginManager), tokensEnabled);
+    }
+
+    HdfsConnectionRegistry(ApiClient apiClient, ConnectionFactory connectionFactory, boolean tokensEnabled) {
+        // A watch waits for events for up to its timeout: reads must not time out before it
+        apiClient.setReadTimeout((WATCH_TIMEOUT_SECONDS + 30) * 1000);
+        this.apiClient = apiClient;
+        this.coreV1Api = new CoreV1Api(apiClient);
+        this.connectionFactory = connectionFactory;
+        this.tokensEnabled = tokensEnabled;
+    }
+
+    /**
+     * Returns the connection to a cluster with the credentials and configuration of a Secret, building it
+     * if no live connection matches the current version of the Secret. The connection authenticates with
+     * delegation tokens when they are enabled and usable, and with a keytab login otherwise.
+     *
+     * @param secretName      Name of the Secret holding the principal, keytab, core-site.xml and hdfs-site.xml.
+     * @param secretNamespace Namespace of the Secret.
+     * @param clusterUri      The cluster URI (e.g., hdfs://cluster1:8020), or null for the default file system of core-site.xml.
+     * @return The connection.
+     * @throws ApiException If the Secret cannot be read.
+     * @throws IOException  If the Secret is incomplete, or the login fails.
+     */
+    public HdfsConnection getConnection(String secretName, String secretNamespace, String clusterUri)
+            throws ApiException, IOException {
+        SecretRef ref = new SecretRef(secretNamespace, secretName, null);
+        CachedSecret secret = load(this.secrets, ref, () -> readSecret(ref));
+        if (this.tokensEnabled) {
+            DelegationTokens tokens = getTokens(ref, secret, clusterUri);
+            if (tokens != null) {
+                return getConnection(new ConnectionKey(ref, secret.resourceVersion(), clusterUri, true), () -> {
+                    log.info("Connecting to '{}' with the delegation tokens of Secret '{}/{}'", clusterUri,
+                            secretNamespace, secretName);
+                    return HdfsConnection.fromDelegationTokens(secret.data(), tokens.credentials(), clusterUri);
+                });
+            }
+            this.tokenFallbacks.increment();
+        }
+        return getLoginConnection(ref, secret, clusterUri);
+    }
+
+    /**
+     * Returns the connection to a cluster logged in with the keytab of a Secret, such as to issue
+     * delegation tokens.
+     *
+     * @param secretName      Name of the Secret holding the principal, keytab, core-site.xml and hdfs-site.xml.
+     * @param secretNamespace Namespace of the Secret.
+     * @param clusterUri      The cluster URI (e.g., hdfs://cluster1:8020), or null for the default file system of core-site.xml.
+     * @return The connection.
+     * @throws ApiException If the Secret cannot be read.
+     * @throws IOException  If the Secret is incomplete, or the login fails.
+     */
+    public HdfsConnection getLoginConnection(String secretName, String secretNamespace, String clusterUri)
+            throws ApiException, IOException {
+        SecretRef ref = new SecretRef(secretNamespace, secretName, null);
+        return getLoginConnection(ref, load(this.secrets, ref, () -> readSecret(ref)), clusterUri);
+    }
+
+    private HdfsConnection getLoginConnection(SecretRef ref, CachedSecret secret, String clusterUri)
+            throws ApiException, IOException {
+        return getConnection(new ConnectionKey(ref, secret.resourceVersion(), clusterUri, false), () -> {
+            this.logins.increment();
+            log.info("Connecting to '{}' with Secret '{}/{}' (resourceVersion {})", clusterUri, ref.namespace(),
+                    ref.name(), secret.resourceVersion());
+            return this.connectionFactory.create(secret.data(), clusterUri);
+        });
+    }
+
+    private HdfsConnection getConnection(ConnectionKey key, Loader<HdfsConnection> loader) throws ApiException, IOException {
+        CompletableFuture<HdfsConnection> existing = this.connections.get(key);
+        if (existing != null && !existing.isCompletedExceptionally()) {
+            this.reuses.increment();
+        }
+        return load(this.connections, key, loader);
+    }
+
+    /**
+     * Returns the delegation tokens issued for the current version of a Secret, if they include usable
+     * tokens for the given cluster. A missing tokens Secret is remembered for a while, so that the
+     * connections falling back to keytab logins do not read it on every request.
+     */
+    private DelegationTokens getTokens(SecretRef ref, CachedSecret secret, String clusterUri) {
+        SecretRef tokenRef = ref.tokens();
+        Long missingUntil = this.missingTokens.get(tokenRef);
+        if (missingUntil != null) {
+            if (System.currentTimeMillis() < missingUntil) {
+                return null;
+            }
+            this.missingTokens.remove(tokenRef, missingUntil);
+        }
+        try {
+            DelegationTokens tokens = DelegationTokens.fromSecretData(
+                    load(this.secrets, tokenRef, () -> readSecret(tokenRef)).data());
+            if (tokens.sourceVersion().equals(secret.resourceVersion())
+                    && tokens.isUsableFor(clusterUri, System.currentTimeMillis())) {
+                return tokens;
+            }
+            log.debug("Delegation tokens of Secret '{}/{}' are not usable for '{}'", ref.namespace(), ref.name(), clusterUri);
+        } catch (ApiException e) {
+            if (e.getCode() == 404) {
+                this.missingTokens.put(tokenRef, System.currentTimeMillis() + MISSING_TOKENS_TTL_MILLIS);
+            }
+            log.debug("No delegation tokens for Secret '{}/{}': {}", ref.namespace(), ref.name(), e.getMessage());
+        } catch (IOException e) {
+            log.debug("No delegation tokens for Secret '{}/{}': {}", ref.namespace(), ref.name(), e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Returns the node-wide counters of the registry.
+     *
+     * @return The metric values keyed by name.
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        snapshot.put("connections", (long) this.connections.size());
+        snapshot.put("watchedSecrets", (long) this.secrets.size());
+        snapshot.put("secretReads", this.secretReads.sum());
+        snapshot.put("logins", this.logins.sum());
+        snapshot.put("reuses", this.reuses.sum());
+        snapshot.put("evictions", this.evictions.sum());
+        snapshot.put("tokenConnections", this.connections.keySet().stream().filter(ConnectionKey::tokens).count());
+        snapshot.put("tokenFallbacks", this.tokenFallbacks.sum());
+        snapshot.put("tokenUpdates", this.tokenUpdates.sum());
+        return snapshot;
+    }
+
+    /**
+     * Reads a Secret, applies its new version to the connections, and starts watching it.
+     */
+    private CachedSecret readSecret(SecretRef ref) throws ApiException, IOException {
+        log.info("Fetching secret '{}' from namespace '{}'", ref.name(), ref.namespace());
+        this.secretReads.increment();
+        V1Secret secret = this.coreV1Api.readNamespacedSecret(ref.name(), ref.namespace(), null);
+
+        Map<String, byte[]> data = secret.getData();
+        if (data == null) {
+            throw new IOException("Secret '" + ref.name() + "' in namespace '" + ref.namespace() + "' has no data");
+        }
+        String resourceVersion = secret.getMetadata().getResourceVersion();
+        CachedSecret cached = new CachedSecret(resourceVersion, Map.copyOf(data));
+
+        onNewVersion(ref, cached);
+        Thread watcher = new Thread(() -> watch(ref, resourceVersion), "secret-watch-" + ref.namespace() + "-" + ref.name());
+        watcher.setDaemon(true);
+        watcher.start();
+        return cached;
+    }
+
+    /**
+     * Follows the changes of a Secret until it is modified or deleted, or the watch fails, at which point
+     * the Secret is read again by the next request.
+     */
+    private void watch(SecretRef ref, String resourceVersion) {
+        while (isCurrent(ref, resourceVersion)) {
+            try (Watch<V1Secret> watch = Watch.createWatch(this.apiClient,
+                    this.coreV1Api.listNamespacedSecretCall(ref.namespace(), null, null, null,
+                            "metadata.name=" + ref.name(), null, null, resourceVersion, null, WATCH_TIMEOUT_SECONDS, true, null),
+                    new TypeToken<Watch.Response<V1Secret>>() {
+                    }.getType())) {
+                for (Watch.Response<V1Secret> event : watch) {
+                    if ("ERROR".equals(event.type)) {
+                        // Such as a resourceVersion too old: changes may have been missed
+                        log.warn("Watch of secret '{}/{}' failed: {}", ref.namespace(), ref.name(),
+                                event.status != null ? event.status.getMessage() : "unknown error");
+                        forgetSecret(ref, resourceVersion);
+                        return;
+                    }
+                    String eventVersion = event.object.getMetadata().getResourceVersion();
+                    boolean deleted = "DELETED".equals(event.type);
+                    if (deleted || !resourceVersion.equals(eventVersion)) {
+                        log.info("Secret '{}/{}' was {}", ref.namespace(), ref.name(), deleted ? "deleted" : "modified");
+                        if (forgetSecret(ref, resourceVersion)) {
+                            if (deleted) {
+                                onDeleted(ref);
+                            } else if (event.object.getData() != null) {
+                                onNewVersion(ref, new CachedSecret(eventVersion, Map.copyOf(event.object.getData())));
+                            }
+                        }
+                        return;
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Watch of secret '{}/{}' failed: {}", ref.namespace(), ref.name(), e.getMessage());
+                forgetSecret(ref, resourceVersion);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return true while the given version of a Secret is the one handed out, or is being read.
+     */
+    private boolean isCurrent(SecretRef ref, String resourceVersion) {
+        CompletableFuture<CachedSecret> secret = this.secrets.get(ref);
+        if (secret == null || secret.isCompletedExceptionally()) {
+            return false;
+        }
+        CachedSecret cached = secret.getNow(null);
+        return cached == null || cached.resourceVersion().equals(resourceVersion);
+    }
+
+    /**
+     * Forgets a version of a Secret, so that the next request reads the Secret again.
+     *
+     * @return false if that version was already replaced.
+     */
+    private boolean forgetSecret(SecretRef ref, String resourceVersion) {
+        boolean[] forgotten = new boolean[1];
+        this.secrets.computeIfPresent(ref, (r, secret) -> {
+            if (secret.isCompletedExceptionally()) {
+                return secret; // Removed by the failed read itself
+            }
+            // A read still in flight may return the old version: it is forgotten as well
+            CachedSecret cached = secret.getNow(null);
+            forgotten[0] = cached == null || cached.resourceVersion().equals(resourceVersion);
+            return forgotten[0] ? null : secret;
+        });
+        return forgotten[0];
+    }
+
+    /**
+     * Applies a new version of a Secret: the connections built from other versions of a Secret are no longer
+     * handed out, while new delegation tokens are pushed to the connections using previous ones.
+     */
+    private void onNewVersion(SecretRef ref, CachedSecret secret) {
+        if (ref.source() == null) {
+            evictConnections(ref, secret.resourceVersion());
+            return;
+        }
+        DelegationTokens tokens;
+        try {
+            tokens = DelegationTokens.fromSecretData(secret.data());
+        } catch (IOException e) {
+            log.warn("Ignoring invalid delegation tokens of Secret '{}/{}': {}", ref.namespace(), ref.name(), e.getMessage());
+            return;
+        }
+        this.connections.forEach((key, connection) -> {
+            if (key.tokens() && key.secret().equals(ref.source()) && key.resourceVersion().equals(tokens.sourceVersion())
+                    && connection.isDone() && !connection.isCompletedExceptionally()) {
+                connection.join().updateTokens(tokens.credentials());
+                this.tokenUpdates.increment();
+            }
+        });
+    }
+
+    /**
+     * Applies the deletion of a Secret. Connections keep the delegation tokens they have if their Secret is
+     * deleted, and new connections fall back to keytab logins.
+     */
+    private void onDeleted(SecretRef ref) {
+        if (ref.source() == null) {
+            log.info("Connections of Secret '{}/{}' will be rebuilt", ref.namespace(), ref.name());
+            evictConnections(ref, null);
+        }
+    }
+
+    /**
+     * Stops handing out the connections built from other versions of a Secret.
+     *
+     * @param resourceVersion The version to keep, or null to drop every connection of a deleted Secret.
+     */
+    private void evictConnections(SecretRef ref, String resourceVersion) {
+        this.connections.keySet().removeIf(key -> {
+            boolean stale = key.secret().equals(ref) && !key.resourceVersion().equals(resourceVersion);
+            if (stale) {
+                this.evictions.increment();
+            }
+            return stale;
+        });
+    }
+
+    /**
+     * Returns the value of a key, loading it if absent; concurrent loads of the same key share one call.
+     * A failed load is not kept, so the next request retries it.
+     */
+    private static <K, V> V load(Map<K, CompletableFuture<V>> values, K key, Loader<V> loader)
+            throws ApiException, IOException {
+        CompletableFuture<V> value = new CompletableFuture<>();
+        CompletableFuture<V> existing = values.putIfAbsent(key, value);
+        if (existing != null) {
+            return await(existing);
+        }
+        try {
+            V loaded = loader.load();
+            value.complete(loaded);
+            return loaded;
+        } catch (Throwable e) {
+            // Errors too: the waiters on this future would otherwise block forever
+            values.remove(key, value);
+            value.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> value) throws ApiException, IOException {
+        try {
+            return value.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an HDFS connection");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ApiException apiException) {
+                throw apiException;
+            }
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Builds a connection from the entries of its Secret.
+     */
+    @FunctionalInterface
+    interface ConnectionFactory {
+        HdfsConnection create(Map<String, byte[]> secretData, String clusterUri) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Loader<V> {
+        V load() throws ApiException, IOException;
+    }
+
+    /**
+     * @param source The Secret whose delegation tokens this Secret holds, or null.
+     */
+    private record SecretRef(String namespace, String name, SecretRef source) {
+
+        SecretRef tokens() {
+            return new SecretRef(this.namespace, DelegationTokens.secretName(this.name), this);
+        }
+    }
+
+    private record CachedSecret(String resourceVersion, Map<String, byte[]> data) {
+    }
+
+    private record ConnectionKey(SecretRef secret, String resourceVersion, String clusterUri, boolean tokens) {
+    }
+}
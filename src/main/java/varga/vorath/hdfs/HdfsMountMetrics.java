@@ -0,0 +1,199 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters collected by a single HdfsVirtualFileSystem mount.
+ */
+@Getter
+public class HdfsMountMetrics {
+
+    // Open file handles
+    private final AtomicLong openHandles = new AtomicLong();
+    private final LongAdder handlesOpened = new LongAdder();
+    private final LongAdder handlesReleased = new LongAdder();
+    private final LongAdder handlesEvicted = new LongAdder();
+    private final LongAdder handlesReopened = new LongAdder();
+
+    // Readahead
+    private final LongAdder readaheadHits = new LongAdder();
+    private final LongAdder readaheadMisses = new LongAdder();
+    private final LongAdder readaheadPrefetchedBytes = new LongAdder();
+    private final LongAdder readaheadWastedBytes = new LongAdder();
+
+    // Node-wide block cache, as seen by this mount
+    private final LongAdder blockCacheHits = new LongAdder();
+    private final LongAdder blockCacheMisses = new LongAdder();
+
+    // Attribute cache: hits on existing and missing paths, and lookups that went to the NameNode
+    private final LongAdder attrCacheHits = new LongAdder();
+    private final LongAdder attrCacheNegativeHits = new LongAdder();
+    private final LongAdder attrCacheMisses = new LongAdder();
+
+    // Directory listings
+    private final LongAdder listingCacheHits = new LongAdder();
+    private final LongAdder listingCacheMisses = new LongAdder();
+    private final LongAdder directoryEntriesListed = new LongAdder();
+
+    // Metadata RPCs sent to the NameNode and requests that joined an identical RPC in flight, per operation
+    @Getter(AccessLevel.NONE)
+    private final Map<String, LongAdder> rpcsIssued = new ConcurrentHashMap<>();
+    @Getter(AccessLevel.NONE)
+    private final Map<String, LongAdder> rpcsCoalesced = new ConcurrentHashMap<>();
+
+    // Bytes read from HDFS by closed handles: in total, from a DataNode on this node, and through short-circuit
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder localBytesRead = new LongAdder();
+    private final LongAdder shortCircuitBytesRead = new LongAdder();
+
+    // Bytes written to HDFS output streams, writes held back until the data before them arrived, and bytes
+    // of the holes left by sparse writes, written as zeros
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder writesReordered = new LongAdder();
+    private final LongAdder bytesZeroFilled = new LongAdder();
+
+    // Asynchronous uploads: chunks and bytes queued for the upload threads, writes that had to wait for
+    // the in-flight budget, and the time spent writing to output streams
+    private final AtomicLong uploadQueueDepth = new AtomicLong();
+    private final AtomicLong uploadBytesInFlight = new AtomicLong();
+    private final LongAdder uploadBackpressureWaits = new LongAdder();
+    private final LongAdder uploadNanos = new LongAdder();
+
+    // Renames, each a single NameNode operation
+    private final LongAdder renames = new LongAdder();
+
+    // Native truncates, and those that had to wait for the recovery of the last block
+    private final LongAdder truncates = new LongAdder();
+    private final LongAdder truncateRecoveries = new LongAdder();
+
+    // Files staged on local disk because they were not written sequentially, and their uploads to HDFS
+    private final LongAdder stagedFilesCreated = new LongAdder();
+    private final LongAdder stagedUploads = new LongAdder();
+    private final LongAdder stagedBytesUploaded = new LongAdder();
+
+    // Staged files uploaded as concurrent parts concatenated in HDFS, their parts, and failed part uploads
+    private final LongAdder partUploads = new LongAdder();
+    private final LongAdder partsUploaded = new LongAdder();
+    private final LongAdder partUploadFailures = new LongAdder();
+
+    // Latency of FUSE reads, from the callback entry to the data being in the FUSE buffer
+    private final LatencyHistogram readLatency = new LatencyHistogram();
+
+    // Latency of fsync calls per durability mode, and calls served by a sync issued for another one
+    @Getter(AccessLevel.NONE)
+    private final Map<HdfsMountOptions.FsyncMode, LatencyHistogram> fsyncLatency = new EnumMap<>(HdfsMountOptions.FsyncMode.class);
+    private final LongAdder fsyncsCoalesced = new LongAdder();
+
+    public HdfsMountMetrics() {
+        for (HdfsMountOptions.FsyncMode mode : HdfsMountOptions.FsyncMode.values()) {
+            this.fsyncLatency.put(mode, new LatencyHistogram());
+        }
+    }
+
+    void rpcIssued(String operation) {
+        this.rpcsIssued.computeIfAbsent(operation, k -> new LongAdder()).increment();
+    }
+
+    void rpcCoalesced(String operation) {
+        this.rpcsCoalesced.computeIfAbsent(operation, k -> new LongAdder()).increment();
+    }
+
+    LatencyHistogram getFsyncLatency(HdfsMountOptions.FsyncMode mode) {
+        return this.fsyncLatency.get(mode);
+    }
+
+    /**
+     * Returns a point-in-time copy of every counter, keyed by metric name.
+     *
+     * @return The metric values.
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        snapshot.put("openHandles", this.openHandles.get());
+        snapshot.put("handlesOpened", this.handlesOpened.sum());
+        snapshot.put("handlesReleased", this.handlesReleased.sum());
+        snapshot.put("handlesEvicted", this.handlesEvicted.sum());
+        snapshot.put("handlesReopened", this.handlesReopened.sum());
+        snapshot.put("readaheadHits", this.readaheadHits.sum());
+        snapshot.put("readaheadMisses", this.readaheadMisses.sum());
+        snapshot.put("readaheadPrefetchedBytes", this.readaheadPrefetchedBytes.sum());
+        snapshot.put("readaheadWastedBytes", this.readaheadWastedBytes.sum());
+        snapshot.put("blockCacheHits", this.blockCacheHits.sum());
+        snapshot.put("blockCacheMisses", this.blockCacheMisses.sum());
+        long attrCacheHits = this.attrCacheHits.sum() + this.attrCacheNegativeHits.sum();
+        long attrCacheLookups = attrCacheHits + this.attrCacheMisses.sum();
+        snapshot.put("attrCacheHits", this.attrCacheHits.sum());
+        snapshot.put("attrCacheNegativeHits", this.attrCacheNegativeHits.sum());
+        snapshot.put("attrCacheMisses", this.attrCacheMisses.sum());
+        snapshot.put("attrCacheHitRatioPercent", attrCacheLookups == 0 ? 0 : attrCacheHits * 100 / attrCacheLookups);
+        snapshot.put("listingCacheHits", this.listingCacheHits.sum());
+        snapshot.put("listingCacheMisses", this.listingCacheMisses.sum());
+        snapshot.put("directoryEntriesListed", this.directoryEntriesListed.sum());
+        snapshot.put("bytesRead", this.bytesRead.sum());
+        snapshot.put("localBytesRead", this.localBytesRead.sum());
+        snapshot.put("shortCircuitBytesRead", this.shortCircuitBytesRead.sum());
+        snapshot.put("bytesWritten", this.bytesWritten.sum());
+        snapshot.put("writesReordered", this.writesReordered.sum());
+        snapshot.put("bytesZeroFilled", this.bytesZeroFilled.sum());
+        snapshot.put("uploadQueueDepth", this.uploadQueueDepth.get());
+        snapshot.put("uploadBytesInFlight", this.uploadBytesInFlight.get());
+        snapshot.put("uploadBackpressureWaits", this.uploadBackpressureWaits.sum());
+        long uploadNanos = this.uploadNanos.sum();
+        snapshot.put("uploadThroughputBytesPerSecond", uploadNanos == 0 ? 0 : (long) (this.bytesWritten.sum() / (uploadNanos / 1e9)));
+        snapshot.put("renames", this.renames.sum());
+        snapshot.put("truncates", this.truncates.sum());
+        snapshot.put("truncateRecoveries", this.truncateRecoveries.sum());
+        snapshot.put("stagedFilesCreated", this.stagedFilesCreated.sum());
+        snapshot.put("stagedUploads", this.stagedUploads.sum());
+        snapshot.put("stagedBytesUploaded", this.stagedBytesUploaded.sum());
+        snapshot.put("partUploads", this.partUploads.sum());
+        snapshot.put("partsUploaded", this.partsUploaded.sum());
+        snapshot.put("partUploadFailures", this.partUploadFailures.sum());
+        snapshot.put("reads", this.readLatency.count());
+        snapshot.put("readLatencyP50Micros", this.readLatency.percentileMicros(50));
+        snapshot.put("readLatencyP99Micros", this.readLatency.percentileMicros(99));
+        this.fsyncLatency.forEach((mode, latency) -> {
+            long fsyncs = latency.count();
+            if (fsyncs > 0) {
+                String prefix = mode.name().toLowerCase(Locale.ROOT);
+                snapshot.put(prefix + "Fsyncs", fsyncs);
+                snapshot.put(prefix + "FsyncLatencyP50Micros", latency.percentileMicros(50));
+                snapshot.put(prefix + "FsyncLatencyP99Micros", latency.percentileMicros(99));
+            }
+        });
+        snapshot.put("fsyncsCoalesced", this.fsyncsCoalesced.sum());
+        new TreeMap<>(this.rpcsIssued).forEach((operation, count) -> snapshot.put(operation + "RpcsIssued", count.sum()));
+        new TreeMap<>(this.rpcsCoalesced).forEach((operation, count) -> snapshot.put(operation + "RpcsCoalesced", count.sum()));
+        return snapshot;
+    }
+}
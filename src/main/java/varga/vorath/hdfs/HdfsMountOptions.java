@@ -0,0 +1,528 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.Getter;
+import org.apache.hadoop.conf.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Per-volume tuning of an HDFS mount.
+ * <p>
+ * Options are set as StorageClass parameters or PersistentVolume volumeAttributes, received by the node
+ * plugin in the volume context:
+ * <pre>
+ * parameters:
+ *   hedgedReadThreadPoolSize: "16"
+ *   hedgedReadThresholdMillis: "50"
+ *   shortCircuitRead: "true"
+ *   domainSocketPath: "/var/lib/hadoop-hdfs/dn_socket"
+ *   fuseWorkerThreads: "16"
+ *   fuseMaxBackground: "64"
+ *   fuseCongestionThreshold: "48"
+ *   fuseBigWrites: "true"
+ *   fuseMaxReadKb: "128"
+ *   fuseMaxWriteKb: "128"
+ *   uploadMaxInFlightMb: "128"
+ *   fsyncMode: "hsync"
+ *   fsyncGroupCommitMillis: "2"
+ *   writeMode: "parts"
+ *   uploadPartMb: "256"
+ *   ioBufferSizeKb: "128"
+ *   socketTimeoutMillis: "30000"
+ *   socketCacheCapacity: "64"
+ *   writePacketKb: "1024"
+ *   verifyChecksum: "false"
+ * </pre>
+ * or as StorageClass / PersistentVolume mountOptions, received in the mount flags of the volume capability:
+ * <pre>
+ * mountOptions:
+ *   - -o allow_other
+ *   - --use-attr-cache=true
+ *   - --file-cache-timeout-in-seconds=120
+ * </pre>
+ * where {@code -o} flags and bare flags are passed to FUSE as mount options.
+ */
+@Getter
+public class HdfsMountOptions {
+
+    public static final String HEDGED_READ_THREAD_POOL_SIZE = "hedgedReadThreadPoolSize";
+    public static final String HEDGED_READ_THRESHOLD_MILLIS = "hedgedReadThresholdMillis";
+    public static final String SHORT_CIRCUIT_READ = "shortCircuitRead";
+    public static final String DOMAIN_SOCKET_PATH = "domainSocketPath";
+    public static final String FUSE_WORKER_THREADS = "fuseWorkerThreads";
+    public static final String FUSE_MAX_BACKGROUND = "fuseMaxBackground";
+    public static final String FUSE_CONGESTION_THRESHOLD = "fuseCongestionThreshold";
+    public static final String FUSE_DEBUG = "fuseDebug";
+    public static final String FUSE_BIG_WRITES = "fuseBigWrites";
+    public static final String FUSE_MAX_READ_KB = "fuseMaxReadKb";
+    public static final String FUSE_MAX_WRITE_KB = "fuseMaxWriteKb";
+    public static final String UPLOAD_MAX_IN_FLIGHT_MB = "uploadMaxInFlightMb";
+    public static final String FSYNC_MODE = "fsyncMode";
+    public static final String FSYNC_GROUP_COMMIT_MILLIS = "fsyncGroupCommitMillis";
+    public static final String WRITE_MODE = "writeMode";
+    public static final String UPLOAD_PART_MB = "uploadPartMb";
+    public static final String IO_BUFFER_SIZE_KB = "ioBufferSizeKb";
+    public static final String SOCKET_TIMEOUT_MILLIS = "socketTimeoutMillis";
+    public static final String SOCKET_WRITE_TIMEOUT_MILLIS = "socketWriteTimeoutMillis";
+    public static final String SOCKET_CACHE_CAPACITY = "socketCacheCapacity";
+    public static final String SOCKET_CACHE_EXPIRY_MILLIS = "socketCacheExpiryMillis";
+    public static final String SHORT_CIRCUIT_BUFFER_KB = "shortCircuitBufferKb";
+    public static final String DATANODE_READAHEAD_KB = "dataNodeReadaheadKb";
+    public static final String WRITE_PACKET_KB = "writePacketKb";
+    public static final String VERIFY_CHECKSUM = "verifyChecksum";
+
+    // Mount flags
+    static final String USE_ATTR_CACHE = "use-attr-cache";
+    static final String FILE_CACHE_TIMEOUT_IN_SECONDS = "file-cache-timeout-in-seconds";
+
+    /**
+     * Volume parameters understood by the node plugin, copied into the volume context when a volume is provisioned.
+     */
+    public static final Set<String> PARAMETERS = Set.of(HEDGED_READ_THREAD_POOL_SIZE, HEDGED_READ_THRESHOLD_MILLIS,
+            SHORT_CIRCUIT_READ, DOMAIN_SOCKET_PATH, FUSE_WORKER_THREADS, FUSE_MAX_BACKGROUND, FUSE_CONGESTION_THRESHOLD,
+            FUSE_DEBUG, FUSE_BIG_WRITES, FUSE_MAX_READ_KB, FUSE_MAX_WRITE_KB, UPLOAD_MAX_IN_FLIGHT_MB, FSYNC_MODE,
+            FSYNC_GROUP_COMMIT_MILLIS, WRITE_MODE, UPLOAD_PART_MB,
+            IO_BUFFER_SIZE_KB, SOCKET_TIMEOUT_MILLIS, SOCKET_WRITE_TIMEOUT_MILLIS, SOCKET_CACHE_CAPACITY,
+            SOCKET_CACHE_EXPIRY_MILLIS, SHORT_CIRCUIT_BUFFER_KB, DATANODE_READAHEAD_KB, WRITE_PACKET_KB, VERIFY_CHECKSUM);
+
+    // HDFS client settings a volume may override, layered onto a copy of the connection configuration. Timeouts
+    // of 0 disable them, as in HDFS; buffers and packets must not be empty, and packets are capped by the client.
+    private static final List<ClientSetting> CLIENT_SETTINGS = List.of(
+            new ClientSetting(IO_BUFFER_SIZE_KB, "io.file.buffer.size", 1024, 1, Integer.MAX_VALUE),
+            new ClientSetting(SOCKET_TIMEOUT_MILLIS, "dfs.client.socket-timeout", 1, 0, Integer.MAX_VALUE),
+            new ClientSetting(SOCKET_WRITE_TIMEOUT_MILLIS, "dfs.datanode.socket.write.timeout", 1, 0, Integer.MAX_VALUE),
+            new ClientSetting(SOCKET_CACHE_CAPACITY, "dfs.client.socketcache.capacity", 1, 0, Integer.MAX_VALUE),
+            new ClientSetting(SOCKET_CACHE_EXPIRY_MILLIS, "dfs.client.socketcache.expiryMsec", 1, 1, Long.MAX_VALUE),
+            new ClientSetting(SHORT_CIRCUIT_BUFFER_KB, "dfs.client.read.shortcircuit.buffer.size", 1024, 1, Integer.MAX_VALUE),
+            new ClientSetting(DATANODE_READAHEAD_KB, "dfs.client.cache.readahead", 1024, 0, Long.MAX_VALUE),
+            new ClientSetting(WRITE_PACKET_KB, "dfs.client-write-packet-size", 1024, 1, 16 * 1024 * 1024));
+    static final String SKIP_CHECKSUM_KEY = "dfs.client.read.shortcircuit.skip.checksum";
+
+    // Key under which FUSE mount options given as mount flags are collected, comma separated
+    private static final String FUSE_OPTIONS = "-o";
+
+    static final long DEFAULT_HEDGED_READ_THRESHOLD_MILLIS = 500;
+    static final String DEFAULT_DOMAIN_SOCKET_PATH = "/var/lib/hadoop-hdfs/dn_socket";
+    static final long DEFAULT_FILE_CACHE_TIMEOUT_SECONDS = 60;
+    static final long DEFAULT_UPLOAD_MAX_IN_FLIGHT_MB = 64;
+    // Largest read or write request of libfuse 2, 32 pages
+    static final int MAX_FUSE_REQUEST_KB = 128;
+    static final long DEFAULT_UPLOAD_PART_MB = 128;
+
+    public static final HdfsMountOptions DEFAULTS = new HdfsMountOptions(Map.of());
+
+    // FUSE session: libfuse runs multi-threaded unless a single worker is requested, in which case it is
+    // started with -s. Otherwise the worker count bounds the concurrent data operations of the mount, since
+    // libfuse 2 has no thread limit. max_background and congestion_threshold are kernel FUSE tunables: the
+    // number of queued asynchronous requests (readahead, writeback) and the point at which the kernel
+    // starts throttling them. 0 keeps the kernel default. Debug mode logs every request and is off by default.
+    private final int fuseWorkerThreads;
+    private final int fuseMaxBackground;
+    private final int fuseCongestionThreshold;
+    private final boolean fuseDebug;
+    private final List<String> fuseOptions;
+
+    // FUSE request sizes: without big_writes the kernel splits writes into 4 KB requests. max_write and max_read
+    // bound the size of write and read requests; reads are also bounded by the kernel readahead, raised to
+    // max_read. 0 keeps the defaults; libfuse 2 caps requests at 128 KB, so larger values are rejected. The
+    // kernel writeback cache, which would coalesce small writes, is not offered: it needs libfuse 3, and
+    // jnr-fuse binds libfuse 2. HdfsRequestSizeBenchmark compares these sizes, but has no recorded results
+    // yet, nor has HdfsReadAllocationBenchmark: both need libfuse on the machine running them.
+    private final boolean fuseBigWrites;
+    private final int fuseMaxReadBytes;
+    private final int fuseMaxWriteBytes;
+
+    // Hedged reads: when a DataNode does not answer a positional read within the threshold, the same
+    // range is requested from another replica and the first response wins
+    private final int hedgedReadThreadPoolSize;
+    private final long hedgedReadThresholdMillis;
+
+    // Short-circuit reads: blocks stored on this node's DataNode are read from its local disks through file
+    // descriptors passed over a UNIX domain socket, bypassing the DataNode data transfer protocol
+    private final boolean shortCircuitRead;
+    private final String domainSocketPath;
+
+    // Attribute cache: how long getattr results, including missing paths, are reused without asking the NameNode
+    private final boolean attrCacheEnabled;
+    private final Duration fileCacheTimeout;
+
+    // Asynchronous uploads: bytes written through FUSE but not yet handed to HDFS, on top of the node-wide
+    // limit of the upload scheduler. 0 writes to HDFS from the FUSE threads.
+    private final long uploadMaxInFlightBytes;
+
+    // Durability of fsync: what the HDFS output stream guarantees when fsync returns. The group commit window
+    // is how long the first fsync of a file waits for concurrent ones to share its sync; 0 only groups the
+    // fsyncs that arrive while a sync of the file is already running.
+    private final FsyncMode fsyncMode;
+    private final long fsyncGroupCommitMillis;
+
+    // Write mode: files written from their start are either streamed to HDFS, or staged on local disk and
+    // uploaded on flush, fsync or release as concurrent parts of about the part size, concatenated in HDFS
+    private final WriteMode writeMode;
+    private final long uploadPartBytes;
+
+    // HDFS client settings: buffer sizes, socket timeouts, DataNode socket cache and packet sizes, by HDFS key.
+    // Without checksum verification, no read of the volume checks its CRCs, whether served by a remote DataNode
+    // or by a short-circuit local replica, so corrupt replicas go undetected.
+    private final Map<String, String> clientSettings;
+    private final boolean verifyChecksum;
+
+    private HdfsMountOptions(Map<String, String> options) {
+        this.hedgedReadThreadPoolSize = parseInt(options, HEDGED_READ_THREAD_POOL_SIZE, 0, Integer.MAX_VALUE);
+        this.hedgedReadThresholdMillis = parseLong(options, HEDGED_READ_THRESHOLD_MILLIS, DEFAULT_HEDGED_READ_THRESHOLD_MILLIS);
+        if (this.hedgedReadThresholdMillis <= 0) {
+            throw new IllegalArgumentException(HEDGED_READ_THRESHOLD_MILLIS + " must be > 0.");
+        }
+
+        this.shortCircuitRead = parseBoolean(options, SHORT_CIRCUIT_READ, false);
+        String socketPath = options.get(DOMAIN_SOCKET_PATH);
+        this.domainSocketPath = socketPath == null || socketPath.isBlank() ? DEFAULT_DOMAIN_SOCKET_PATH : socketPath.trim();
+
+        long timeoutSeconds = parseLong(options, FILE_CACHE_TIMEOUT_IN_SECONDS, DEFAULT_FILE_CACHE_TIMEOUT_SECONDS);
+        this.attrCacheEnabled = parseBoolean(options, USE_ATTR_CACHE, false) && timeoutSeconds > 0;
+        this.fileCacheTimeout = Duration.ofSeconds(timeoutSeconds);
+
+        this.uploadMaxInFlightBytes = parseLong(options, UPLOAD_MAX_IN_FLIGHT_MB, DEFAULT_UPLOAD_MAX_IN_FLIGHT_MB) * 1024 * 1024;
+        this.fsyncMode = parseEnum(options, FSYNC_MODE, FsyncMode.class, FsyncMode.HFLUSH);
+        this.fsyncGroupCommitMillis = parseLong(options, FSYNC_GROUP_COMMIT_MILLIS, 0);
+        this.writeMode = parseEnum(options, WRITE_MODE, WriteMode.class, WriteMode.STREAM);
+        this.uploadPartBytes = parseLong(options, UPLOAD_PART_MB, DEFAULT_UPLOAD_PART_MB) * 1024 * 1024;
+        if (this.uploadPartBytes <= 0) {
+            throw new IllegalArgumentException(UPLOAD_PART_MB + " must be > 0.");
+        }
+
+        Map<String, String> clientSettings = new LinkedHashMap<>();
+        for (ClientSetting setting : CLIENT_SETTINGS) {
+            if (options.get(setting.option()) == null || options.get(setting.option()).isBlank()) {
+                continue;
+            }
+            long value = parseLong(options, setting.option(), 0);
+            if (value < setting.min() || value > setting.max() / setting.unit()) {
+                throw new IllegalArgumentException(setting.option() + " must be between " + setting.min()
+                        + " and " + setting.max() / setting.unit() + ".");
+            }
+            clientSettings.put(setting.key(), String.valueOf(value * setting.unit()));
+        }
+        this.verifyChecksum = parseBoolean(options, VERIFY_CHECKSUM, true);
+        if (!this.verifyChecksum) {
+            // Also keeps the client apart from those of mounts that verify checksums, see HdfsClientPool
+            clientSettings.put(SKIP_CHECKSUM_KEY, "true");
+        }
+        this.clientSettings = Collections.unmodifiableMap(clientSettings);
+
+        this.fuseWorkerThreads = parseInt(options, FUSE_WORKER_THREADS, 0, Integer.MAX_VALUE);
+        this.fuseMaxBackground = parseInt(options, FUSE_MAX_BACKGROUND, 0, Integer.MAX_VALUE);
+        this.fuseCongestionThreshold = parseInt(options, FUSE_CONGESTION_THRESHOLD, 0, Integer.MAX_VALUE);
+        this.fuseDebug = parseBoolean(options, FUSE_DEBUG, false);
+        this.fuseMaxReadBytes = parseInt(options, FUSE_MAX_READ_KB, 0, MAX_FUSE_REQUEST_KB) * 1024;
+        this.fuseMaxWriteBytes = parseInt(options, FUSE_MAX_WRITE_KB, 0, MAX_FUSE_REQUEST_KB) * 1024;
+        // max_write is ignored by libfuse 2 without big_writes
+        this.fuseBigWrites = parseBoolean(options, FUSE_BIG_WRITES, false) || this.fuseMaxWriteBytes > 0;
+        List<String> fuseOptions = new ArrayList<>();
+        for (String option : options.getOrDefault(FUSE_OPTIONS, "").split(",")) {
+            if (!option.isBlank()) {
+                fuseOptions.add(option.trim());
+            }
+        }
+        this.fuseOptions = List.copyOf(fuseOptions);
+    }
+
+    /**
+     * Reads the mount options from a volume context, using defaults for missing entries.
+     *
+     * @param volumeContext The volume context of the request.
+     * @return The mount options.
+     * @throws IllegalArgumentException If an option has an invalid value.
+     */
+    public static HdfsMountOptions fromVolumeContext(Map<String, String> volumeContext) {
+        return from(volumeContext, List.of());
+    }
+
+    /**
+     * Reads the mount options from a volume context and the mount flags of a volume capability.
+     * {@code -o} options and bare flags are FUSE mount options; other flags that are not options of this
+     * plugin are ignored.
+     *
+     * @param volumeContext The volume context of the request.
+     * @param mountFlags    The mount flags, such as {@code --use-attr-cache=true}.
+     * @return The mount options.
+     * @throws IllegalArgumentException If an option has an invalid value.
+     */
+    public static HdfsMountOptions from(Map<String, String> volumeContext, List<String> mountFlags) {
+        Map<String, String> options = new HashMap<>(volumeContext);
+        options.remove(FUSE_OPTIONS);
+        List<String> fuseOptions = new ArrayList<>();
+        boolean fuseOptionNext = false;
+        for (String flag : mountFlags) {
+            String trimmed = flag.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (fuseOptionNext || !trimmed.startsWith("-")) {
+                fuseOptions.add(trimmed); // "-o", "allow_other" or a bare "allow_other"
+                fuseOptionNext = false;
+                continue;
+            }
+            if (trimmed.equals("-o")) {
+                fuseOptionNext = true;
+                continue;
+            }
+            if (trimmed.startsWith("-o")) {
+                fuseOptions.add(trimmed.substring(2).trim()); // "-o allow_other" or "-oallow_other"
+                continue;
+            }
+            if (!trimmed.startsWith("--")) {
+                continue;
+            }
+            int equals = trimmed.indexOf('=');
+            if (equals < 0) {
+                options.put(trimmed.substring(2), "true"); // --flag alone means --flag=true
+            } else {
+                options.put(trimmed.substring(2, equals), trimmed.substring(equals + 1));
+            }
+        }
+        options.put(FUSE_OPTIONS, String.join(",", fuseOptions));
+        return new HdfsMountOptions(options);
+    }
+
+    public boolean isHedgedReadEnabled() {
+        return this.hedgedReadThreadPoolSize > 0;
+    }
+
+    /**
+     * @return true when the options change the HDFS client configuration, in which case the mount needs its own
+     * client instead of the one shared through the FileSystem cache.
+     */
+    boolean requiresDedicatedClient() {
+        return isHedgedReadEnabled() || this.shortCircuitRead || !this.clientSettings.isEmpty();
+    }
+
+    /**
+     * Returns the arguments passed to libfuse when mounting, besides the mount point and foreground mode.
+     *
+     * @return The FUSE arguments.
+     */
+    public String[] fuseArguments() {
+        List<String> arguments = new ArrayList<>();
+        for (String option : this.fuseOptions) {
+            arguments.add("-o");
+            arguments.add(option);
+        }
+        if (this.fuseMaxBackground > 0) {
+            arguments.add("-o");
+            arguments.add("max_background=" + this.fuseMaxBackground);
+        }
+        if (this.fuseCongestionThreshold > 0) {
+            arguments.add("-o");
+            arguments.add("congestion_threshold=" + this.fuseCongestionThreshold);
+        }
+        if (this.fuseBigWrites) {
+            arguments.add("-o");
+            arguments.add("big_writes");
+        }
+        if (this.fuseMaxWriteBytes > 0) {
+            arguments.add("-o");
+            arguments.add("max_write=" + this.fuseMaxWriteBytes);
+        }
+        if (this.fuseMaxReadBytes > 0) {
+            arguments.add("-o");
+            arguments.add("max_read=" + this.fuseMaxReadBytes);
+            arguments.add("-o");
+            arguments.add("max_readahead=" + this.fuseMaxReadBytes);
+        }
+        if (this.fuseWorkerThreads == 1) {
+            arguments.add("-s");
+        }
+        return arguments.toArray(new String[0]);
+    }
+
+    /**
+     * Returns a copy of the connection configuration with these options applied.
+     * <p>
+     * The hedged read thread pool is shared by every HDFS client of the JVM and sized by the first mount
+     * enabling hedged reads; the threshold applies per mount. Short-circuit reads are requested here and
+     * confirmed usable on the node by {@link ShortCircuitReads} when the mount is created.
+     *
+     * @param base The configuration of the HDFS connection, left unchanged.
+     * @return The configuration of the mount's HDFS client.
+     */
+    Configuration configure(Configuration base) {
+        Configuration configuration = new Configuration(base);
+        if (isHedgedReadEnabled()) {
+            configuration.setInt("dfs.client.hedged.read.threadpool.size", this.hedgedReadThreadPoolSize);
+            configuration.setLong("dfs.client.hedged.read.threshold.millis", this.hedgedReadThresholdMillis);
+        }
+        if (this.shortCircuitRead) {
+            configuration.setBoolean(ShortCircuitReads.ENABLED_KEY, true);
+            configuration.set(ShortCircuitReads.DOMAIN_SOCKET_PATH_KEY, this.domainSocketPath);
+            // Only file descriptors and shared memory slots go through the socket, never block data
+            configuration.setBoolean("dfs.client.domain.socket.data.traffic", false);
+        }
+        this.clientSettings.forEach(configuration::set);
+        return configuration;
+    }
+
+    /**
+     * Returns the values of the tunable client settings in the configuration a mount's client was created with,
+     * whether they come from these options or from the connection.
+     *
+     * @param configuration The configuration of the mount's HDFS client.
+     * @return The values keyed by HDFS key, omitting settings left to the HDFS defaults, and whether checksums are verified.
+     */
+    Map<String, String> effectiveClientSettings(Configuration configuration) {
+        Map<String, String> settings = new LinkedHashMap<>();
+        for (ClientSetting setting : CLIENT_SETTINGS) {
+            String value = configuration.get(setting.key());
+            if (value != null) {
+                settings.put(setting.key(), value);
+            }
+        }
+        settings.put(VERIFY_CHECKSUM, String.valueOf(this.verifyChecksum));
+        return settings;
+    }
+
+    @Override
+    public String toString() {
+        return "HdfsMountOptions{hedgedReadThreadPoolSize=" + this.hedgedReadThreadPoolSize
+                + ", hedgedReadThresholdMillis=" + this.hedgedReadThresholdMillis
+                + ", shortCircuitRead=" + this.shortCircuitRead
+                + ", domainSocketPath=" + this.domainSocketPath
+                + ", attrCacheEnabled=" + this.attrCacheEnabled
+                + ", fileCacheTimeout=" + this.fileCacheTimeout
+                + ", uploadMaxInFlightBytes=" + this.uploadMaxInFlightBytes
+                + ", fsyncMode=" + this.fsyncMode
+                + ", fsyncGroupCommitMillis=" + this.fsyncGroupCommitMillis
+                + ", writeMode=" + this.writeMode
+                + ", uploadPartBytes=" + this.uploadPartBytes
+                + ", clientSettings=" + this.clientSettings
+                + ", verifyChecksum=" + this.verifyChecksum
+                + ", fuseWorkerThreads=" + this.fuseWorkerThreads
+                + ", fuseMaxBackground=" + this.fuseMaxBackground
+                + ", fuseCongestionThreshold=" + this.fuseCongestionThreshold
+                + ", fuseDebug=" + this.fuseDebug
+                + ", fuseBigWrites=" + this.fuseBigWrites
+                + ", fuseMaxReadBytes=" + this.fuseMaxReadBytes
+                + ", fuseMaxWriteBytes=" + this.fuseMaxWriteBytes
+                + ", fuseOptions=" + this.fuseOptions + "}";
+    }
+
+    /**
+     * What fsync guarantees for the data written to a file before it.
+     */
+    public enum FsyncMode {
+        /**
+         * Nothing: fsync and close only wait for the data queued for upload to reach the HDFS client, and report
+         * upload failures. Data is durable once the file is closed.
+         */
+        NONE,
+        /**
+         * The data reached every DataNode of the pipeline and is visible to new readers, but may still be
+         * in their memory (hflush).
+         */
+        HFLUSH,
+        /**
+         * The data is on the disks of every DataNode of the pipeline (hsync).
+         */
+        HSYNC
+    }
+
+    /**
+     * How files written from their start are uploaded to HDFS.
+     */
+    public enum WriteMode {
+        /**
+         * Through one output stream per handle, as the data is written.
+         */
+        STREAM,
+        /**
+         * Staged on local disk, then uploaded on flush, fsync or release as parts written concurrently and
+         * concatenated in HDFS. Suited to large files written once, such as checkpoints. A file that outgrows
+         * the per-file limit or the quota of the staging area is streamed from there on instead.
+         */
+        PARTS
+    }
+
+    /**
+     * A volume parameter setting an HDFS client key, in units of the given number of bytes or milliseconds.
+     */
+    private record ClientSetting(String option, String key, long unit, long min, long max) {
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Map<String, String> options, String key, Class<E> type, E defaultValue) {
+        String value = options.get(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        List<String> names = new ArrayList<>();
+        for (E constant : type.getEnumConstants()) {
+            if (constant.name().equalsIgnoreCase(value.trim())) {
+                return constant;
+            }
+            names.add(constant.name().toLowerCase(Locale.ROOT));
+        }
+        throw new IllegalArgumentException("Invalid value for " + key + ": '" + value + "', expected one of " + names + ".");
+    }
+
+    private static boolean parseBoolean(Map<String, String> options, String key, boolean defaultValue) {
+        String value = options.get(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        if (!value.trim().equalsIgnoreCase("true") && !value.trim().equalsIgnoreCase("false")) {
+            throw new IllegalArgumentException("Invalid value for " + key + ": '" + value + "', expected true or false.");
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    private static int parseInt(Map<String, String> options, String key, int defaultValue, int max) {
+        long value = parseLong(options, key, defaultValue);
+        if (value > max) {
+            throw new IllegalArgumentException(key + " must be between 0 and " + max + ".");
+        }
+        return (int) value;
+    }
+
+    private static long parseLong(Map<String, String> options, String key, long defaultValue) {
+        String value = options.get(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            long parsed = Long.parseLong(value.trim());
+            if (parsed < 0) {
+                throw new IllegalArgumentException(key + " must be >= 0.");
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + key + ": '" + value + "'.");
+        }
+    }
+}
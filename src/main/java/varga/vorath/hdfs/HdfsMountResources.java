@@ -0,0 +1,56 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * The node-wide components shared by every mount of the node, handed to each {@link HdfsVirtualFileSystem}.
+ * <p>
+ * Mounts created outside the plugin, such as by tests and benchmarks, may leave any of them null: the mount
+ * then reads from HDFS without a block cache, writes sequentially from the FUSE threads without journaling,
+ * and has an HDFS client and readahead threads of its own.
+ */
+@Getter
+@Component
+@RequiredArgsConstructor
+public class HdfsMountResources {
+
+    /**
+     * No node-wide component: every mount works on its own.
+     */
+    public static final HdfsMountResources NONE = new HdfsMountResources(null, null, null, null, null, null);
+
+    // Off-heap cache of file data, or null to read directly from HDFS
+    private final HdfsBlockCache blockCache;
+    // Local disk for files written at random offsets, or null to reject writes that are not sequential
+    private final WriteStagingArea stagingArea;
+    // Upload threads and in-flight budget, or null to write to HDFS from the FUSE threads
+    private final UploadScheduler uploadScheduler;
+    // Journal of buffered writes and staged files, or null to lose them if the plugin restarts
+    private final WriteJournal writeJournal;
+    // Reference-counted HDFS clients, or null for each mount to create a client of its own
+    private final HdfsClientPool clientPool;
+    // Prefetch threads and buffers, or null for each mount to create its own
+    private final ReadaheadManager readaheadManager;
+}
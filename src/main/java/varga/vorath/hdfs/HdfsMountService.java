@@ -23,12 +23,17 @@ package varga.vorath.hdfs;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FileSystem;
 import org.springframework.stereotype.Component;
 import varga.vorath.kubernetes.KubernetesVolumeAttachmentClient;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -39,11 +44,14 @@ import java.util.concurrent.ConcurrentHashMap;
 public class HdfsMountService {
 
     private final KubernetesVolumeAttachmentClient volumeAttachmentClient;
+    private final HdfsMountResources mountResources;
     private final Map<String, HdfsVirtualFileSystem> hdfsVfsInstances = new ConcurrentHashMap<>();
 
     /**
      * Initializes the service by querying Kubernetes VolumeAttachment resources and performing
-     * necessary volume mount and unmount operations.
+     * necessary volume mount and unmount operations. The writes journaled but not uploaded by the
+     * previous run of the plugin are replayed first; a volume whose replay fails is not mounted, and
+     * its replay is retried by the next NodePublishVolume of the volume.
      */
     @PostConstruct
     public void init() {
@@ -53,15 +61,36 @@ public class HdfsMountService {
             // Query the VolumeAttachment objects for the current node
             Map<String, VolumeAttachmentInfo> volumeAttachments = this.volumeAttachmentClient.getVolumeAttachmentsForCurrentNode();
 
+            // Complete the uploads left pending by the previous run before any volume is mounted again
+            Set<String> unreplayedVolumes = new HashSet<>();
+            for (VolumeAttachmentInfo attachmentInfo : volumeAttachments.values()) {
+                try {
+                    replayWriteJournal(attachmentInfo.getHdfsConnection(), attachmentInfo.getHdfsUri());
+                } catch (Exception e) {
+                    log.error("Failed to replay the write journal of '{}': {}", attachmentInfo.getHdfsUri(), e.getMessage(), e);
+                    unreplayedVolumes.add(attachmentInfo.getHdfsUri());
+                }
+            }
+            WriteJournal writeJournal = this.mountResources.getWriteJournal();
+            if (!writeJournal.getPendingVolumes().isEmpty()) {
+                log.warn("Write journal keeps the pending uploads of volumes not replayed yet: {}",
+                        writeJournal.getPendingVolumes());
+            }
+
             for (Map.Entry<String, VolumeAttachmentInfo> entry : volumeAttachments.entrySet()) {
                 String targetPath = entry.getKey();
                 VolumeAttachmentInfo attachmentInfo = entry.getValue();
 
-                if (!Files.exists(Paths.get(targetPath))) {
+                if (unreplayedVolumes.contains(attachmentInfo.getHdfsUri())) {
+                    // Applications must not see the files before the writes they were told succeeded
+                    log.warn("Not mounting '{}' to '{}' until its write journal is replayed", attachmentInfo.getHdfsUri(),
+                            targetPath);
+                } else if (!Files.exists(Paths.get(targetPath))) {
                     // Mount volumes for any missing target paths
                     log.info("Target path '{}' is missing. Attempting to mount...", targetPath);
                     try {
-                        mountVolume(attachmentInfo.getHdfsConnection(), attachmentInfo.getHdfsUri(), targetPath);
+                        mountVolume(attachmentInfo.getHdfsConnection(), attachmentInfo.getHdfsUri(), targetPath,
+                                attachmentInfo.getMountOptions());
                     } catch (Exception e) {
                         log.error("Failed to mount volume for target path '{}': {}", targetPath, e.getMessage(), e);
                     }
@@ -80,12 +109,24 @@ public class HdfsMountService {
     }
 
     /**
-     * Mounts an HDFS volume to a local target path, creating an HdfsVirtualFileSystem instance.
+     * Mounts an HDFS volume to a local target path with the default mount options.
      *
      * @param hdfsUri    The HDFS URI (e.g., hdfs://localhost:8020/path).
      * @param targetPath The local target path where the volume should be mounted.
      */
     public void mountVolume(HdfsConnection hdfsConnection, String hdfsUri, String targetPath) {
+        mountVolume(hdfsConnection, hdfsUri, targetPath, HdfsMountOptions.DEFAULTS);
+    }
+
+    /**
+     * Mounts an HDFS volume to a local target path, creating an HdfsVirtualFileSystem instance, once
+     * the journaled writes of the volume left by the previous run of the plugin are replayed.
+     *
+     * @param hdfsUri      The HDFS URI (e.g., hdfs://localhost:8020/path).
+     * @param targetPath   The local target path where the volume should be mounted.
+     * @param mountOptions The per-volume options of the mount.
+     */
+    public void mountVolume(HdfsConnection hdfsConnection, String hdfsUri, String targetPath, HdfsMountOptions mountOptions) {
         log.info("Mounting HDFS volume '{}' to local path '{}'", hdfsUri, targetPath);
 
         Path target = Paths.get(targetPath);
@@ -94,14 +135,22 @@ public class HdfsMountService {
             return;
         }
 
+        // Applications must not see the files before the writes they were told succeeded
+        replayWriteJournal(hdfsConnection, hdfsUri);
+
         // Create and mount with a new HdfsVirtualFileSystem instance
-        HdfsVirtualFileSystem hdfsVirtualFileSystem = new HdfsVirtualFileSystem(hdfsUri, hdfsConnection);
+        HdfsVirtualFileSystem hdfsVirtualFileSystem = new HdfsVirtualFileSystem(hdfsUri, hdfsConnection, this.mountResources,
+                mountOptions);
         try {
-            hdfsVirtualFileSystem.mount(target, false, true);
+            // Multi-threaded, non-blocking mount; debug mode logs every FUSE request and is only enabled on demand
+            hdfsVirtualFileSystem.mount(target, false, mountOptions.isFuseDebug(), mountOptions.fuseArguments());
             this.hdfsVfsInstances.put(targetPath, hdfsVirtualFileSystem); // Track the instance
-            log.info("Successfully mounted HDFS volume '{}' to '{}'", hdfsUri, targetPath);
+            log.info("Successfully mounted HDFS volume '{}' to '{}' (status: {})", hdfsUri, targetPath,
+                    hdfsVirtualFileSystem.getStatus().snapshot());
         } catch (Exception e) {
             log.error("Failed to mount HDFS volume '{}' to '{}': {}", hdfsUri, targetPath, e.getMessage());
+            // Releases the shared client and the threads of the mount
+            hdfsVirtualFileSystem.umount();
             throw e;
         }
     }
@@ -125,13 +174,80 @@ public class HdfsMountService {
         try {
             hdfsVirtualFileSystem.umount();
             this.hdfsVfsInstances.remove(targetPath); // Remove from the map
-            log.info("Successfully unmounted volume at '{}'", targetPath);
+            log.info("Successfully unmounted volume at '{}' (metrics: {})", targetPath, hdfsVirtualFileSystem.getMetrics().snapshot());
         } catch (Exception e) {
             log.error("Failed to unmount volume at '{}': {}", targetPath, e.getMessage());
             throw e;
         }
     }
 
+    /**
+     * Returns the metrics of every volume mounted on this node.
+     *
+     * @return A map of target path to the metric values of its mount.
+     */
+    public Map<String, Map<String, Long>> getMountMetrics() {
+        Map<String, Map<String, Long>> mountMetrics = new LinkedHashMap<>();
+        this.hdfsVfsInstances.forEach((targetPath, vfs) -> mountMetrics.put(targetPath, vfs.getMetrics().snapshot()));
+        return mountMetrics;
+    }
+
+    /**
+     * Returns the effective state of every volume mounted on this node, such as whether short-circuit reads are in use.
+     *
+     * @return A map of target path to the status of its mount.
+     */
+    public Map<String, Map<String, String>> getMountStatus() {
+        Map<String, Map<String, String>> mountStatus = new LinkedHashMap<>();
+        this.hdfsVfsInstances.forEach((targetPath, vfs) -> mountStatus.put(targetPath, vfs.getStatus().snapshot()));
+        return mountStatus;
+    }
+
+    /**
+     * Returns the node-wide state of the write journal, including the progress of its replay.
+     *
+     * @return The metric values keyed by name.
+     */
+    public Map<String, Long> getWriteJournalStatus() {
+        return this.mountResources.getWriteJournal().snapshot();
+    }
+
+    /**
+     * Returns the node-wide state of the HDFS clients shared by the mounts, and the number of threads they run.
+     *
+     * @return The metric values keyed by name.
+     */
+    public Map<String, Long> getClientPoolStatus() {
+        return this.mountResources.getClientPool().snapshot();
+    }
+
+    /**
+     * Returns the node-wide state of the prefetch buffers shared by the mounts.
+     *
+     * @return The metric values keyed by name.
+     */
+    public Map<String, Long> getReadaheadStatus() {
+        return this.mountResources.getReadaheadManager().snapshot();
+    }
+
+    /**
+     * Replays the writes the previous run of the plugin journaled for a volume but did not upload.
+     *
+     * @throws UncheckedIOException If some of them could not be replayed, in which case the volume must not be mounted.
+     */
+    private void replayWriteJournal(HdfsConnection hdfsConnection, String hdfsUri) {
+        WriteJournal writeJournal = this.mountResources.getWriteJournal();
+        if (!writeJournal.hasPendingFiles(hdfsUri)) {
+            return;
+        }
+        HdfsClientPool clientPool = this.mountResources.getClientPool();
+        try (HdfsClientPool.Client client = clientPool.acquire(hdfsConnection, hdfsConnection.getConfiguration())) {
+            writeJournal.replay(hdfsUri, client.getFileSystem());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * Cleans up stale mounts (paths mounted on the current node that are not part of VolumeAttachments).
      *
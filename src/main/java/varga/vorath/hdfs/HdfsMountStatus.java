@@ -0,0 +1,73 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Effective state of a single HdfsVirtualFileSystem mount, as opposed to what was requested in its options.
+ */
+public class HdfsMountStatus {
+
+    private volatile boolean shortCircuitRequested;
+    private volatile boolean shortCircuitActive;
+    private volatile String shortCircuitReason;
+    private volatile Map<String, String> clientSettings = Map.of();
+
+    void setShortCircuit(boolean requested, boolean active, String reason) {
+        this.shortCircuitRequested = requested;
+        this.shortCircuitActive = active;
+        this.shortCircuitReason = reason;
+    }
+
+    public boolean isShortCircuitActive() {
+        return this.shortCircuitActive;
+    }
+
+    void setClientSettings(Map<String, String> clientSettings) {
+        this.clientSettings = Collections.unmodifiableMap(new LinkedHashMap<>(clientSettings));
+    }
+
+    /**
+     * @return The tunable settings the HDFS client of the mount was created with, keyed by HDFS key.
+     */
+    public Map<String, String> getClientSettings() {
+        return this.clientSettings;
+    }
+
+    /**
+     * Returns a point-in-time copy of the status, keyed by name.
+     *
+     * @return The status values.
+     */
+    public Map<String, String> snapshot() {
+        Map<String, String> snapshot = new LinkedHashMap<>();
+        snapshot.put("shortCircuitRequested", String.valueOf(this.shortCircuitRequested));
+        snapshot.put("shortCircuitActive", String.valueOf(this.shortCircuitActive));
+        if (this.shortCircuitReason != null) {
+            snapshot.put("shortCircuitReason", this.shortCircuitReason);
+        }
+        snapshot.putAll(this.clientSettings);
+        return snapshot;
+    }
+}
@@ -0,0 +1,104 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FSDataInputStream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads an HDFS input stream into ByteBuffers.
+ * <p>
+ * Direct buffers (the FUSE buffer, cache chunks, prefetch buffers) are filled through
+ * {@code ByteBufferPositionedReadable}, which DFSInputStream implements without any intermediate copy.
+ * Streams lacking that support (some wrapped or non-HDFS streams) fall back to the byte array API
+ * through a pooled heap buffer.
+ * <p>
+ * Only positional reads are used: they never move the stream position, so concurrent reads of one
+ * handle proceed in parallel, and they are the reads DFSClient hedges across replicas when hedged
+ * reads are enabled.
+ */
+@Slf4j
+class HdfsStreamReader implements PositionalReader {
+
+    private final FSDataInputStream inputStream;
+    private final HeapBufferPool bufferPool;
+    private volatile boolean positionedByteBufferReads = true;
+
+    HdfsStreamReader(FSDataInputStream inputStream, HeapBufferPool bufferPool) {
+        this.inputStream = inputStream;
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * Positional read, safe to call concurrently with any other read of the stream.
+     */
+    @Override
+    public int read(long position, ByteBuffer destination) throws IOException {
+        if (!destination.hasRemaining()) {
+            return 0;
+        }
+        if (this.positionedByteBufferReads) {
+            try {
+                return this.inputStream.read(position, destination);
+            } catch (UnsupportedOperationException e) {
+                log.debug("Stream does not support positioned ByteBuffer reads, using a heap buffer: {}", e.getMessage());
+                this.positionedByteBufferReads = false;
+            }
+        }
+
+        if (destination.hasArray()) {
+            int n = this.inputStream.read(position, destination.array(),
+                    destination.arrayOffset() + destination.position(), destination.remaining());
+            if (n > 0) {
+                destination.position(destination.position() + n);
+            }
+            return n;
+        }
+        byte[] scratch = this.bufferPool.acquire();
+        try {
+            int n = this.inputStream.read(position, scratch, 0, Math.min(scratch.length, destination.remaining()));
+            if (n > 0) {
+                destination.put(scratch, 0, n);
+            }
+            return n;
+        } finally {
+            this.bufferPool.release(scratch);
+        }
+    }
+
+    /**
+     * Fills the destination from {@code position} with positional reads.
+     *
+     * @return The number of bytes read, fewer than requested only at EOF.
+     */
+    int readFully(long position, ByteBuffer destination) throws IOException {
+        int start = destination.position();
+        while (destination.hasRemaining()) {
+            if (read(position + destination.position() - start, destination) <= 0) {
+                break;
+            }
+        }
+        return destination.position() - start;
+    }
+}
@@ -23,10 +23,16 @@ package varga.vorath.hdfs;
 import jnr.ffi.Pointer;
 import jnr.ffi.Runtime;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.ParentNotDirectoryException;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathIsNotEmptyDirectoryException;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.serce.jnrfuse.FuseFillDir;
@@ -34,27 +40,117 @@ import ru.serce.jnrfuse.FuseStubFS;
 import ru.serce.jnrfuse.struct.FileStat;
 import ru.serce.jnrfuse.struct.FuseFileInfo;
 
-import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Slf4j
 public class HdfsVirtualFileSystem extends FuseStubFS {
 
+    private static final int O_APPEND = 02000; // Linux open flag
+    private static final long TRUNCATE_RECOVERY_TIMEOUT_MILLIS = 60_000;
+    // Largest preferred I/O size reported in st_blksize: tools such as cp allocate a buffer of that size,
+    // so the HDFS block size (128 MB by default) is only reported when smaller
+    static final int MAX_PREFERRED_IO_SIZE = 8 * 1024 * 1024;
+
     private FileSystem fileSystem;
+    // Reference to the pooled client of the mount, or null when the mount owns its client
+    private final HdfsClientPool.Client client;
     private final URI hdfsUri;
+    private final HdfsMountMetrics metrics = new HdfsMountMetrics();
+    private final OpenFileHandleTable openFileHandles = new OpenFileHandleTable(OpenFileHandleTable.DEFAULT_MAX_HANDLES, this.metrics);
+    private final ReadaheadManager readaheadManager;
+    // True when the mount has prefetch threads and buffers of its own, rather than the node-wide ones
+    private final boolean ownsReadaheadManager;
+    private final HeapBufferPool heapBuffers = new HeapBufferPool();
+    private final HdfsBlockCache blockCache;
+    private final HdfsMountOptions mountOptions;
+    private final HdfsMountStatus status = new HdfsMountStatus();
+    private final AttributeCache attributeCache;
+    private final WriteStagingArea stagingArea;
+    private final UploadScheduler uploadScheduler;
+    private final WriteJournal writeJournal;
+    private final ByteBudget uploadBudget;
+    private final PartUpload partUpload;
+    // Files of this mount staged on local disk, by FUSE path; changed under its own lock
+    private final Map<String, StagedFile> stagedFiles = new ConcurrentHashMap<>();
+    private final SingleFlight singleFlight = new SingleFlight(this.metrics);
+    private final Semaphore workerPermits;
+    private final Map<Long, DirectoryHandle> directoryHandles = new ConcurrentHashMap<>();
+    private final AtomicLong nextDirectoryHandleId = new AtomicLong(1);
+    // Only used to pass an entry to the FUSE filler, which copies it: one per FUSE thread is enough
+    private final ThreadLocal<FileStat> direntStat = ThreadLocal.withInitial(() -> new FileStat(Runtime.getSystemRuntime()));
 
     public HdfsVirtualFileSystem(String hdfsUri, HdfsConnection hdfsConnection) {
+        this(hdfsUri, hdfsConnection, HdfsMountResources.NONE, HdfsMountOptions.DEFAULTS);
+    }
+
+    /**
+     * @param hdfsUri        The HDFS URI of the volume.
+     * @param hdfsConnection The connection to the cluster.
+     * @param resources      The node-wide components the mount shares with the other mounts of the node.
+     * @param mountOptions   The per-volume options of the mount.
+     */
+    public HdfsVirtualFileSystem(String hdfsUri, HdfsConnection hdfsConnection, HdfsMountResources resources,
+                                 HdfsMountOptions mountOptions) {
+        this.ownsReadaheadManager = resources.getReadaheadManager() == null;
+        this.readaheadManager = !this.ownsReadaheadManager ? resources.getReadaheadManager()
+                : new ReadaheadManager(ReadaheadManager.DEFAULT_PREFETCH_THREADS, ReadaheadManager.DEFAULT_MAX_BUFFERS);
+        HdfsBlockCache blockCache = resources.getBlockCache();
+        this.blockCache = blockCache != null && blockCache.isEnabled() ? blockCache : null;
+        WriteStagingArea stagingArea = resources.getStagingArea();
+        this.stagingArea = stagingArea != null && stagingArea.isEnabled() ? stagingArea : null;
+        UploadScheduler uploadScheduler = resources.getUploadScheduler();
+        this.uploadScheduler = uploadScheduler != null && uploadScheduler.isEnabled() && mountOptions.getUploadMaxInFlightBytes() > 0
+                ? uploadScheduler : null;
+        WriteJournal writeJournal = resources.getWriteJournal();
+        this.writeJournal = writeJournal != null && writeJournal.isEnabled() ? writeJournal : null;
+        this.uploadBudget = this.uploadScheduler != null ? new ByteBudget(mountOptions.getUploadMaxInFlightBytes()) : null;
+        this.mountOptions = mountOptions;
+        this.workerPermits = mountOptions.getFuseWorkerThreads() > 1 ? new Semaphore(mountOptions.getFuseWorkerThreads()) : null;
+        this.attributeCache = mountOptions.isAttrCacheEnabled()
+                ? new AttributeCache(mountOptions.getFileCacheTimeout(), AttributeCache.DEFAULT_MAX_ENTRIES, this.metrics)
+                : null;
         try {
             this.hdfsUri = URI.create(hdfsUri);
 
-            this.fileSystem = FileSystem.get(hdfsConnection.getConfiguration());
-            log.info("Connected to HDFS: {}", this.hdfsUri);
+            // Options such as hedged reads or buffer sizes are client settings: they need a client created with them
+            Configuration configuration = hdfsConnection.getConfiguration();
+            if (mountOptions.requiresDedicatedClient()) {
+                configuration = mountOptions.configure(configuration);
+                configureShortCircuit(configuration);
+            }
+            Configuration clientConfiguration = configuration;
+            // Created as the user of the connection, whose Kerberos login or delegation tokens the client keeps using
+            if (resources.getClientPool() != null) {
+                this.client = resources.getClientPool().acquire(hdfsConnection, clientConfiguration);
+                this.fileSystem = this.client.getFileSystem();
+            } else if (mountOptions.requiresDedicatedClient()) {
+                this.client = null;
+                this.fileSystem = hdfsConnection.doAs(() -> FileSystem.newInstance(clientConfiguration));
+            } else {
+                this.client = null;
+                this.fileSystem = hdfsConnection.doAs(() -> FileSystem.get(clientConfiguration));
+            }
+            if (!mountOptions.isVerifyChecksum()) {
+                // Only shared with mounts that skip verification too, whose client settings are the same
+                this.fileSystem.setVerifyChecksum(false);
+            }
+            this.status.setClientSettings(mountOptions.effectiveClientSettings(clientConfiguration));
+            log.info("Connected to HDFS: {} ({})", this.hdfsUri, mountOptions);
         } catch (IOException e) {
             log.error("Failed to connect to HDFS", e);
             throw new RuntimeException("HDFS connection failed", e);
         }
+        this.partUpload = newPartUpload(uploadScheduler);
     }
 
     @Override
@@ -65,18 +161,25 @@ public class HdfsVirtualFileSystem extends FuseStubFS {
             if (hdfsPath.isRoot()) {
                 stat.st_mode.set(FileStat.S_IFDIR | 0755); // Directory with permissions
                 stat.st_nlink.set(2); // Number of links
+                stat.st_blksize.set(MAX_PREFERRED_IO_SIZE); // Preferred I/O size
                 return 0;
             }
 
-            FileStatus fileStatus = this.fileSystem.getFileStatus(hdfsPath);
-            if (fileStatus.isDirectory()) {
-                stat.st_mode.set(FileStat.S_IFDIR | 0755); // It's a directory
-            } else {
-                stat.st_mode.set(FileStat.S_IFREG | 0644); // Regular file
+            if (this.attributeCache != null) {
+                AttributeCache.CachedStatus cached = this.attributeCache.get(path);
+                if (cached != null) {
+                    if (!cached.exists()) {
+                        return -2; // -ENOENT (Not found, cached)
+                    }
+                    fillStat(stat, cached.fileStatus());
+                    applyStagedLength(path, stat);
+                    return 0; // Success
+                }
             }
-            stat.st_size.set(fileStatus.getLen()); // File size
-            stat.st_mtim.tv_sec.set(fileStatus.getModificationTime() / 1000); // Last modified time
-            stat.st_nlink.set(1); // Default number of links for files
+
+            FileStatus fileStatus = this.attributeCache != null ? lookupAttributes(path, hdfsPath) : getFileStatus(hdfsPath);
+            fillStat(stat, fileStatus);
+            applyStagedLength(path, stat);
 
             return 0; // Success
         } catch (FileNotFoundException e) {
@@ -88,84 +191,221 @@ public class HdfsVirtualFileSystem extends FuseStubFS {
     }
 
     @Override
-    public int readdir(String path, Pointer buf, FuseFillDir filter, long offset, FuseFileInfo info) {
+    public int opendir(String path, FuseFileInfo info) {
         try {
             Path hdfsPath = getHdfsPath(path);
 
-            // Vérification si le répertoire existe et est valide dans HDFS
-            if (!this.fileSystem.exists(hdfsPath) || !this.fileSystem.isDirectory(hdfsPath)) {
-                return -2; // -ENOENT : Répertoire introuvable
+            if (!hdfsPath.isRoot() && !getFileStatus(hdfsPath).isDirectory()) {
+                return -20; // -ENOTDIR (Not a directory)
             }
 
-            // Ajout des dossiers par défaut "." et ".."
-            filter.apply(buf, ".", null, 0);
-            filter.apply(buf, "..", null, 0);
+            long handleId = this.nextDirectoryHandleId.getAndIncrement();
+            this.directoryHandles.put(handleId, newDirectoryHandle(path, hdfsPath));
+            info.fh.set(handleId);
+            return 0; // Success
+        } catch (FileNotFoundException e) {
+            return -2; // -ENOENT (Not found)
+        } catch (IOException e) {
+            log.error("Error opening directory for path: {}", path, e);
+            return -1; // Generic error
+        }
+    }
+
+    @Override
+    public int readdir(String path, Pointer buf, FuseFillDir filter, long offset, FuseFileInfo info) {
+        try {
+            // Offsets: 1 and 2 follow "." and "..", n + 3 follows the n-th entry of the directory
+            if (offset < 1 && filter.apply(buf, ".", null, 1) != 0) {
+                return 0; // FUSE buffer full
+            }
+            if (offset < 2 && filter.apply(buf, "..", null, 2) != 0) {
+                return 0;
+            }
 
-            // Récupération du contenu du répertoire HDFS
-            FileStatus[] fileStatuses = fileSystem.listStatus(hdfsPath);
-            for (FileStatus file : fileStatuses) {
-                // Ajout de chaque fichier/répertoire au contenu du répertoire actuel
-                String fileName = file.getPath().getName();
-                FileStat stat = new FileStat(Runtime.getSystemRuntime()); // Création des métadonnées pour chaque entrée
+            DirectoryHandle handle = this.directoryHandles.get(info.fh.get());
+            if (handle == null) {
+                // FUSE did not go through opendir(): list for this call only
+                handle = newDirectoryHandle(path, getHdfsPath(path));
+            }
 
-                if (file.isDirectory()) {
-                    stat.st_mode.set(FileStat.S_IFDIR | 0755); // Répertoire avec permissions
-                } else {
-                    stat.st_mode.set(FileStat.S_IFREG | 0644); // Fichier régulier avec permissions
+            synchronized (handle) {
+                handle.seek(Math.max(0, offset - 2), this.fileSystem);
+                FileStat stat = this.direntStat.get();
+                FileStatus entry;
+                while ((entry = handle.peek()) != null) {
+                    fillStat(stat, entry);
+                    if (filter.apply(buf, entry.getPath().getName(), stat, handle.getPosition() + 3) != 0) {
+                        break; // FUSE buffer full: the entry is returned by the next call
+                    }
+                    handle.advance();
+                    this.metrics.getDirectoryEntriesListed().increment();
+                    if (this.attributeCache != null) {
+                        this.attributeCache.putListed(path, childPath(path, entry.getPath().getName()), entry,
+                                handle.getGeneration());
+                    }
                 }
-                stat.st_size.set(file.getLen()); // Taille du fichier
-                stat.st_mtim.tv_sec.set(file.getModificationTime() / 1000); // Temps de modification
 
-                // Ajout de l'entrée au répertoire via le filtre
-                filter.apply(buf, fileName, stat, 0);
+                List<FileStatus> listing = handle.getCompleteListing();
+                if (listing != null && this.attributeCache != null) {
+                    this.attributeCache.putListing(path, listing, handle.getGeneration());
+                }
             }
-
-            return 0; // Succès
+            return 0; // Success
+        } catch (FileNotFoundException e) {
+            return -2; // -ENOENT (Not found)
         } catch (IOException e) {
-            log.error("Erreur lors de la lecture du répertoire pour le chemin : {}", path, e);
-            return -1; // Erreur générique
+            log.error("Error reading directory for path: {}", path, e);
+            return -1; // Generic error
         }
     }
 
     @Override
-    public int read(String path, Pointer buffer, long size, long offset, FuseFileInfo fileInfo) {
+    public int releasedir(String path, FuseFileInfo info) {
+        this.directoryHandles.remove(info.fh.get());
+        return 0; // Success
+    }
+
+    @Override
+    public int open(String path, FuseFileInfo fileInfo) {
         try {
             Path hdfsPath = getHdfsPath(path);
 
-            if (!this.fileSystem.exists(hdfsPath)) {
-                return -2; // -ENOENT (Not found)
+            FileStatus fileStatus = getFileStatus(hdfsPath);
+            if (fileStatus.isDirectory()) {
+                return -21; // -EISDIR (Is a directory)
             }
 
-            // Open the file and read the requested portion
-            FSDataInputStream inputStream = fileSystem.open(hdfsPath);
-            inputStream.seek(offset);
+            // The input stream itself is only opened on the first read of the handle
+            OpenFileHandle handle = this.openFileHandles.register(path, hdfsPath, fileStatus);
+            handle.setAppend((fileInfo.flags.get() & O_APPEND) != 0);
+            attachStagedFile(handle);
+            fileInfo.fh.set(handle.getId());
+            return 0; // Success
+        } catch (FileNotFoundException e) {
+            return -2; // -ENOENT (Not found)
+        } catch (IOException e) {
+            log.error("Error opening file for path: {}", path, e);
+            return -1; // Generic error
+        }
+    }
+
+    @Override
+    public int read(String path, Pointer buffer, long size, long offset, FuseFileInfo fileInfo) {
+        long startNanos = System.nanoTime();
+        if (this.workerPermits != null) {
+            this.workerPermits.acquireUninterruptibly();
+        }
+        OpenFileHandle handle = null;
+        try {
+            handle = acquireHandle(path, fileInfo);
+            StagedFile stagedFile = handle.getStagedFile();
+
+            // Bytes go straight into the FUSE buffer; a pooled heap buffer is only used
+            // when its memory cannot be wrapped
+            ByteBuffer destination = FuseBuffers.wrap(buffer, (int) size);
+            byte[] bytes = null;
+            if (destination == null) {
+                bytes = this.heapBuffers.acquire((int) size);
+                destination = ByteBuffer.wrap(bytes, 0, (int) size);
+            }
+            try {
+                if (stagedFile != null) {
+                    // The file is being modified on local disk: read the writes made through any handle
+                    stagedFile.read(offset, destination);
+                } else {
+                    // Serve what was prefetched, then read the rest from the handle's stream;
+                    // FUSE treats a short read as EOF
+                    SequentialReadahead readahead = handle.getReadahead(this.readaheadManager, prefetchReader(handle), this.metrics);
+                    int served = readahead.serve(offset, destination);
+                    if (destination.hasRemaining()) {
+                        readDirect(handle, offset + destination.position(), destination);
+                    }
+                    readahead.afterRead(offset, destination.position(), served);
+                }
+                int bytesRead = destination.position();
 
-            byte[] bytes = new byte[(int) size];
-            int bytesRead = inputStream.read(bytes);
-            if (bytesRead > 0) {
-                buffer.put(0, bytes, 0, bytesRead);
-                return bytesRead; // Number of bytes read
+                if (bytes != null && bytesRead > 0) {
+                    buffer.put(0, bytes, 0, bytesRead);
+                }
+                return bytesRead; // Number of bytes read, 0 on EOF
+            } finally {
+                if (bytes != null) {
+                    this.heapBuffers.release(bytes);
+                }
             }
-            return 0; // EOF
+        } catch (FileNotFoundException e) {
+            return -2; // -ENOENT (Not found)
         } catch (IOException e) {
             log.error("Error reading file for path: {}", path, e);
             return -1; // Generic error
+        } finally {
+            if (handle != null) {
+                handle.release();
+            }
+            if (this.workerPermits != null) {
+                this.workerPermits.release();
+            }
+            this.metrics.getReadLatency().record(System.nanoTime() - startNanos);
         }
     }
 
+    @Override
+    public int release(String path, FuseFileInfo fileInfo) {
+        long handleId = fileInfo.fh.get();
+        OpenFileHandle handle = this.openFileHandles.acquire(handleId);
+        if (handle == null) {
+            return 0; // Success
+        }
+        int result = 0; // Success
+        try {
+            if (handle.getWriter() != null) {
+                // Completes the file in HDFS; errors were already reported by flush if the kernel sent one
+                handle.closeWriter();
+                invalidateAttributes(path);
+            }
+        } catch (IOException e) {
+            log.error("Error closing file for path: {}", path, e);
+            result = -5; // -EIO (I/O error)
+        }
+        StagedFile stagedFile = handle.detachStagedFile();
+        try {
+            if (stagedFile != null) {
+                releaseStagedFile(handle.getPath(), stagedFile);
+                invalidateAttributes(path);
+            }
+        } catch (IOException e) {
+            log.error("Error uploading staged file for path: {}", path, e);
+            result = -5; // -EIO (I/O error)
+        } finally {
+            handle.release();
+            this.openFileHandles.remove(handleId);
+        }
+        return result;
+    }
+
     @Override
     public int create(String path, long mode, FuseFileInfo fileInfo) {
         try {
             Path hdfsPath = getHdfsPath(path);
 
-            // Create the file in HDFS
-            if (this.fileSystem.exists(hdfsPath)) {
-                return -17; // -EEXIST (File already exists)
+            FSDataOutputStream outputStream = this.fileSystem.create(hdfsPath, false);
+            FileStatus fileStatus = new FileStatus(0, false, 0, this.fileSystem.getDefaultBlockSize(hdfsPath),
+                    System.currentTimeMillis(), hdfsPath);
+            OpenFileHandle handle = this.openFileHandles.register(path, hdfsPath, fileStatus);
+            if (this.partUpload != null) {
+                // The empty file is staged by the first write and uploaded in parts on release
+                outputStream.close();
+            } else {
+                // The output stream stays open on the new handle and receives every write to it
+                handle.getWriter(() -> newWriter(hdfsPath, outputStream, 0));
             }
-            this.fileSystem.create(new Path(hdfsPath.toString())).close();
+            fileInfo.fh.set(handle.getId());
+            invalidateAttributes(path);
 
             log.info("File created: {}", hdfsPath);
             return 0; // Success
+        } catch (FileAlreadyExistsException e) {
+            return -17; // -EEXIST (File already exists)
         } catch (IOException e) {
             log.error("Error creating file at path: {}", path, e);
             return -1; // Generic error
@@ -174,46 +414,143 @@ public class HdfsVirtualFileSystem extends FuseStubFS {
 
     @Override
     public int write(String path, Pointer buffer, long size, long offset, FuseFileInfo fileInfo) {
+        if (this.workerPermits != null) {
+            this.workerPermits.acquireUninterruptibly();
+        }
+        OpenFileHandle handle = null;
         try {
-            Path hdfsPath = getHdfsPath(path);
-            byte[] data = new byte[(int) size];
-            buffer.get(0, data, 0, (int) size);
+            handle = acquireHandle(path, fileInfo);
 
-            // Write data at the specified offset using HDFS output streams
-            FSDataInputStream existingData = null;
-            ByteArrayOutputStream resultData = new ByteArrayOutputStream();
-            if (this.fileSystem.exists(hdfsPath)) {
-                existingData = this.fileSystem.open(hdfsPath);
-
-                // Handle overwriting if offset is specified
-                byte[] oldData = new byte[(int) offset];
-                existingData.readFully(oldData);
-                resultData.write(oldData);
+            // Bytes are taken straight from the FUSE buffer when its memory can be wrapped
+            ByteBuffer source = FuseBuffers.wrap(buffer, (int) size);
+            if (source == null) {
+                byte[] data = new byte[(int) size];
+                buffer.get(0, data, 0, (int) size);
+                source = ByteBuffer.wrap(data);
             }
 
-            resultData.write(data);
-            this.fileSystem.create(hdfsPath, true).write(resultData.toByteArray());
-
-            log.info("Wrote {} bytes to file at path: {}", size, hdfsPath);
+            StagedFile stagedFile = handle.getStagedFile();
+            if (stagedFile == null && isWrittenInParts(handle, offset)) {
+                stagedFile = stageFile(handle);
+            }
+            if (stagedFile == null) {
+                try {
+                    SequentialWriter writer = getWriter(handle, offset);
+                    if (handle.isAppend()) {
+                        writer.append(source);
+                    } else {
+                        writer.write(offset, source);
+                    }
+                    invalidateAttributes(path);
+                    return (int) size;
+                } catch (SequentialWriter.NonSequentialWriteException e) {
+                    if (this.stagingArea == null) {
+                        throw e;
+                    }
+                    // Modify a local copy of the file instead, uploaded once when it is released or synced
+                    log.debug("Staging '{}' on local disk: {}", path, e.getMessage());
+                    handle.closeWriter();
+                    stagedFile = stageFile(handle);
+                }
+            }
+            try {
+                if (handle.isAppend()) {
+                    stagedFile.append(source);
+                } else {
+                    stagedFile.write(offset, source);
+                }
+            } catch (WriteStagingArea.QuotaExceededException | WriteStagingArea.FileTooLargeException e) {
+                // A file written in parts that outgrows the staging area is streamed to HDFS instead
+                if (this.partUpload == null || handle.isAppend() || offset != stagedFile.getLength()
+                        || !streamStagedFile(handle, stagedFile)) {
+                    throw e;
+                }
+                log.info("Streaming '{}' instead of writing it in parts: {}", path, e.getMessage());
+                handle.getWriter().write(offset, source);
+            }
+            invalidateAttributes(path);
             return (int) size;
+        } catch (WriteStagingArea.QuotaExceededException e) {
+            log.warn("Cannot stage write to file at path {}: {}", path, e.getMessage());
+            return -28; // -ENOSPC (Staging area full)
+        } catch (WriteStagingArea.FileTooLargeException e) {
+            log.warn("Cannot stage write to file at path {}: {}", path, e.getMessage());
+            return -27; // -EFBIG (File too large to be staged)
+        } catch (SequentialWriter.NonSequentialWriteException e) {
+            log.warn("Unsupported write to file at path {}: {}", path, e.getMessage());
+            return -95; // -EOPNOTSUPP (HDFS files can only be written sequentially)
+        } catch (FileNotFoundException e) {
+            return -2; // -ENOENT (Not found)
         } catch (IOException e) {
             log.error("Error writing to file at path: {}", path, e);
-            return -1; // Generic error
+            return -5; // -EIO (I/O error)
+        } finally {
+            if (handle != null) {
+                handle.release();
+            }
+            if (this.workerPermits != null) {
+                this.workerPermits.release();
+            }
+        }
+    }
+
+    @Override
+    public int flush(String path, FuseFileInfo fileInfo) {
+        // Called on every close(2) of a descriptor, whose error it returns, unlike release: queued uploads are
+        // awaited and staged files uploaded in every mode, data becomes visible to readers unless fsyncMode is
+        // none, durability is left to fsync
+        HdfsMountOptions.FsyncMode mode = this.mountOptions.getFsyncMode() == HdfsMountOptions.FsyncMode.NONE
+                ? HdfsMountOptions.FsyncMode.NONE
+                : HdfsMountOptions.FsyncMode.HFLUSH;
+        int result = syncWriter(path, fileInfo, mode, 0);
+        if (result == 0) {
+            result = uploadStagedFile(path, fileInfo, false);
+        }
+        return result;
+    }
+
+    @Override
+    public int truncate(String path, long size) {
+        return truncate(path, size, null);
+    }
+
+    @Override
+    public int ftruncate(String path, long size, FuseFileInfo fileInfo) {
+        OpenFileHandle handle = this.openFileHandles.acquire(fileInfo.fh.get());
+        try {
+            return truncate(path, size, handle);
+        } finally {
+            if (handle != null) {
+                handle.release();
+            }
         }
     }
 
+    @Override
+    public int fsync(String path, int isdatasync, FuseFileInfo fileInfo) {
+        HdfsMountOptions.FsyncMode mode = this.mountOptions.getFsyncMode();
+        long startNanos = System.nanoTime();
+        int result = syncWriter(path, fileInfo, mode, TimeUnit.MILLISECONDS.toNanos(this.mountOptions.getFsyncGroupCommitMillis()));
+        if (result == 0 && mode != HdfsMountOptions.FsyncMode.NONE) {
+            result = uploadStagedFile(path, fileInfo, mode == HdfsMountOptions.FsyncMode.HSYNC);
+        }
+        this.metrics.getFsyncLatency(mode).record(System.nanoTime() - startNanos);
+        return result;
+    }
 
     @Override
     public int unlink(String path) {
         try {
             Path hdfsPath = getHdfsPath(path);
 
-            if (!this.fileSystem.exists(hdfsPath)) {
+            if (!exists(hdfsPath)) {
                 return -2; // -ENOENT (File not found)
             }
             if (!this.fileSystem.delete(hdfsPath, false)) {
                 return -1; // Generic error if unable to delete
             }
+            discardStagedFile(path);
+            invalidateAttributes(path);
 
             log.info("File deleted: {}", hdfsPath);
             return 0; // Success
@@ -223,17 +560,54 @@ public class HdfsVirtualFileSystem extends FuseStubFS {
         }
     }
 
+    @Override
+    public int rename(String oldpath, String newpath) {
+        if (oldpath.equals(newpath)) {
+            return 0; // Success: rename(2) does nothing when both names are the same
+        }
+        try {
+            Path source = getHdfsPath(oldpath);
+            Path destination = getHdfsPath(newpath);
+
+            renamePath(source, destination);
+            this.metrics.getRenames().increment();
+
+            // Only names change: move what this mount knows about the source instead of dropping it
+            discardStagedFile(newpath);
+            moveStagedFiles(oldpath, newpath);
+            this.openFileHandles.rename(oldpath, newpath, this::getHdfsPath);
+            if (this.attributeCache != null) {
+                this.attributeCache.rename(oldpath, newpath);
+            }
+
+            log.info("Renamed {} to {}", source, destination);
+            return 0; // Success
+        } catch (FileNotFoundException e) {
+            return -2; // -ENOENT (Source or destination parent not found)
+        } catch (FileAlreadyExistsException e) {
+            return -17; // -EEXIST (Destination cannot be replaced)
+        } catch (ParentNotDirectoryException e) {
+            return -20; // -ENOTDIR (Destination parent is not a directory)
+        } catch (PathIsNotEmptyDirectoryException e) {
+            return -39; // -ENOTEMPTY (Destination directory not empty)
+        } catch (IOException e) {
+            log.error("Error renaming {} to {}", oldpath, newpath, e);
+            return -1; // Generic error
+        }
+    }
+
     @Override
     public int mkdir(String path, long mode) {
         try {
             Path hdfsPath = getHdfsPath(path);
 
-            if (this.fileSystem.exists(hdfsPath)) {
+            if (exists(hdfsPath)) {
                 return -17; // -EEXIST (Directory already exists)
             }
             if (!this.fileSystem.mkdirs(hdfsPath)) {
                 return -1; // Generic error if unable to create directory
             }
+            invalidateAttributes(path);
 
             log.info("Directory created: {}", hdfsPath);
             return 0; // Success
@@ -249,18 +623,19 @@ public class HdfsVirtualFileSystem extends FuseStubFS {
         try {
             Path hdfsPath = getHdfsPath(path);
 
-            if (!this.fileSystem.exists(hdfsPath) || !this.fileSystem.isDirectory(hdfsPath)) {
+            FileStatus fileStatus = getFileStatusOrNull(hdfsPath);
+            if (fileStatus == null || !fileStatus.isDirectory()) {
                 return -2; // -ENOENT (Directory not found or not a directory)
             }
 
-            FileStatus[] fileStatuses = fileSystem.listStatus(hdfsPath);
-            if (fileStatuses.length > 0) {
+            if (this.fileSystem.listStatusIterator(hdfsPath).hasNext()) {
                 return -39; // -ENOTEMPTY (Directory not empty)
             }
 
             if (!this.fileSystem.delete(hdfsPath, false)) {
                 return -1; // Generic error if unable to delete
             }
+            invalidateAttributes(path);
 
             log.info("Directory deleted: {}", hdfsPath);
             return 0; // Success
@@ -270,6 +645,593 @@ public class HdfsVirtualFileSystem extends FuseStubFS {
         }
     }
 
+    @Override
+    public void umount() {
+        super.umount();
+        uploadStagedFiles();
+        this.openFileHandles.clear();
+        this.directoryHandles.clear();
+        if (this.ownsReadaheadManager) {
+            this.readaheadManager.shutdown();
+        }
+        if (this.attributeCache != null) {
+            this.attributeCache.clear();
+        }
+        if (this.client != null) {
+            this.client.close();
+        } else if (this.mountOptions.requiresDedicatedClient()) {
+            try {
+                this.fileSystem.close();
+            } catch (IOException e) {
+                log.warn("Failed to close the HDFS client of {}: {}", this.hdfsUri, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the effective state of this mount.
+     *
+     * @return The mount status.
+     */
+    public HdfsMountStatus getStatus() {
+        return this.status;
+    }
+
+    /**
+     * Returns the counters collected for this mount.
+     *
+     * @return The mount metrics.
+     */
+    public HdfsMountMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Looks up the status of a path, sharing the RPC with concurrent lookups of the same path.
+     */
+    private FileStatus getFileStatus(Path hdfsPath) throws IOException {
+        // Calls issued before a change made through the mount are not joined
+        long generation = this.attributeCache != null ? this.attributeCache.generation() : 0;
+        return this.singleFlight.execute("getFileStatus", hdfsPath.toString(), generation,
+                () -> this.fileSystem.getFileStatus(hdfsPath));
+    }
+
+    /**
+     * Looks up the status of a path for getattr and caches the result, whether the path exists or not. The
+     * generation of the path is read before the RPC, so that a result made stale by a concurrent change is
+     * not cached, and the mount generation before joining a call in flight, so that a lookup made after a
+     * change does not join one issued before it.
+     */
+    private FileStatus lookupAttributes(String path, Path hdfsPath) throws IOException {
+        long generation = this.attributeCache.generation(path);
+        return this.singleFlight.execute("getFileStatus", hdfsPath.toString(), this.attributeCache.generation(), () -> {
+            try {
+                FileStatus fileStatus = this.fileSystem.getFileStatus(hdfsPath);
+                this.attributeCache.put(path, fileStatus, generation);
+                return fileStatus;
+            } catch (FileNotFoundException e) {
+                this.attributeCache.putMissing(path, generation);
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * @return The status of the path, or null if it does not exist.
+     */
+    private FileStatus getFileStatusOrNull(Path hdfsPath) throws IOException {
+        try {
+            return getFileStatus(hdfsPath);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether a path exists, sharing the RPC with concurrent lookups of the same path.
+     */
+    private boolean exists(Path hdfsPath) throws IOException {
+        return getFileStatusOrNull(hdfsPath) != null;
+    }
+
+    private DirectoryHandle newDirectoryHandle(String path, Path hdfsPath) {
+        if (this.attributeCache == null) {
+            return new DirectoryHandle(path, hdfsPath, null, 0);
+        }
+        long generation = this.attributeCache.generation(path);
+        return new DirectoryHandle(path, hdfsPath, this.attributeCache.getListing(path), generation);
+    }
+
+    private static String childPath(String path, String name) {
+        return path.endsWith("/") ? path + name : path + "/" + name;
+    }
+
+    private static void fillStat(FileStat stat, FileStatus fileStatus) {
+        if (fileStatus.isDirectory()) {
+            stat.st_mode.set(FileStat.S_IFDIR | 0755); // It's a directory
+        } else {
+            stat.st_mode.set(FileStat.S_IFREG | 0644); // Regular file
+        }
+        stat.st_size.set(fileStatus.getLen()); // File size
+        stat.st_blocks.set(blocksOf(fileStatus.getLen())); // Allocated 512-byte blocks, as reported by du
+        stat.st_blksize.set(preferredIoSize(fileStatus.getBlockSize())); // Preferred I/O size
+        stat.st_mtim.tv_sec.set(fileStatus.getModificationTime() / 1000); // Last modified time
+        stat.st_nlink.set(1); // Default number of links for files
+    }
+
+    /**
+     * Returns the I/O size applications should use for a file: its HDFS block size, within reasonable bounds.
+     *
+     * @param blockSize The HDFS block size of the file, 0 for directories.
+     * @return The size reported in st_blksize.
+     */
+    static long preferredIoSize(long blockSize) {
+        return blockSize > 0 ? Math.min(blockSize, MAX_PREFERRED_IO_SIZE) : MAX_PREFERRED_IO_SIZE;
+    }
+
+    private static long blocksOf(long length) {
+        return (length + 511) / 512;
+    }
+
+    /**
+     * Drops the cached attributes of a path changed through this mount.
+     */
+    private void invalidateAttributes(String path) {
+        if (this.attributeCache != null) {
+            this.attributeCache.invalidate(path);
+        }
+    }
+
+    /**
+     * Keeps short-circuit reads enabled only when they can work on this node, and records the outcome in the mount status.
+     */
+    private void configureShortCircuit(Configuration configuration) {
+        if (!this.mountOptions.isShortCircuitRead()) {
+            return;
+        }
+        String reason = ShortCircuitReads.unavailabilityReason(configuration);
+        if (reason == null) {
+            log.info("Short-circuit local reads enabled for {} through {}", this.hdfsUri, this.mountOptions.getDomainSocketPath());
+        } else {
+            log.warn("Short-circuit local reads requested for {} but disabled: {}", this.hdfsUri, reason);
+            configuration.setBoolean(ShortCircuitReads.ENABLED_KEY, false);
+        }
+        this.status.setShortCircuit(true, reason == null, reason);
+    }
+
+    /**
+     * Returns the writer of a handle, opening the output stream on its first write: an empty file is
+     * rewritten, and a file written from its end, or opened with O_APPEND, is appended to.
+     */
+    private SequentialWriter getWriter(OpenFileHandle handle, long offset) throws IOException {
+        return handle.getWriter(() -> {
+            long length = handle.getFileStatus().getLen();
+            if (length != 0 || handle.isAppend()) {
+                // The file may have been truncated or appended to since the handle was opened
+                length = this.fileSystem.getFileStatus(handle.getHdfsPath()).getLen();
+            }
+            if (handle.isAppend() || (offset == length && length > 0)) {
+                // Costs the bytes appended, whatever the size of the file
+                return newWriter(handle.getHdfsPath(), this.fileSystem.append(handle.getHdfsPath()), length);
+            }
+            if (offset == 0 && length == 0) {
+                return newWriter(handle.getHdfsPath(), this.fileSystem.create(handle.getHdfsPath(), true), 0);
+            }
+            throw new SequentialWriter.NonSequentialWriteException("First write at offset " + offset
+                    + " of a file of " + length + " bytes");
+        });
+    }
+
+    /**
+     * Returns true when the first write of a handle starts an empty file that the parts write mode stages,
+     * instead of streaming it to HDFS.
+     */
+    private boolean isWrittenInParts(OpenFileHandle handle, long offset) throws IOException {
+        if (this.partUpload == null || offset != 0 || handle.isAppend() || handle.getWriter() != null) {
+            return false;
+        }
+        try {
+            return this.fileSystem.getFileStatus(handle.getHdfsPath()).getLen() == 0;
+        } catch (FileNotFoundException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Moves a handle from its staged file to an output stream replacing the file, which starts with the
+     * staged data, so that the next sequential writes of the handle are streamed.
+     *
+     * @return false if other handles share the staged file, in which case the handle keeps it.
+     */
+    private boolean streamStagedFile(OpenFileHandle handle, StagedFile stagedFile) throws IOException {
+        synchronized (this.stagedFiles) {
+            if (stagedFile.isShared()) {
+                return false;
+            }
+            handle.detachStagedFile();
+            this.stagedFiles.values().remove(stagedFile);
+        }
+        try {
+            SequentialWriter writer = handle.getWriter(() -> newWriter(handle.getHdfsPath(),
+                    this.fileSystem.create(handle.getHdfsPath(), true), 0));
+            ByteBuffer buffer = ByteBuffer.allocate(1024 * 1024);
+            long position = 0;
+            int n;
+            while ((n = stagedFile.read(position, buffer.clear())) > 0) {
+                writer.write(position, buffer.flip());
+                position += n;
+            }
+        } finally {
+            stagedFile.discard();
+            stagedFile.close();
+        }
+        return true;
+    }
+
+    /**
+     * Creates the uploader of the parts write mode, or returns null when the mount streams its writes.
+     */
+    private PartUpload newPartUpload(UploadScheduler uploadScheduler) {
+        if (this.mountOptions.getWriteMode() != HdfsMountOptions.WriteMode.PARTS) {
+            return null;
+        }
+        if (this.stagingArea == null || uploadScheduler == null
+                || !(this.fileSystem instanceof DistributedFileSystem distributedFileSystem)) {
+            log.warn("Write mode {} of {} needs write staging, the upload scheduler and HDFS: streaming writes instead",
+                    HdfsMountOptions.WriteMode.PARTS, this.hdfsUri);
+            return null;
+        }
+        return uploadScheduler.newPartUpload(distributedFileSystem, this.mountOptions.getUploadPartBytes(), this.metrics);
+    }
+
+    /**
+     * Creates the writer of an output stream, uploading through the scheduler when it is enabled, and
+     * journaling the buffered data when the write journal is.
+     */
+    private SequentialWriter newWriter(Path hdfsPath, FSDataOutputStream outputStream, long startOffset) throws IOException {
+        UploadQueue uploads = null;
+        StreamJournal journal = null;
+        if (this.uploadScheduler != null) {
+            if (this.writeJournal != null) {
+                try {
+                    journal = this.writeJournal.openStream(this.hdfsUri.toString(), hdfsPath, startOffset);
+                } catch (IOException e) {
+                    outputStream.close();
+                    throw e;
+                }
+            }
+            uploads = this.uploadScheduler.newQueue(outputStream, this.uploadBudget, this.metrics);
+        }
+        return new SequentialWriter(outputStream, uploads, journal, startOffset, this.metrics,
+                SequentialWriter.DEFAULT_REORDER_WINDOW, SequentialWriter.DEFAULT_GAP_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Syncs the output stream of a handle, if it has one, grouping concurrent syncs of the stream.
+     *
+     * @param mode        The guarantee wanted for the data written so far.
+     * @param windowNanos How long the first sync of a group waits for others.
+     */
+    private int syncWriter(String path, FuseFileInfo fileInfo, HdfsMountOptions.FsyncMode mode, long windowNanos) {
+        OpenFileHandle handle = this.openFileHandles.acquire(fileInfo.fh.get());
+        if (handle == null) {
+            return 0; // Success: nothing was written through an evicted handle
+        }
+        try {
+            SequentialWriter writer = handle.getWriter();
+            if (writer != null) {
+                writer.sync(mode, windowNanos);
+            }
+            return 0; // Success
+        } catch (IOException e) {
+            log.error("Error flushing file for path: {}", path, e);
+            return -5; // -EIO (I/O error)
+        } finally {
+            handle.release();
+        }
+    }
+
+    /**
+     * Truncates a file in its staged copy if it has one, otherwise in HDFS. An output stream open on the
+     * handle holds the lease of the file, so it is completed first unless it already has the wanted length.
+     *
+     * @param handle The handle given to ftruncate, or null.
+     */
+    private int truncate(String path, long size, OpenFileHandle handle) {
+        try {
+            StagedFile stagedFile = handle != null ? handle.getStagedFile() : this.stagedFiles.get(path);
+            if (stagedFile != null) {
+                stagedFile.truncate(size);
+                return 0; // Success
+            }
+            if (handle != null && handle.getWriter() != null) {
+                if (handle.getWriter().getLength() == size) {
+                    return 0; // Success: nothing to cut
+                }
+                handle.closeWriter();
+            }
+
+            truncateFile(getHdfsPath(path), size);
+            invalidateAttributes(path);
+            return 0; // Success
+        } catch (FileNotFoundException e) {
+            return -2; // -ENOENT (Not found)
+        } catch (WriteStagingArea.QuotaExceededException e) {
+            log.warn("Cannot truncate staged file at path {}: {}", path, e.getMessage());
+            return -28; // -ENOSPC (Staging area full)
+        } catch (WriteStagingArea.FileTooLargeException e) {
+            log.warn("Cannot truncate staged file at path {}: {}", path, e.getMessage());
+            return -27; // -EFBIG (File too large to be staged)
+        } catch (IOException e) {
+            log.error("Error truncating file at path: {}", path, e);
+            return -5; // -EIO (I/O error)
+        }
+    }
+
+    /**
+     * Sets the length of a file in HDFS: cut with a native truncate, which only touches the last block,
+     * or extended by appending zeros, since HDFS files cannot have holes.
+     */
+    private void truncateFile(Path hdfsPath, long size) throws IOException {
+        long length = this.fileSystem.getFileStatus(hdfsPath).getLen();
+        if (size == length) {
+            return;
+        }
+        if (size > length) {
+            try (FSDataOutputStream out = this.fileSystem.append(hdfsPath)) {
+                byte[] zeros = new byte[(int) Math.min(size - length, 1024 * 1024)];
+                for (long remaining = size - length; remaining > 0; remaining -= zeros.length) {
+                    out.write(zeros, 0, (int) Math.min(remaining, zeros.length));
+                }
+            }
+            return;
+        }
+
+        this.metrics.getTruncates().increment();
+        if (!this.fileSystem.truncate(hdfsPath, size)) {
+            // The new end falls inside a block, which the DataNodes are recovering to its new length:
+            // the file cannot be written again until the NameNode closes it
+            awaitFileClosed(hdfsPath);
+        }
+    }
+
+    private void awaitFileClosed(Path hdfsPath) throws IOException {
+        if (!(this.fileSystem instanceof DistributedFileSystem distributedFileSystem)) {
+            return;
+        }
+        this.metrics.getTruncateRecoveries().increment();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TRUNCATE_RECOVERY_TIMEOUT_MILLIS);
+        long sleepMillis = 10;
+        while (!distributedFileSystem.isFileClosed(hdfsPath)) {
+            if (System.nanoTime() > deadline) {
+                throw new IOException("Timed out waiting for the recovery of '" + hdfsPath + "' after truncate");
+            }
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the recovery of '" + hdfsPath + "'");
+            }
+            sleepMillis = Math.min(sleepMillis * 2, 1000);
+        }
+    }
+
+    /**
+     * Renames a path with rename(2) semantics: an existing destination is replaced atomically.
+     */
+    private void renamePath(Path source, Path destination) throws IOException {
+        if (this.fileSystem instanceof DistributedFileSystem distributedFileSystem) {
+            // A single NameNode operation, whatever the amount of data under the source
+            distributedFileSystem.rename(source, destination, Options.Rename.OVERWRITE);
+            return;
+        }
+
+        // Other file systems move the source into an existing destination directory: replace it first
+        this.fileSystem.getFileStatus(source); // Throws FileNotFoundException for a missing source
+        FileStatus target = getFileStatusOrNull(destination);
+        if (target != null) {
+            if (target.isDirectory() && this.fileSystem.listStatusIterator(destination).hasNext()) {
+                throw new PathIsNotEmptyDirectoryException(destination.toString());
+            }
+            this.fileSystem.delete(destination, false);
+        }
+        if (!this.fileSystem.rename(source, destination)) {
+            throw new IOException("Failed to rename " + source + " to " + destination);
+        }
+    }
+
+    /**
+     * Moves the staged files of a renamed path, and of the paths under it, so they are uploaded to their new path.
+     */
+    private void moveStagedFiles(String from, String to) {
+        synchronized (this.stagedFiles) {
+            for (String path : List.copyOf(this.stagedFiles.keySet())) {
+                if (path.equals(from) || path.startsWith(from + "/")) {
+                    String moved = to + path.substring(from.length());
+                    StagedFile stagedFile = this.stagedFiles.remove(path);
+                    stagedFile.moveTo(getHdfsPath(moved));
+                    this.stagedFiles.put(moved, stagedFile);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the staged file of a deleted or replaced path from being uploaded over whatever takes its place.
+     */
+    private void discardStagedFile(String path) {
+        synchronized (this.stagedFiles) {
+            StagedFile stagedFile = this.stagedFiles.remove(path);
+            if (stagedFile != null) {
+                stagedFile.discard();
+                if (!stagedFile.isReferenced()) {
+                    stagedFile.close(); // Kept after a failed upload: no handle will release it
+                }
+            }
+        }
+    }
+
+    /**
+     * Gives a newly opened handle the staged file of its path, if any, so it reads the writes made through other handles.
+     */
+    private void attachStagedFile(OpenFileHandle handle) {
+        synchronized (this.stagedFiles) {
+            StagedFile stagedFile = this.stagedFiles.get(handle.getPath());
+            if (stagedFile != null && stagedFile.retain()) {
+                handle.setStagedFile(stagedFile);
+            }
+        }
+    }
+
+    /**
+     * Moves a handle to the staged file of its path, staging the file first if no other handle did.
+     * The copy of the HDFS file is made under the lock, so concurrent handles never stage a path twice.
+     */
+    private StagedFile stageFile(OpenFileHandle handle) throws IOException {
+        synchronized (this.stagedFiles) {
+            StagedFile stagedFile = handle.getStagedFile();
+            if (stagedFile != null) {
+                return stagedFile; // Staged by a concurrent write on the same handle
+            }
+            stagedFile = this.stagedFiles.get(handle.getPath());
+            if (stagedFile == null || !stagedFile.retain()) {
+                long length;
+                try {
+                    // Not through the single-flight group: the writer of the handle may just have completed the file
+                    length = this.fileSystem.getFileStatus(handle.getHdfsPath()).getLen();
+                } catch (FileNotFoundException e) {
+                    length = 0;
+                }
+                stagedFile = this.stagingArea.stage(this.hdfsUri.toString(), this.fileSystem, handle.getHdfsPath(), length,
+                        this.metrics);
+                this.stagedFiles.put(handle.getPath(), stagedFile);
+                this.metrics.getStagedFilesCreated().increment();
+            }
+            handle.setStagedFile(stagedFile);
+            return stagedFile;
+        }
+    }
+
+    /**
+     * Drops the reference of a released handle on a staged file, uploading and deleting the file with the last one.
+     * The file stays staged while it uploads, so a handle opened meanwhile reads and keeps it, and when the upload
+     * fails, so that the next release, fsync or unmount retries it.
+     */
+    private void releaseStagedFile(String path, StagedFile stagedFile) throws IOException {
+        synchronized (this.stagedFiles) {
+            if (!stagedFile.releaseReference()) {
+                return;
+            }
+        }
+        stagedFile.upload(this.fileSystem, false, this.partUpload);
+        synchronized (this.stagedFiles) {
+            if (stagedFile.isReferenced()) {
+                return;
+            }
+            // Removed by value: the path may have been renamed during the upload
+            this.stagedFiles.values().remove(stagedFile);
+            stagedFile.close();
+        }
+    }
+
+    private int uploadStagedFile(String path, FuseFileInfo fileInfo, boolean durable) {
+        OpenFileHandle handle = this.openFileHandles.acquire(fileInfo.fh.get());
+        if (handle == null) {
+            return 0; // Success: nothing was written through an evicted handle
+        }
+        try {
+            StagedFile stagedFile = handle.getStagedFile();
+            if (stagedFile != null) {
+                stagedFile.upload(this.fileSystem, durable, this.partUpload);
+                invalidateAttributes(path);
+            }
+            return 0; // Success
+        } catch (IOException e) {
+            log.error("Error uploading staged file for path: {}", path, e);
+            return -5; // -EIO (I/O error)
+        } finally {
+            handle.release();
+        }
+    }
+
+    /**
+     * Uploads and deletes every staged file of the mount, whose handles are about to be closed. The journal
+     * keeps the changes that fail to upload, for the next mount of the volume.
+     */
+    private void uploadStagedFiles() {
+        synchronized (this.stagedFiles) {
+            for (StagedFile stagedFile : this.stagedFiles.values()) {
+                try {
+                    stagedFile.upload(this.fileSystem, false, this.partUpload);
+                } catch (IOException e) {
+                    log.error("Failed to upload staged file for '{}' on unmount", stagedFile.getHdfsPath(), e);
+                } finally {
+                    stagedFile.close();
+                }
+            }
+            this.stagedFiles.clear();
+        }
+    }
+
+    /**
+     * Reports the length of a staged file instead of the length in HDFS, which only changes on upload.
+     */
+    private void applyStagedLength(String path, FileStat stat) {
+        StagedFile stagedFile = this.stagedFiles.get(path);
+        if (stagedFile != null) {
+            long length = stagedFile.getLength();
+            stat.st_size.set(length);
+            stat.st_blocks.set(blocksOf(length));
+        }
+    }
+
+    /**
+     * Returns the open handle referenced by the FUSE file info, reopening it when it was evicted
+     * from the handle table or when FUSE did not go through open() for this file.
+     */
+    private OpenFileHandle acquireHandle(String path, FuseFileInfo fileInfo) throws IOException {
+        long handleId = fileInfo.fh.get();
+        OpenFileHandle handle = this.openFileHandles.acquire(handleId);
+        if (handle != null) {
+            return handle;
+        }
+
+        Path hdfsPath = getHdfsPath(path);
+        FileStatus fileStatus = getFileStatus(hdfsPath);
+        return this.openFileHandles.reopen(handleId, path, hdfsPath, fileStatus);
+    }
+
+    /**
+     * Fills the destination from {@code position} for the calling FUSE thread, through the block
+     * cache when it is enabled, stopping early only at EOF. Reads are positional, so concurrent
+     * reads of the same handle do not wait for each other.
+     */
+    private int readDirect(OpenFileHandle handle, long position, ByteBuffer destination) throws IOException {
+        HdfsStreamReader reader = handle.getReader(this.fileSystem, this.heapBuffers);
+        if (this.blockCache == null) {
+            return reader.readFully(position, destination);
+        }
+        return this.blockCache.read(cachedFile(handle), position, destination, reader, this.metrics);
+    }
+
+    /**
+     * Returns the reader used by the readahead threads of a handle, going through the block cache when it is enabled.
+     */
+    private PositionalReader prefetchReader(OpenFileHandle handle) throws IOException {
+        HdfsStreamReader reader = handle.getReader(this.fileSystem, this.heapBuffers);
+        if (this.blockCache == null) {
+            return reader;
+        }
+        HdfsBlockCache.CachedFile file = cachedFile(handle);
+        return (position, destination) -> this.blockCache.read(file, position, destination, reader, this.metrics);
+    }
+
+    private HdfsBlockCache.CachedFile cachedFile(OpenFileHandle handle) {
+        FileStatus fileStatus = handle.getFileStatus();
+        return new HdfsBlockCache.CachedFile(this.fileSystem.getUri().toString(), handle.getHdfsPath().toUri().getPath(),
+                fileStatus.getModificationTime(), fileStatus.getLen());
+    }
+
     private Path getHdfsPath(String path) {
         // Adjust the path to map local FUSE paths to HDFS paths
         String normalizedPath = path.equals("/") ? "" : path;
@@ -20,6 +20,7 @@ package varga.vorath.hdfs;
  * #L%
  */
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
@@ -32,18 +33,23 @@ import java.io.IOException;
 
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class HdfsVolumeService {
 
+    private final HdfsClientPool clientPool;
+
     /**
-     * Resolve a FileSystem to operate on. If an HdfsConnection is provided, use its
-     * Configuration (and authentication) to obtain a FileSystem instance; otherwise,
-     * fall back to the default configuration on the classpath/JVM.
+     * Run an operation on a FileSystem. If an HdfsConnection is provided, use a client of
+     * the pool shared with the mounts of its cluster, released once the operation completes;
+     * otherwise, fall back to the default configuration on the classpath/JVM.
      */
-    private FileSystem resolveFileSystem(HdfsConnection hdfsConnection) throws IOException {
-        if (hdfsConnection != null) {
-            return FileSystem.get(hdfsConnection.getConfiguration());
+    private <T> T withFileSystem(HdfsConnection hdfsConnection, FileSystemOperation<T> operation) throws IOException {
+        if (hdfsConnection == null) {
+            return operation.run(FileSystem.get(new Configuration()));
+        }
+        try (HdfsClientPool.Client client = this.clientPool.acquire(hdfsConnection, hdfsConnection.getConfiguration())) {
+            return operation.run(client.getFileSystem());
         }
-        return FileSystem.get(new Configuration());
     }
 
     /**
@@ -53,7 +59,6 @@ public class HdfsVolumeService {
      * @throws IOException If there is a problem creating the volume.
      */
     public String createVolume(HdfsConnection hdfsConnection, String volumeName) throws IOException {
-        FileSystem fs = resolveFileSystem(hdfsConnection);
         Path volumePath;
         if (volumeName.startsWith("/") || volumeName.contains(":")) {
             volumePath = new Path(volumeName);
@@ -61,10 +66,12 @@ public class HdfsVolumeService {
             volumePath = new Path("/volumes/" + volumeName);
         }
         
-        if (fs.exists(volumePath)) {
-            throw new IllegalArgumentException("Volume already exists in HDFS: " + volumeName);
-        }
-        fs.mkdirs(volumePath);
+        withFileSystem(hdfsConnection, fs -> {
+            if (fs.exists(volumePath)) {
+                throw new IllegalArgumentException("Volume already exists in HDFS: " + volumeName);
+            }
+            return fs.mkdirs(volumePath);
+        });
         log.info("Volume '{}' successfully created at path: {}", volumeName, volumePath);
 
         // Use volume name as stable ID for now
@@ -77,8 +84,6 @@ public class HdfsVolumeService {
      * @throws IOException If there is a problem deleting the volume.
      */
     public void deleteVolume(HdfsConnection hdfsConnection, String pathOrVolumeName) throws IOException {
-        FileSystem fs = resolveFileSystem(hdfsConnection);
-
         // If a full path is provided (e.g., starts with / or contains scheme), use it as is.
         Path volumePath;
         if (pathOrVolumeName.startsWith("/") || pathOrVolumeName.contains(":")) {
@@ -87,11 +92,16 @@ public class HdfsVolumeService {
             volumePath = new Path("/volumes/" + pathOrVolumeName);
         }
 
-        if (fs.exists(volumePath)) {
-            fs.delete(volumePath, true);
+        boolean deleted = withFileSystem(hdfsConnection, fs -> fs.exists(volumePath) && fs.delete(volumePath, true));
+        if (deleted) {
             log.info("HDFS path '{}' successfully deleted", volumePath);
         } else {
             log.warn("HDFS path '{}' does not exist; nothing to delete", volumePath);
         }
     }
+
+    @FunctionalInterface
+    private interface FileSystemOperation<T> {
+        T run(FileSystem fileSystem) throws IOException;
+    }
 }
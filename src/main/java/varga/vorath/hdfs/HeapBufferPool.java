@@ -0,0 +1,77 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Small pool of reusable heap buffers for the read paths that cannot work on direct memory.
+ */
+class HeapBufferPool {
+
+    static final int DEFAULT_BUFFER_SIZE = 128 * 1024;
+    static final int DEFAULT_MAX_POOLED = 32;
+
+    private final int bufferSize;
+    private final int maxPooled;
+    private final ConcurrentLinkedQueue<byte[]> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    HeapBufferPool() {
+        this(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOLED);
+    }
+
+    HeapBufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * @return A buffer of the pool size.
+     */
+    byte[] acquire() {
+        byte[] buffer = this.buffers.poll();
+        if (buffer != null) {
+            this.pooled.decrementAndGet();
+            return buffer;
+        }
+        return new byte[this.bufferSize];
+    }
+
+    /**
+     * @return A buffer of at least {@code size} bytes; buffers larger than the pool size are not pooled.
+     */
+    byte[] acquire(int size) {
+        return size <= this.bufferSize ? acquire() : new byte[size];
+    }
+
+    void release(byte[] buffer) {
+        if (buffer.length != this.bufferSize) {
+            return;
+        }
+        if (this.pooled.incrementAndGet() <= this.maxPooled) {
+            this.buffers.offer(buffer);
+        } else {
+            this.pooled.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only local file of checksummed records, the unit of the {@link WriteJournal}.
+ * <p>
+ * Each record is framed by the length and the CRC32C of its payload, so a record torn by a crash of the
+ * plugin, or corrupted on disk, is detected when the file is read back: reading stops at the first
+ * invalid record. The first record of a file is its header.
+ */
+@Slf4j
+class JournalFile {
+
+    private static final int FRAME_SIZE = 2 * Integer.BYTES;
+
+    private final java.nio.file.Path path;
+    private final FileChannel channel;
+    private long headerSize;
+    private long size;
+
+    private JournalFile(java.nio.file.Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    /**
+     * Creates a journal file and writes its header record.
+     *
+     * @param path   The file, which must not exist.
+     * @param header The payload of the header record.
+     * @return The journal file, open for appending.
+     * @throws IOException If the file cannot be created.
+     */
+    static JournalFile create(java.nio.file.Path path, ByteBuffer header) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        JournalFile file = new JournalFile(path, channel);
+        try {
+            file.append(header);
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        }
+        file.headerSize = file.size;
+        return file;
+    }
+
+    /**
+     * Appends a record whose payload is the concatenation of the given buffers, which are not consumed.
+     * The record is in the page cache when the call returns: it survives a restart of the plugin, not a
+     * crash of the node.
+     *
+     * @throws IOException If the record cannot be written.
+     */
+    void append(ByteBuffer... payload) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer[] buffers = new ByteBuffer[payload.length + 1];
+        int length = 0;
+        for (int i = 0; i < payload.length; i++) {
+            buffers[i + 1] = payload[i].duplicate();
+            length += payload[i].remaining();
+            crc.update(payload[i].duplicate());
+        }
+        buffers[0] = ByteBuffer.allocate(FRAME_SIZE).putInt(length).putInt((int) crc.getValue()).flip();
+
+        long total = FRAME_SIZE + (long) length;
+        long written = 0;
+        while (written < total) {
+            written += this.channel.write(buffers);
+        }
+        this.size += total;
+    }
+
+    long size() {
+        return this.size;
+    }
+
+    /**
+     * @return true if records were appended after the header.
+     */
+    boolean hasRecords() {
+        return this.size > this.headerSize;
+    }
+
+    java.nio.file.Path getPath() {
+        return this.path;
+    }
+
+    /**
+     * Closes the file, keeping its records.
+     */
+    void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * Closes and deletes the file, once its records are no longer needed.
+     */
+    void delete() {
+        try {
+            this.channel.close();
+            Files.deleteIfExists(this.path);
+        } catch (IOException e) {
+            log.warn("Failed to delete journal file {}: {}", this.path, e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the valid records of a journal file, header first, up to the first torn or corrupted one.
+     *
+     * @param path The file.
+     * @return The payloads of the records.
+     * @throws IOException If the file cannot be read.
+     */
+    static List<ByteBuffer> read(java.nio.file.Path path) throws IOException {
+        return read(path, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads the first valid records of a journal file, such as its header alone.
+     *
+     * @param path       The file.
+     * @param maxRecords The number of records to read at most.
+     * @return The payloads of the records.
+     * @throws IOException If the file cannot be read.
+     */
+    static List<ByteBuffer> read(java.nio.file.Path path, int maxRecords) throws IOException {
+        List<ByteBuffer> records = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            ByteBuffer frame = ByteBuffer.allocate(FRAME_SIZE);
+            while (records.size() < maxRecords && position + FRAME_SIZE <= size) {
+                frame.clear();
+                readFully(channel, frame, position);
+                int length = frame.flip().getInt();
+                int checksum = frame.getInt();
+                if (length < 0 || position + FRAME_SIZE + length > size) {
+                    break; // Torn by a crash while it was written
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                readFully(channel, payload, position + FRAME_SIZE);
+                payload.flip();
+                CRC32C crc = new CRC32C();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                records.add(payload);
+                position += FRAME_SIZE + length;
+            }
+            if (records.size() < maxRecords && position < size) {
+                log.warn("Ignoring {} bytes of journal file {} after its last valid record", size - position, path);
+            }
+        }
+        return records;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer destination, long position) throws IOException {
+        while (destination.hasRemaining()) {
+            int n = channel.read(destination, position);
+            if (n < 0) {
+                throw new IOException("Unexpected end of journal file");
+            }
+            position += n;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosTicket;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.AccessController;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivilegedAction;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Node-wide owner of the Kerberos logins of the HDFS connections, which keeps them valid for as long
+ * as the connections are in use.
+ * <p>
+ * Keytabs come from Kubernetes Secrets: each one is written once to a file readable only by the plugin,
+ * in a directory meant to be a memory-backed volume, shared by every login using the same keytab and
+ * deleted after the last one. A login is then checked periodically, with jitter so that the logins of a
+ * node do not all reach the KDC at once, and logs in again from its keytab when its TGT is close to
+ * expiring. Checks of a login stop, and its keytab is released, once its user is no longer referenced.
+ */
+@Slf4j
+@Component
+public class KerberosLoginManager {
+
+    private static final String KEYTAB_SUFFIX = ".keytab";
+    private static final Set<PosixFilePermission> KEYTAB_PERMISSIONS = PosixFilePermissions.fromString("rw-------");
+    private static final Set<PosixFilePermission> DIRECTORY_PERMISSIONS = PosixFilePermissions.fromString("rwx------");
+
+    private final Path directory;
+    private final long renewIntervalMillis;
+    private final long renewJitterMillis;
+    private final ScheduledExecutorService scheduler;
+    // Keytab files by the digest of their content
+    private final Map<String, KeytabFile> keytabs = new ConcurrentHashMap<>();
+
+    private final LongAdder logins = new LongAdder();
+    private final LongAdder loginFailures = new LongAdder();
+    private final AtomicLong activeLogins = new AtomicLong();
+    private final LongAdder tgtChecks = new LongAdder();
+    private final LongAdder relogins = new LongAdder();
+    private final LongAdder reloginFailures = new LongAdder();
+    private final LatencyHistogram loginLatency = new LatencyHistogram();
+    private final LatencyHistogram reloginLatency = new LatencyHistogram();
+
+    public KerberosLoginManager(@Value("${HDFS_KEYTAB_DIR:/dev/shm/vorath/keytabs}") String directory,
+                                @Value("${HDFS_TGT_RENEW_INTERVAL_SECONDS:300}") long renewIntervalSeconds,
+                                @Value("${HDFS_TGT_RENEW_JITTER_SECONDS:60}") long renewJitterSeconds) {
+        this.directory = Paths.get(directory);
+        this.renewIntervalMillis = TimeUnit.SECONDS.toMillis(Math.max(1, renewIntervalSeconds));
+        this.renewJitterMillis = TimeUnit.SECONDS.toMillis(Math.max(0, renewJitterSeconds));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "kerberos-renewal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        removeStaleKeytabs();
+        log.info("Kerberos keytabs written to {}, TGTs checked every {} s with up to {} s of jitter",
+                directory, renewIntervalSeconds, renewJitterSeconds);
+    }
+
+    /**
+     * Logs in from a keytab, and keeps the login valid while the returned user is referenced.
+     *
+     * @param principal The Kerberos principal.
+     * @param keytab    The content of the keytab.
+     * @return The logged-in user.
+     * @throws IOException If the keytab cannot be written, or the login fails.
+     */
+    public UserGroupInformation login(String principal, byte[] keytab) throws IOException {
+        KeytabFile keytabFile = acquireKeytab(keytab);
+        long start = System.nanoTime();
+        UserGroupInformation userGroupInformation;
+        try {
+            userGroupInformation = UserGroupInformation.loginUserFromKeytabAndReturnUGI(principal,
+                    keytabFile.path.toString());
+        } catch (IOException | RuntimeException e) {
+            this.loginFailures.increment();
+            releaseKeytab(keytabFile);
+            throw e;
+        }
+        this.loginLatency.record(System.nanoTime() - start);
+        this.logins.increment();
+        this.activeLogins.incrementAndGet();
+        scheduleRenewal(new Renewal(principal, new WeakReference<>(userGroupInformation), keytabFile));
+        return userGroupInformation;
+    }
+
+    /**
+     * Returns the node-wide counters of the logins.
+     *
+     * @return The metric values keyed by name.
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        snapshot.put("logins", this.logins.sum());
+        snapshot.put("loginFailures", this.loginFailures.sum());
+        snapshot.put("loginLatencyP50Micros", this.loginLatency.percentileMicros(50));
+        snapshot.put("loginLatencyP99Micros", this.loginLatency.percentileMicros(99));
+        snapshot.put("activeLogins", this.activeLogins.get());
+        snapshot.put("keytabFiles", (long) this.keytabs.size());
+        snapshot.put("tgtChecks", this.tgtChecks.sum());
+        snapshot.put("relogins", this.relogins.sum());
+        snapshot.put("reloginFailures", this.reloginFailures.sum());
+        snapshot.put("reloginLatencyP50Micros", this.reloginLatency.percentileMicros(50));
+        snapshot.put("reloginLatencyP99Micros", this.reloginLatency.percentileMicros(99));
+        return snapshot;
+    }
+
+    private void scheduleRenewal(Renewal renewal) {
+        long jitter = this.renewJitterMillis > 0 ? ThreadLocalRandom.current().nextLong(this.renewJitterMillis + 1) : 0;
+        this.scheduler.schedule(() -> renew(renewal), this.renewIntervalMillis + jitter, TimeUnit.MILLISECONDS);
+    }
+
+    private void renew(Renewal renewal) {
+        UserGroupInformation userGroupInformation = renewal.user().get();
+        if (userGroupInformation == null) {
+            // No connection uses the login anymore
+            log.debug("Stopping the TGT renewal of '{}'", renewal.principal());
+            this.activeLogins.decrementAndGet();
+            releaseKeytab(renewal.keytab());
+            return;
+        }
+
+        this.tgtChecks.increment();
+        long authTime = tgtAuthTime(userGroupInformation);
+        long start = System.nanoTime();
+        try {
+            // Only reaches the KDC when the TGT is close to expiring
+            userGroupInformation.checkTGTAndReloginFromKeytab();
+            if (tgtAuthTime(userGroupInformation) != authTime) {
+                this.reloginLatency.record(System.nanoTime() - start);
+                this.relogins.increment();
+                log.info("Renewed the TGT of '{}'", renewal.principal());
+            }
+        } catch (IOException | RuntimeException e) {
+            this.reloginFailures.increment();
+            log.warn("Failed to renew the TGT of '{}', retrying in {} s: {}", renewal.principal(),
+                    TimeUnit.MILLISECONDS.toSeconds(this.renewIntervalMillis), e.getMessage());
+        }
+        scheduleRenewal(renewal);
+    }
+
+    /**
+     * @return The authentication time of the TGT of a user, which changes when it logs in again, or 0 without TGT.
+     */
+    @SuppressWarnings("removal")
+    private static long tgtAuthTime(UserGroupInformation userGroupInformation) {
+        Subject subject = userGroupInformation.doAs((PrivilegedAction<Subject>) () ->
+                Subject.getSubject(AccessController.getContext()));
+        if (subject == null) {
+            return 0;
+        }
+        for (KerberosTicket ticket : subject.getPrivateCredentials(KerberosTicket.class)) {
+            if (ticket.getServer().getName().startsWith("krbtgt/") && ticket.getAuthTime() != null) {
+                return ticket.getAuthTime().getTime();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the file holding a keytab, writing it if no other login uses the same keytab.
+     */
+    private KeytabFile acquireKeytab(byte[] keytab) throws IOException {
+        String digest = digest(keytab);
+        try {
+            return this.keytabs.compute(digest, (d, keytabFile) -> {
+                if (keytabFile == null) {
+                    keytabFile = new KeytabFile(digest, writeKeytab(digest, keytab));
+                }
+                keytabFile.users++;
+                return keytabFile;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void releaseKeytab(KeytabFile keytabFile) {
+        this.keytabs.computeIfPresent(keytabFile.digest, (d, current) -> {
+            if (current != keytabFile || --current.users > 0) {
+                return current;
+            }
+            try {
+                Files.deleteIfExists(current.path);
+            } catch (IOException e) {
+                log.warn("Failed to delete keytab file {}: {}", current.path, e.getMessage());
+            }
+            return null;
+        });
+    }
+
+    private Path writeKeytab(String digest, byte[] keytab) {
+        try {
+            if (!Files.isDirectory(this.directory)) {
+                Files.createDirectories(this.directory, PosixFilePermissions.asFileAttribute(DIRECTORY_PERMISSIONS));
+            }
+            // Created with its final permissions before any byte is written, then moved into place
+            Path temporary = Files.createTempFile(this.directory, digest, ".tmp",
+                    PosixFilePermissions.asFileAttribute(KEYTAB_PERMISSIONS));
+            try {
+                Files.write(temporary, keytab);
+                return Files.move(temporary, this.directory.resolve(digest + KEYTAB_SUFFIX),
+                        StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                Files.deleteIfExists(temporary);
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Deletes the keytabs written by a previous run of the plugin.
+     */
+    private void removeStaleKeytabs() {
+        if (!Files.isDirectory(this.directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to clean keytab directory {}: {}", this.directory, e.getMessage());
+        }
+    }
+
+    private static String digest(byte[] keytab) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(keytab));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A keytab written to disk, with the number of logins using it, updated under the lock of its map entry.
+     */
+    private static final class KeytabFile {
+        private final String digest;
+        private final Path path;
+        private int users;
+
+        private KeytabFile(String digest, Path path) {
+            this.digest = digest;
+            this.path = path;
+        }
+    }
+
+    private record Renewal(String principal, WeakReference<UserGroupInformation> user, KeytabFile keytab) {
+    }
+}
@@ -0,0 +1,272 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.ReadStatistics;
+import org.apache.hadoop.hdfs.client.HdfsDataInputStream;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * State kept for a file opened through FUSE, identified by the handle stored in {@code FuseFileInfo.fh}.
+ * <p>
+ * The HDFS input stream is opened lazily on the first read and reused by every following read on the
+ * same handle, together with the handle's readahead state. A handle written to holds a single
+ * {@link SequentialWriter} that every write of the handle goes through, closed when the handle is, or
+ * refers to the {@link StagedFile} of its path when the file is modified at random offsets.
+ * <p>
+ * Handles are reference counted: the handle table holds one reference, and each FUSE callback using the
+ * handle holds another for its duration, so an evicted handle is only closed once the last in-flight
+ * operation is done with it.
+ */
+@Slf4j
+class OpenFileHandle {
+
+    @Getter
+    private final long id;
+    @Getter
+    private volatile String path;
+    @Getter
+    private volatile Path hdfsPath;
+    @Getter
+    private final FileStatus fileStatus;
+    private final HdfsMountMetrics metrics;
+
+    private final AtomicInteger references = new AtomicInteger(1);
+    private FSDataInputStream inputStream;
+    private HdfsStreamReader reader;
+    private SequentialReadahead readahead;
+    private volatile SequentialWriter writer;
+    private volatile StagedFile stagedFile;
+    // Opened with O_APPEND: every write goes to the end of the file
+    @Getter
+    @Setter
+    private volatile boolean append;
+    private boolean closed;
+
+    OpenFileHandle(long id, String path, Path hdfsPath, FileStatus fileStatus, HdfsMountMetrics metrics) {
+        this.id = id;
+        this.path = path;
+        this.hdfsPath = hdfsPath;
+        this.fileStatus = fileStatus;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the reader of this handle's input stream, opening the stream on first use.
+     *
+     * @param fileSystem The file system the handle belongs to.
+     * @param bufferPool Heap buffers used when the stream cannot read into ByteBuffers.
+     * @return The reader of the handle.
+     * @throws IOException If the stream cannot be opened or the handle is already closed.
+     */
+    synchronized HdfsStreamReader getReader(FileSystem fileSystem, HeapBufferPool bufferPool) throws IOException {
+        if (this.closed) {
+            throw new IOException("Handle " + this.id + " for '" + this.path + "' is closed");
+        }
+        if (this.inputStream == null) {
+            this.inputStream = fileSystem.open(this.hdfsPath);
+            this.reader = new HdfsStreamReader(this.inputStream, bufferPool);
+        }
+        return this.reader;
+    }
+
+    /**
+     * Returns the readahead state of this handle, creating it on first use.
+     *
+     * @param readaheadManager The readahead resources of the node.
+     * @param source           Positional reader the prefetches go through.
+     * @param metrics          Metrics of the mount.
+     * @return The readahead of the handle.
+     */
+    synchronized SequentialReadahead getReadahead(ReadaheadManager readaheadManager, PositionalReader source,
+                                                  HdfsMountMetrics metrics) {
+        if (this.readahead == null) {
+            this.readahead = readaheadManager.newReadahead(source, this.fileStatus.getLen(), metrics);
+        }
+        return this.readahead;
+    }
+
+    /**
+     * Returns the writer of this handle, opening its output stream on the first write.
+     *
+     * @param factory Opens the writer when the handle has none yet.
+     * @return The writer of the handle.
+     * @throws IOException If the writer cannot be opened or the handle is already closed.
+     */
+    synchronized SequentialWriter getWriter(WriterFactory factory) throws IOException {
+        if (this.closed) {
+            throw new IOException("Handle " + this.id + " for '" + this.path + "' is closed");
+        }
+        if (this.writer == null) {
+            this.writer = factory.open();
+        }
+        return this.writer;
+    }
+
+    /**
+     * @return The writer of this handle, or null if nothing was written through it.
+     */
+    synchronized SequentialWriter getWriter() {
+        return this.writer;
+    }
+
+    /**
+     * @return true if the handle has an output stream open or a staged file, in which case it must not be evicted.
+     */
+    boolean isWriting() {
+        return this.writer != null || this.stagedFile != null;
+    }
+
+    /**
+     * @return The staged file this handle reads and writes, or null if its path is not staged.
+     */
+    StagedFile getStagedFile() {
+        return this.stagedFile;
+    }
+
+    /**
+     * Makes this handle read and write the staged copy of its file, on which the caller holds a reference
+     * that is transferred to the handle.
+     */
+    void setStagedFile(StagedFile stagedFile) {
+        this.stagedFile = stagedFile;
+    }
+
+    /**
+     * Detaches the staged file from this handle, handing its reference over to the caller.
+     *
+     * @return The staged file, or null if the handle had none.
+     */
+    synchronized StagedFile detachStagedFile() {
+        StagedFile current = this.stagedFile;
+        this.stagedFile = null;
+        return current;
+    }
+
+    /**
+     * Closes the output stream of this handle, if any, reporting failures to the caller.
+     *
+     * @throws IOException If the written data cannot be completed in HDFS.
+     */
+    synchronized void closeWriter() throws IOException {
+        SequentialWriter current = this.writer;
+        this.writer = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * Follows a rename of the handle's file. The input stream, which keeps reading blocks by path, is
+     * closed and reopened at the new path by the next read; an output stream keeps writing to the renamed
+     * file, and its journal follows it.
+     *
+     * @param path     The new FUSE path.
+     * @param hdfsPath The new HDFS path.
+     */
+    synchronized void moveTo(String path, Path hdfsPath) {
+        this.path = path;
+        this.hdfsPath = hdfsPath;
+        if (this.writer != null) {
+            try {
+                this.writer.moveTo(hdfsPath);
+            } catch (IOException e) {
+                log.warn("Failed to journal the rename of '{}' to '{}': {}", path, hdfsPath, e.getMessage());
+            }
+        }
+        closeInputStream();
+    }
+
+    /**
+     * Takes an additional reference on this handle.
+     *
+     * @return false if the handle has already been closed.
+     */
+    boolean retain() {
+        while (true) {
+            int current = this.references.get();
+            if (current <= 0) {
+                return false;
+            }
+            if (this.references.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Drops a reference on this handle, closing its streams when none is left.
+     */
+    void release() {
+        if (this.references.decrementAndGet() == 0) {
+            close();
+        }
+    }
+
+    private synchronized void close() {
+        this.closed = true;
+        try {
+            closeWriter();
+        } catch (IOException e) {
+            log.error("Failed to close output stream for '{}': {}", this.hdfsPath, e.getMessage());
+        }
+        closeInputStream();
+    }
+
+    private void closeInputStream() {
+        if (this.readahead != null) {
+            this.readahead.close();
+            this.readahead = null;
+        }
+        if (this.inputStream != null) {
+            if (this.inputStream instanceof HdfsDataInputStream hdfsInputStream) {
+                ReadStatistics statistics = hdfsInputStream.getReadStatistics();
+                this.metrics.getBytesRead().add(statistics.getTotalBytesRead());
+                this.metrics.getLocalBytesRead().add(statistics.getTotalLocalBytesRead());
+                this.metrics.getShortCircuitBytesRead().add(statistics.getTotalShortCircuitBytesRead());
+            }
+            try {
+                this.inputStream.close();
+            } catch (IOException e) {
+                log.warn("Failed to close input stream for '{}': {}", this.hdfsPath, e.getMessage());
+            }
+            this.inputStream = null;
+            this.reader = null;
+        }
+    }
+
+    /**
+     * Opens the writer of a handle.
+     */
+    @FunctionalInterface
+    interface WriterFactory {
+        SequentialWriter open() throws IOException;
+    }
+}
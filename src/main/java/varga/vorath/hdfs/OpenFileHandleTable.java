@@ -0,0 +1,186 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded table of the files opened on a mount, keyed by the handle id handed to FUSE.
+ * <p>
+ * Entries are kept in access order; once the table is full the least recently used handle is evicted
+ * and its stream closed. A later read on an evicted handle transparently reopens it under the same id.
+ * Handles with an open output stream are never evicted.
+ */
+@Slf4j
+class OpenFileHandleTable {
+
+    static final int DEFAULT_MAX_HANDLES = 1024;
+
+    private final int maxHandles;
+    private final HdfsMountMetrics metrics;
+    private final AtomicLong nextHandleId = new AtomicLong(1);
+    private final LinkedHashMap<Long, OpenFileHandle> handles = new LinkedHashMap<>(16, 0.75f, true);
+
+    OpenFileHandleTable(int maxHandles, HdfsMountMetrics metrics) {
+        this.maxHandles = maxHandles > 0 ? maxHandles : DEFAULT_MAX_HANDLES;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Registers a newly opened file and allocates its handle id.
+     *
+     * @return The registered handle.
+     */
+    OpenFileHandle register(String path, Path hdfsPath, FileStatus fileStatus) {
+        OpenFileHandle handle = new OpenFileHandle(this.nextHandleId.getAndIncrement(), path, hdfsPath, fileStatus, this.metrics);
+        insert(handle);
+        this.metrics.getHandlesOpened().increment();
+        return handle;
+    }
+
+    /**
+     * Looks up a handle and takes a reference on it. The caller must {@link OpenFileHandle#release()} it.
+     *
+     * @param handleId The id stored in {@code FuseFileInfo.fh}.
+     * @return The handle, or null if it is unknown or was evicted.
+     */
+    synchronized OpenFileHandle acquire(long handleId) {
+        OpenFileHandle handle = this.handles.get(handleId);
+        if (handle == null || !handle.retain()) {
+            return null;
+        }
+        return handle;
+    }
+
+    /**
+     * Re-creates a handle that was evicted (or never registered) and takes a reference on it.
+     * Handle id 0 means FUSE gave us no handle; such handles are not tracked and only live for the call.
+     *
+     * @return The handle. The caller must {@link OpenFileHandle#release()} it.
+     */
+    OpenFileHandle reopen(long handleId, String path, Path hdfsPath, FileStatus fileStatus) {
+        if (handleId <= 0) {
+            return new OpenFileHandle(0, path, hdfsPath, fileStatus, this.metrics);
+        }
+
+        synchronized (this) {
+            OpenFileHandle existing = this.handles.get(handleId);
+            if (existing != null && existing.retain()) {
+                return existing;
+            }
+            OpenFileHandle handle = new OpenFileHandle(handleId, path, hdfsPath, fileStatus, this.metrics);
+            handle.retain();
+            insert(handle);
+            this.metrics.getHandlesReopened().increment();
+            return handle;
+        }
+    }
+
+    /**
+     * Removes a handle from the table, closing it once no operation uses it anymore.
+     *
+     * @param handleId The id stored in {@code FuseFileInfo.fh}.
+     */
+    void remove(long handleId) {
+        OpenFileHandle handle;
+        synchronized (this) {
+            handle = this.handles.remove(handleId);
+        }
+        if (handle != null) {
+            this.metrics.getOpenHandles().decrementAndGet();
+            this.metrics.getHandlesReleased().increment();
+            handle.release();
+        }
+    }
+
+    /**
+     * Closes every handle of the table, typically when the mount goes away.
+     */
+    void clear() {
+        List<OpenFileHandle> removed;
+        synchronized (this) {
+            removed = new ArrayList<>(this.handles.values());
+            this.handles.clear();
+        }
+        this.metrics.getOpenHandles().addAndGet(-removed.size());
+        removed.forEach(OpenFileHandle::release);
+    }
+
+    /**
+     * Moves the handles of a renamed path, and of the paths under it, to the new path.
+     *
+     * @param from       The FUSE path before the rename.
+     * @param to         The FUSE path after the rename.
+     * @param toHdfsPath Maps a FUSE path to its HDFS path.
+     */
+    synchronized void rename(String from, String to, Function<String, Path> toHdfsPath) {
+        for (OpenFileHandle handle : this.handles.values()) {
+            String path = handle.getPath();
+            if (path.equals(from) || path.startsWith(from + "/")) {
+                String moved = to + path.substring(from.length());
+                handle.moveTo(moved, toHdfsPath.apply(moved));
+            }
+        }
+    }
+
+    synchronized int size() {
+        return this.handles.size();
+    }
+
+    private void insert(OpenFileHandle handle) {
+        List<OpenFileHandle> evicted = new ArrayList<>();
+        OpenFileHandle replaced;
+        synchronized (this) {
+            replaced = this.handles.put(handle.getId(), handle);
+            Iterator<Map.Entry<Long, OpenFileHandle>> iterator = this.handles.entrySet().iterator();
+            while (this.handles.size() > this.maxHandles && iterator.hasNext()) {
+                OpenFileHandle eldest = iterator.next().getValue();
+                // A writing handle cannot be reopened without losing its data: it stays until released
+                if (eldest != handle && !eldest.isWriting()) {
+                    iterator.remove();
+                    evicted.add(eldest);
+                }
+            }
+        }
+
+        if (replaced != null) {
+            replaced.release();
+        } else {
+            this.metrics.getOpenHandles().incrementAndGet();
+        }
+        for (OpenFileHandle eldest : evicted) {
+            log.debug("Evicting idle handle {} for '{}'", eldest.getId(), eldest.getPath());
+            this.metrics.getOpenHandles().decrementAndGet();
+            this.metrics.getHandlesEvicted().increment();
+            eldest.release();
+        }
+    }
+}
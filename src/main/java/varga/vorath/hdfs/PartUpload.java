@@ -0,0 +1,228 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Uploads a large file to HDFS as parts written concurrently, each through its own DataNode pipeline.
+ * <p>
+ * Parts are written to hidden files next to the target, since HDFS only concatenates files of the same
+ * directory, then concatenated into the first part with {@link DistributedFileSystem#concat}, which only
+ * moves blocks on the NameNode, and the result replaces the target with a single rename. The target is
+ * left untouched until that rename: when a part fails, the parts are deleted and the upload fails.
+ * <p>
+ * The part uploads run on threads shared with the other uploads of the node, so an upload only runs a
+ * bounded number of parts at a time, the next part starting when one completes.
+ */
+@Slf4j
+class PartUpload {
+
+    static final String PART_INFIX = ".vorath-part-";
+    private static final int COPY_BUFFER_SIZE = 1024 * 1024;
+
+    private final DistributedFileSystem fileSystem;
+    private final Executor executor;
+    private final long partSize;
+    private final int maxConcurrentParts;
+    private final HdfsMountMetrics metrics;
+
+    /**
+     * @param fileSystem The HDFS client.
+     * @param executor   The threads uploading the parts.
+     * @param partSize           The size of the parts, rounded up to a multiple of the block size of each file.
+     * @param maxConcurrentParts The number of parts of an upload that may run at the same time.
+     * @param metrics            Metrics of the mount.
+     */
+    PartUpload(DistributedFileSystem fileSystem, Executor executor, long partSize, int maxConcurrentParts,
+               HdfsMountMetrics metrics) {
+        this.fileSystem = fileSystem;
+        this.executor = executor;
+        this.partSize = partSize;
+        this.maxConcurrentParts = Math.max(1, maxConcurrentParts);
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param target The HDFS path of the file.
+     * @param length The length of the file.
+     * @return true if the file spans more than one part, in which case it is worth uploading in parts.
+     */
+    boolean isWorthwhile(Path target, long length) {
+        return length > partSizeOf(target);
+    }
+
+    /**
+     * Uploads a file in parts, replacing the target.
+     *
+     * @param source  Positional reader of the data, called concurrently.
+     * @param length  The length of the file.
+     * @param target  The HDFS path of the file.
+     * @param durable Whether to hsync every part to the DataNodes' disks before completing it.
+     * @throws IOException If a part cannot be uploaded or the parts cannot be assembled; the target is then unchanged.
+     */
+    void upload(PositionalReader source, long length, Path target, boolean durable) throws IOException {
+        long size = partSizeOf(target);
+        int partCount = (int) ((length + size - 1) / size);
+        String prefix = "." + target.getName() + PART_INFIX + UUID.randomUUID() + "-";
+
+        List<Path> parts = new ArrayList<>(partCount);
+        List<CompletableFuture<Void>> uploads = new ArrayList<>(partCount);
+        AtomicBoolean aborted = new AtomicBoolean();
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        Semaphore running = new Semaphore(this.maxConcurrentParts);
+        boolean completed = false;
+        try {
+            for (int i = 0; i < partCount; i++) {
+                acquire(running);
+                if (aborted.get()) {
+                    running.release();
+                    break; // A part failed: awaitAll reports it
+                }
+                Path part = new Path(target.getParent(), prefix + i);
+                long start = i * size;
+                long end = Math.min(length, start + size);
+                parts.add(part);
+                uploads.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        uploadPart(source, start, end, part, durable, aborted);
+                    } catch (IOException e) {
+                        if (aborted.compareAndSet(false, true)) {
+                            failure.set(e); // The others only fail because of this one
+                        }
+                        throw new UncheckedIOException(e);
+                    } finally {
+                        running.release();
+                    }
+                }, this.executor));
+            }
+            awaitAll(uploads, failure);
+
+            if (partCount > 1) {
+                this.fileSystem.concat(parts.get(0), parts.subList(1, partCount).toArray(new Path[0]));
+            }
+            this.fileSystem.rename(parts.get(0), target, Options.Rename.OVERWRITE);
+            completed = true;
+            this.metrics.getPartUploads().increment();
+            this.metrics.getPartsUploaded().add(partCount);
+        } finally {
+            if (!completed) {
+                abort(uploads, parts, aborted);
+            }
+        }
+    }
+
+    /**
+     * Returns the part size for a file: a multiple of its block size, so that every block of the
+     * concatenated file but the last is full.
+     */
+    private long partSizeOf(Path target) {
+        long blockSize = Math.max(1, this.fileSystem.getDefaultBlockSize(target));
+        return Math.max(1, (this.partSize + blockSize - 1) / blockSize) * blockSize;
+    }
+
+    private void uploadPart(PositionalReader source, long start, long end, Path part, boolean durable,
+                            AtomicBoolean aborted) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(COPY_BUFFER_SIZE, end - start)];
+        try (FSDataOutputStream out = this.fileSystem.create(part, false)) {
+            long position = start;
+            while (position < end) {
+                if (aborted.get()) {
+                    throw new InterruptedIOException("Upload of " + part + " aborted after the failure of another part");
+                }
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, (int) Math.min(buffer.length, end - position));
+                int n = source.read(position, chunk);
+                if (n <= 0) {
+                    throw new IOException("Source of " + part + " ended at offset " + position + " instead of " + end);
+                }
+                out.write(buffer, 0, n);
+                position += n;
+            }
+            if (durable) {
+                out.hsync();
+            }
+        }
+    }
+
+    private static void acquire(Semaphore running) throws InterruptedIOException {
+        try {
+            running.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a part upload to complete");
+        }
+    }
+
+    private static void awaitAll(List<CompletableFuture<Void>> uploads, AtomicReference<IOException> failure)
+            throws IOException {
+        try {
+            CompletableFuture.allOf(uploads.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+            if (e.getCause() instanceof UncheckedIOException uncheckedIOException) {
+                throw uncheckedIOException.getCause();
+            }
+            throw new IOException("Part upload failed", e.getCause());
+        }
+    }
+
+    /**
+     * Stops the part uploads still running and deletes the parts, leaving the target as it was.
+     */
+    private void abort(List<CompletableFuture<Void>> uploads, List<Path> parts, AtomicBoolean aborted) {
+        aborted.set(true);
+        this.metrics.getPartUploadFailures().increment();
+        for (CompletableFuture<Void> upload : uploads) {
+            try {
+                upload.join();
+            } catch (CompletionException e) {
+                // Already reported by the failed upload
+            }
+        }
+        for (Path part : parts) {
+            try {
+                this.fileSystem.delete(part, false);
+            } catch (IOException e) {
+                log.warn("Failed to delete part file {}: {}", part, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Thread-safe positional reader of a file, such as {@code FSDataInputStream#read(long, ByteBuffer)}.
+ */
+@FunctionalInterface
+interface PositionalReader {
+
+    /**
+     * Reads up to {@code destination.remaining()} bytes at {@code position} without moving any stream
+     * position, advancing the position of the destination by the number of bytes read.
+     *
+     * @return The number of bytes read, or a value &lt;= 0 at EOF.
+     * @throws IOException If the read fails.
+     */
+    int read(long position, ByteBuffer destination) throws IOException;
+}
@@ -0,0 +1,126 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Node-wide owner of the resources shared by the readahead of every open handle of every mount: the
+ * prefetch threads and a bounded pool of reusable, off-heap prefetch buffers.
+ * <p>
+ * The pool is one budget for the node, like the block cache, so that the off-heap memory of readahead
+ * does not grow with the number of mounts. When every buffer is in use, handles read synchronously.
+ */
+@Slf4j
+@Component
+public class ReadaheadManager {
+
+    // Defaults of the node, also used by mounts created without a node-wide manager; see values.yaml
+    static final int DEFAULT_PREFETCH_THREADS = 8;
+    static final long DEFAULT_MAX_MB = 64;
+    static final int DEFAULT_MAX_BUFFERS = (int) (DEFAULT_MAX_MB * 1024 * 1024 / SequentialReadahead.MAX_WINDOW);
+
+    private final ExecutorService executor;
+    private final int maxBuffers;
+    private final Deque<ByteBuffer> freeBuffers = new ArrayDeque<>();
+    private int allocatedBuffers;
+
+    public ReadaheadManager(@Value("${HDFS_READAHEAD_THREADS:" + DEFAULT_PREFETCH_THREADS + "}") int prefetchThreads,
+                            @Value("${HDFS_READAHEAD_MAX_MB:" + DEFAULT_MAX_MB + "}") long maxSizeMb) {
+        this(prefetchThreads, (int) Math.max(0, maxSizeMb * 1024 * 1024 / SequentialReadahead.MAX_WINDOW));
+        log.info("HDFS readahead configured with {} threads and {} MB of prefetch buffers", prefetchThreads, maxSizeMb);
+    }
+
+    ReadaheadManager(int prefetchThreads, int maxBuffers) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, prefetchThreads), runnable -> {
+            Thread thread = new Thread(runnable, "hdfs-readahead-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maxBuffers = maxBuffers;
+    }
+
+    /**
+     * Creates the readahead state of a newly opened handle.
+     *
+     * @param source     Positional reader of the handle's file.
+     * @param fileLength Length of the file when it was opened.
+     * @param metrics    Metrics of the mount of the handle.
+     * @return The readahead for the handle.
+     */
+    SequentialReadahead newReadahead(PositionalReader source, long fileLength, HdfsMountMetrics metrics) {
+        return new SequentialReadahead(this, source, fileLength, metrics);
+    }
+
+    ExecutorService getExecutor() {
+        return this.executor;
+    }
+
+    /**
+     * Takes a prefetch buffer from the pool, allocating one if the pool is not exhausted.
+     *
+     * @return A buffer of {@link SequentialReadahead#MAX_WINDOW} bytes, or null when all buffers are in use.
+     */
+    synchronized ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = this.freeBuffers.poll();
+        if (buffer == null && this.allocatedBuffers < this.maxBuffers) {
+            this.allocatedBuffers++;
+            buffer = ByteBuffer.allocateDirect(SequentialReadahead.MAX_WINDOW);
+        }
+        if (buffer != null) {
+            buffer.clear();
+        }
+        return buffer;
+    }
+
+    synchronized void releaseBuffer(ByteBuffer buffer) {
+        this.freeBuffers.push(buffer);
+    }
+
+    /**
+     * Returns the node-wide state of the prefetch buffers.
+     *
+     * @return The metric values keyed by name.
+     */
+    public synchronized Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        snapshot.put("allocatedBytes", (long) this.allocatedBuffers * SequentialReadahead.MAX_WINDOW);
+        snapshot.put("inUseBytes", (long) (this.allocatedBuffers - this.freeBuffers.size()) * SequentialReadahead.MAX_WINDOW);
+        snapshot.put("maxBytes", (long) this.maxBuffers * SequentialReadahead.MAX_WINDOW);
+        return snapshot;
+    }
+
+    void shutdown() {
+        this.executor.shutdownNow();
+    }
+}
@@ -0,0 +1,299 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sequential access detection and asynchronous prefetch for a single open handle.
+ * <p>
+ * Once two consecutive reads are contiguous, the next window of the file is fetched in the background
+ * into a pooled buffer while the application consumes the current one. The window doubles every time a
+ * prefetched chunk is consumed without waste, halves when prefetched bytes are thrown away, and is capped
+ * so that one prefetch does not take longer than {@link #TARGET_PREFETCH_NANOS} at the observed throughput.
+ * A non-contiguous read drops all prefetched data and resets the window.
+ */
+@Slf4j
+class SequentialReadahead {
+
+    static final int MIN_WINDOW = 128 * 1024;
+    static final int MAX_WINDOW = 4 * 1024 * 1024;
+    private static final int SEQUENTIAL_THRESHOLD = 2;
+    private static final long TARGET_PREFETCH_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private final ReadaheadManager manager;
+    private final PositionalReader source;
+    private final long fileLength;
+    private final HdfsMountMetrics metrics;
+
+    private long expectedOffset;
+    private int sequentialReads;
+    private int window = MIN_WINDOW;
+    private volatile double bytesPerNano; // Smoothed prefetch throughput, updated by the prefetch threads
+    private Chunk current;
+    private Chunk pending;
+
+    SequentialReadahead(ReadaheadManager manager, PositionalReader source, long fileLength, HdfsMountMetrics metrics) {
+        this.manager = manager;
+        this.source = source;
+        this.fileLength = fileLength;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Copies as much of the requested range as possible from prefetched data, waiting for an in-flight
+     * prefetch that covers the range. The wait does not hold the lock of the readahead, so other reads
+     * of the handle, and its release, go on meanwhile.
+     *
+     * @param offset      Offset of the read in the file.
+     * @param destination Buffer receiving the bytes, up to its remaining capacity.
+     * @return The number of contiguous bytes served from {@code offset}, possibly 0.
+     */
+    int serve(long offset, ByteBuffer destination) {
+        int length = destination.remaining();
+        int served = 0;
+        while (served < length) {
+            long position = offset + served;
+            Chunk chunk;
+            synchronized (this) {
+                chunk = chunkFor(position);
+            }
+            if (chunk == null) {
+                break;
+            }
+            int available = chunk.await();
+            synchronized (this) {
+                if (chunk.retired) {
+                    break; // Dropped while waiting: its buffer may already hold another prefetch
+                }
+                if (available < 0) {
+                    // Failed prefetch: forget it and let the caller read synchronously
+                    if (chunk == this.current) {
+                        retire(chunk);
+                        this.current = null;
+                    }
+                    break;
+                }
+                long end = chunk.offset + available;
+                if (position >= end) {
+                    break;
+                }
+                int n = (int) Math.min(length - served, end - position);
+                destination.put(chunk.buffer.slice((int) (position - chunk.offset), n));
+                chunk.consumedEnd = Math.max(chunk.consumedEnd, position + n);
+                served += n;
+            }
+        }
+        return served;
+    }
+
+    /**
+     * Records a completed read and schedules the next prefetch when the access pattern is sequential.
+     *
+     * @param offset Offset of the read.
+     * @param length Number of bytes returned to FUSE.
+     * @param served Number of those bytes that came from prefetched data.
+     */
+    synchronized void afterRead(long offset, int length, int served) {
+        boolean streaming = this.sequentialReads >= SEQUENTIAL_THRESHOLD;
+        if (offset != this.expectedOffset) {
+            // Random access: prefetched data is unlikely to be used
+            this.sequentialReads = 0;
+            this.window = MIN_WINDOW;
+            drop();
+        } else {
+            this.sequentialReads++;
+        }
+
+        if (streaming && length > 0) {
+            if (served == length) {
+                this.metrics.getReadaheadHits().increment();
+            } else {
+                this.metrics.getReadaheadMisses().increment();
+            }
+        }
+
+        this.expectedOffset = offset + length;
+        if (this.sequentialReads >= SEQUENTIAL_THRESHOLD) {
+            scheduleNext();
+        }
+    }
+
+    /**
+     * Drops any prefetched data and returns the buffers to the pool.
+     */
+    synchronized void close() {
+        drop();
+    }
+
+    private Chunk chunkFor(long position) {
+        if (this.current != null && this.current.covers(position)) {
+            return this.current;
+        }
+        if (this.pending != null && this.pending.covers(position)) {
+            if (this.current != null) {
+                retire(this.current);
+            }
+            this.current = this.pending;
+            this.pending = null;
+            return this.current;
+        }
+        return null;
+    }
+
+    private void scheduleNext() {
+        if (this.pending != null) {
+            return;
+        }
+        long start = this.expectedOffset;
+        if (this.current != null && this.current.covers(start)) {
+            start = this.current.offset + this.current.requested;
+        }
+        if (start >= this.fileLength) {
+            return;
+        }
+
+        ByteBuffer buffer = this.manager.acquireBuffer();
+        if (buffer == null) {
+            return; // Every prefetch buffer of the node is in use
+        }
+
+        int length = (int) Math.min(this.window, this.fileLength - start);
+        Chunk chunk = new Chunk(start, buffer, length);
+        try {
+            this.manager.getExecutor().execute(() -> fetch(chunk));
+            this.pending = chunk;
+        } catch (RejectedExecutionException e) {
+            this.manager.releaseBuffer(buffer);
+        }
+    }
+
+    private void fetch(Chunk chunk) {
+        long startNanos = System.nanoTime();
+        try {
+            ByteBuffer target = chunk.buffer.duplicate();
+            target.limit(chunk.requested);
+            while (target.hasRemaining()) {
+                if (this.source.read(chunk.offset + target.position(), target) <= 0) {
+                    break;
+                }
+            }
+            int total = target.position();
+            this.metrics.getReadaheadPrefetchedBytes().add(total);
+            recordThroughput(total, System.nanoTime() - startNanos);
+            chunk.filled.complete(total);
+        } catch (Throwable t) {
+            log.debug("Readahead of {} bytes at offset {} failed: {}", chunk.requested, chunk.offset, t.getMessage());
+            chunk.filled.completeExceptionally(t);
+        }
+    }
+
+    private void recordThroughput(int bytes, long elapsedNanos) {
+        if (bytes <= 0 || elapsedNanos <= 0) {
+            return;
+        }
+        double observed = (double) bytes / elapsedNanos;
+        this.bytesPerNano = this.bytesPerNano == 0 ? observed : 0.7 * this.bytesPerNano + 0.3 * observed;
+    }
+
+    private void retire(Chunk chunk) {
+        chunk.retired = true;
+        long consumed = Math.max(0, chunk.consumedEnd - chunk.offset);
+        if (chunk.filled.isDone()) {
+            long wasted = chunk.await() - consumed;
+            if (wasted > 0) {
+                this.metrics.getReadaheadWastedBytes().add(wasted);
+                shrink();
+            } else if (consumed > 0) {
+                grow();
+            }
+        } else {
+            // Still in flight: everything it fetches is thrown away
+            shrink();
+            chunk.filled.thenAccept(filled -> this.metrics.getReadaheadWastedBytes().add(filled));
+        }
+        // The buffer goes back to the pool only once the fetch no longer writes into it
+        chunk.filled.whenComplete((filled, error) -> this.manager.releaseBuffer(chunk.buffer));
+    }
+
+    private void drop() {
+        if (this.current != null) {
+            retire(this.current);
+            this.current = null;
+        }
+        if (this.pending != null) {
+            retire(this.pending);
+            this.pending = null;
+        }
+    }
+
+    private void grow() {
+        int next = Math.min(MAX_WINDOW, this.window * 2);
+        if (this.bytesPerNano > 0) {
+            next = (int) Math.min(next, Math.max(MIN_WINDOW, this.bytesPerNano * TARGET_PREFETCH_NANOS));
+        }
+        this.window = Math.max(MIN_WINDOW, next);
+    }
+
+    private void shrink() {
+        this.window = Math.max(MIN_WINDOW, this.window / 2);
+    }
+
+    private static final class Chunk {
+        private final long offset;
+        private final ByteBuffer buffer;
+        private final int requested;
+        private final CompletableFuture<Integer> filled = new CompletableFuture<>();
+        private long consumedEnd;
+        private boolean retired;
+
+        private Chunk(long offset, ByteBuffer buffer, int requested) {
+            this.offset = offset;
+            this.buffer = buffer;
+            this.requested = requested;
+            this.consumedEnd = offset;
+        }
+
+        private boolean covers(long position) {
+            return position >= this.offset && position < this.offset + this.requested;
+        }
+
+        /**
+         * @return The number of bytes fetched, or -1 if the prefetch failed.
+         */
+        private int await() {
+            try {
+                return this.filled.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            } catch (ExecutionException e) {
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the data of a FUSE handle to a single HDFS output stream.
+ * <p>
+ * HDFS files can only be written sequentially, but the kernel may deliver the writes of one handle out of
+ * order when several FUSE threads process them concurrently. Writes ahead of the current end of the stream
+ * are held in a bounded reorder window until the gap before them is filled; a write that does not fit in
+ * the window waits for the gap. A gap still open after the gap timeout was left by a sparse write, such as
+ * one past the end of a new file: HDFS files cannot have holes, so it is written as zeros, as it reads.
+ * Flushing or closing the stream does not wait for gaps: the kernel only flushes a handle once the writes
+ * before the flush have returned, so a gap still open then is a hole, written as zeros right away.
+ * <p>
+ * With an {@link UploadQueue}, data is handed over to the upload threads instead of being written to the
+ * stream by the calling FUSE thread; upload failures are reported by the following write, flush or close.
+ * With a {@link StreamJournal}, every write is also journaled before it returns, and the journal is
+ * restarted whenever the stream is flushed, or flushed once the journal reaches its checkpoint size.
+ */
+class SequentialWriter {
+
+    static final int DEFAULT_REORDER_WINDOW = 8 * 1024 * 1024;
+    static final long DEFAULT_GAP_TIMEOUT_MILLIS = 30_000;
+    private static final int COPY_BUFFER_SIZE = 128 * 1024;
+    private static final byte[] ZEROS = new byte[COPY_BUFFER_SIZE];
+
+    private final FSDataOutputStream outputStream;
+    private final UploadQueue uploads;
+    private final StreamJournal journal;
+    private final HdfsMountMetrics metrics;
+    private final int reorderWindow;
+    private final long gapTimeoutNanos;
+    private final TreeMap<Long, byte[]> pending = new TreeMap<>();
+    private final GroupCommit hflushes = new GroupCommit();
+    private final GroupCommit hsyncs = new GroupCommit();
+    private long pendingBytes;
+    private long nextOffset;
+    private byte[] copyBuffer;
+    private boolean closed;
+
+    SequentialWriter(FSDataOutputStream outputStream, long startOffset, HdfsMountMetrics metrics) {
+        this(outputStream, null, startOffset, metrics, DEFAULT_REORDER_WINDOW, DEFAULT_GAP_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param outputStream     The HDFS output stream of the file.
+     * @param uploads          The upload queue of the stream, or null to write to it synchronously.
+     * @param startOffset      Offset of the file the stream starts at: 0, or the file length when appending.
+     * @param metrics          Metrics of the mount.
+     * @param reorderWindow    Bytes of out-of-order writes held until the data before them arrives.
+     * @param gapTimeoutMillis How long a write waits for a gap before it to be filled.
+     */
+    SequentialWriter(FSDataOutputStream outputStream, UploadQueue uploads, long startOffset, HdfsMountMetrics metrics,
+                     int reorderWindow, long gapTimeoutMillis) {
+        this(outputStream, uploads, null, startOffset, metrics, reorderWindow, gapTimeoutMillis);
+    }
+
+    /**
+     * @param journal The journal of the stream, or null if its data is lost when the plugin restarts.
+     */
+    SequentialWriter(FSDataOutputStream outputStream, UploadQueue uploads, StreamJournal journal, long startOffset,
+                     HdfsMountMetrics metrics, int reorderWindow, long gapTimeoutMillis) {
+        this.outputStream = outputStream;
+        this.uploads = uploads;
+        this.journal = journal;
+        this.nextOffset = startOffset;
+        this.metrics = metrics;
+        this.reorderWindow = reorderWindow;
+        this.gapTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(gapTimeoutMillis);
+    }
+
+    /**
+     * Writes data at an offset of the file, directly when it extends the stream, otherwise once the
+     * writes before it have arrived.
+     *
+     * @param offset Offset of the data in the file.
+     * @param data   The data, consumed by the call.
+     * @throws NonSequentialWriteException If the data overwrites bytes already written.
+     * @throws IOException                 If writing to HDFS fails.
+     */
+    synchronized void write(long offset, ByteBuffer data) throws IOException {
+        checkOpen();
+        if (this.uploads != null) {
+            this.uploads.checkFailure();
+        }
+        if (offset < this.nextOffset) {
+            throw new NonSequentialWriteException("Write at offset " + offset + " overwrites data already written up to "
+                    + this.nextOffset);
+        }
+
+        int length = data.remaining();
+        long deadline = System.nanoTime() + this.gapTimeoutNanos;
+        while (offset > this.nextOffset && offset + length - this.nextOffset > this.reorderWindow) {
+            if (!awaitProgress(deadline)) {
+                fillHole(this.pending.isEmpty() ? offset : Math.min(offset, this.pending.firstKey()));
+            }
+        }
+
+        if (this.journal != null) {
+            this.journal.append(offset, data);
+        }
+        if (offset == this.nextOffset) {
+            writeThrough(data);
+            drain();
+        } else {
+            byte[] copy = new byte[length];
+            data.get(copy);
+            this.pending.put(offset, copy);
+            this.pendingBytes += length;
+            this.metrics.getWritesReordered().increment();
+        }
+        if (this.journal != null && this.pending.isEmpty() && this.journal.needsCheckpoint()) {
+            sync(false); // Bounds the journal of a stream that is never synced
+        }
+    }
+
+    /**
+     * Writes data at the end of the file, whatever the offset the kernel gave: used by handles opened with O_APPEND.
+     *
+     * @param data The data, consumed by the call.
+     * @throws IOException If writing to HDFS fails.
+     */
+    synchronized void append(ByteBuffer data) throws IOException {
+        write(getLength(), data);
+    }
+
+    /**
+     * Writes the reorder window out, filling its holes, then makes the written data visible to new readers.
+     */
+    void flush() throws IOException {
+        sync(false);
+    }
+
+    /**
+     * Makes the data written so far visible to new readers (hflush) or durable on the DataNodes' disks (hsync),
+     * according to the fsync mode of the mount. Concurrent calls are grouped: a call arriving while a sync of
+     * the stream runs waits for the next one, which covers it, instead of issuing its own.
+     *
+     * @param mode        The fsync mode. With {@link HdfsMountOptions.FsyncMode#NONE}, only waits for the queued
+     *                    data to reach the stream and reports upload failures.
+     * @param windowNanos How long the first call of a group waits for others to join it.
+     */
+    void sync(HdfsMountOptions.FsyncMode mode, long windowNanos) throws IOException {
+        if (mode == HdfsMountOptions.FsyncMode.NONE) {
+            synchronized (this) {
+                checkOpen();
+                fillHoles();
+                if (this.uploads != null) {
+                    this.uploads.awaitEmpty(); // Upload failures then reach close(2), as release is not reported
+                }
+            }
+            return;
+        }
+        boolean durable = mode == HdfsMountOptions.FsyncMode.HSYNC;
+        if ((durable ? this.hsyncs : this.hflushes).execute(windowNanos, () -> sync(durable))) {
+            this.metrics.getFsyncsCoalesced().increment();
+        }
+    }
+
+    private synchronized void sync(boolean durable) throws IOException {
+        checkOpen();
+        fillHoles();
+        if (this.uploads != null) {
+            this.uploads.awaitEmpty();
+        }
+        if (durable) {
+            this.outputStream.hsync();
+        } else {
+            this.outputStream.hflush();
+        }
+        if (this.journal != null) {
+            this.journal.checkpoint(this.nextOffset);
+        }
+    }
+
+    /**
+     * Follows a rename of the file, which the stream keeps writing to.
+     *
+     * @throws IOException If the rename cannot be journaled.
+     */
+    void moveTo(Path hdfsPath) throws IOException {
+        if (this.journal != null) {
+            this.journal.moveTo(hdfsPath);
+        }
+    }
+
+    /**
+     * Writes the reorder window out, filling its holes, and closes the stream, completing the file in HDFS.
+     */
+    synchronized void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        try {
+            fillHoles();
+        } finally {
+            this.closed = true;
+            this.pending.clear();
+            this.pendingBytes = 0;
+            try {
+                if (this.uploads != null) {
+                    this.uploads.awaitEmpty();
+                }
+            } finally {
+                try {
+                    this.outputStream.close();
+                } finally {
+                    if (this.journal != null) {
+                        // The data is complete in HDFS, or its loss is reported by this call
+                        this.journal.delete();
+                    }
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The length of the file as written so far, including the data held in the reorder window.
+     */
+    synchronized long getLength() {
+        if (this.pending.isEmpty()) {
+            return this.nextOffset;
+        }
+        Map.Entry<Long, byte[]> last = this.pending.lastEntry();
+        return Math.max(this.nextOffset, last.getKey() + last.getValue().length);
+    }
+
+    private void writeThrough(ByteBuffer data) throws IOException {
+        int length = data.remaining();
+        if (this.uploads != null) {
+            this.uploads.submit(data);
+            this.nextOffset += length;
+            notifyAll();
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        if (data.hasArray()) {
+            this.outputStream.write(data.array(), data.arrayOffset() + data.position(), length);
+            data.position(data.limit());
+        } else {
+            // FSDataOutputStream only takes arrays: copy direct buffers through a reused one
+            if (this.copyBuffer == null) {
+                this.copyBuffer = new byte[COPY_BUFFER_SIZE];
+            }
+            while (data.hasRemaining()) {
+                int n = Math.min(data.remaining(), this.copyBuffer.length);
+                data.get(this.copyBuffer, 0, n);
+                this.outputStream.write(this.copyBuffer, 0, n);
+            }
+        }
+        this.metrics.getUploadNanos().add(System.nanoTime() - startNanos);
+        this.nextOffset += length;
+        this.metrics.getBytesWritten().add(length);
+        notifyAll();
+    }
+
+    private void drain() throws IOException {
+        while (!this.pending.isEmpty() && this.pending.firstKey() <= this.nextOffset) {
+            Map.Entry<Long, byte[]> entry = this.pending.pollFirstEntry();
+            byte[] bytes = entry.getValue();
+            this.pendingBytes -= bytes.length;
+            int skip = (int) (this.nextOffset - entry.getKey()); // Overlap with data already written
+            if (skip < bytes.length) {
+                writeThrough(ByteBuffer.wrap(bytes, skip, bytes.length - skip));
+            }
+        }
+    }
+
+    private void fillHoles() throws IOException {
+        while (!this.pending.isEmpty()) {
+            fillHole(this.pending.firstKey());
+        }
+    }
+
+    /**
+     * Waits for a write to extend the stream.
+     *
+     * @return false if the deadline passed, in which case the gap before the pending data is a hole.
+     */
+    private boolean awaitProgress(long deadline) throws IOException {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            return false;
+        }
+        try {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the data after offset " + this.nextOffset);
+        }
+        checkOpen();
+        return true;
+    }
+
+    /**
+     * Writes zeros up to an offset, then the pending data that follows. Not journaled: a replay fills the
+     * holes of the journal the same way.
+     */
+    private void fillHole(long end) throws IOException {
+        long length = end - this.nextOffset;
+        while (this.nextOffset < end) {
+            writeThrough(ByteBuffer.wrap(ZEROS, 0, (int) Math.min(ZEROS.length, end - this.nextOffset)));
+        }
+        this.metrics.getBytesZeroFilled().add(length);
+        drain();
+    }
+
+    private void checkOpen() throws IOException {
+        if (this.closed) {
+            throw new IOException("Output stream is closed");
+        }
+    }
+
+    /**
+     * A write that cannot be applied to an HDFS file, which only supports appending.
+     */
+    static class NonSequentialWriteException extends IOException {
+        NonSequentialWriteException(String message) {
+            super(message);
+        }
+    }
+}
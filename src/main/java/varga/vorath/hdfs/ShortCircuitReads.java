@@ -0,0 +1,82 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.net.unix.DomainSocket;
+import org.apache.hadoop.util.NativeCodeLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Mount-time check that HDFS short-circuit local reads can actually work on this node.
+ * <p>
+ * DFSClient silently falls back to remote reads when short-circuit is misconfigured, logging a warning on
+ * every block it opens. Checking up front lets the mount report whether local reads are in effect, and
+ * disable them cleanly when they cannot be.
+ */
+@Slf4j
+final class ShortCircuitReads {
+
+    static final String ENABLED_KEY = "dfs.client.read.shortcircuit";
+    static final String DOMAIN_SOCKET_PATH_KEY = "dfs.domain.socket.path";
+
+    private ShortCircuitReads() {
+    }
+
+    /**
+     * Checks the requirements of short-circuit reads: libhadoop, which implements domain sockets and
+     * the shared memory segments holding the replica slots, and a DataNode listening on the socket.
+     *
+     * @param configuration The HDFS client configuration, with short-circuit reads enabled.
+     * @return null when short-circuit reads are usable, otherwise the reason they are not.
+     */
+    static String unavailabilityReason(Configuration configuration) {
+        if (!NativeCodeLoader.isNativeCodeLoaded()) {
+            return "the Hadoop native library (libhadoop) is not loaded";
+        }
+        String loadingFailure = DomainSocket.getLoadingFailureReason();
+        if (loadingFailure != null) {
+            return "domain sockets are unavailable: " + loadingFailure;
+        }
+
+        String socketPath = configuration.getTrimmed(DOMAIN_SOCKET_PATH_KEY, "");
+        if (socketPath.isEmpty()) {
+            return DOMAIN_SOCKET_PATH_KEY + " is not set";
+        }
+        if (socketPath.contains("_PORT")) {
+            // The path depends on the DataNode port, only known per DataNode: the client resolves it itself
+            return null;
+        }
+        if (!Files.exists(Paths.get(socketPath))) {
+            return "domain socket " + socketPath + " does not exist on this node";
+        }
+        try (DomainSocket socket = DomainSocket.connect(socketPath)) {
+            log.debug("DataNode domain socket {} is accepting connections", socket.getPath());
+            return null;
+        } catch (IOException e) {
+            return "cannot connect to domain socket " + socketPath + ": " + e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coalesces concurrent identical metadata requests into a single NameNode RPC.
+ * <p>
+ * When many FUSE threads look up the same path at the same time (a pod restarting dozens of workers that
+ * all stat the same configuration and jar files), the first caller issues the RPC and the others wait for
+ * its result instead of sending their own. Nothing is cached: once the RPC completes, the next request for
+ * the path issues a new one.
+ * <p>
+ * A request made after a change to the path must not get the result of an RPC issued before it. Callers
+ * pass the attribute cache generation of the mount, read before joining: requests only join a call made at
+ * the same generation, and start a new one once the generation has moved.
+ */
+class SingleFlight {
+
+    private final ConcurrentHashMap<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final HdfsMountMetrics metrics;
+
+    SingleFlight(HdfsMountMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Runs a request, or joins the identical request already in flight.
+     *
+     * @param operation Name of the operation, such as {@code getFileStatus}.
+     * @param path      Path the operation applies to.
+     * @param request   The RPC to issue when no identical request is in flight.
+     * @return The result of the request.
+     * @throws IOException The failure of the request, shared by every caller that joined it.
+     */
+    <T> T execute(String operation, String path, Request<T> request) throws IOException {
+        return execute(operation, path, 0, request);
+    }
+
+    /**
+     * Runs a request, or joins the identical request already in flight if it was issued at the same generation.
+     *
+     * @param generation The attribute cache generation of the mount, read before the request.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T execute(String operation, String path, long generation, Request<T> request) throws IOException {
+        Key key = new Key(operation, path, generation);
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        CompletableFuture<Object> existing = this.inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            this.metrics.rpcCoalesced(operation);
+            return (T) await(existing);
+        }
+
+        this.metrics.rpcIssued(operation);
+        try {
+            T result = request.run();
+            call.complete(result);
+            return result;
+        } catch (Throwable e) {
+            // Errors too: the callers that joined would otherwise wait forever
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.inFlight.remove(key, call);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> call) throws IOException {
+        try {
+            return call.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a coalesced request");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    @FunctionalInterface
+    interface Request<T> {
+        T run() throws IOException;
+    }
+
+    private record Key(String operation, String path, long generation) {
+    }
+}
@@ -0,0 +1,385 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * Local copy of an HDFS file being modified at random offsets, kept in a sparse file of the
+ * {@link WriteStagingArea}.
+ * <p>
+ * Every handle of the mount on the same path shares the staged file, so reads see the writes made
+ * through other handles. The file is reference counted by these handles, and uploaded to HDFS in one
+ * pass when flushed, synced or when the last handle is released. An upload writes a hidden file next to
+ * the target and renames it over the target, so a failed upload leaves the previous content in place and
+ * the changes staged. While it holds changes to upload, the file is recorded in the {@link WriteJournal}
+ * of the node, if any, so they are uploaded if the plugin restarts or the volume is mounted again.
+ */
+@Slf4j
+class StagedFile implements PositionalReader {
+
+    static final String UPLOAD_INFIX = ".vorath-upload-";
+    private static final int COPY_BUFFER_SIZE = 1024 * 1024;
+
+    private final WriteStagingArea area;
+    private final String volume;
+    @Getter
+    private volatile Path hdfsPath;
+    private final java.nio.file.Path localFile;
+    private final HdfsMountMetrics metrics;
+    private final FileChannel channel;
+
+    private int references = 1;
+    private long length;
+    private long reservedBytes;
+    private boolean dirty;
+    private boolean journaled;
+    private boolean discarded;
+    private boolean closed;
+
+    StagedFile(WriteStagingArea area, String volume, Path hdfsPath, java.nio.file.Path localFile,
+               HdfsMountMetrics metrics) throws IOException {
+        this.area = area;
+        this.volume = volume;
+        this.hdfsPath = hdfsPath;
+        this.localFile = localFile;
+        this.metrics = metrics;
+        this.channel = FileChannel.open(localFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.SPARSE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Copies the current content of the HDFS file.
+     */
+    synchronized void load(FileSystem fileSystem, long fileLength) throws IOException {
+        if (fileLength == 0) {
+            return;
+        }
+        grow(fileLength);
+        byte[] buffer = new byte[(int) Math.min(COPY_BUFFER_SIZE, fileLength)];
+        try (FSDataInputStream in = fileSystem.open(this.hdfsPath)) {
+            long position = 0;
+            int n;
+            while (position < fileLength && (n = in.read(buffer, 0, (int) Math.min(buffer.length, fileLength - position))) > 0) {
+                writeAt(position, ByteBuffer.wrap(buffer, 0, n));
+                position += n;
+            }
+        }
+        this.length = fileLength;
+    }
+
+    /**
+     * Writes data at an offset of the staged file, growing it as needed.
+     *
+     * @throws WriteStagingArea.FileTooLargeException If the file would grow past the per-file limit.
+     * @throws WriteStagingArea.QuotaExceededException If the staging area is full.
+     */
+    synchronized void write(long offset, ByteBuffer data) throws IOException {
+        checkOpen();
+        long end = offset + data.remaining();
+        if (end > this.length) {
+            grow(end);
+        }
+        writeAt(offset, data);
+        this.length = Math.max(this.length, end);
+        markDirty();
+    }
+
+    /**
+     * Writes data at the end of the staged file: used by handles opened with O_APPEND.
+     */
+    synchronized void append(ByteBuffer data) throws IOException {
+        write(this.length, data);
+    }
+
+    /**
+     * Shrinks or extends the staged file; an extension reads as zeros.
+     *
+     * @throws WriteStagingArea.FileTooLargeException If the file would grow past the per-file limit.
+     * @throws WriteStagingArea.QuotaExceededException If the staging area is full.
+     */
+    synchronized void truncate(long newLength) throws IOException {
+        checkOpen();
+        if (newLength < this.length) {
+            this.channel.truncate(newLength);
+        } else if (newLength > this.length) {
+            grow(newLength);
+            writeAt(newLength - 1, ByteBuffer.allocate(1)); // Leaves a hole up to the new end
+        }
+        this.length = newLength;
+        markDirty();
+    }
+
+    @Override
+    public synchronized int read(long position, ByteBuffer destination) throws IOException {
+        checkOpen();
+        if (position >= this.length) {
+            return -1;
+        }
+        // Holes of the sparse file read as zeros, like a file of that length would
+        ByteBuffer window = destination.duplicate();
+        window.limit(window.position() + (int) Math.min(window.remaining(), this.length - position));
+        int total = 0;
+        while (window.hasRemaining()) {
+            int n = this.channel.read(window, position + total);
+            if (n <= 0) {
+                break;
+            }
+            total += n;
+        }
+        destination.position(window.position());
+        return total;
+    }
+
+    synchronized long getLength() {
+        return this.length;
+    }
+
+    /**
+     * Uploads the staged file to HDFS, replacing the file there, unless it was not modified since the last upload.
+     * When the upload fails, the file in HDFS is unchanged and the changes stay staged and journaled.
+     */
+    void upload(FileSystem fileSystem) throws IOException {
+        upload(fileSystem, false, null);
+    }
+
+    /**
+     * @param durable    Whether to hsync the uploaded data to the DataNodes' disks before completing the file.
+     * @param partUpload The uploader of files written in parts, or null to upload through a single stream.
+     */
+    synchronized void upload(FileSystem fileSystem, boolean durable, PartUpload partUpload) throws IOException {
+        checkOpen();
+        if (!this.dirty || this.discarded) {
+            return;
+        }
+        if (partUpload != null && partUpload.isWorthwhile(this.hdfsPath, this.length)) {
+            // The part threads read the local file while this thread holds the lock
+            partUpload.upload((position, destination) -> this.channel.read(destination, position),
+                    this.length, this.hdfsPath, durable);
+        } else {
+            replace(fileSystem, this.hdfsPath, this::read, this.length, durable);
+        }
+        this.dirty = false;
+        forget();
+        this.metrics.getStagedUploads().increment();
+        this.metrics.getStagedBytesUploaded().add(this.length);
+    }
+
+    /**
+     * Replaces an HDFS file through a single stream: the data is written to a hidden file of the same
+     * directory, renamed over the target once complete, so the target is never left truncated.
+     *
+     * @param source  Positional reader of the data.
+     * @param length  The length of the data.
+     * @param durable Whether to hsync the data to the DataNodes' disks before completing the file.
+     * @throws IOException If the data cannot be written or renamed; the target is then unchanged.
+     */
+    static void replace(FileSystem fileSystem, Path target, PositionalReader source, long length, boolean durable)
+            throws IOException {
+        Path temporary = new Path(target.getParent(), "." + target.getName() + UPLOAD_INFIX + UUID.randomUUID());
+        boolean completed = false;
+        try {
+            byte[] buffer = new byte[(int) Math.max(1, Math.min(COPY_BUFFER_SIZE, length))];
+            try (FSDataOutputStream out = fileSystem.create(temporary, false)) {
+                long position = 0;
+                while (position < length) {
+                    ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, (int) Math.min(buffer.length, length - position));
+                    int n = source.read(position, chunk);
+                    if (n <= 0) {
+                        throw new IOException("Source of " + target + " ended at offset " + position + " instead of " + length);
+                    }
+                    out.write(buffer, 0, n);
+                    position += n;
+                }
+                if (durable) {
+                    out.hsync();
+                }
+            }
+            if (fileSystem instanceof DistributedFileSystem distributedFileSystem) {
+                distributedFileSystem.rename(temporary, target, Options.Rename.OVERWRITE);
+            } else if (!fileSystem.rename(temporary, target)) {
+                // Some file systems do not rename over an existing file
+                fileSystem.delete(target, false);
+                if (!fileSystem.rename(temporary, target)) {
+                    throw new IOException("Failed to rename " + temporary + " to " + target);
+                }
+            }
+            completed = true;
+        } finally {
+            if (!completed) {
+                try {
+                    fileSystem.delete(temporary, false);
+                } catch (IOException e) {
+                    log.warn("Failed to delete the incomplete upload {}: {}", temporary, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Follows a rename of the file: the next upload goes to the new path.
+     */
+    synchronized void moveTo(Path hdfsPath) {
+        this.hdfsPath = hdfsPath;
+        if (this.journaled) {
+            try {
+                this.area.getJournal().recordStagedFile(this.volume, hdfsPath, this.localFile);
+            } catch (IOException e) {
+                log.warn("Failed to journal the rename of staged file {} to '{}': {}", this.localFile, hdfsPath,
+                        e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stops uploading the staged file, whose path was deleted or replaced. The handles using it keep
+     * reading and writing the local copy until they are released, like an unlinked file.
+     */
+    synchronized void discard() {
+        this.discarded = true;
+        forget();
+    }
+
+    /**
+     * Takes a reference on the staged file for another handle.
+     *
+     * @return false if the staged file has already been closed.
+     */
+    synchronized boolean retain() {
+        if (this.closed) {
+            return false;
+        }
+        this.references++;
+        return true;
+    }
+
+    /**
+     * Drops a reference on the staged file.
+     *
+     * @return true if it was the last one, in which case the caller uploads and closes the file.
+     */
+    synchronized boolean releaseReference() {
+        return --this.references == 0;
+    }
+
+    /**
+     * @return true if more than one handle uses the staged file.
+     */
+    synchronized boolean isShared() {
+        return this.references > 1;
+    }
+
+    /**
+     * @return true if a handle still uses the staged file, such as one opened while the last one was uploading.
+     */
+    synchronized boolean isReferenced() {
+        return this.references > 0;
+    }
+
+    /**
+     * Deletes the local copy and returns its room to the staging area. Changes that were not uploaded are
+     * kept on disk when journaled, and queued in the journal to be uploaded when the volume is mounted again.
+     */
+    synchronized void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        boolean kept = this.dirty && this.journaled && !this.discarded;
+        if (kept) {
+            log.warn("Keeping changes to '{}' that were not uploaded in {}, for the write journal to replay",
+                    this.hdfsPath, this.localFile);
+            this.area.getJournal().deferStagedFile(this.volume, this.hdfsPath, this.localFile);
+        } else if (this.dirty && !this.discarded) {
+            log.warn("Discarding changes to '{}' that were not uploaded", this.hdfsPath);
+        }
+        if (!kept) {
+            forget();
+        }
+        try {
+            this.channel.close();
+            if (!kept) {
+                Files.deleteIfExists(this.localFile);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to delete staged file {}: {}", this.localFile, e.getMessage());
+        }
+        this.area.release(this.reservedBytes);
+        this.area.fileClosed();
+    }
+
+    /**
+     * Records the file in the journal with its first change since it was loaded or uploaded.
+     */
+    private void markDirty() throws IOException {
+        this.dirty = true;
+        WriteJournal journal = this.area.getJournal();
+        if (journal != null && !this.journaled && !this.discarded) {
+            journal.recordStagedFile(this.volume, this.hdfsPath, this.localFile);
+            this.journaled = true;
+        }
+    }
+
+    private void forget() {
+        if (this.journaled) {
+            this.area.getJournal().forgetStagedFile(this.localFile);
+            this.journaled = false;
+        }
+    }
+
+    private void grow(long newLength) throws IOException {
+        if (newLength > this.area.getMaxFileBytes()) {
+            throw new WriteStagingArea.FileTooLargeException("Staged file '" + this.hdfsPath + "' would grow to "
+                    + newLength + " bytes, past the limit of " + this.area.getMaxFileBytes());
+        }
+        if (newLength > this.reservedBytes) {
+            this.area.reserve(newLength - this.reservedBytes);
+            this.reservedBytes = newLength;
+        }
+    }
+
+    private void writeAt(long position, ByteBuffer data) throws IOException {
+        long current = position;
+        while (data.hasRemaining()) {
+            current += this.channel.write(data, current);
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (this.closed) {
+            throw new IOException("Staged file for '" + this.hdfsPath + "' is closed");
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Journal of the data written to one HDFS output stream whose uploads are buffered, so that data
+ * acknowledged to the application but not yet on the DataNodes can be replayed if the plugin restarts.
+ * <p>
+ * The journal holds the writes since its last checkpoint, taken when the stream was flushed: everything
+ * before the checkpoint is already on the DataNodes. A checkpoint starts a new journal file and deletes
+ * the previous one, and the journal is deleted once the stream is closed.
+ */
+class StreamJournal {
+
+    // Offset of the records following a rename of the file, whose payload is the new path
+    static final long MOVED = -1;
+
+    private final WriteJournal journal;
+    private final String volume;
+    private Path hdfsPath;
+    private JournalFile file;
+
+    StreamJournal(WriteJournal journal, String volume, Path hdfsPath, long startOffset) throws IOException {
+        this.journal = journal;
+        this.volume = volume;
+        this.hdfsPath = hdfsPath;
+        this.file = journal.createStreamFile(volume, hdfsPath, startOffset);
+    }
+
+    /**
+     * Records data written at an offset of the file.
+     *
+     * @param offset Offset of the data in the file.
+     * @param data   The data, which is not consumed.
+     * @throws IOException If the journal cannot be written.
+     */
+    synchronized void append(long offset, ByteBuffer data) throws IOException {
+        this.file.append(ByteBuffer.allocate(Long.BYTES).putLong(0, offset), data);
+    }
+
+    /**
+     * Follows a rename of the file: a replay appends to the new path.
+     */
+    synchronized void moveTo(Path hdfsPath) throws IOException {
+        this.hdfsPath = hdfsPath;
+        this.file.append(ByteBuffer.allocate(Long.BYTES).putLong(0, MOVED),
+                ByteBuffer.wrap(hdfsPath.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @return true once the journal has grown past the checkpoint size of the node.
+     */
+    synchronized boolean needsCheckpoint() {
+        return this.file.size() >= this.journal.getCheckpointBytes();
+    }
+
+    /**
+     * Drops the records of the data now on the DataNodes.
+     *
+     * @param offset Offset of the file up to which the stream was flushed, with nothing written after it.
+     * @throws IOException If the new journal file cannot be created.
+     */
+    synchronized void checkpoint(long offset) throws IOException {
+        if (!this.file.hasRecords()) {
+            return;
+        }
+        JournalFile previous = this.file;
+        // Created before the previous one is deleted: a crash in between leaves records a replay skips
+        this.file = this.journal.createStreamFile(this.volume, this.hdfsPath, offset);
+        previous.delete();
+        this.journal.checkpointed();
+    }
+
+    /**
+     * Deletes the journal once the stream is closed.
+     */
+    synchronized void delete() {
+        this.file.delete();
+        this.journal.streamClosed();
+    }
+}
@@ -0,0 +1,161 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FSDataOutputStream;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+
+/**
+ * Ordered queue of data waiting to be written to one HDFS output stream, drained by the threads of the
+ * {@link UploadScheduler}. At most one thread drains a queue at a time, so data reaches the stream in
+ * the order it was submitted.
+ */
+@Slf4j
+class UploadQueue {
+
+    private final FSDataOutputStream outputStream;
+    private final Executor executor;
+    private final ByteBudget mountBudget;
+    private final ByteBudget nodeBudget;
+    private final HdfsMountMetrics metrics;
+
+    private final Deque<Chunk> chunks = new ArrayDeque<>();
+    private boolean draining;
+    private IOException failure;
+
+    UploadQueue(FSDataOutputStream outputStream, Executor executor, ByteBudget mountBudget, ByteBudget nodeBudget,
+                HdfsMountMetrics metrics) {
+        this.outputStream = outputStream;
+        this.executor = executor;
+        this.mountBudget = mountBudget;
+        this.nodeBudget = nodeBudget;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Copies data into the queue, waiting for room in the in-flight budgets of the mount and the node.
+     *
+     * @param data The data, consumed by the call.
+     * @throws IOException If a previous upload failed, or the thread is interrupted while waiting.
+     */
+    void submit(ByteBuffer data) throws IOException {
+        checkFailure();
+        int length = data.remaining();
+        if (!this.mountBudget.isAvailable(length) || !this.nodeBudget.isAvailable(length)) {
+            this.metrics.getUploadBackpressureWaits().increment();
+        }
+        long fromMount = this.mountBudget.acquire(length);
+        long fromNode;
+        try {
+            fromNode = this.nodeBudget.acquire(length);
+        } catch (IOException e) {
+            this.mountBudget.release(fromMount);
+            throw e;
+        }
+
+        byte[] bytes = new byte[length];
+        data.get(bytes);
+        synchronized (this) {
+            if (this.failure != null) {
+                this.mountBudget.release(fromMount);
+                this.nodeBudget.release(fromNode);
+                checkFailure();
+            }
+            this.chunks.add(new Chunk(bytes, fromMount, fromNode));
+            this.metrics.getUploadQueueDepth().incrementAndGet();
+            this.metrics.getUploadBytesInFlight().addAndGet(length);
+            if (!this.draining) {
+                this.draining = true;
+                this.executor.execute(this::drain);
+            }
+        }
+    }
+
+    /**
+     * Waits until every submitted chunk is written to the stream.
+     *
+     * @throws IOException If an upload failed, or the thread is interrupted while waiting.
+     */
+    synchronized void awaitEmpty() throws IOException {
+        while (this.draining) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for uploads to complete");
+            }
+        }
+        checkFailure();
+    }
+
+    /**
+     * @throws IOException If an upload failed: the data written since then is lost.
+     */
+    synchronized void checkFailure() throws IOException {
+        if (this.failure != null) {
+            throw new IOException("Upload to HDFS failed: " + this.failure.getMessage(), this.failure);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Chunk chunk;
+            boolean failed;
+            synchronized (this) {
+                chunk = this.chunks.poll();
+                if (chunk == null) {
+                    this.draining = false;
+                    notifyAll();
+                    return;
+                }
+                failed = this.failure != null;
+            }
+            try {
+                if (!failed) {
+                    long startNanos = System.nanoTime();
+                    this.outputStream.write(chunk.bytes());
+                    this.metrics.getUploadNanos().add(System.nanoTime() - startNanos);
+                    this.metrics.getBytesWritten().add(chunk.bytes().length);
+                }
+            } catch (IOException e) {
+                log.error("Upload to HDFS failed: {}", e.getMessage());
+                synchronized (this) {
+                    this.failure = e;
+                }
+            } finally {
+                this.metrics.getUploadQueueDepth().decrementAndGet();
+                this.metrics.getUploadBytesInFlight().addAndGet(-chunk.bytes().length);
+                this.mountBudget.release(chunk.fromMount());
+                this.nodeBudget.release(chunk.fromNode());
+            }
+        }
+    }
+
+    private record Chunk(byte[] bytes, long fromMount, long fromNode) {
+    }
+}
@@ -0,0 +1,111 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Node-wide scheduler of the uploads of data written through FUSE to HDFS output streams.
+ * <p>
+ * A FUSE write returns once its data is copied into an upload queue; the queue of each output stream is
+ * drained in order by a shared pool of upload threads, which wait for the DataNode pipeline instead of the
+ * FUSE threads. Buffered data is bounded by a per-mount and a node-wide budget of in-flight bytes:
+ * writers block, rather than fail, until uploads free enough of both. Upload errors are reported by the
+ * next write, flush or release of the handle.
+ * <p>
+ * Files written in parts use the same threads, at most half of them per file, so that one large upload
+ * leaves threads to the output streams and uploads of the other mounts.
+ */
+@Slf4j
+@Component
+public class UploadScheduler {
+
+    private final ExecutorService executor;
+    private final int maxConcurrentParts;
+    private final ByteBudget nodeBudget;
+
+    public UploadScheduler(@Value("${HDFS_UPLOAD_THREADS:8}") int uploadThreads,
+                           @Value("${HDFS_UPLOAD_MAX_IN_FLIGHT_MB:256}") long maxInFlightMb) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, uploadThreads), runnable -> {
+            Thread thread = new Thread(runnable, "hdfs-upload-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maxConcurrentParts = Math.max(1, uploadThreads / 2);
+        this.nodeBudget = new ByteBudget(maxInFlightMb * 1024 * 1024);
+        log.info("HDFS upload scheduler configured with {} threads and {} MB in flight", uploadThreads, maxInFlightMb);
+    }
+
+    /**
+     * @return false when the node budget is 0, in which case writes go to the output streams synchronously.
+     */
+    public boolean isEnabled() {
+        return this.nodeBudget.getCapacity() > 0;
+    }
+
+    /**
+     * Creates the upload queue of an output stream.
+     *
+     * @param outputStream The stream the queued data is written to.
+     * @param mountBudget  The in-flight bytes budget of the mount writing to the stream.
+     * @param metrics      Metrics of the mount.
+     * @return The upload queue.
+     */
+    UploadQueue newQueue(FSDataOutputStream outputStream, ByteBudget mountBudget, HdfsMountMetrics metrics) {
+        return new UploadQueue(outputStream, this.executor, mountBudget, this.nodeBudget, metrics);
+    }
+
+    /**
+     * Creates the uploader of the files a mount writes in parts, which runs the part uploads on the upload
+     * threads, at most half of them per file.
+     *
+     * @param fileSystem The HDFS client of the mount.
+     * @param partSize   The size of the parts.
+     * @param metrics    Metrics of the mount.
+     * @return The part uploader.
+     */
+    PartUpload newPartUpload(DistributedFileSystem fileSystem, long partSize, HdfsMountMetrics metrics) {
+        return new PartUpload(fileSystem, this.executor, partSize, this.maxConcurrentParts, metrics);
+    }
+
+    /**
+     * Returns the node-wide state of the scheduler.
+     *
+     * @return The metric values keyed by name.
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        snapshot.put("inFlightBytes", this.nodeBudget.getUsed());
+        snapshot.put("maxInFlightBytes", this.nodeBudget.getCapacity());
+        return snapshot;
+    }
+}
@@ -28,5 +28,6 @@ import lombok.RequiredArgsConstructor;
 public class VolumeAttachmentInfo {
     private final String hdfsUri;
     private final HdfsConnection hdfsConnection;
+    private final HdfsMountOptions mountOptions;
 
 }
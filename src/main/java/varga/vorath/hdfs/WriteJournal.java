@@ -0,0 +1,457 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Node-local journal of the writes acknowledged to applications but not yet uploaded to HDFS, replayed
+ * when the plugin restarts.
+ * <p>
+ * Each output stream whose uploads are buffered has a {@link StreamJournal}, holding the data written
+ * since the stream was last flushed; each modified {@link StagedFile} has a record pointing to its local
+ * copy, which is kept by the staging area until it is uploaded. Journal files are made of checksummed
+ * records, keyed by volume and path. When the plugin starts, the files left by the previous run are
+ * replayed volume by volume before the volume is mounted again: the journaled data missing from a stream
+ * is appended to its file, and staged files are uploaded. A replay relies on the length of the file in
+ * HDFS, so it is idempotent, but assumes nothing else wrote to the file since the restart.
+ * <p>
+ * Records are written to the page cache, not forced to disk: the journal survives restarts of the plugin,
+ * not crashes of the node. The directory is meant to be a hostPath or emptyDir volume of the plugin.
+ */
+@Slf4j
+@Component
+public class WriteJournal {
+
+    static final String STREAM_SUFFIX = ".journal";
+    static final String STAGED_SUFFIX = ".staged";
+    private static final String CORRUPT_SUFFIX = ".corrupt";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final long LEASE_RECOVERY_TIMEOUT_MILLIS = 60_000;
+
+    private final java.nio.file.Path directory;
+    private final boolean enabled;
+    private final long checkpointBytes;
+    // Journal files left by the previous run of the plugin, by volume
+    private final Map<String, List<PendingFile>> pendingFiles = new ConcurrentHashMap<>();
+
+    private final AtomicLong openStreams = new AtomicLong();
+    private final LongAdder checkpoints = new LongAdder();
+    private final AtomicLong pendingReplays = new AtomicLong();
+    private final LongAdder replayedFiles = new LongAdder();
+    private final LongAdder replayedBytes = new LongAdder();
+    private final LongAdder replayFailures = new LongAdder();
+    private final LongAdder replayGaps = new LongAdder();
+
+    public WriteJournal(@Value("${HDFS_WRITE_JOURNAL_DIR:/var/lib/vorath/journal}") String directory,
+                        @Value("${HDFS_WRITE_JOURNAL_ENABLED:true}") boolean enabled,
+                        @Value("${HDFS_WRITE_JOURNAL_CHECKPOINT_MB:64}") long checkpointMb) {
+        this.directory = Paths.get(directory);
+        this.enabled = enabled;
+        this.checkpointBytes = checkpointMb * 1024 * 1024;
+        // Even when disabled, the files of a previous run that had it enabled are replayed
+        loadPendingFiles();
+        log.info("Write journal {} in {}, with checkpoints every {} MB and {} files to replay",
+                enabled ? "enabled" : "disabled", directory, checkpointMb, this.pendingReplays.get());
+    }
+
+    /**
+     * @return false when new writes are not journaled, in which case buffered data is lost if the plugin restarts.
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Starts the journal of an output stream.
+     *
+     * @param volume      The HDFS URI of the volume.
+     * @param hdfsPath    The file written by the stream.
+     * @param startOffset Offset of the file the stream starts at.
+     * @return The journal of the stream.
+     * @throws IOException If the journal file cannot be created.
+     */
+    StreamJournal openStream(String volume, Path hdfsPath, long startOffset) throws IOException {
+        StreamJournal journal = new StreamJournal(this, volume, hdfsPath, startOffset);
+        this.openStreams.incrementAndGet();
+        return journal;
+    }
+
+    JournalFile createStreamFile(String volume, Path hdfsPath, long startOffset) throws IOException {
+        Files.createDirectories(this.directory);
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(header)) {
+            out.writeUTF(volume);
+            out.writeUTF(hdfsPath.toString());
+            out.writeLong(startOffset);
+        }
+        return JournalFile.create(this.directory.resolve(UUID.randomUUID() + STREAM_SUFFIX),
+                ByteBuffer.wrap(header.toByteArray()));
+    }
+
+    long getCheckpointBytes() {
+        return this.checkpointBytes;
+    }
+
+    void checkpointed() {
+        this.checkpoints.increment();
+    }
+
+    void streamClosed() {
+        this.openStreams.decrementAndGet();
+    }
+
+    /**
+     * Records that a staged file holds changes to upload, replacing the previous record of the file if any.
+     *
+     * @param volume    The HDFS URI of the volume.
+     * @param hdfsPath  The file the staged file is uploaded to.
+     * @param localFile The local copy of the file.
+     * @throws IOException If the record cannot be written.
+     */
+    void recordStagedFile(String volume, Path hdfsPath, java.nio.file.Path localFile) throws IOException {
+        Files.createDirectories(this.directory);
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(header)) {
+            out.writeUTF(volume);
+            out.writeUTF(hdfsPath.toString());
+            out.writeUTF(localFile.toAbsolutePath().toString());
+        }
+        java.nio.file.Path record = stagedRecord(localFile);
+        java.nio.file.Path temporary = record.resolveSibling(record.getFileName() + TEMPORARY_SUFFIX);
+        Files.deleteIfExists(temporary);
+        JournalFile.create(temporary, ByteBuffer.wrap(header.toByteArray())).close();
+        // A crash leaves either the previous record or the new one
+        Files.move(temporary, record, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Deletes the record of a staged file that was uploaded, discarded or closed.
+     */
+    void forgetStagedFile(java.nio.file.Path localFile) {
+        try {
+            Files.deleteIfExists(stagedRecord(localFile));
+        } catch (IOException e) {
+            log.warn("Failed to delete the journal record of {}: {}", localFile, e.getMessage());
+        }
+    }
+
+    /**
+     * Queues for replay a staged file whose changes could not be uploaded before it was closed, such as on
+     * unmount, so that they are uploaded when the volume is mounted again. Its local copy and record are kept.
+     *
+     * @param volume    The HDFS URI of the volume.
+     * @param hdfsPath  The file the staged file is uploaded to.
+     * @param localFile The local copy of the file.
+     */
+    void deferStagedFile(String volume, Path hdfsPath, java.nio.file.Path localFile) {
+        addPendingFiles(volume, List.of(new PendingFile(stagedRecord(localFile), hdfsPath.toString(),
+                localFile.toAbsolutePath().toString())));
+        this.pendingReplays.incrementAndGet();
+    }
+
+    /**
+     * @return true if a staged file left by the previous run of the plugin has changes still to upload.
+     */
+    boolean isPendingStagedFile(java.nio.file.Path localFile) {
+        return Files.exists(stagedRecord(localFile));
+    }
+
+    /**
+     * @return true if the previous run of the plugin left writes to replay to a volume.
+     */
+    public boolean hasPendingFiles(String volume) {
+        return this.pendingFiles.containsKey(volume);
+    }
+
+    /**
+     * @return The volumes the previous run of the plugin left writes to replay to.
+     */
+    public Set<String> getPendingVolumes() {
+        return Set.copyOf(this.pendingFiles.keySet());
+    }
+
+    /**
+     * Replays the journal files the previous run of the plugin left for a volume. Files that cannot be
+     * replayed are kept for the next attempt.
+     *
+     * @param volume     The HDFS URI of the volume.
+     * @param fileSystem The file system of the volume.
+     * @throws IOException If some files could not be replayed.
+     */
+    public void replay(String volume, FileSystem fileSystem) throws IOException {
+        List<PendingFile> files = this.pendingFiles.remove(volume);
+        if (files == null) {
+            return;
+        }
+        log.info("Replaying {} journal files of '{}'", files.size(), volume);
+        List<PendingFile> failed = new ArrayList<>();
+        IOException failure = null;
+        int done = 0;
+        for (PendingFile file : files) {
+            try {
+                long bytes = file.localFile() != null ? replayStagedFile(file, fileSystem) : replayStream(file, fileSystem);
+                this.replayedFiles.increment();
+                this.replayedBytes.add(bytes);
+                this.pendingReplays.decrementAndGet();
+                log.info("Replayed journal file {} of '{}' ({}/{}): {} bytes uploaded to '{}'", file.path().getFileName(),
+                        volume, ++done, files.size(), bytes, file.hdfsPath());
+            } catch (IOException e) {
+                log.error("Failed to replay journal file {} of '{}': {}", file.path(), volume, e.getMessage());
+                this.replayFailures.increment();
+                failed.add(file);
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            addPendingFiles(volume, failed);
+            throw new IOException(failed.size() + " journal files of '" + volume + "' could not be replayed", failure);
+        }
+    }
+
+    private void addPendingFiles(String volume, List<PendingFile> files) {
+        this.pendingFiles.merge(volume, files, (current, added) -> {
+            List<PendingFile> merged = new ArrayList<>(current);
+            merged.addAll(added);
+            return merged;
+        });
+    }
+
+    /**
+     * Returns the node-wide state of the journal, including the progress of the replay.
+     *
+     * @return The metric values keyed by name.
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        snapshot.put("openStreams", this.openStreams.get());
+        snapshot.put("checkpoints", this.checkpoints.sum());
+        snapshot.put("pendingReplays", this.pendingReplays.get());
+        snapshot.put("replayedFiles", this.replayedFiles.sum());
+        snapshot.put("replayedBytes", this.replayedBytes.sum());
+        snapshot.put("replayFailures", this.replayFailures.sum());
+        snapshot.put("replayGaps", this.replayGaps.sum());
+        return snapshot;
+    }
+
+    /**
+     * Appends to a file the journaled data past its length in HDFS, once the lease of the stream that
+     * was writing it is recovered.
+     */
+    private long replayStream(PendingFile file, FileSystem fileSystem) throws IOException {
+        List<ByteBuffer> records = JournalFile.read(file.path());
+        Path hdfsPath = new Path(file.hdfsPath());
+        List<JournaledWrite> writes = new ArrayList<>();
+        for (ByteBuffer record : records.subList(1, records.size())) {
+            long offset = record.getLong();
+            if (offset == StreamJournal.MOVED) {
+                hdfsPath = new Path(StandardCharsets.UTF_8.decode(record).toString());
+            } else {
+                writes.add(new JournaledWrite(offset, record));
+            }
+        }
+        writes.sort(Comparator.comparingLong(JournaledWrite::offset));
+
+        long replayed = 0;
+        if (!writes.isEmpty()) {
+            long length;
+            try {
+                recoverLease(fileSystem, hdfsPath);
+                length = fileSystem.getFileStatus(hdfsPath).getLen();
+            } catch (FileNotFoundException e) {
+                log.warn("'{}' no longer exists: dropping its {} journaled writes", hdfsPath, writes.size());
+                Files.deleteIfExists(file.path());
+                return 0;
+            }
+
+            FSDataOutputStream out = null;
+            try {
+                for (JournaledWrite write : writes) {
+                    ByteBuffer data = write.data();
+                    long end = write.offset() + data.remaining();
+                    if (end <= length) {
+                        continue; // Already on the DataNodes
+                    }
+                    if (out == null) {
+                        out = fileSystem.append(hdfsPath);
+                    }
+                    if (write.offset() > length) {
+                        // A hole left by a sparse write, or by writes still reordered when the plugin stopped: the
+                        // data after it was acknowledged, so the hole is written as zeros, as the stream would have
+                        log.warn("Journal of '{}' has no data from offset {} to {}: writing zeros", hdfsPath, length,
+                                write.offset());
+                        this.replayGaps.increment();
+                        byte[] zeros = new byte[(int) Math.min(64 * 1024, write.offset() - length)];
+                        while (length < write.offset()) {
+                            int n = (int) Math.min(zeros.length, write.offset() - length);
+                            out.write(zeros, 0, n);
+                            replayed += n;
+                            length += n;
+                        }
+                    }
+                    data.position(data.position() + (int) (length - write.offset()));
+                    replayed += data.remaining();
+                    out.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+                    length = end;
+                }
+                if (out != null) {
+                    out.hsync();
+                }
+            } finally {
+                if (out != null) {
+                    out.close();
+                }
+            }
+        }
+        Files.deleteIfExists(file.path());
+        return replayed;
+    }
+
+    /**
+     * Uploads the local copy of a staged file, replacing the file in HDFS only once the copy is complete.
+     */
+    private long replayStagedFile(PendingFile file, FileSystem fileSystem) throws IOException {
+        java.nio.file.Path localFile = Paths.get(file.localFile());
+        if (!Files.exists(localFile)) {
+            log.warn("Staged copy {} of '{}' no longer exists: dropping its changes", localFile, file.hdfsPath());
+            Files.deleteIfExists(file.path());
+            return 0;
+        }
+        long length = Files.size(localFile);
+        try (FileChannel channel = FileChannel.open(localFile, StandardOpenOption.READ)) {
+            StagedFile.replace(fileSystem, new Path(file.hdfsPath()),
+                    (position, destination) -> channel.read(destination, position), length, true);
+        }
+        Files.deleteIfExists(localFile);
+        Files.deleteIfExists(file.path());
+        return length;
+    }
+
+    /**
+     * Waits for the NameNode to close a file whose writer did not, so that it can be appended to.
+     */
+    private static void recoverLease(FileSystem fileSystem, Path hdfsPath) throws IOException {
+        if (!(fileSystem instanceof DistributedFileSystem distributedFileSystem)) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LEASE_RECOVERY_TIMEOUT_MILLIS);
+        long sleepMillis = 10;
+        while (!distributedFileSystem.recoverLease(hdfsPath)) {
+            if (System.nanoTime() > deadline) {
+                throw new IOException("Timed out waiting for the lease recovery of '" + hdfsPath + "'");
+            }
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the lease recovery of '" + hdfsPath + "'");
+            }
+            sleepMillis = Math.min(sleepMillis * 2, 1000);
+        }
+    }
+
+    /**
+     * Indexes the journal files left by the previous run of the plugin by volume, reading their headers.
+     * A file whose header is unreadable is renamed, so that it is kept for inspection but not replayed.
+     */
+    private void loadPendingFiles() {
+        if (!Files.isDirectory(this.directory)) {
+            return;
+        }
+        try (DirectoryStream<java.nio.file.Path> files = Files.newDirectoryStream(this.directory)) {
+            for (java.nio.file.Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMPORARY_SUFFIX)) {
+                    Files.deleteIfExists(file); // A record of a staged file whose replacement did not complete
+                    continue;
+                }
+                boolean staged = name.endsWith(STAGED_SUFFIX);
+                if (!staged && !name.endsWith(STREAM_SUFFIX)) {
+                    continue;
+                }
+                try {
+                    List<ByteBuffer> records = JournalFile.read(file, 1);
+                    if (records.isEmpty()) {
+                        throw new IOException("No valid header");
+                    }
+                    ByteBuffer header = records.get(0);
+                    DataInputStream in = new DataInputStream(new ByteArrayInputStream(header.array(), 0, header.limit()));
+                    String volume = in.readUTF();
+                    String hdfsPath = in.readUTF();
+                    String localFile = staged ? in.readUTF() : null;
+                    this.pendingFiles.computeIfAbsent(volume, v -> new ArrayList<>())
+                            .add(new PendingFile(file, hdfsPath, localFile));
+                    this.pendingReplays.incrementAndGet();
+                } catch (IOException e) {
+                    java.nio.file.Path corrupt = file.resolveSibling(name + CORRUPT_SUFFIX);
+                    log.error("Journal file {} is unreadable and is kept as {}: {}", file, corrupt, e.getMessage());
+                    Files.move(file, corrupt, StandardCopyOption.REPLACE_EXISTING);
+                    this.replayFailures.increment();
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to load the write journal in {}: {}", this.directory, e.getMessage());
+        }
+    }
+
+    private java.nio.file.Path stagedRecord(java.nio.file.Path localFile) {
+        return this.directory.resolve(localFile.getFileName() + STAGED_SUFFIX);
+    }
+
+    private record PendingFile(java.nio.file.Path path, String hdfsPath, String localFile) {
+    }
+
+    private record JournaledWrite(long offset, ByteBuffer data) {
+    }
+}
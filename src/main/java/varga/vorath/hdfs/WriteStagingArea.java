@@ -0,0 +1,211 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Node-local disk area where files modified at random offsets are staged before being uploaded to HDFS.
+ * <p>
+ * HDFS files can only be appended to, so a write that is not sequential would otherwise rewrite the
+ * whole file. Such files are instead copied to a sparse local file, modified there, and uploaded once
+ * when they are released or synced. The area is shared by every mount of the node and bounded by a quota
+ * on the staged bytes; a single staged file is also limited in size, so one large file cannot take the
+ * whole quota. The directory is meant to be a hostPath or emptyDir volume of the plugin. Staged files
+ * left by a previous run of the plugin are deleted when it starts, unless the {@link WriteJournal} still
+ * has to upload them.
+ */
+@Slf4j
+@Component
+public class WriteStagingArea {
+
+    static final String FILE_SUFFIX = ".stage";
+
+    private final java.nio.file.Path directory;
+    private final long quotaBytes;
+    private final long maxFileBytes;
+    private final WriteJournal journal;
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicLong stagedFiles = new AtomicLong();
+    private final LongAdder quotaRejections = new LongAdder();
+
+    public WriteStagingArea(String directory, long quotaMb, long maxFileMb) {
+        this(directory, quotaMb, maxFileMb, null);
+    }
+
+    /**
+     * @param journal The node-wide write journal, or null to lose the staged changes if the plugin restarts.
+     */
+    @Autowired
+    public WriteStagingArea(@Value("${HDFS_STAGING_DIR:/var/lib/vorath/staging}") String directory,
+                            @Value("${HDFS_STAGING_QUOTA_MB:1024}") long quotaMb,
+                            @Value("${HDFS_STAGING_MAX_FILE_MB:512}") long maxFileMb,
+                            WriteJournal journal) {
+        this.directory = Paths.get(directory);
+        this.quotaBytes = quotaMb * 1024 * 1024;
+        this.maxFileBytes = Math.min(maxFileMb, quotaMb) * 1024 * 1024;
+        this.journal = journal;
+        removeStaleFiles();
+        log.info("Write staging configured in {} with a quota of {} MB and up to {} MB per file", directory, quotaMb,
+                maxFileMb);
+    }
+
+    /**
+     * @return false when the quota is 0, in which case writes that are not sequential are rejected.
+     */
+    public boolean isEnabled() {
+        return this.quotaBytes > 0;
+    }
+
+    /**
+     * Stages a file: creates its local copy, filled with the current content of the HDFS file.
+     *
+     * @param volume     The HDFS URI of the mount's volume.
+     * @param fileSystem The file system of the mount.
+     * @param hdfsPath   The file to stage.
+     * @param length     The current length of the file in HDFS, 0 if it does not exist.
+     * @param metrics    Metrics of the mount staging the file.
+     * @return The staged file, with one reference held by the caller.
+     * @throws IOException If the file cannot be copied, or does not fit in the staging limits.
+     */
+    StagedFile stage(String volume, FileSystem fileSystem, Path hdfsPath, long length, HdfsMountMetrics metrics)
+            throws IOException {
+        Files.createDirectories(this.directory);
+        java.nio.file.Path localFile = this.directory.resolve(UUID.randomUUID() + FILE_SUFFIX);
+        StagedFile stagedFile = new StagedFile(this, volume, hdfsPath, localFile, metrics);
+        this.stagedFiles.incrementAndGet();
+        try {
+            stagedFile.load(fileSystem, length);
+        } catch (IOException e) {
+            stagedFile.close();
+            throw e;
+        }
+        log.debug("Staged '{}' in {}", hdfsPath, localFile);
+        return stagedFile;
+    }
+
+    /**
+     * @return The journal recording the staged files with changes to upload, or null if it is disabled.
+     */
+    WriteJournal getJournal() {
+        return this.journal != null && this.journal.isEnabled() ? this.journal : null;
+    }
+
+    long getMaxFileBytes() {
+        return this.maxFileBytes;
+    }
+
+    /**
+     * Reserves room in the quota for bytes about to be staged.
+     *
+     * @throws QuotaExceededException If the quota would be exceeded.
+     */
+    void reserve(long bytes) throws QuotaExceededException {
+        while (true) {
+            long used = this.usedBytes.get();
+            if (used + bytes > this.quotaBytes) {
+                this.quotaRejections.increment();
+                throw new QuotaExceededException("Staging " + bytes + " more bytes would exceed the quota of "
+                        + this.quotaBytes + " bytes (" + used + " in use)");
+            }
+            if (this.usedBytes.compareAndSet(used, used + bytes)) {
+                return;
+            }
+        }
+    }
+
+    void release(long bytes) {
+        this.usedBytes.addAndGet(-bytes);
+    }
+
+    void fileClosed() {
+        this.stagedFiles.decrementAndGet();
+    }
+
+    /**
+     * Returns the node-wide counters of the staging area.
+     *
+     * @return The metric values keyed by name.
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        snapshot.put("stagedFiles", this.stagedFiles.get());
+        snapshot.put("usedBytes", this.usedBytes.get());
+        snapshot.put("quotaBytes", this.quotaBytes);
+        snapshot.put("quotaRejections", this.quotaRejections.sum());
+        return snapshot;
+    }
+
+    /**
+     * Staged files left by a previous run of the plugin belong to handles that no longer exist: only
+     * those with changes the journal has to upload are kept.
+     */
+    private void removeStaleFiles() {
+        if (!Files.isDirectory(this.directory)) {
+            return;
+        }
+        try (DirectoryStream<java.nio.file.Path> files = Files.newDirectoryStream(this.directory, "*" + FILE_SUFFIX)) {
+            for (java.nio.file.Path file : files) {
+                if (this.journal != null && this.journal.isPendingStagedFile(file)) {
+                    log.info("Keeping staged file {} for the replay of the write journal", file);
+                    continue;
+                }
+                log.warn("Removing stale staged file {}", file);
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to clean up the staging directory {}: {}", this.directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Staging a write would exceed the quota of the staging area.
+     */
+    static class QuotaExceededException extends IOException {
+        QuotaExceededException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A write would make a staged file larger than a single staged file may be.
+     */
+    static class FileTooLargeException extends IOException {
+        FileTooLargeException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package varga.vorath.kubernetes;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import io.kubernetes.client.openapi.ApiClient;
+import io.kubernetes.client.openapi.ApiException;
+import io.kubernetes.client.openapi.apis.CoordinationV1Api;
+import io.kubernetes.client.openapi.models.V1Lease;
+import io.kubernetes.client.openapi.models.V1LeaseSpec;
+import io.kubernetes.client.openapi.models.V1ObjectMeta;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Coordination Lease electing a single instance of the plugin to run a cluster-wide task.
+ * <p>
+ * The holder renews the Lease each time it runs the task; another instance takes it over once it has
+ * not been renewed for its duration. Updates rely on the resourceVersion of the Lease, so only one of
+ * the instances racing for an expired Lease gets it.
+ */
+@Slf4j
+public class KubernetesLease {
+
+    private static final int HTTP_NOT_FOUND = 404;
+    private static final int HTTP_CONFLICT = 409;
+
+    private final CoordinationV1Api coordinationApi;
+    private final String namespace;
+    private final String name;
+    private final String holder;
+    private final int durationSeconds;
+
+    /**
+     * @param apiClient       The Kubernetes client.
+     * @param namespace       Namespace of the Lease, usually the one of the plugin.
+     * @param name            Name of the Lease.
+     * @param holder          Identity of this instance, such as its pod name.
+     * @param durationSeconds Time after its last renewal the Lease can be taken over.
+     */
+    public KubernetesLease(ApiClient apiClient, String namespace, String name, String holder, int durationSeconds) {
+        this.coordinationApi = new CoordinationV1Api(apiClient);
+        this.namespace = namespace;
+        this.name = name;
+        this.holder = holder;
+        this.durationSeconds = durationSeconds;
+    }
+
+    /**
+     * Renews the Lease if this instance holds it, or acquires it if it is free or expired.
+     *
+     * @return true if this instance holds the Lease.
+     */
+    public boolean tryAcquire() {
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        try {
+            V1Lease lease;
+            try {
+                lease = this.coordinationApi.readNamespacedLease(this.name, this.namespace, null);
+            } catch (ApiException e) {
+                if (e.getCode() != HTTP_NOT_FOUND) {
+                    throw e;
+                }
+                this.coordinationApi.createNamespacedLease(this.namespace, new V1Lease()
+                        .metadata(new V1ObjectMeta().name(this.name).namespace(this.namespace))
+                        .spec(new V1LeaseSpec()
+                                .holderIdentity(this.holder)
+                                .leaseDurationSeconds(this.durationSeconds)
+                                .acquireTime(now)
+                                .renewTime(now)
+                                .leaseTransitions(0)), null, null, null, null);
+                log.info("Acquired lease '{}/{}' as '{}'", this.namespace, this.name, this.holder);
+                return true;
+            }
+
+            V1LeaseSpec spec = lease.getSpec() != null ? lease.getSpec() : new V1LeaseSpec();
+            boolean held = this.holder.equals(spec.getHolderIdentity());
+            if (!held && !isExpired(spec, now)) {
+                return false;
+            }
+            if (!held) {
+                spec.holderIdentity(this.holder)
+                        .acquireTime(now)
+                        .leaseTransitions(spec.getLeaseTransitions() != null ? spec.getLeaseTransitions() + 1 : 1);
+                log.info("Taking over lease '{}/{}' as '{}'", this.namespace, this.name, this.holder);
+            }
+            spec.renewTime(now).leaseDurationSeconds(this.durationSeconds);
+            // Fails with a conflict if another instance updated the Lease since it was read
+            this.coordinationApi.replaceNamespacedLease(this.name, this.namespace, lease.spec(spec), null, null, null, null);
+            return true;
+        } catch (ApiException e) {
+            if (e.getCode() == HTTP_CONFLICT) {
+                log.debug("Lost the race for lease '{}/{}'", this.namespace, this.name);
+            } else {
+                log.warn("Failed to acquire lease '{}/{}': {} {}", this.namespace, this.name, e.getCode(), e.getMessage());
+            }
+            return false;
+        }
+    }
+
+    private static boolean isExpired(V1LeaseSpec spec, OffsetDateTime now) {
+        if (spec.getHolderIdentity() == null || spec.getRenewTime() == null || spec.getLeaseDurationSeconds() == null) {
+            return true;
+        }
+        return spec.getRenewTime().plusSeconds(spec.getLeaseDurationSeconds()).isBefore(now);
+    }
+}
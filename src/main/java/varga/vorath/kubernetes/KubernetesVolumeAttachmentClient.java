@@ -23,7 +23,9 @@ package varga.vorath.kubernetes;
 import io.kubernetes.client.openapi.ApiClient;
 import io.kubernetes.client.openapi.ApiException;
 import io.kubernetes.client.openapi.Configuration;
+import io.kubernetes.client.openapi.apis.CoreV1Api;
 import io.kubernetes.client.openapi.apis.StorageV1Api;
+import io.kubernetes.client.openapi.models.V1PersistentVolumeSpec;
 import io.kubernetes.client.openapi.models.V1VolumeAttachment;
 import io.kubernetes.client.openapi.models.V1VolumeAttachmentList;
 import io.kubernetes.client.openapi.models.V1VolumeAttachmentSource;
@@ -34,6 +36,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import varga.vorath.Utils;
 import varga.vorath.hdfs.HdfsConnection;
+import varga.vorath.hdfs.HdfsConnectionRegistry;
+import varga.vorath.hdfs.HdfsMountOptions;
 import varga.vorath.hdfs.VolumeAttachmentInfo;
 
 import java.io.IOException;
@@ -48,8 +52,10 @@ public class KubernetesVolumeAttachmentClient {
     private static final String CSI_ATTACHER_NAME = "hdfs-csi-driver";
     private final String currentNodeName;
     private final ApiClient apiClient;
+    private final HdfsConnectionRegistry connectionRegistry;
 
-    public KubernetesVolumeAttachmentClient() throws IOException {
+    public KubernetesVolumeAttachmentClient(HdfsConnectionRegistry connectionRegistry) throws IOException {
+        this.connectionRegistry = connectionRegistry;
         ApiClient client = ClientBuilder.defaultClient();
         Configuration.setDefaultApiClient(client);
         this.apiClient = client;
@@ -71,6 +77,7 @@ public class KubernetesVolumeAttachmentClient {
 
         Map<String, VolumeAttachmentInfo> volumeAttachments = new HashMap<>();
         StorageV1Api storageApi = new StorageV1Api(apiClient);
+        CoreV1Api coreApi = new CoreV1Api(apiClient);
 
         try {
             // Fetch all VolumeAttachment objects
@@ -95,13 +102,6 @@ public class KubernetesVolumeAttachmentClient {
                     String nodeName = attachment.getSpec().getNodeName();
                     V1VolumeAttachmentSource source = attachment.getSpec().getSource();
 
-                    String location = source.getInlineVolumeSpec().getCsi().getVolumeAttributes().get("location"); // optional path (full HDFS path)
-                    String secretName = source.getInlineVolumeSpec().getCsi().getVolumeAttributes().get("secretName");
-                    String secretNamespace = source.getInlineVolumeSpec().getCsi().getVolumeAttributes().get("secretNamespace");
-
-                    // Secrets are mandatory according to requirements
-                    HdfsConnection hdfsConnection = HdfsConnection.createHdfsConnection(secretName, secretNamespace, Utils.extractClusterUri(location));
-
                     if (attacher.equals(CSI_ATTACHER_NAME) && nodeName.equals(currentNodeName)) {
                         String pvName = attachment.getSpec().getSource().getPersistentVolumeName();
                         Map<String, String> metadata = attachment.getStatus().getAttachmentMetadata();
@@ -111,6 +111,16 @@ public class KubernetesVolumeAttachmentClient {
                             continue;
                         }
 
+                        // The volume context and mount flags NodePublishVolume receives: the CSI attributes and mount options of the PV
+                        V1PersistentVolumeSpec volumeSpec = source.getInlineVolumeSpec() != null
+                                ? source.getInlineVolumeSpec()
+                                : coreApi.readPersistentVolume(pvName, null).getSpec();
+                        Map<String, String> volumeAttributes = volumeSpec.getCsi().getVolumeAttributes();
+                        List<String> mountFlags = volumeSpec.getMountOptions() != null ? volumeSpec.getMountOptions() : List.of();
+                        String location = volumeAttributes.get("location"); // optional path (full HDFS path)
+                        String secretName = volumeAttributes.get("secretName");
+                        String secretNamespace = volumeAttributes.get("secretNamespace");
+
                         // Extract target path and HDFS URI from metadata
                         String targetPath = metadata.get("mountPath");
                         String hdfsUri = metadata.get("hdfsUri");
@@ -120,8 +130,13 @@ public class KubernetesVolumeAttachmentClient {
                             continue;
                         }
 
+                        // Secrets are mandatory according to requirements; volumes sharing a Secret share its connection
+                        HdfsConnection hdfsConnection = this.connectionRegistry.getConnection(secretName, secretNamespace,
+                                Utils.extractClusterUri(location));
+
                         // Add to result map
-                        volumeAttachments.put(targetPath, new VolumeAttachmentInfo(hdfsUri, hdfsConnection));
+                        volumeAttachments.put(targetPath, new VolumeAttachmentInfo(hdfsUri, hdfsConnection,
+                                HdfsMountOptions.from(volumeAttributes, mountFlags)));
                     }
                 } catch (Exception e) {
                     log.error("Error processing VolumeAttachment '{}': {}", attachment.getMetadata().getName(), e.getMessage(), e);
@@ -30,6 +30,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import varga.vorath.Utils;
 import varga.vorath.hdfs.HdfsConnection;
+import varga.vorath.hdfs.HdfsConnectionRegistry;
+import varga.vorath.hdfs.HdfsMountOptions;
 import varga.vorath.hdfs.HdfsMountService;
 
 import java.nio.file.Files;
@@ -45,6 +47,7 @@ import java.util.Map;
 public class NodePublishVolumeHandler {
 
     private final HdfsMountService hdfsMountService;
+    private final HdfsConnectionRegistry connectionRegistry;
 
     /**
      * Handles the NodePublishVolume request.
@@ -77,6 +80,8 @@ public class NodePublishVolumeHandler {
         }
 
         String hdfsPath = volumeContext.getOrDefault("hdfsPath", "/");
+        HdfsMountOptions mountOptions = HdfsMountOptions.from(volumeContext,
+                request.getVolumeCapability().getMount().getMountFlagsList());
 
         //apiVersion: v1
         //kind: PersistentVolume
@@ -103,7 +108,7 @@ public class NodePublishVolumeHandler {
         log.info("Handling NodePublishVolume for Volume ID: {} at Target Path: {}", volumeId, targetPath);
 
         try {
-            HdfsConnection hdfsConnection = HdfsConnection.createHdfsConnection(secretName, secretNamespace, Utils.extractClusterUri(location));
+            HdfsConnection hdfsConnection = this.connectionRegistry.getConnection(secretName, secretNamespace, Utils.extractClusterUri(location));
 
             Path path = Paths.get(targetPath);
             if (Files.exists(path)) {
@@ -118,7 +123,7 @@ public class NodePublishVolumeHandler {
             log.info("Target directory created at path: {}", targetPath);
 
             // Mount the volume with HDFS path
-            this.hdfsMountService.mountVolume(hdfsConnection, hdfsPath, targetPath);
+            this.hdfsMountService.mountVolume(hdfsConnection, hdfsPath, targetPath, mountOptions);
 
             log.info("Volume {} is successfully published to {}", volumeId, targetPath);
 
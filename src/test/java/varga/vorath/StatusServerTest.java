@@ -0,0 +1,83 @@
+package varga.vorath;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import varga.vorath.controller.DelegationTokenIssuer;
+import varga.vorath.hdfs.HdfsBlockCache;
+import varga.vorath.hdfs.HdfsConnectionRegistry;
+import varga.vorath.hdfs.HdfsMountResources;
+import varga.vorath.hdfs.HdfsMountService;
+import varga.vorath.hdfs.KerberosLoginManager;
+import varga.vorath.hdfs.UploadScheduler;
+import varga.vorath.hdfs.WriteStagingArea;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StatusServerTest {
+
+    @Test
+    public void testStatusReportsMountsAndNodeComponents() throws Exception {
+        HdfsMountService mountService = mock(HdfsMountService.class);
+        when(mountService.getMountMetrics()).thenReturn(Map.of("/mnt/data", Map.of("bytesRead", 42L)));
+        when(mountService.getMountStatus()).thenReturn(Map.of("/mnt/data", Map.of("shortCircuitRead", "inactive")));
+        when(mountService.getWriteJournalStatus()).thenReturn(Map.of("pendingReplays", 1L));
+        HdfsBlockCache blockCache = mock(HdfsBlockCache.class);
+        when(blockCache.snapshot()).thenReturn(Map.of("hits", 3L));
+        WriteStagingArea stagingArea = mock(WriteStagingArea.class);
+        UploadScheduler uploadScheduler = mock(UploadScheduler.class);
+        HdfsMountResources mountResources = new HdfsMountResources(blockCache, stagingArea, uploadScheduler, null, null, null);
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        StatusServer statusServer = new StatusServer(port, mountService, mountResources, mock(HdfsConnectionRegistry.class),
+                mock(KerberosLoginManager.class), mock(DelegationTokenIssuer.class));
+        statusServer.start();
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + StatusServer.PATH).openConnection();
+            assertEquals(200, connection.getResponseCode());
+            JsonNode status;
+            try (InputStream in = connection.getInputStream()) {
+                status = new ObjectMapper().readTree(in);
+            }
+
+            JsonNode mount = status.get("mounts").get("/mnt/data");
+            assertEquals(42L, mount.get("metrics").get("bytesRead").asLong());
+            assertEquals("inactive", mount.get("status").get("shortCircuitRead").asText());
+            assertEquals(1L, status.get("writeJournal").get("pendingReplays").asLong());
+            assertEquals(3L, status.get("blockCache").get("hits").asLong());
+        } finally {
+            statusServer.stop();
+        }
+    }
+}
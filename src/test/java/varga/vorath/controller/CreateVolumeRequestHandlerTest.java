@@ -31,9 +31,11 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
-import org.mockito.MockedStatic;
+import varga.vorath.hdfs.HdfsClientPool;
 import varga.vorath.hdfs.HdfsConnection;
+import varga.vorath.hdfs.HdfsConnectionRegistry;
 import varga.vorath.hdfs.HdfsVolumeService;
+import varga.vorath.hdfs.MockHdfsConnections;
 
 import java.io.IOException;
 import java.util.Map;
@@ -48,6 +50,7 @@ public class CreateVolumeRequestHandlerTest {
     private static MiniDFSCluster cluster;
     private static HdfsConfiguration conf;
     private HdfsVolumeService hdfsVolumeService;
+    private HdfsConnectionRegistry connectionRegistry;
     private CreateVolumeRequestHandler handler;
 
     @BeforeAll
@@ -67,8 +70,9 @@ public class CreateVolumeRequestHandlerTest {
 
     @BeforeEach
     public void setUp() {
-        hdfsVolumeService = new HdfsVolumeService();
-        handler = new CreateVolumeRequestHandler(hdfsVolumeService);
+        hdfsVolumeService = new HdfsVolumeService(new HdfsClientPool(60));
+        connectionRegistry = mock(HdfsConnectionRegistry.class);
+        handler = new CreateVolumeRequestHandler(hdfsVolumeService, connectionRegistry);
     }
 
     @Test
@@ -80,25 +84,20 @@ public class CreateVolumeRequestHandlerTest {
                 .build();
         StreamObserver<Csi.CreateVolumeResponse> responseObserver = mock(StreamObserver.class);
 
-        HdfsConnection mockConnection = mock(HdfsConnection.class);
-        try (MockedStatic<HdfsConnection> mockedHdfsConnection = mockStatic(HdfsConnection.class)) {
-            mockedHdfsConnection.when(() -> HdfsConnection.createHdfsConnection(anyString(), anyString(), any()))
-                    .thenReturn(mockConnection);
-            
-            when(mockConnection.getConfiguration()).thenReturn(cluster.getFileSystem().getConf());
+        HdfsConnection mockConnection = MockHdfsConnections.mockConnection(cluster.getFileSystem().getConf());
+        when(connectionRegistry.getConnection(anyString(), anyString(), any())).thenReturn(mockConnection);
 
-            handler.handleCreateVolumeRequest(request, responseObserver);
+        handler.handleCreateVolumeRequest(request, responseObserver);
 
-            ArgumentCaptor<Csi.CreateVolumeResponse> captor = ArgumentCaptor.forClass(Csi.CreateVolumeResponse.class);
-            verify(responseObserver).onNext(captor.capture());
-            verify(responseObserver).onCompleted();
+        ArgumentCaptor<Csi.CreateVolumeResponse> captor = ArgumentCaptor.forClass(Csi.CreateVolumeResponse.class);
+        verify(responseObserver).onNext(captor.capture());
+        verify(responseObserver).onCompleted();
 
-            Csi.CreateVolumeResponse response = captor.getValue();
-            assertEquals("/volumes/test-volume", response.getVolume().getVolumeId());
-            
-            org.apache.hadoop.fs.Path expectedPath = new org.apache.hadoop.fs.Path("/volumes/test-volume");
-            assertTrue(cluster.getFileSystem().exists(expectedPath), "Path /volumes/test-volume should exist");
-        }
+        Csi.CreateVolumeResponse response = captor.getValue();
+        assertEquals("/volumes/test-volume", response.getVolume().getVolumeId());
+
+        org.apache.hadoop.fs.Path expectedPath = new org.apache.hadoop.fs.Path("/volumes/test-volume");
+        assertTrue(cluster.getFileSystem().exists(expectedPath), "Path /volumes/test-volume should exist");
     }
 
     @Test
@@ -0,0 +1,174 @@
+package varga.vorath.controller;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import io.kubernetes.client.openapi.ApiException;
+import io.kubernetes.client.openapi.models.V1CSIPersistentVolumeSource;
+import io.kubernetes.client.openapi.models.V1Lease;
+import io.kubernetes.client.openapi.models.V1LeaseSpec;
+import io.kubernetes.client.openapi.models.V1ObjectMeta;
+import io.kubernetes.client.openapi.models.V1PersistentVolume;
+import io.kubernetes.client.openapi.models.V1PersistentVolumeSpec;
+import io.kubernetes.client.openapi.models.V1Secret;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hadoop.security.token.Token;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import varga.vorath.CsiPluginProperties;
+import varga.vorath.hdfs.DelegationTokens;
+import varga.vorath.hdfs.HdfsConnection;
+import varga.vorath.hdfs.HdfsConnectionRegistry;
+import varga.vorath.kubernetes.FakeKubernetesApi;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class DelegationTokenIssuerTest {
+
+    private static final String DRIVER = "hdfs.csi.varga.org";
+    private static final String NAMESPACE = "default";
+    private static final String SECRET = "hdfs-secret";
+    private static final String SECRET_PATH = "/api/v1/namespaces/" + NAMESPACE + "/secrets/" + SECRET;
+    private static final String TOKENS_PATH = "/api/v1/namespaces/" + NAMESPACE + "/secrets/"
+            + DelegationTokens.secretName(SECRET);
+    private static final String LEASE_PATH = "/apis/coordination.k8s.io/v1/namespaces/" + NAMESPACE
+            + "/leases/hdfs-csi-token-issuer";
+    private static final String CLUSTER = "hdfs://cluster1:8020";
+
+    private FakeKubernetesApi api;
+    private HdfsConnection connection;
+    private DelegationTokenIssuer issuer;
+    private long expiration;
+
+    @BeforeEach
+    public void setUp() throws ApiException, IOException {
+        api = new FakeKubernetesApi();
+        expiration = System.currentTimeMillis() + 86_400_000;
+
+        UserGroupInformation user = mock(UserGroupInformation.class);
+        when(user.getShortUserName()).thenReturn("hdfs");
+        connection = mock(HdfsConnection.class);
+        when(connection.getUserGroupInformation()).thenReturn(user);
+        // Each issue gets a token from the NameNode, then renews it
+        Token<?> token = new Token<>("identifier".getBytes(StandardCharsets.UTF_8), "password".getBytes(StandardCharsets.UTF_8),
+                new Text("TEST_TOKEN"), new Text("cluster1"));
+        AtomicInteger calls = new AtomicInteger();
+        doAnswer(invocation -> calls.getAndIncrement() % 2 == 0 ? token : expiration).when(connection).doAs(any());
+        HdfsConnectionRegistry registry = mock(HdfsConnectionRegistry.class);
+        when(registry.getLoginConnection(SECRET, NAMESPACE, CLUSTER)).thenReturn(connection);
+
+        CsiPluginProperties properties = new CsiPluginProperties();
+        properties.setName(DRIVER);
+        issuer = new DelegationTokenIssuer(api.apiClient(), registry, properties, false, 60, 3600, NAMESPACE, "pod-a");
+
+        putSecret("hdfs/node@EXAMPLE.COM");
+        putVolume("pv-1", DRIVER);
+        putVolume("pv-2", DRIVER);
+        putVolume("pv-other", "other.csi.example.org");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        api.close();
+    }
+
+    private String putSecret(String principal) {
+        return api.put(SECRET_PATH, new V1Secret()
+                .metadata(new V1ObjectMeta().name(SECRET).namespace(NAMESPACE).uid("secret-uid"))
+                .data(Map.of("principal", principal.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private void putVolume(String name, String driver) {
+        api.put("/api/v1/persistentvolumes/" + name, new V1PersistentVolume()
+                .metadata(new V1ObjectMeta().name(name))
+                .spec(new V1PersistentVolumeSpec().csi(new V1CSIPersistentVolumeSource()
+                        .driver(driver)
+                        .volumeHandle(name)
+                        .volumeAttributes(Map.of(
+                                "secretName", SECRET,
+                                "secretNamespace", NAMESPACE,
+                                "location", CLUSTER + "/volumes/" + name)))));
+    }
+
+    private DelegationTokens storedTokens() throws IOException {
+        V1Secret secret = api.get(TOKENS_PATH, V1Secret.class);
+        assertNotNull(secret);
+        return DelegationTokens.fromSecretData(secret.getData());
+    }
+
+    @Test
+    public void testTokensAreIssuedIntoAManagedSecret() throws IOException {
+        String sourceVersion = api.<V1Secret>get(SECRET_PATH, V1Secret.class).getMetadata().getResourceVersion();
+
+        issuer.refreshAll();
+
+        assertEquals(1L, issuer.snapshot().get("leader"));
+        assertEquals(1L, issuer.snapshot().get("managedSecrets"));
+        assertEquals(1L, issuer.snapshot().get("issued"));
+        assertEquals(0L, issuer.snapshot().get("failures"));
+        V1Secret secret = api.get(TOKENS_PATH, V1Secret.class);
+        assertEquals("secret-uid", secret.getMetadata().getOwnerReferences().get(0).getUid());
+        DelegationTokens tokens = storedTokens();
+        assertEquals(sourceVersion, tokens.sourceVersion());
+        assertEquals(expiration, tokens.expiration());
+        assertTrue(tokens.isUsableFor(CLUSTER, System.currentTimeMillis()));
+    }
+
+    @Test
+    public void testTokensAreIssuedAgainOnlyWhenTheSecretChanges() throws IOException {
+        issuer.refreshAll();
+        issuer.refreshAll();
+
+        assertEquals(1L, issuer.snapshot().get("issued"));
+        assertEquals(0, api.requests("PUT", TOKENS_PATH));
+
+        String sourceVersion = putSecret("hdfs/rotated@EXAMPLE.COM");
+        issuer.refreshAll();
+
+        assertEquals(2L, issuer.snapshot().get("issued"));
+        assertEquals(1, api.requests("PUT", TOKENS_PATH));
+        assertEquals(sourceVersion, storedTokens().sourceVersion());
+    }
+
+    @Test
+    public void testOnlyTheLeaseHolderIssuesTokens() throws IOException {
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        api.put(LEASE_PATH, new V1Lease()
+                .metadata(new V1ObjectMeta().name("hdfs-csi-token-issuer").namespace(NAMESPACE))
+                .spec(new V1LeaseSpec().holderIdentity("pod-b").leaseDurationSeconds(180).renewTime(now)));
+
+        issuer.refreshAll();
+
+        assertEquals(0L, issuer.snapshot().get("leader"));
+        assertNull(api.get(TOKENS_PATH, V1Secret.class));
+        verify(connection, never()).doAs(any());
+    }
+}
@@ -33,10 +33,12 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
-import org.mockito.MockedStatic;
 import org.mockito.MockitoAnnotations;
+import varga.vorath.hdfs.HdfsClientPool;
 import varga.vorath.hdfs.HdfsConnection;
+import varga.vorath.hdfs.HdfsConnectionRegistry;
 import varga.vorath.hdfs.HdfsVolumeService;
+import varga.vorath.hdfs.MockHdfsConnections;
 import varga.vorath.kubernetes.KubernetesVolumeService;
 
 import java.io.IOException;
@@ -58,6 +60,9 @@ public class DeleteVolumeRequestHandlerTest {
     @Mock
     private KubernetesVolumeService kubernetesVolumeService;
 
+    @Mock
+    private HdfsConnectionRegistry connectionRegistry;
+
     @Mock
     private StreamObserver<Csi.DeleteVolumeResponse> responseObserver;
 
@@ -82,8 +87,8 @@ public class DeleteVolumeRequestHandlerTest {
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
-        hdfsVolumeService = new HdfsVolumeService();
-        handler = new DeleteVolumeRequestHandler(hdfsVolumeService, kubernetesVolumeService);
+        hdfsVolumeService = new HdfsVolumeService(new HdfsClientPool(60));
+        handler = new DeleteVolumeRequestHandler(hdfsVolumeService, kubernetesVolumeService, connectionRegistry);
     }
 
     @Test
@@ -114,20 +119,15 @@ public class DeleteVolumeRequestHandlerTest {
 
         when(kubernetesVolumeService.getPersistentVolumeById(volumeId)).thenReturn(Optional.of(pv));
 
-        try (MockedStatic<HdfsConnection> mockedHdfsConnection = mockStatic(HdfsConnection.class)) {
-            HdfsConnection mockConn = mock(HdfsConnection.class);
-            mockedHdfsConnection.when(() -> HdfsConnection.createHdfsConnection(eq(secretName), eq(secretNamespace), any()))
-                    .thenReturn(mockConn);
-            
-            when(mockConn.getConfiguration()).thenReturn(cluster.getFileSystem().getConf());
+        HdfsConnection mockConn = MockHdfsConnections.mockConnection(cluster.getFileSystem().getConf());
+        when(connectionRegistry.getConnection(eq(secretName), eq(secretNamespace), any())).thenReturn(mockConn);
 
-            handler.handleDeleteVolume(request, responseObserver);
+        handler.handleDeleteVolume(request, responseObserver);
 
-            verify(responseObserver).onNext(any(Csi.DeleteVolumeResponse.class));
-            verify(responseObserver).onCompleted();
-            
-            assertEquals(false, cluster.getFileSystem().exists(new org.apache.hadoop.fs.Path(hdfsPath)));
-        }
+        verify(responseObserver).onNext(any(Csi.DeleteVolumeResponse.class));
+        verify(responseObserver).onCompleted();
+
+        assertEquals(false, cluster.getFileSystem().exists(new org.apache.hadoop.fs.Path(hdfsPath)));
     }
 
     @Test
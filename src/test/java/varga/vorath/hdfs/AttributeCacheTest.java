@@ -0,0 +1,126 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AttributeCacheTest {
+
+    private HdfsMountMetrics metrics;
+    private AttributeCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        metrics = new HdfsMountMetrics();
+        cache = new AttributeCache(Duration.ofMinutes(1), 100, metrics);
+    }
+
+    @Test
+    public void testPositiveAndNegativeEntries() {
+        FileStatus status = new FileStatus(10, false, 3, 128, 1000L, new Path("/vol/dir/a"));
+        cache.put("/dir/a", status, 0);
+        cache.putMissing("/dir/b", 0);
+
+        assertSame(status, cache.get("/dir/a").fileStatus());
+        assertFalse(cache.get("/dir/b").exists());
+        assertNull(cache.get("/dir/c"));
+
+        assertEquals(1L, metrics.getAttrCacheHits().sum());
+        assertEquals(1L, metrics.getAttrCacheNegativeHits().sum());
+        assertEquals(1L, metrics.getAttrCacheMisses().sum());
+        assertEquals(66L, metrics.snapshot().get("attrCacheHitRatioPercent"));
+    }
+
+    @Test
+    public void testInvalidateAlsoDropsParentDirectory() {
+        FileStatus dir = new FileStatus(0, true, 0, 0, 1000L, new Path("/vol/dir"));
+        cache.put("/dir", dir, 0);
+        cache.putMissing("/dir/a", 0);
+
+        cache.invalidate("/dir/a");
+
+        assertNull(cache.get("/dir/a"));
+        assertNull(cache.get("/dir"));
+    }
+
+    @Test
+    public void testLookupStartedBeforeAnInvalidationIsNotCached() {
+        FileStatus stale = new FileStatus(10, false, 3, 128, 1000L, new Path("/vol/dir/a"));
+        long fileGeneration = cache.generation("/dir/a");
+        long dirGeneration = cache.generation("/dir");
+
+        // The file is written through the mount while the lookups are waiting for the NameNode
+        cache.invalidate("/dir/a");
+        cache.put("/dir/a", stale, fileGeneration);
+        cache.putListed("/dir", "/dir/a", stale, dirGeneration);
+        cache.putListing("/dir", List.of(stale), dirGeneration);
+
+        assertNull(cache.get("/dir/a"));
+        assertNull(cache.getListing("/dir"));
+
+        FileStatus current = new FileStatus(20, false, 3, 128, 2000L, new Path("/vol/dir/a"));
+        cache.put("/dir/a", current, cache.generation("/dir/a"));
+        assertSame(current, cache.get("/dir/a").fileStatus());
+    }
+
+    @Test
+    public void testInvalidationDoesNotDropLookupsOfOtherPaths() {
+        FileStatus other = new FileStatus(10, false, 3, 128, 1000L, new Path("/vol/other/b"));
+        long generation = cache.generation("/other/b");
+
+        cache.invalidate("/dir/a");
+        cache.put("/other/b", other, generation);
+        assertSame(other, cache.get("/other/b").fileStatus());
+
+        // Unlike a rename, which may move any path
+        long renamedGeneration = cache.generation("/other/c");
+        cache.rename("/dir/a", "/dir/d");
+        cache.putMissing("/other/c", renamedGeneration);
+        assertNull(cache.get("/other/c"));
+    }
+
+    @Test
+    public void testRenameMovesEntriesUnderTheRenamedDirectory() {
+        FileStatus dir = new FileStatus(0, true, 0, 0, 1000L, new Path("/vol/a"));
+        FileStatus file = new FileStatus(10, false, 3, 128, 1000L, new Path("/vol/a/f"));
+        cache.put("/a", dir, 0);
+        cache.put("/a/f", file, 0);
+        cache.putListing("/a", List.of(file), 0);
+        cache.put("/b", new FileStatus(5, false, 3, 128, 1000L, new Path("/vol/b")), 0);
+
+        cache.rename("/a", "/b");
+
+        assertSame(dir, cache.get("/b").fileStatus());
+        assertSame(file, cache.get("/b/f").fileStatus());
+        assertEquals(1, cache.getListing("/b").size());
+        assertFalse(cache.get("/a").exists());
+        assertNull(cache.get("/a/f"));
+        assertNull(cache.getListing("/"));
+    }
+}
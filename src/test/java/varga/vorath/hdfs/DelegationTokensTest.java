@@ -0,0 +1,80 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.security.Credentials;
+import org.apache.hadoop.security.token.Token;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DelegationTokensTest {
+
+    private static final String CLUSTER = "hdfs://cluster1:8020";
+
+    private static Credentials credentials(String clusterUri) {
+        Credentials credentials = new Credentials();
+        credentials.addToken(DelegationTokens.alias(clusterUri), new Token<>("identifier".getBytes(StandardCharsets.UTF_8),
+                "password".getBytes(StandardCharsets.UTF_8), new Text("HDFS_DELEGATION_TOKEN"), new Text("ha-hdfs:cluster1")));
+        return credentials;
+    }
+
+    @Test
+    public void testSecretDataRoundTrip() throws IOException {
+        DelegationTokens tokens = new DelegationTokens(credentials(CLUSTER), 1000L, 2000L, "42");
+
+        DelegationTokens decoded = DelegationTokens.fromSecretData(tokens.toSecretData());
+
+        assertEquals(1000L, decoded.expiration());
+        assertEquals(2000L, decoded.maxDate());
+        assertEquals("42", decoded.sourceVersion());
+        Token<?> token = decoded.credentials().getToken(DelegationTokens.alias(CLUSTER));
+        assertNotNull(token);
+        assertEquals(new Text("ha-hdfs:cluster1"), token.getService());
+        assertArrayEquals("password".getBytes(StandardCharsets.UTF_8), token.getPassword());
+    }
+
+    @Test
+    public void testTokensAreUsableOnlyForTheirClustersUntilTheyExpire() {
+        DelegationTokens tokens = new DelegationTokens(credentials(CLUSTER), 1000L, 2000L, "42");
+
+        assertTrue(tokens.isUsableFor(CLUSTER, 999L));
+        assertFalse(tokens.isUsableFor(CLUSTER, 1000L));
+        assertFalse(tokens.isUsableFor("hdfs://cluster2:8020", 999L));
+        assertTrue(tokens.covers(Arrays.asList(CLUSTER)));
+        assertFalse(tokens.covers(Arrays.asList(CLUSTER, null)));
+    }
+
+    @Test
+    public void testIncompleteSecretIsRejected() throws IOException {
+        Map<String, byte[]> secretData = new HashMap<>(new DelegationTokens(credentials(null), 1000L, 2000L, "42").toSecretData());
+        secretData.remove("expiration");
+
+        assertThrows(IOException.class, () -> DelegationTokens.fromSecretData(secretData));
+    }
+}
@@ -0,0 +1,116 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class DirectoryHandleTest {
+
+    private final Path dir = new Path("/vol/dir");
+    private List<FileStatus> entries;
+    private FileSystem fileSystem;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        entries = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            entries.add(new FileStatus(i, false, 1, 128, 1000L, new Path(dir, "f" + i)));
+        }
+        fileSystem = mock(FileSystem.class);
+        when(fileSystem.listStatusIterator(any(Path.class))).thenAnswer(invocation -> iterator(entries));
+    }
+
+    private static RemoteIterator<FileStatus> iterator(List<FileStatus> statuses) {
+        Iterator<FileStatus> iterator = statuses.iterator();
+        return new RemoteIterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public FileStatus next() {
+                return iterator.next();
+            }
+        };
+    }
+
+    /**
+     * Reads up to {@code count} entries from {@code index}, as one readdir call with a small FUSE buffer would.
+     */
+    private List<String> page(DirectoryHandle handle, long index, int count) throws IOException {
+        List<String> names = new ArrayList<>();
+        handle.seek(index, fileSystem);
+        FileStatus entry;
+        while (names.size() < count && (entry = handle.peek()) != null) {
+            names.add(entry.getPath().getName());
+            handle.advance();
+        }
+        return names;
+    }
+
+    @Test
+    public void testListingResumesWhereThePreviousCallStopped() throws IOException {
+        DirectoryHandle handle = new DirectoryHandle("/dir", dir, null, 0);
+
+        assertEquals(List.of("f0", "f1"), page(handle, 0, 2));
+        assertEquals(List.of("f2", "f3"), page(handle, 2, 2));
+        assertEquals(List.of("f4"), page(handle, 4, 2));
+        assertEquals(List.of(), page(handle, 5, 2));
+
+        verify(fileSystem, times(1)).listStatusIterator(dir);
+        assertEquals(entries, handle.getCompleteListing());
+    }
+
+    @Test
+    public void testSeekingBackwardsRestartsTheListing() throws IOException {
+        DirectoryHandle handle = new DirectoryHandle("/dir", dir, null, 0);
+
+        page(handle, 0, 3);
+        assertEquals(List.of("f1", "f2"), page(handle, 1, 2));
+
+        verify(fileSystem, times(2)).listStatusIterator(dir);
+        assertNull(handle.getCompleteListing());
+    }
+
+    @Test
+    public void testCachedListingIsServedWithoutHdfs() throws IOException {
+        DirectoryHandle handle = new DirectoryHandle("/dir", dir, List.copyOf(entries), 0);
+
+        assertEquals(List.of("f3", "f4"), page(handle, 3, 5));
+
+        verify(fileSystem, never()).listStatusIterator(any(Path.class));
+    }
+}
@@ -0,0 +1,117 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GroupCommitTest {
+
+    @Test
+    public void testConcurrentRequestsShareRuns() throws Exception {
+        GroupCommit groupCommit = new GroupCommit();
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch firstRunStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstRun = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(9);
+        try {
+            Future<Boolean> first = executor.submit(() -> groupCommit.execute(0, () -> {
+                runs.incrementAndGet();
+                firstRunStarted.countDown();
+                await(releaseFirstRun);
+            }));
+            assertTrue(firstRunStarted.await(5, TimeUnit.SECONDS));
+
+            // Requests made while the first run is in progress are served together by a second run
+            List<Future<Boolean>> others = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                others.add(executor.submit(() -> groupCommit.execute(0, runs::incrementAndGet)));
+            }
+            Thread.sleep(100);
+            releaseFirstRun.countDown();
+
+            assertFalse(first.get(5, TimeUnit.SECONDS));
+            int coalesced = 0;
+            for (Future<Boolean> other : others) {
+                if (other.get(5, TimeUnit.SECONDS)) {
+                    coalesced++;
+                }
+            }
+            assertEquals(2, runs.get());
+            assertEquals(7, coalesced);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailureIsReportedToEveryRequestOfTheRun() throws Exception {
+        GroupCommit groupCommit = new GroupCommit();
+        CountDownLatch runStarted = new CountDownLatch(1);
+        CountDownLatch releaseRun = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> leader = executor.submit(() -> groupCommit.execute(TimeUnit.MILLISECONDS.toNanos(200), () -> {
+                runStarted.countDown();
+                await(releaseRun);
+                throw new IOException("hsync failed");
+            }));
+            // Joins the first run during its group commit window, once the leader has opened it
+            Thread.sleep(50);
+            Future<Boolean> follower = executor.submit(() -> groupCommit.execute(0, () -> fail("Should join the first run")));
+            Thread.sleep(50);
+            releaseRun.countDown();
+
+            Exception leaderError = assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+            Exception followerError = assertThrows(Exception.class, () -> follower.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IOException.class, leaderError.getCause());
+            assertInstanceOf(IOException.class, followerError.getCause());
+            assertTrue(runStarted.await(0, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // The next request runs the operation again
+        assertFalse(groupCommit.execute(0, () -> {
+        }));
+    }
+
+    private static void await(CountDownLatch latch) throws IOException {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+}
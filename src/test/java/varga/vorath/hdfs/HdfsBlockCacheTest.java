@@ -0,0 +1,109 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HdfsBlockCacheTest {
+
+    private byte[] file;
+    private AtomicInteger loads;
+    private HdfsMountMetrics metrics;
+
+    @BeforeEach
+    public void setUp() {
+        file = new byte[3 * 1024 * 1024 + 100];
+        new Random(7).nextBytes(file);
+        loads = new AtomicInteger();
+        metrics = new HdfsMountMetrics();
+    }
+
+    private int load(long position, ByteBuffer destination) {
+        loads.incrementAndGet();
+        if (position >= file.length) {
+            return -1;
+        }
+        int n = (int) Math.min(destination.remaining(), file.length - position);
+        destination.put(file, (int) position, n);
+        return n;
+    }
+
+    @Test
+    public void testReadsAreServedFromCachedChunks() throws Exception {
+        HdfsBlockCache cache = new HdfsBlockCache(16, 1024);
+        HdfsBlockCache.CachedFile cachedFile = new HdfsBlockCache.CachedFile("hdfs://nn:8020", "/vol/f", 1L, file.length);
+
+        byte[] first = new byte[2 * 1024 * 1024];
+        assertEquals(first.length, cache.read(cachedFile, 512 * 1024, ByteBuffer.wrap(first), this::load, metrics));
+        assertArrayEquals(Arrays.copyOfRange(file, 512 * 1024, 512 * 1024 + first.length), first);
+        int loadsAfterFirstRead = loads.get();
+
+        byte[] second = new byte[1024];
+        assertEquals(second.length, cache.read(cachedFile, 1024 * 1024 + 10, ByteBuffer.wrap(second), this::load, metrics));
+        assertArrayEquals(Arrays.copyOfRange(file, 1024 * 1024 + 10, 1024 * 1024 + 10 + second.length), second);
+
+        assertEquals(loadsAfterFirstRead, loads.get());
+        assertEquals(3L, metrics.getBlockCacheMisses().sum());
+        assertEquals(1L, metrics.getBlockCacheHits().sum());
+    }
+
+    @Test
+    public void testReadStopsAtEndOfFile() throws Exception {
+        HdfsBlockCache cache = new HdfsBlockCache(16, 1024);
+        HdfsBlockCache.CachedFile cachedFile = new HdfsBlockCache.CachedFile("hdfs://nn:8020", "/vol/f", 1L, file.length);
+
+        ByteBuffer bytes = ByteBuffer.allocateDirect(1024);
+        assertEquals(100, cache.read(cachedFile, 3 * 1024 * 1024, bytes, this::load, metrics));
+        assertEquals(100, bytes.position());
+        bytes.clear();
+        assertEquals(0, cache.read(cachedFile, file.length, bytes, this::load, metrics));
+    }
+
+    @Test
+    public void testModifiedFileIsNotServedFromCache() throws Exception {
+        HdfsBlockCache cache = new HdfsBlockCache(16, 1024);
+        cache.read(new HdfsBlockCache.CachedFile("hdfs://nn:8020", "/vol/f", 1L, file.length), 0, ByteBuffer.allocate(1024), this::load, metrics);
+        cache.read(new HdfsBlockCache.CachedFile("hdfs://nn:8020", "/vol/f", 2L, file.length), 0, ByteBuffer.allocate(1024), this::load, metrics);
+
+        assertEquals(2L, metrics.getBlockCacheMisses().sum());
+        assertEquals(0L, metrics.getBlockCacheHits().sum());
+    }
+
+    @Test
+    public void testCacheIsBoundedBySize() throws Exception {
+        HdfsBlockCache cache = new HdfsBlockCache(1, 256);
+        HdfsBlockCache.CachedFile cachedFile = new HdfsBlockCache.CachedFile("hdfs://nn:8020", "/vol/f", 1L, file.length);
+
+        byte[] bytes = new byte[file.length];
+        cache.read(cachedFile, 0, ByteBuffer.wrap(bytes), this::load, metrics);
+
+        assertArrayEquals(file, bytes);
+        assertEquals(1024L * 1024, cache.snapshot().get("maxSizeBytes"));
+    }
+}
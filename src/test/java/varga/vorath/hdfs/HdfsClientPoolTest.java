@@ -0,0 +1,104 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HdfsClientPoolTest {
+
+    private Configuration configuration;
+    private HdfsConnection connection;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        configuration = new Configuration(false);
+        configuration.set("fs.defaultFS", "file:///");
+        connection = MockHdfsConnections.mockConnection(configuration);
+    }
+
+    @Test
+    public void testClientIsSharedByReferencesWithTheSameSettings() throws IOException {
+        HdfsClientPool pool = new HdfsClientPool(60);
+
+        try (HdfsClientPool.Client first = pool.acquire(connection, configuration);
+             HdfsClientPool.Client second = pool.acquire(connection, configuration)) {
+            assertSame(first.getFileSystem(), second.getFileSystem());
+            assertEquals(1L, pool.snapshot().get("clients"));
+            assertEquals(2L, pool.snapshot().get("references"));
+            assertEquals(1L, pool.snapshot().get("reuses"));
+        }
+        assertEquals(1L, pool.snapshot().get("idleClients"));
+        assertEquals(0L, pool.snapshot().get("references"));
+    }
+
+    @Test
+    public void testClientsWithOtherSettingsAreNotShared() throws IOException {
+        HdfsClientPool pool = new HdfsClientPool(60);
+        Configuration tuned = new Configuration(configuration);
+        tuned.setInt("io.file.buffer.size", 131072);
+
+        try (HdfsClientPool.Client first = pool.acquire(connection, configuration);
+             HdfsClientPool.Client second = pool.acquire(connection, tuned)) {
+            assertNotSame(first.getFileSystem(), second.getFileSystem());
+            assertEquals(2L, pool.snapshot().get("clients"));
+        }
+    }
+
+    @Test
+    public void testClientsOfOtherConnectionsAreNotShared() throws IOException {
+        HdfsClientPool pool = new HdfsClientPool(60);
+        // Same cluster and user, e.g. the connection replacing this one after its Secret was rotated
+        HdfsConnection rotated = MockHdfsConnections.mockConnection(configuration);
+
+        try (HdfsClientPool.Client first = pool.acquire(connection, configuration);
+             HdfsClientPool.Client second = pool.acquire(rotated, configuration)) {
+            assertNotSame(first.getFileSystem(), second.getFileSystem());
+            assertEquals(2L, pool.snapshot().get("clients"));
+            assertEquals(0L, pool.snapshot().get("reuses"));
+        }
+    }
+
+    @Test
+    public void testClientIsClosedAfterLastRelease() throws IOException {
+        HdfsClientPool pool = new HdfsClientPool(0);
+
+        HdfsClientPool.Client first = pool.acquire(connection, configuration);
+        HdfsClientPool.Client second = pool.acquire(connection, configuration);
+        first.close();
+        first.close();
+        assertEquals(1L, pool.snapshot().get("clients"));
+
+        second.close();
+        assertEquals(0L, pool.snapshot().get("clients"));
+        assertEquals(1L, pool.snapshot().get("closed"));
+
+        try (HdfsClientPool.Client third = pool.acquire(connection, configuration)) {
+            assertNotSame(second.getFileSystem(), third.getFileSystem());
+            assertEquals(2L, pool.snapshot().get("created"));
+        }
+    }
+}
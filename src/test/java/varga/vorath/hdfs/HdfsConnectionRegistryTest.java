@@ -0,0 +1,237 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import io.kubernetes.client.openapi.ApiException;
+import io.kubernetes.client.openapi.models.V1ObjectMeta;
+import io.kubernetes.client.openapi.models.V1Secret;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.security.Credentials;
+import org.apache.hadoop.security.token.Token;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import varga.vorath.kubernetes.FakeKubernetesApi;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class HdfsConnectionRegistryTest {
+
+    private static final String NAMESPACE = "default";
+    private static final String SECRET = "hdfs-secret";
+    private static final String SECRET_PATH = "/api/v1/namespaces/" + NAMESPACE + "/secrets/" + SECRET;
+    private static final String TOKENS_PATH = "/api/v1/namespaces/" + NAMESPACE + "/secrets/"
+            + DelegationTokens.secretName(SECRET);
+    private static final String CLUSTER = "hdfs://cluster1:8020";
+
+    static {
+        // Token connections enable Kerberos in their configuration, which needs a default realm
+        System.setProperty("java.security.krb5.realm", "EXAMPLE.COM");
+        System.setProperty("java.security.krb5.kdc", "localhost");
+    }
+
+    private FakeKubernetesApi api;
+    private AtomicInteger logins;
+    private volatile IOException loginFailure;
+    private HdfsConnectionRegistry registry;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        api = new FakeKubernetesApi();
+        logins = new AtomicInteger();
+        registry = newRegistry(false);
+    }
+
+    private HdfsConnectionRegistry newRegistry(boolean tokensEnabled) {
+        return new HdfsConnectionRegistry(api.apiClient(), (secretData, clusterUri) -> {
+            logins.incrementAndGet();
+            if (loginFailure != null) {
+                throw loginFailure;
+            }
+            try {
+                Thread.sleep(100); // A Kerberos login
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return mock(HdfsConnection.class);
+        }, tokensEnabled);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        api.close();
+    }
+
+    private String putSecret(String principal) {
+        return api.put(SECRET_PATH, new V1Secret()
+                .metadata(new V1ObjectMeta().name(SECRET).namespace(NAMESPACE))
+                .data(Map.of("principal", principal.getBytes(StandardCharsets.UTF_8),
+                        "core-site.xml", "<configuration/>".getBytes(StandardCharsets.UTF_8),
+                        "hdfs-site.xml", "<configuration/>".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private void putTokens(String password, String sourceVersion) throws IOException {
+        Credentials credentials = new Credentials();
+        credentials.addToken(DelegationTokens.alias(CLUSTER), new Token<>("identifier".getBytes(StandardCharsets.UTF_8),
+                password.getBytes(StandardCharsets.UTF_8), new Text("HDFS_DELEGATION_TOKEN"), new Text("ha-hdfs:cluster1")));
+        long expiration = System.currentTimeMillis() + 3_600_000;
+        api.put(TOKENS_PATH, new V1Secret()
+                .metadata(new V1ObjectMeta().name(DelegationTokens.secretName(SECRET)).namespace(NAMESPACE))
+                .data(new HashMap<>(new DelegationTokens(credentials, expiration, expiration, sourceVersion).toSecretData())));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testConcurrentRequestsShareOneReadAndOneLogin() throws Exception {
+        putSecret("hdfs/node@EXAMPLE.COM");
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<HdfsConnection>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < 64; i++) {
+                futures.add(executor.submit(() -> registry.getConnection(SECRET, NAMESPACE, CLUSTER)));
+            }
+            HdfsConnection connection = futures.get(0).get();
+            for (Future<HdfsConnection> future : futures) {
+                assertSame(connection, future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, api.requests("GET", SECRET_PATH));
+        assertEquals(1, logins.get());
+        assertEquals(1L, registry.snapshot().get("secretReads"));
+        assertEquals(1L, registry.snapshot().get("connections"));
+    }
+
+    @Test
+    public void testFailedLoadsAreNotCached() throws Exception {
+        assertThrows(ApiException.class, () -> registry.getConnection(SECRET, NAMESPACE, CLUSTER));
+        putSecret("hdfs/node@EXAMPLE.COM");
+        loginFailure = new IOException("KDC unreachable");
+        assertThrows(IOException.class, () -> registry.getConnection(SECRET, NAMESPACE, CLUSTER));
+        loginFailure = null;
+
+        assertNotNull(registry.getConnection(SECRET, NAMESPACE, CLUSTER));
+
+        assertEquals(2, api.requests("GET", SECRET_PATH));
+        assertEquals(2, logins.get());
+    }
+
+    @Test
+    public void testModifiedSecretEvictsItsConnections() throws Exception {
+        putSecret("hdfs/node@EXAMPLE.COM");
+        HdfsConnection connection = registry.getConnection(SECRET, NAMESPACE, CLUSTER);
+        assertTrue(api.awaitWatches(SECRET_PATH, 1, 10_000));
+
+        putSecret("hdfs/rotated@EXAMPLE.COM");
+        await(() -> registry.snapshot().get("evictions") == 1L);
+
+        HdfsConnection rebuilt = registry.getConnection(SECRET, NAMESPACE, CLUSTER);
+        assertNotSame(connection, rebuilt);
+        assertSame(rebuilt, registry.getConnection(SECRET, NAMESPACE, CLUSTER));
+        assertEquals(2, api.requests("GET", SECRET_PATH));
+        assertEquals(2, logins.get());
+    }
+
+    @Test
+    public void testDeletedSecretEvictsItsConnections() throws Exception {
+        putSecret("hdfs/node@EXAMPLE.COM");
+        registry.getConnection(SECRET, NAMESPACE, CLUSTER);
+        assertTrue(api.awaitWatches(SECRET_PATH, 1, 10_000));
+
+        api.delete(SECRET_PATH);
+        await(() -> registry.snapshot().get("evictions") == 1L);
+
+        assertEquals(0L, registry.snapshot().get("connections"));
+        assertThrows(ApiException.class, () -> registry.getConnection(SECRET, NAMESPACE, CLUSTER));
+    }
+
+    @Test
+    public void testWatchErrorForcesTheSecretToBeReadAgain() throws Exception {
+        putSecret("hdfs/node@EXAMPLE.COM");
+        HdfsConnection connection = registry.getConnection(SECRET, NAMESPACE, CLUSTER);
+        assertTrue(api.awaitWatches(SECRET_PATH, 1, 10_000));
+
+        api.sendWatchError(SECRET_PATH, 410, "too old resource version");
+        await(() -> registry.snapshot().get("watchedSecrets") == 0L);
+
+        // The Secret did not change: its connection is still valid
+        assertSame(connection, registry.getConnection(SECRET, NAMESPACE, CLUSTER));
+        assertEquals(2, api.requests("GET", SECRET_PATH));
+        assertEquals(1, logins.get());
+        assertTrue(api.awaitWatches(SECRET_PATH, 2, 10_000));
+    }
+
+    @Test
+    public void testMissingTokensSecretIsNotReadOnEveryRequest() throws Exception {
+        HdfsConnectionRegistry tokenRegistry = newRegistry(true);
+        putSecret("hdfs/node@EXAMPLE.COM");
+
+        HdfsConnection connection = tokenRegistry.getConnection(SECRET, NAMESPACE, CLUSTER);
+        assertSame(connection, tokenRegistry.getConnection(SECRET, NAMESPACE, CLUSTER));
+        assertSame(connection, tokenRegistry.getConnection(SECRET, NAMESPACE, CLUSTER));
+
+        assertEquals(1, api.requests("GET", TOKENS_PATH));
+        assertEquals(3L, tokenRegistry.snapshot().get("tokenFallbacks"));
+        assertEquals(1, logins.get());
+    }
+
+    @Test
+    public void testTokensIssuedAgainArePushedToLiveConnections() throws Exception {
+        HdfsConnectionRegistry tokenRegistry = newRegistry(true);
+        String sourceVersion = putSecret("hdfs/node@EXAMPLE.COM");
+        putTokens("first", sourceVersion);
+
+        HdfsConnection connection = tokenRegistry.getConnection(SECRET, NAMESPACE, CLUSTER);
+        assertTrue(connection.isTokenAuthenticated());
+        assertEquals(0, logins.get());
+        assertTrue(api.awaitWatches(TOKENS_PATH, 1, 10_000));
+
+        putTokens("second", sourceVersion);
+        await(() -> tokenRegistry.snapshot().get("tokenUpdates") == 1L);
+
+        Token<?> token = connection.getUserGroupInformation().getCredentials().getToken(DelegationTokens.alias(CLUSTER));
+        assertArrayEquals("second".getBytes(StandardCharsets.UTF_8), token.getPassword());
+        assertSame(connection, tokenRegistry.getConnection(SECRET, NAMESPACE, CLUSTER));
+    }
+}
@@ -0,0 +1,188 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HdfsMountOptionsTest {
+
+    @Test
+    public void testDefaultsWhenContextHasNoOptions() {
+        HdfsMountOptions options = HdfsMountOptions.fromVolumeContext(Map.of("location", "hdfs://nn:8020/vol"));
+
+        assertFalse(options.isHedgedReadEnabled());
+        assertFalse(options.requiresDedicatedClient());
+        assertNull(options.configure(new Configuration(false)).get("dfs.client.hedged.read.threadpool.size"));
+        assertEquals(64L * 1024 * 1024, options.getUploadMaxInFlightBytes());
+        assertEquals(HdfsMountOptions.FsyncMode.HFLUSH, options.getFsyncMode());
+        assertEquals(0L, options.getFsyncGroupCommitMillis());
+        assertEquals(HdfsMountOptions.WriteMode.STREAM, options.getWriteMode());
+    }
+
+    @Test
+    public void testPartsWriteMode() {
+        HdfsMountOptions options = HdfsMountOptions.fromVolumeContext(Map.of(
+                HdfsMountOptions.WRITE_MODE, "parts",
+                HdfsMountOptions.UPLOAD_PART_MB, "256"));
+
+        assertEquals(HdfsMountOptions.WriteMode.PARTS, options.getWriteMode());
+        assertEquals(256L * 1024 * 1024, options.getUploadPartBytes());
+    }
+
+    @Test
+    public void testFsyncModeIsCaseInsensitive() {
+        HdfsMountOptions options = HdfsMountOptions.fromVolumeContext(Map.of(
+                HdfsMountOptions.FSYNC_MODE, "HSync",
+                HdfsMountOptions.FSYNC_GROUP_COMMIT_MILLIS, "2"));
+
+        assertEquals(HdfsMountOptions.FsyncMode.HSYNC, options.getFsyncMode());
+        assertEquals(2L, options.getFsyncGroupCommitMillis());
+    }
+
+    @Test
+    public void testHedgedReadsAreConfigured() {
+        Configuration base = new Configuration(false);
+        HdfsMountOptions options = HdfsMountOptions.fromVolumeContext(Map.of(
+                HdfsMountOptions.HEDGED_READ_THREAD_POOL_SIZE, "8",
+                HdfsMountOptions.HEDGED_READ_THRESHOLD_MILLIS, "25"));
+
+        Configuration configuration = options.configure(base);
+
+        assertTrue(options.requiresDedicatedClient());
+        assertEquals(8, configuration.getInt("dfs.client.hedged.read.threadpool.size", 0));
+        assertEquals(25L, configuration.getLong("dfs.client.hedged.read.threshold.millis", 0));
+        assertNull(base.get("dfs.client.hedged.read.threadpool.size"));
+    }
+
+    @Test
+    public void testShortCircuitReadsAreConfigured() {
+        HdfsMountOptions options = HdfsMountOptions.fromVolumeContext(Map.of(
+                HdfsMountOptions.SHORT_CIRCUIT_READ, "true",
+                HdfsMountOptions.DOMAIN_SOCKET_PATH, "/run/hdfs/dn_socket"));
+
+        Configuration configuration = options.configure(new Configuration(false));
+
+        assertTrue(options.requiresDedicatedClient());
+        assertTrue(configuration.getBoolean("dfs.client.read.shortcircuit", false));
+        assertEquals("/run/hdfs/dn_socket", configuration.get("dfs.domain.socket.path"));
+    }
+
+    @Test
+    public void testClientSettingsAreConfigured() {
+        Configuration base = new Configuration(false);
+        base.set("dfs.client.socketcache.capacity", "16");
+        HdfsMountOptions options = HdfsMountOptions.fromVolumeContext(Map.of(
+                HdfsMountOptions.IO_BUFFER_SIZE_KB, "128",
+                HdfsMountOptions.SOCKET_TIMEOUT_MILLIS, "30000",
+                HdfsMountOptions.WRITE_PACKET_KB, "1024",
+                HdfsMountOptions.VERIFY_CHECKSUM, "false"));
+
+        Configuration configuration = options.configure(base);
+
+        assertTrue(options.requiresDedicatedClient());
+        assertFalse(options.isVerifyChecksum());
+        assertEquals(128 * 1024, configuration.getInt("io.file.buffer.size", 0));
+        assertEquals(30000, configuration.getInt("dfs.client.socket-timeout", 0));
+        assertEquals(1024 * 1024, configuration.getInt("dfs.client-write-packet-size", 0));
+        assertTrue(configuration.getBoolean(HdfsMountOptions.SKIP_CHECKSUM_KEY, false));
+        assertNull(base.get("io.file.buffer.size"));
+
+        Map<String, String> effective = options.effectiveClientSettings(configuration);
+        assertEquals("131072", effective.get("io.file.buffer.size"));
+        assertEquals("16", effective.get("dfs.client.socketcache.capacity"));
+        assertEquals("false", effective.get(HdfsMountOptions.VERIFY_CHECKSUM));
+        assertFalse(effective.containsKey("dfs.client.cache.readahead"));
+    }
+
+    @Test
+    public void testAttributeCacheIsReadFromMountFlags() {
+        HdfsMountOptions options = HdfsMountOptions.from(Map.of(),
+                List.of("-o allow_other", "--file-cache-timeout-in-seconds=120", "--use-attr-cache=true"));
+
+        assertTrue(options.isAttrCacheEnabled());
+        assertEquals(Duration.ofSeconds(120), options.getFileCacheTimeout());
+        assertFalse(HdfsMountOptions.DEFAULTS.isAttrCacheEnabled());
+    }
+
+    @Test
+    public void testFuseArguments() {
+        HdfsMountOptions options = HdfsMountOptions.from(
+                Map.of(HdfsMountOptions.FUSE_MAX_BACKGROUND, "64", HdfsMountOptions.FUSE_CONGESTION_THRESHOLD, "48"),
+                List.of("-o allow_other", "-o", "ro", "--use-attr-cache=true"));
+
+        assertArrayEquals(new String[]{"-o", "allow_other", "-o", "ro", "-o", "max_background=64", "-o", "congestion_threshold=48"},
+                options.fuseArguments());
+        assertFalse(options.isFuseDebug());
+        assertArrayEquals(new String[]{"-s"},
+                HdfsMountOptions.fromVolumeContext(Map.of(HdfsMountOptions.FUSE_WORKER_THREADS, "1")).fuseArguments());
+        assertArrayEquals(new String[0], HdfsMountOptions.DEFAULTS.fuseArguments());
+    }
+
+    @Test
+    public void testLargeRequestSizes() {
+        HdfsMountOptions options = HdfsMountOptions.fromVolumeContext(Map.of(
+                HdfsMountOptions.FUSE_MAX_READ_KB, "128", HdfsMountOptions.FUSE_MAX_WRITE_KB, "128"));
+
+        // max_write implies big_writes, without which libfuse 2 ignores it
+        assertArrayEquals(new String[]{"-o", "big_writes", "-o", "max_write=131072",
+                        "-o", "max_read=131072", "-o", "max_readahead=131072"},
+                options.fuseArguments());
+        assertArrayEquals(new String[]{"-o", "big_writes"},
+                HdfsMountOptions.fromVolumeContext(Map.of(HdfsMountOptions.FUSE_BIG_WRITES, "true")).fuseArguments());
+    }
+
+    @Test
+    public void testOutOfRangeSizesAreRejected() {
+        // Beyond the largest request of libfuse 2
+        assertThrows(IllegalArgumentException.class, () -> HdfsMountOptions.fromVolumeContext(
+                Map.of(HdfsMountOptions.FUSE_MAX_WRITE_KB, "1024")));
+        // Would wrap around to 0 once multiplied as an int
+        assertThrows(IllegalArgumentException.class, () -> HdfsMountOptions.fromVolumeContext(
+                Map.of(HdfsMountOptions.FUSE_MAX_READ_KB, "4194304")));
+        assertThrows(IllegalArgumentException.class, () -> HdfsMountOptions.fromVolumeContext(
+                Map.of(HdfsMountOptions.HEDGED_READ_THREAD_POOL_SIZE, "4294967312")));
+    }
+
+    @Test
+    public void testInvalidValueIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> HdfsMountOptions.fromVolumeContext(
+                Map.of(HdfsMountOptions.HEDGED_READ_THRESHOLD_MILLIS, "fast")));
+        assertThrows(IllegalArgumentException.class, () -> HdfsMountOptions.fromVolumeContext(
+                Map.of(HdfsMountOptions.HEDGED_READ_THREAD_POOL_SIZE, "-1")));
+        assertThrows(IllegalArgumentException.class, () -> HdfsMountOptions.fromVolumeContext(
+                Map.of(HdfsMountOptions.SHORT_CIRCUIT_READ, "yes")));
+        assertThrows(IllegalArgumentException.class, () -> HdfsMountOptions.fromVolumeContext(
+                Map.of(HdfsMountOptions.FSYNC_MODE, "fsync")));
+        assertThrows(IllegalArgumentException.class, () -> HdfsMountOptions.fromVolumeContext(
+                Map.of(HdfsMountOptions.UPLOAD_PART_MB, "0")));
+        assertThrows(IllegalArgumentException.class, () -> HdfsMountOptions.fromVolumeContext(
+                Map.of(HdfsMountOptions.IO_BUFFER_SIZE_KB, "0")));
+        assertThrows(IllegalArgumentException.class, () -> HdfsMountOptions.fromVolumeContext(
+                Map.of(HdfsMountOptions.WRITE_PACKET_KB, "65536")));
+    }
+}
@@ -36,6 +36,7 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
@@ -48,6 +49,12 @@ public class HdfsMountServiceTest {
     @Mock
     private KubernetesVolumeAttachmentClient volumeAttachmentClient;
 
+    @Mock
+    private HdfsMountResources mountResources;
+
+    @Mock
+    private WriteJournal writeJournal;
+
     @InjectMocks
     private HdfsMountService hdfsMountService;
 
@@ -72,6 +79,7 @@ public class HdfsMountServiceTest {
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(mountResources.getWriteJournal()).thenReturn(writeJournal);
     }
 
     @Test
@@ -83,10 +91,28 @@ public class HdfsMountServiceTest {
         verify(volumeAttachmentClient).getVolumeAttachmentsForCurrentNode();
     }
 
+    @Test
+    public void testInit_VolumeWithUnreplayedJournalIsNotMounted() throws IOException {
+        HdfsConnection mockConn = MockHdfsConnections.mockConnection(cluster.getFileSystem().getConf());
+        String hdfsUri = cluster.getFileSystem().getUri().toString() + "/test";
+        String targetPath = tempDir.resolve("mount").toAbsolutePath().toString();
+        when(volumeAttachmentClient.getVolumeAttachmentsForCurrentNode()).thenReturn(
+                Map.of(targetPath, new VolumeAttachmentInfo(hdfsUri, mockConn, HdfsMountOptions.DEFAULTS)));
+        when(writeJournal.hasPendingFiles(hdfsUri)).thenReturn(true);
+        when(writeJournal.getPendingVolumes()).thenReturn(Set.of(hdfsUri));
+        HdfsClientPool clientPool = mock(HdfsClientPool.class);
+        when(clientPool.acquire(any(), any())).thenThrow(new IOException("NameNode unavailable"));
+        when(mountResources.getClientPool()).thenReturn(clientPool);
+        HdfsMountService service = spy(hdfsMountService);
+
+        service.init();
+
+        verify(service, never()).mountVolume(any(), anyString(), anyString(), any());
+    }
+
     @Test
     public void testMountVolume_Failure() throws IOException {
-        HdfsConnection mockConn = mock(HdfsConnection.class);
-        when(mockConn.getConfiguration()).thenReturn(cluster.getFileSystem().getConf());
+        HdfsConnection mockConn = MockHdfsConnections.mockConnection(cluster.getFileSystem().getConf());
         
         String hdfsUri = cluster.getFileSystem().getUri().toString() + "/test";
         String targetPath = tempDir.resolve("mount").toAbsolutePath().toString();
@@ -0,0 +1,143 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import jnr.ffi.Memory;
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import ru.serce.jnrfuse.struct.FuseFileInfo;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the heap allocated per GB streamed through the former read path, which copied every
+ * FUSE read through a fresh byte array, and through {@link HdfsVirtualFileSystem#read}.
+ * <p>
+ * Run with {@code mvn test -Dtest=HdfsReadAllocationBenchmark -Dvorath.benchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "vorath.benchmark", matches = "true")
+public class HdfsReadAllocationBenchmark {
+
+    private static final int FILE_SIZE = 64 * 1024 * 1024;
+    private static final int READ_SIZE = 128 * 1024;
+    private static final Path FILE = new Path("/bench/data.bin");
+
+    private static MiniDFSCluster cluster;
+    private static FileSystem fs;
+
+    @BeforeAll
+    public static void setUp() throws IOException {
+        System.setProperty("test.build.data", "target/test/data");
+        cluster = new MiniDFSCluster.Builder(new HdfsConfiguration()).numDataNodes(1).build();
+        cluster.waitActive();
+        fs = cluster.getFileSystem();
+
+        byte[] block = new byte[1024 * 1024];
+        new Random(1).nextBytes(block);
+        try (FSDataOutputStream out = fs.create(FILE)) {
+            for (int i = 0; i < FILE_SIZE / block.length; i++) {
+                out.write(block);
+            }
+        }
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        if (cluster != null) {
+            cluster.shutdown();
+        }
+    }
+
+    @Test
+    public void compareAllocatedBytesPerRead() throws IOException {
+        Pointer fuseBuffer = Memory.allocateDirect(Runtime.getSystemRuntime(), READ_SIZE);
+
+        // Warm up both paths so class loading and connection setup are not measured
+        readWithHeapCopies(fuseBuffer);
+        readThroughFileSystem(fuseBuffer);
+
+        long before = allocatedBytes();
+        readWithHeapCopies(fuseBuffer);
+        long heapCopies = allocatedBytes() - before;
+
+        before = allocatedBytes();
+        readThroughFileSystem(fuseBuffer);
+        long fileSystem = allocatedBytes() - before;
+
+        long perGb = 1024L * 1024 * 1024 / FILE_SIZE;
+        System.out.printf("Heap copies : %,d bytes allocated per GB read%n", heapCopies * perGb);
+        System.out.printf("File system : %,d bytes allocated per GB read%n", fileSystem * perGb);
+        assertTrue(fileSystem < heapCopies);
+    }
+
+    /**
+     * The read path before reads went into the FUSE buffer: one array per read, then a copy into native memory.
+     */
+    private void readWithHeapCopies(Pointer fuseBuffer) throws IOException {
+        try (FSDataInputStream in = fs.open(FILE)) {
+            for (long offset = 0; offset < FILE_SIZE; offset += READ_SIZE) {
+                byte[] bytes = new byte[READ_SIZE];
+                in.seek(offset);
+                in.readFully(bytes);
+                fuseBuffer.put(0, bytes, 0, bytes.length);
+            }
+        }
+    }
+
+    private void readThroughFileSystem(Pointer fuseBuffer) {
+        HdfsConnection connection = MockHdfsConnections.mockConnection(fs.getConf());
+        HdfsVirtualFileSystem vfs = new HdfsVirtualFileSystem(fs.getUri().toString(), connection);
+
+        FuseFileInfo fileInfo = FuseFileInfo.of(Memory.allocateDirect(Runtime.getSystemRuntime(), 64));
+        assertEquals(0, vfs.open(FILE.toString(), fileInfo));
+        for (long offset = 0; offset < FILE_SIZE; offset += READ_SIZE) {
+            assertEquals(READ_SIZE, vfs.read(FILE.toString(), fuseBuffer, READ_SIZE, offset, fileInfo));
+        }
+        vfs.release(FILE.toString(), fileInfo);
+        vfs.umount();
+    }
+
+    /**
+     * @return The bytes allocated so far by all live threads, including the readahead threads.
+     */
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            total += Math.max(0, allocated);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,121 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import jnr.ffi.Memory;
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import ru.serce.jnrfuse.struct.FuseFileInfo;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the write and read throughput of {@link HdfsVirtualFileSystem} for the FUSE request sizes of the
+ * default mount options and of tuned ones: 4 KB writes without big_writes, and the 128 KB libfuse 2 maximum
+ * with big_writes, max_write and max_read.
+ * <p>
+ * Run with {@code mvn test -Dtest=HdfsRequestSizeBenchmark -Dvorath.benchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "vorath.benchmark", matches = "true")
+public class HdfsRequestSizeBenchmark {
+
+    private static final int FILE_SIZE = 64 * 1024 * 1024;
+    private static final int[] REQUEST_SIZES = {4 * 1024, 128 * 1024};
+
+    private static MiniDFSCluster cluster;
+    private static FileSystem fs;
+
+    @BeforeAll
+    public static void setUp() throws IOException {
+        System.setProperty("test.build.data", "target/test/data");
+        cluster = new MiniDFSCluster.Builder(new HdfsConfiguration()).numDataNodes(1).build();
+        cluster.waitActive();
+        fs = cluster.getFileSystem();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        if (cluster != null) {
+            cluster.shutdown();
+        }
+    }
+
+    @Test
+    public void compareThroughputPerRequestSize() throws IOException {
+        HdfsConnection connection = MockHdfsConnections.mockConnection(fs.getConf());
+        HdfsVirtualFileSystem vfs = new HdfsVirtualFileSystem(fs.getUri().toString(), connection);
+
+        byte[] data = new byte[REQUEST_SIZES[REQUEST_SIZES.length - 1]];
+        new Random(1).nextBytes(data);
+        Pointer fuseBuffer = Memory.allocateDirect(Runtime.getSystemRuntime(), data.length);
+        fuseBuffer.put(0, data, 0, data.length);
+
+        // Warm up so class loading and connection setup are not measured
+        write(vfs, "/bench/warmup.bin", 128 * 1024, fuseBuffer);
+        read(vfs, "/bench/warmup.bin", 128 * 1024, fuseBuffer);
+
+        for (int requestSize : REQUEST_SIZES) {
+            String path = "/bench/requests-" + requestSize + ".bin";
+            long start = System.nanoTime();
+            write(vfs, path, requestSize, fuseBuffer);
+            long writeNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            read(vfs, path, requestSize, fuseBuffer);
+            long readNanos = System.nanoTime() - start;
+
+            System.out.printf("%,5d KB requests: write %,8.1f MB/s, read %,8.1f MB/s%n", requestSize / 1024,
+                    FILE_SIZE / 1024.0 / 1024 / (writeNanos / 1e9), FILE_SIZE / 1024.0 / 1024 / (readNanos / 1e9));
+            assertEquals(FILE_SIZE, fs.getFileStatus(new Path(path)).getLen());
+        }
+        vfs.umount();
+    }
+
+    private static void write(HdfsVirtualFileSystem vfs, String path, int requestSize, Pointer fuseBuffer) {
+        FuseFileInfo fileInfo = FuseFileInfo.of(Memory.allocateDirect(Runtime.getSystemRuntime(), 64));
+        assertEquals(0, vfs.create(path, 0644, fileInfo));
+        for (long offset = 0; offset < FILE_SIZE; offset += requestSize) {
+            assertEquals(requestSize, vfs.write(path, fuseBuffer, requestSize, offset, fileInfo));
+        }
+        assertEquals(0, vfs.flush(path, fileInfo));
+        assertEquals(0, vfs.release(path, fileInfo));
+    }
+
+    private static void read(HdfsVirtualFileSystem vfs, String path, int requestSize, Pointer fuseBuffer) {
+        FuseFileInfo fileInfo = FuseFileInfo.of(Memory.allocateDirect(Runtime.getSystemRuntime(), 64));
+        assertEquals(0, vfs.open(path, fileInfo));
+        for (long offset = 0; offset < FILE_SIZE; offset += requestSize) {
+            assertEquals(requestSize, vfs.read(path, fuseBuffer, requestSize, offset, fileInfo));
+        }
+        assertEquals(0, vfs.release(path, fileInfo));
+    }
+}
@@ -0,0 +1,73 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class HdfsStreamReaderTest {
+
+    @Test
+    public void testPositionedReadFillsDirectBuffer() throws IOException {
+        FSDataInputStream stream = mock(FSDataInputStream.class);
+        when(stream.read(anyLong(), any(ByteBuffer.class))).thenAnswer(invocation -> {
+            ByteBuffer destination = invocation.getArgument(1);
+            int n = destination.remaining();
+            destination.put(new byte[n]);
+            return n;
+        });
+
+        ByteBuffer destination = ByteBuffer.allocateDirect(1024);
+        assertEquals(1024, new HdfsStreamReader(stream, new HeapBufferPool()).read(0, destination));
+        assertEquals(1024, destination.position());
+        verify(stream, never()).read(anyLong(), any(byte[].class), anyInt(), anyInt());
+    }
+
+    @Test
+    public void testFallsBackToHeapBufferWhenByteBuffersAreUnsupported() throws IOException {
+        FSDataInputStream stream = mock(FSDataInputStream.class);
+        when(stream.read(anyLong(), any(ByteBuffer.class))).thenThrow(new UnsupportedOperationException());
+        when(stream.read(anyLong(), any(byte[].class), anyInt(), anyInt())).thenAnswer(invocation -> {
+            byte[] bytes = invocation.getArgument(1);
+            int offset = invocation.getArgument(2);
+            int length = invocation.getArgument(3);
+            Arrays.fill(bytes, offset, offset + length, (byte) 7);
+            return length;
+        });
+        HdfsStreamReader reader = new HdfsStreamReader(stream, new HeapBufferPool());
+
+        ByteBuffer destination = ByteBuffer.allocateDirect(100);
+        assertEquals(100, reader.read(0, destination));
+        assertEquals(7, destination.get(99));
+
+        // The unsupported API is only tried once per stream
+        reader.read(0, destination.clear());
+        verify(stream, times(1)).read(anyLong(), any(ByteBuffer.class));
+    }
+}
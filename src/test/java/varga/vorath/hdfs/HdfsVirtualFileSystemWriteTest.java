@@ -0,0 +1,200 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import jnr.ffi.Memory;
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.serce.jnrfuse.struct.FileStat;
+import ru.serce.jnrfuse.struct.FuseFileInfo;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Write paths of {@link HdfsVirtualFileSystem}, against the local file system.
+ */
+public class HdfsVirtualFileSystemWriteTest {
+
+    private static final int O_WRONLY = 01;
+    private static final int O_APPEND = 02000;
+
+    @TempDir
+    Path tempDir;
+
+    private HdfsVirtualFileSystem vfs;
+
+    @BeforeEach
+    public void setUp() {
+        Configuration configuration = new Configuration(false);
+        configuration.set("fs.defaultFS", "file:///");
+        // The checksummed local file system does not support truncate
+        configuration.set("fs.file.impl", RawLocalFileSystem.class.getName());
+        configuration.setBoolean("fs.file.impl.disable.cache", true);
+        HdfsConnection connection = MockHdfsConnections.mockConnection(configuration);
+
+        WriteStagingArea stagingArea = new WriteStagingArea(tempDir.resolve(".staging").toString(), 16, 16);
+        vfs = new HdfsVirtualFileSystem(tempDir.resolve("volume").toUri().toString(), connection,
+                new HdfsMountResources(null, stagingArea, null, null, null, null), HdfsMountOptions.DEFAULTS);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        vfs.umount();
+    }
+
+    private static FuseFileInfo fileInfo(int flags) {
+        FuseFileInfo fileInfo = FuseFileInfo.of(Memory.allocateDirect(Runtime.getSystemRuntime(), 64));
+        fileInfo.flags.set(flags);
+        return fileInfo;
+    }
+
+    private int write(String path, String text, long offset, FuseFileInfo fileInfo) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        Pointer buffer = Memory.allocateDirect(Runtime.getSystemRuntime(), bytes.length);
+        buffer.put(0, bytes, 0, bytes.length);
+        return vfs.write(path, buffer, bytes.length, offset, fileInfo);
+    }
+
+    private String content(String name) throws Exception {
+        return Files.readString(tempDir.resolve("volume").resolve(name));
+    }
+
+    private void createFile(String name, String text) throws Exception {
+        Files.createDirectories(tempDir.resolve("volume"));
+        Files.writeString(tempDir.resolve("volume").resolve(name), text);
+    }
+
+    @Test
+    public void testCreateStreamsWritesToTheFile() throws Exception {
+        Files.createDirectories(tempDir.resolve("volume"));
+        FuseFileInfo fileInfo = fileInfo(O_WRONLY);
+
+        assertEquals(0, vfs.create("/new.txt", 0644, fileInfo));
+        assertEquals(6, write("/new.txt", "hello ", 0, fileInfo));
+        assertEquals(5, write("/new.txt", "world", 6, fileInfo));
+        assertEquals(0, vfs.release("/new.txt", fileInfo));
+
+        assertEquals("hello world", content("new.txt"));
+        assertEquals(-17, vfs.create("/new.txt", 0644, fileInfo(O_WRONLY)));
+    }
+
+    @Test
+    public void testGetattrReportsBlocksAndPreferredIoSize() throws Exception {
+        createFile("data.bin", "x".repeat(1000));
+        FileStat stat = FileStat.of(Memory.allocateDirect(Runtime.getSystemRuntime(), 256));
+
+        assertEquals(0, vfs.getattr("/data.bin", stat));
+
+        assertEquals(1000L, stat.st_size.longValue());
+        assertEquals(2L, stat.st_blocks.longValue());
+        // The local file system reports 32 MB blocks
+        assertEquals(HdfsVirtualFileSystem.MAX_PREFERRED_IO_SIZE, stat.st_blksize.longValue());
+        assertEquals(1024L * 1024, HdfsVirtualFileSystem.preferredIoSize(1024 * 1024));
+    }
+
+    @Test
+    public void testTruncateShrinksAndExtendsTheFile() throws Exception {
+        createFile("log.txt", "0123456789");
+
+        assertEquals(0, vfs.truncate("/log.txt", 4));
+        assertEquals("0123", content("log.txt"));
+        assertEquals(0, vfs.truncate("/log.txt", 6));
+        assertEquals("0123\0\0", content("log.txt"));
+        assertEquals(-2, vfs.truncate("/missing.txt", 0));
+    }
+
+    @Test
+    public void testAppendOpenWritesAtTheEndOfTheFile() throws Exception {
+        createFile("log.txt", "line 1\n");
+        FuseFileInfo fileInfo = fileInfo(O_WRONLY | O_APPEND);
+
+        assertEquals(0, vfs.open("/log.txt", fileInfo));
+        // The kernel may pass a stale offset: the write still goes to the end
+        assertEquals(7, write("/log.txt", "line 2\n", 0, fileInfo));
+        assertEquals(0, vfs.release("/log.txt", fileInfo));
+
+        assertEquals("line 1\nline 2\n", content("log.txt"));
+    }
+
+    @Test
+    public void testRandomWriteIsStagedAndUploadedOnRelease() throws Exception {
+        createFile("data.txt", "hello world");
+        FuseFileInfo fileInfo = fileInfo(O_WRONLY);
+
+        assertEquals(0, vfs.open("/data.txt", fileInfo));
+        assertEquals(5, write("/data.txt", "WORLD", 6, fileInfo));
+        assertEquals("hello world", content("data.txt"));
+        assertEquals(0, vfs.release("/data.txt", fileInfo));
+
+        assertEquals("hello WORLD", content("data.txt"));
+        assertEquals(1L, vfs.getMetrics().getStagedUploads().sum());
+    }
+
+    @Test
+    public void testFlushUploadsStagedFile() throws Exception {
+        createFile("data.txt", "hello world");
+        FuseFileInfo fileInfo = fileInfo(O_WRONLY);
+
+        assertEquals(0, vfs.open("/data.txt", fileInfo));
+        assertEquals(5, write("/data.txt", "WORLD", 6, fileInfo));
+        assertEquals(0, vfs.flush("/data.txt", fileInfo));
+        assertEquals("hello WORLD", content("data.txt"));
+        assertEquals(0, vfs.release("/data.txt", fileInfo));
+
+        assertEquals(1L, vfs.getMetrics().getStagedUploads().sum());
+    }
+
+    @Test
+    public void testRenameReplacesTheDestination() throws Exception {
+        createFile("tmp.txt", "new");
+        createFile("target.txt", "old");
+
+        assertEquals(0, vfs.rename("/tmp.txt", "/target.txt"));
+
+        assertEquals("new", content("target.txt"));
+        assertFalse(Files.exists(tempDir.resolve("volume").resolve("tmp.txt")));
+        assertEquals(-2, vfs.rename("/tmp.txt", "/other.txt"));
+    }
+
+    @Test
+    public void testRenameMovesStagedFileOfOpenHandle() throws Exception {
+        createFile("data.txt", "hello world");
+        FuseFileInfo fileInfo = fileInfo(O_WRONLY);
+
+        assertEquals(0, vfs.open("/data.txt", fileInfo));
+        assertEquals(5, write("/data.txt", "WORLD", 6, fileInfo));
+        assertEquals(0, vfs.rename("/data.txt", "/moved.txt"));
+        assertEquals(0, vfs.release("/moved.txt", fileInfo));
+
+        assertEquals("hello WORLD", content("moved.txt"));
+        assertFalse(Files.exists(tempDir.resolve("volume").resolve("data.txt")));
+    }
+}
@@ -33,8 +33,6 @@ import org.junit.jupiter.api.Test;
 import java.io.IOException;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
 
 public class HdfsVolumeServiceIntegrationTest {
 
@@ -48,7 +46,7 @@ public class HdfsVolumeServiceIntegrationTest {
         conf = new HdfsConfiguration();
         cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
         cluster.waitActive();
-        service = new HdfsVolumeService();
+        service = new HdfsVolumeService(new HdfsClientPool(60));
     }
 
     @AfterAll
@@ -66,8 +64,7 @@ public class HdfsVolumeServiceIntegrationTest {
         FileSystem fs = cluster.getFileSystem();
         
         // We need to make sure the service uses the SAME configuration as the cluster
-        HdfsConnection mockConnection = mock(HdfsConnection.class);
-        when(mockConnection.getConfiguration()).thenReturn(fs.getConf());
+        HdfsConnection mockConnection = MockHdfsConnections.mockConnection(fs.getConf());
 
         String volumeId = service.createVolume(mockConnection, volumeName);
         assertEquals(volumeName, volumeId);
@@ -0,0 +1,138 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import jnr.ffi.Memory;
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import ru.serce.jnrfuse.struct.FuseFileInfo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the time to write files of growing sizes through the former write path, which rewrote the
+ * whole file on every FUSE write, and through {@link HdfsVirtualFileSystem#write}. The former cost grows
+ * with the square of the file size, the current one linearly.
+ * <p>
+ * Run with {@code mvn test -Dtest=HdfsWriteBenchmark -Dvorath.benchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "vorath.benchmark", matches = "true")
+public class HdfsWriteBenchmark {
+
+    private static final int[] FILE_SIZES_MB = {4, 8, 16};
+    private static final int WRITE_SIZE = 128 * 1024;
+
+    private static MiniDFSCluster cluster;
+    private static FileSystem fs;
+    private static byte[] chunk;
+
+    @BeforeAll
+    public static void setUp() throws IOException {
+        System.setProperty("test.build.data", "target/test/data");
+        cluster = new MiniDFSCluster.Builder(new HdfsConfiguration()).numDataNodes(1).build();
+        cluster.waitActive();
+        fs = cluster.getFileSystem();
+
+        chunk = new byte[WRITE_SIZE];
+        new Random(1).nextBytes(chunk);
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        if (cluster != null) {
+            cluster.shutdown();
+        }
+    }
+
+    @Test
+    public void compareWriteTimePerMb() throws IOException {
+        Pointer fuseBuffer = Memory.allocateDirect(Runtime.getSystemRuntime(), WRITE_SIZE);
+        fuseBuffer.put(0, chunk, 0, WRITE_SIZE);
+
+        // Warm up both paths so class loading and connection setup are not measured
+        writeWithRewrites(new Path("/bench/warmup-rewrite.bin"), 1);
+        writeThroughFileSystem(new Path("/bench/warmup-stream.bin"), 1, fuseBuffer);
+
+        for (int sizeMb : FILE_SIZES_MB) {
+            Path rewritten = new Path("/bench/rewrite-" + sizeMb + ".bin");
+            long start = System.nanoTime();
+            writeWithRewrites(rewritten, sizeMb);
+            long rewriteNanos = System.nanoTime() - start;
+
+            Path streamed = new Path("/bench/stream-" + sizeMb + ".bin");
+            start = System.nanoTime();
+            writeThroughFileSystem(streamed, sizeMb, fuseBuffer);
+            long streamNanos = System.nanoTime() - start;
+
+            System.out.printf("%3d MB: rewrite %,8.2f ms/MB, stream %,8.2f ms/MB%n", sizeMb,
+                    rewriteNanos / 1e6 / sizeMb, streamNanos / 1e6 / sizeMb);
+            assertEquals(sizeMb * 1024L * 1024, fs.getFileStatus(rewritten).getLen());
+            assertEquals(sizeMb * 1024L * 1024, fs.getFileStatus(streamed).getLen());
+        }
+    }
+
+    /**
+     * The write path before handles kept an output stream: read the file up to the offset, then rewrite it.
+     */
+    private void writeWithRewrites(Path file, int sizeMb) throws IOException {
+        fs.create(file).close();
+        for (long offset = 0; offset < sizeMb * 1024L * 1024; offset += WRITE_SIZE) {
+            ByteArrayOutputStream resultData = new ByteArrayOutputStream();
+            try (FSDataInputStream in = fs.open(file)) {
+                byte[] oldData = new byte[(int) offset];
+                in.readFully(oldData);
+                resultData.write(oldData);
+            }
+            resultData.write(chunk);
+            try (FSDataOutputStream out = fs.create(file, true)) {
+                out.write(resultData.toByteArray());
+            }
+        }
+    }
+
+    private void writeThroughFileSystem(Path file, int sizeMb, Pointer fuseBuffer) {
+        HdfsConnection connection = MockHdfsConnections.mockConnection(fs.getConf());
+        HdfsVirtualFileSystem vfs = new HdfsVirtualFileSystem(fs.getUri().toString(), connection);
+
+        FuseFileInfo fileInfo = FuseFileInfo.of(Memory.allocateDirect(Runtime.getSystemRuntime(), 64));
+        assertEquals(0, vfs.create(file.toString(), 0644, fileInfo));
+        for (long offset = 0; offset < sizeMb * 1024L * 1024; offset += WRITE_SIZE) {
+            assertEquals(WRITE_SIZE, vfs.write(file.toString(), fuseBuffer, WRITE_SIZE, offset, fileInfo));
+        }
+        assertEquals(0, vfs.flush(file.toString(), fileInfo));
+        assertEquals(0, vfs.release(file.toString(), fileInfo));
+        vfs.umount();
+    }
+}
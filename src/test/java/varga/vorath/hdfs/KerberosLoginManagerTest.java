@@ -0,0 +1,95 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KerberosLoginManagerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path keytabDir;
+
+    @BeforeEach
+    public void setUp() {
+        // Without Kerberos, logins return the current user: only the keytab handling is exercised
+        UserGroupInformation.setConfiguration(new Configuration());
+        keytabDir = tempDir.resolve("keytabs");
+    }
+
+    private List<Path> keytabFiles() throws Exception {
+        try (Stream<Path> files = Files.list(keytabDir)) {
+            return files.toList();
+        }
+    }
+
+    @Test
+    public void testKeytabIsWrittenOnceWithOwnerOnlyPermissions() throws Exception {
+        KerberosLoginManager loginManager = new KerberosLoginManager(keytabDir.toString(), 300, 60);
+        byte[] keytab = "keytab-content".getBytes(StandardCharsets.UTF_8);
+
+        assertNotNull(loginManager.login("user@REALM", keytab));
+        assertNotNull(loginManager.login("user@REALM", keytab));
+
+        List<Path> files = keytabFiles();
+        assertEquals(1, files.size());
+        assertArrayEquals(keytab, Files.readAllBytes(files.get(0)));
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(files.get(0))));
+        assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(keytabDir)));
+        assertEquals(2L, loginManager.snapshot().get("logins"));
+        assertEquals(2L, loginManager.snapshot().get("activeLogins"));
+        assertEquals(1L, loginManager.snapshot().get("keytabFiles"));
+    }
+
+    @Test
+    public void testDistinctKeytabsGetDistinctFiles() throws Exception {
+        KerberosLoginManager loginManager = new KerberosLoginManager(keytabDir.toString(), 300, 60);
+
+        loginManager.login("a@REALM", "keytab-a".getBytes(StandardCharsets.UTF_8));
+        loginManager.login("b@REALM", "keytab-b".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(2, keytabFiles().size());
+    }
+
+    @Test
+    public void testKeytabsOfPreviousRunAreRemoved() throws Exception {
+        Files.createDirectories(keytabDir);
+        Files.write(keytabDir.resolve("stale.keytab"), new byte[]{1, 2, 3});
+
+        new KerberosLoginManager(keytabDir.toString(), 300, 60);
+
+        assertTrue(keytabFiles().isEmpty());
+    }
+}
@@ -0,0 +1,58 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.hadoop.conf.Configuration;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.PrivilegedExceptionAction;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Mock HDFS connections for tests that do not log in to a cluster.
+ */
+public final class MockHdfsConnections {
+
+    private MockHdfsConnections() {
+    }
+
+    /**
+     * Returns a mock connection with a configuration, whose doAs runs actions as the current user.
+     *
+     * @param configuration The configuration of the connection.
+     * @return The mock connection.
+     */
+    public static HdfsConnection mockConnection(Configuration configuration) {
+        HdfsConnection connection = mock(HdfsConnection.class);
+        when(connection.getConfiguration()).thenReturn(configuration);
+        try {
+            when(connection.doAs(any())).thenAnswer(invocation -> invocation.<PrivilegedExceptionAction<?>>getArgument(0).run());
+        } catch (IOException e) {
+            // Not thrown while stubbing
+            throw new UncheckedIOException(e);
+        }
+        return connection;
+    }
+}
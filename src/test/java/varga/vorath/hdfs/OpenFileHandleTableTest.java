@@ -0,0 +1,121 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class OpenFileHandleTableTest {
+
+    private HdfsMountMetrics metrics;
+    private OpenFileHandleTable table;
+
+    @BeforeEach
+    public void setUp() {
+        metrics = new HdfsMountMetrics();
+        table = new OpenFileHandleTable(2, metrics);
+    }
+
+    private static FileStatus fileStatus(String path) {
+        return new FileStatus(10L, false, 1, 128L * 1024 * 1024, 0L, new Path(path));
+    }
+
+    @Test
+    public void testRegisterAndRelease() {
+        OpenFileHandle handle = table.register("/a", new Path("/vol/a"), fileStatus("/vol/a"));
+
+        assertTrue(handle.getId() > 0);
+        assertEquals(1, table.size());
+        assertEquals(1L, metrics.getOpenHandles().get());
+
+        table.remove(handle.getId());
+
+        assertEquals(0, table.size());
+        assertEquals(0L, metrics.getOpenHandles().get());
+        assertEquals(1L, metrics.getHandlesReleased().sum());
+        assertNull(table.acquire(handle.getId()));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedHandleIsEvicted() throws IOException {
+        FileSystem fileSystem = mock(FileSystem.class);
+        FSDataInputStream stream = mock(FSDataInputStream.class);
+        when(fileSystem.open(any(Path.class))).thenReturn(stream);
+
+        OpenFileHandle first = table.register("/a", new Path("/vol/a"), fileStatus("/vol/a"));
+        OpenFileHandle second = table.register("/b", new Path("/vol/b"), fileStatus("/vol/b"));
+        first.getReader(fileSystem, new HeapBufferPool());
+
+        // Touch the first handle so that the second becomes the eldest
+        table.acquire(first.getId()).release();
+        table.register("/c", new Path("/vol/c"), fileStatus("/vol/c"));
+
+        assertEquals(2, table.size());
+        assertEquals(2L, metrics.getOpenHandles().get());
+        assertEquals(1L, metrics.getHandlesEvicted().sum());
+        assertNull(table.acquire(second.getId()));
+        assertNotNull(table.acquire(first.getId()));
+        verify(stream, never()).close();
+    }
+
+    @Test
+    public void testEvictedHandleIsClosedAfterLastUse() throws IOException {
+        FileSystem fileSystem = mock(FileSystem.class);
+        FSDataInputStream stream = mock(FSDataInputStream.class);
+        when(fileSystem.open(any(Path.class))).thenReturn(stream);
+
+        OpenFileHandle handle = table.register("/a", new Path("/vol/a"), fileStatus("/vol/a"));
+        OpenFileHandle inUse = table.acquire(handle.getId());
+        inUse.getReader(fileSystem, new HeapBufferPool());
+
+        table.register("/b", new Path("/vol/b"), fileStatus("/vol/b"));
+        table.register("/c", new Path("/vol/c"), fileStatus("/vol/c"));
+        verify(stream, never()).close();
+
+        inUse.release();
+        verify(stream).close();
+        assertThrows(IOException.class, () -> inUse.getReader(fileSystem, new HeapBufferPool()));
+    }
+
+    @Test
+    public void testReopenKeepsHandleId() {
+        OpenFileHandle handle = table.register("/a", new Path("/vol/a"), fileStatus("/vol/a"));
+        table.register("/b", new Path("/vol/b"), fileStatus("/vol/b"));
+        table.register("/c", new Path("/vol/c"), fileStatus("/vol/c"));
+        assertNull(table.acquire(handle.getId()));
+
+        OpenFileHandle reopened = table.reopen(handle.getId(), "/a", new Path("/vol/a"), fileStatus("/vol/a"));
+
+        assertEquals(handle.getId(), reopened.getId());
+        assertEquals(1L, metrics.getHandlesReopened().sum());
+        reopened.release();
+        assertNotNull(table.acquire(handle.getId()));
+    }
+}
@@ -0,0 +1,177 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PartUploadTest {
+
+    private static final int BLOCK_SIZE = 1024 * 1024;
+
+    private static MiniDFSCluster cluster;
+    private static DistributedFileSystem fs;
+
+    private ExecutorService executor;
+    private HdfsMountMetrics metrics;
+    private PartUpload partUpload;
+    private byte[] data;
+
+    @BeforeAll
+    public static void setUpCluster() throws IOException {
+        System.setProperty("test.build.data", "target/test/data");
+        HdfsConfiguration conf = new HdfsConfiguration();
+        conf.setLong("dfs.blocksize", BLOCK_SIZE);
+        cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+        cluster.waitActive();
+        fs = cluster.getFileSystem();
+    }
+
+    @AfterAll
+    public static void tearDownCluster() {
+        if (cluster != null) {
+            cluster.shutdown();
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+        metrics = new HdfsMountMetrics();
+        partUpload = new PartUpload(fs, executor, BLOCK_SIZE, 4, metrics);
+        data = new byte[5 * BLOCK_SIZE / 2];
+        new Random(3).nextBytes(data);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private int sourceRead(long position, ByteBuffer destination) {
+        if (position >= data.length) {
+            return -1;
+        }
+        int n = (int) Math.min(destination.remaining(), data.length - position);
+        destination.put(data, (int) position, n);
+        return n;
+    }
+
+    private void writeFile(Path path, byte[] content) throws IOException {
+        try (FSDataOutputStream out = fs.create(path, true)) {
+            out.write(content);
+        }
+    }
+
+    private byte[] readFile(Path path) throws IOException {
+        byte[] content = new byte[(int) fs.getFileStatus(path).getLen()];
+        try (FSDataInputStream in = fs.open(path)) {
+            in.readFully(content);
+        }
+        return content;
+    }
+
+    @Test
+    public void testPartsAreConcatenatedIntoTheTarget() throws IOException {
+        Path target = new Path("/parts/checkpoint.bin");
+        writeFile(target, "previous".getBytes(StandardCharsets.UTF_8));
+
+        assertTrue(partUpload.isWorthwhile(target, data.length));
+        partUpload.upload(this::sourceRead, data.length, target, true);
+
+        assertArrayEquals(data, readFile(target));
+        assertEquals(1, fs.listStatus(target.getParent()).length);
+        assertEquals(1L, metrics.getPartUploads().sum());
+        assertEquals(3L, metrics.getPartsUploaded().sum());
+    }
+
+    @Test
+    public void testFailedPartLeavesTheTargetUntouched() throws IOException {
+        Path target = new Path("/failed/checkpoint.bin");
+        byte[] previous = "previous".getBytes(StandardCharsets.UTF_8);
+        writeFile(target, previous);
+
+        PositionalReader failingSource = (position, destination) -> {
+            if (position >= 2L * BLOCK_SIZE) {
+                throw new IOException("Local disk error");
+            }
+            return sourceRead(position, destination);
+        };
+        IOException error = assertThrows(IOException.class,
+                () -> partUpload.upload(failingSource, data.length, target, false));
+
+        assertEquals("Local disk error", error.getMessage());
+        assertArrayEquals(previous, readFile(target));
+        FileStatus[] files = fs.listStatus(target.getParent());
+        assertEquals(1, files.length);
+        assertEquals(target.getName(), files[0].getPath().getName());
+        assertEquals(1L, metrics.getPartUploadFailures().sum());
+    }
+
+    @Test
+    public void testConcurrentPartsAreCapped() throws IOException {
+        Path target = new Path("/capped/checkpoint.bin");
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        PositionalReader slowSource = (position, destination) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+            return sourceRead(position, destination);
+        };
+
+        new PartUpload(fs, executor, BLOCK_SIZE, 1, metrics).upload(slowSource, data.length, target, false);
+
+        assertArrayEquals(data, readFile(target));
+        assertEquals(1, maxRunning.get());
+        assertEquals(3L, metrics.getPartsUploaded().sum());
+    }
+
+    @Test
+    public void testSmallFilesAreNotSplit() {
+        assertFalse(partUpload.isWorthwhile(new Path("/small/file.bin"), BLOCK_SIZE));
+    }
+}
@@ -0,0 +1,192 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SequentialReadaheadTest {
+
+    private static final int READ_SIZE = 64 * 1024;
+
+    private HdfsMountMetrics metrics;
+    private ReadaheadManager manager;
+    private byte[] file;
+    // When set, prefetches wait for it before reading
+    private volatile CountDownLatch prefetchGate;
+
+    @BeforeEach
+    public void setUp() {
+        metrics = new HdfsMountMetrics();
+        manager = new ReadaheadManager(2, 4);
+        file = new byte[4 * 1024 * 1024];
+        new Random(42).nextBytes(file);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        manager.shutdown();
+    }
+
+    private int sourceRead(long position, ByteBuffer destination) {
+        CountDownLatch gate = prefetchGate;
+        if (gate != null && Thread.currentThread().getName().startsWith("hdfs-readahead-")) {
+            try {
+                gate.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (position >= file.length) {
+            return -1;
+        }
+        int n = (int) Math.min(destination.remaining(), file.length - position);
+        destination.put(file, (int) position, n);
+        return n;
+    }
+
+    /**
+     * Mimics HdfsVirtualFileSystem.read(): serve from readahead, then read the rest directly.
+     */
+    private byte[] read(SequentialReadahead readahead, long offset, int length) {
+        ByteBuffer destination = ByteBuffer.allocateDirect(length);
+        int served = readahead.serve(offset, destination);
+        if (destination.hasRemaining()) {
+            sourceRead(offset + destination.position(), destination);
+        }
+        int bytesRead = destination.position();
+        readahead.afterRead(offset, bytesRead, served);
+
+        byte[] bytes = new byte[bytesRead];
+        destination.flip().get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testSequentialReadsAreServedFromPrefetchedData() {
+        SequentialReadahead readahead = manager.newReadahead(this::sourceRead, file.length, metrics);
+
+        for (long offset = 0; offset < file.length; offset += READ_SIZE) {
+            byte[] bytes = read(readahead, offset, READ_SIZE);
+            assertArrayEquals(Arrays.copyOfRange(file, (int) offset, (int) offset + READ_SIZE), bytes);
+        }
+        readahead.close();
+
+        assertTrue(metrics.getReadaheadHits().sum() > 0);
+        assertTrue(metrics.getReadaheadPrefetchedBytes().sum() > 0);
+        assertEquals(0L, metrics.getReadaheadWastedBytes().sum());
+    }
+
+    @Test
+    public void testRandomAccessDropsPrefetchedData() throws InterruptedException {
+        SequentialReadahead readahead = manager.newReadahead(this::sourceRead, file.length, metrics);
+
+        read(readahead, 0, READ_SIZE);
+        read(readahead, READ_SIZE, READ_SIZE);
+        // Let the prefetch complete before jumping elsewhere in the file
+        Thread.sleep(200);
+
+        long offset = 3L * 1024 * 1024;
+        byte[] bytes = read(readahead, offset, READ_SIZE);
+        readahead.close();
+
+        assertArrayEquals(Arrays.copyOfRange(file, (int) offset, (int) offset + READ_SIZE), bytes);
+        assertEquals(0L, metrics.getReadaheadHits().sum());
+        assertTrue(metrics.getReadaheadWastedBytes().sum() > 0);
+    }
+
+    @Test
+    public void testReadPastEndOfFile() {
+        SequentialReadahead readahead = manager.newReadahead(this::sourceRead, file.length, metrics);
+
+        byte[] bytes = read(readahead, file.length - 10, READ_SIZE);
+
+        assertEquals(10, bytes.length);
+    }
+
+    @Test
+    public void testWaitForPrefetchDoesNotBlockTheHandle() throws Exception {
+        SequentialReadahead readahead = manager.newReadahead(this::sourceRead, file.length, metrics);
+        prefetchGate = new CountDownLatch(1);
+        read(readahead, 0, READ_SIZE);
+        read(readahead, READ_SIZE, READ_SIZE);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // Waits for the prefetch of the next window, which is held back
+            Future<Integer> waiting = executor.submit(() -> readahead.serve(2 * READ_SIZE, ByteBuffer.allocate(READ_SIZE)));
+            Thread.sleep(100);
+            assertFalse(waiting.isDone());
+
+            // Releasing the handle does not wait for the prefetch
+            long start = System.nanoTime();
+            readahead.close();
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+            prefetchGate.countDown();
+            // The dropped prefetch is not served: its buffer goes back to the pool
+            assertEquals(0, waiting.get(5, TimeUnit.SECONDS));
+        } finally {
+            prefetchGate.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMountsShareTheBuffersOfTheNode() throws InterruptedException {
+        ReadaheadManager node = new ReadaheadManager(2, 1);
+        HdfsMountMetrics otherMetrics = new HdfsMountMetrics();
+        try {
+            SequentialReadahead first = node.newReadahead(this::sourceRead, file.length, metrics);
+            SequentialReadahead second = node.newReadahead(this::sourceRead, file.length, otherMetrics);
+            for (long offset = 0; offset < 8 * READ_SIZE; offset += READ_SIZE) {
+                read(first, offset, READ_SIZE);
+                // Reads synchronously while the only buffer of the node is taken
+                byte[] bytes = read(second, offset, READ_SIZE);
+                assertArrayEquals(Arrays.copyOfRange(file, (int) offset, (int) offset + READ_SIZE), bytes);
+            }
+            assertTrue(metrics.getReadaheadHits().sum() > 0);
+            assertEquals(0L, otherMetrics.getReadaheadPrefetchedBytes().sum());
+            assertEquals((long) SequentialReadahead.MAX_WINDOW, node.snapshot().get("maxBytes"));
+
+            first.close();
+            second.close();
+            // Buffers go back to the pool once their fetch completes
+            Thread.sleep(200);
+            assertEquals(0L, node.snapshot().get("inUseBytes"));
+            assertEquals((long) SequentialReadahead.MAX_WINDOW, node.snapshot().get("allocatedBytes"));
+        } finally {
+            node.shutdown();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SequentialWriterTest {
+
+    private static final int WRITE_SIZE = 4096;
+
+    private byte[] file;
+    private ByteArrayOutputStream written;
+    private FSDataOutputStream outputStream;
+    private HdfsMountMetrics metrics;
+
+    @BeforeEach
+    public void setUp() {
+        file = new byte[64 * WRITE_SIZE];
+        new Random(3).nextBytes(file);
+        written = new ByteArrayOutputStream();
+        outputStream = new FSDataOutputStream(written, null);
+        metrics = new HdfsMountMetrics();
+    }
+
+    private void write(SequentialWriter writer, int offset) throws Exception {
+        writer.write(offset, ByteBuffer.wrap(file, offset, WRITE_SIZE));
+    }
+
+    @Test
+    public void testSequentialWritesGoStraightToTheStream() throws Exception {
+        SequentialWriter writer = new SequentialWriter(outputStream, 0, metrics);
+        ByteBuffer direct = ByteBuffer.allocateDirect(file.length);
+        direct.put(file).flip();
+
+        writer.write(0, direct);
+        writer.close();
+
+        assertArrayEquals(file, written.toByteArray());
+        assertEquals(file.length, metrics.getBytesWritten().sum());
+        assertEquals(0L, metrics.getWritesReordered().sum());
+    }
+
+    @Test
+    public void testOutOfOrderWritesAreReassembled() throws Exception {
+        SequentialWriter writer = new SequentialWriter(outputStream, 0, metrics);
+
+        write(writer, 2 * WRITE_SIZE);
+        write(writer, WRITE_SIZE);
+        assertEquals(0, written.size());
+        assertEquals(3L * WRITE_SIZE, writer.getLength());
+
+        write(writer, 0);
+        assertEquals(3 * WRITE_SIZE, written.size());
+        writer.close();
+
+        assertArrayEquals(Arrays.copyOf(file, 3 * WRITE_SIZE), written.toByteArray());
+        assertEquals(2L, metrics.getWritesReordered().sum());
+    }
+
+    @Test
+    public void testConcurrentWritesAreReassembled() throws Exception {
+        SequentialWriter writer = new SequentialWriter(outputStream, null, 0, metrics, 8 * WRITE_SIZE, 10_000);
+        List<Integer> offsets = new ArrayList<>();
+        for (int offset = 0; offset < file.length; offset += WRITE_SIZE) {
+            offsets.add(offset);
+        }
+        // Like the kernel, deliver writes roughly in order: shuffled within groups of four
+        Random random = new Random(5);
+        for (int i = 0; i < offsets.size(); i += 4) {
+            Collections.shuffle(offsets.subList(i, i + 4), random);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int offset : offsets) {
+                futures.add(executor.submit(() -> {
+                    write(writer, offset);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        writer.close();
+
+        assertArrayEquals(file, written.toByteArray());
+    }
+
+    @Test
+    public void testOverwriteIsRejected() throws Exception {
+        SequentialWriter writer = new SequentialWriter(outputStream, 0, metrics);
+        write(writer, 0);
+
+        assertThrows(SequentialWriter.NonSequentialWriteException.class, () -> write(writer, 0));
+    }
+
+    @Test
+    public void testUnfilledGapIsWrittenAsZeros() throws Exception {
+        SequentialWriter writer = new SequentialWriter(outputStream, null, 0, metrics, 8 * WRITE_SIZE, 50);
+        write(writer, WRITE_SIZE);
+
+        writer.flush();
+        assertEquals(2 * WRITE_SIZE, written.size());
+        // Too late: the hole was already written
+        assertThrows(SequentialWriter.NonSequentialWriteException.class, () -> write(writer, 0));
+
+        // Past the reorder window, a sparse write waits for the gap, then fills it
+        write(writer, 16 * WRITE_SIZE);
+        write(writer, 18 * WRITE_SIZE);
+        writer.close();
+
+        byte[] expected = new byte[19 * WRITE_SIZE];
+        System.arraycopy(file, WRITE_SIZE, expected, WRITE_SIZE, WRITE_SIZE);
+        System.arraycopy(file, 16 * WRITE_SIZE, expected, 16 * WRITE_SIZE, WRITE_SIZE);
+        System.arraycopy(file, 18 * WRITE_SIZE, expected, 18 * WRITE_SIZE, WRITE_SIZE);
+        assertArrayEquals(expected, written.toByteArray());
+        assertEquals(16L * WRITE_SIZE, metrics.getBytesZeroFilled().sum());
+    }
+
+    @Test
+    public void testFlushDoesNotWaitForGaps() throws Exception {
+        SequentialWriter writer = new SequentialWriter(outputStream, 0, metrics);
+        write(writer, 2 * WRITE_SIZE);
+
+        long start = System.nanoTime();
+        writer.flush();
+        write(writer, 4 * WRITE_SIZE);
+        writer.close();
+
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(SequentialWriter.DEFAULT_GAP_TIMEOUT_MILLIS) / 2);
+        assertEquals(5 * WRITE_SIZE, written.size());
+        assertEquals(3L * WRITE_SIZE, metrics.getBytesZeroFilled().sum());
+    }
+
+    @Test
+    public void testFlushWaitsForUploadsWithoutFsync() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            OutputStream failing = new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new IOException("pipeline failed");
+                }
+            };
+            UploadQueue uploads = new UploadQueue(new FSDataOutputStream(failing, null), executor,
+                    new ByteBudget(1024 * 1024), new ByteBudget(1024 * 1024), metrics);
+            SequentialWriter writer = new SequentialWriter(new FSDataOutputStream(failing, null), uploads, 0, metrics,
+                    SequentialWriter.DEFAULT_REORDER_WINDOW, SequentialWriter.DEFAULT_GAP_TIMEOUT_MILLIS);
+            write(writer, 0);
+
+            IOException e = assertThrows(IOException.class, () -> writer.sync(HdfsMountOptions.FsyncMode.NONE, 0));
+            assertTrue(e.getMessage().contains("pipeline failed"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAppendStartsAtTheFileLength() throws Exception {
+        SequentialWriter writer = new SequentialWriter(outputStream, 100, metrics);
+
+        writer.write(100, ByteBuffer.wrap(file, 0, WRITE_SIZE));
+        writer.close();
+
+        assertEquals(WRITE_SIZE, written.size());
+        assertEquals(100L + WRITE_SIZE, writer.getLength());
+    }
+}
@@ -0,0 +1,150 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+
+    @Test
+    public void testConcurrentIdenticalRequestsShareOneCall() throws Exception {
+        HdfsMountMetrics metrics = new HdfsMountMetrics();
+        SingleFlight singleFlight = new SingleFlight(metrics);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> singleFlight.execute("getFileStatus", "/vol/config.yaml", () -> {
+                    calls.incrementAndGet();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "status";
+                })));
+            }
+            // Let every thread reach the in-flight call before it completes
+            Thread.sleep(200);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("status", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, calls.get());
+        assertEquals(1L, metrics.snapshot().get("getFileStatusRpcsIssued"));
+        assertEquals(7L, metrics.snapshot().get("getFileStatusRpcsCoalesced"));
+    }
+
+    @Test
+    public void testRequestAfterAChangeDoesNotJoinEarlierCall() throws Exception {
+        HdfsMountMetrics metrics = new HdfsMountMetrics();
+        SingleFlight singleFlight = new SingleFlight(metrics);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> before = executor.submit(() -> singleFlight.execute("getFileStatus", "/vol/data", 1, () -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "old status";
+            }));
+            // Let the first call be in flight, then change the path
+            Thread.sleep(200);
+            assertEquals("new status", singleFlight.execute("getFileStatus", "/vol/data", 2, () -> "new status"));
+            release.countDown();
+            assertEquals("old status", before.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(2L, metrics.snapshot().get("getFileStatusRpcsIssued"));
+        assertNull(metrics.snapshot().get("getFileStatusRpcsCoalesced"));
+    }
+
+    @Test
+    public void testFailureIsSharedAndNotRemembered() throws Exception {
+        HdfsMountMetrics metrics = new HdfsMountMetrics();
+        SingleFlight singleFlight = new SingleFlight(metrics);
+
+        assertThrows(FileNotFoundException.class, () -> singleFlight.execute("getFileStatus", "/vol/missing", () -> {
+            throw new FileNotFoundException("/vol/missing");
+        }));
+        assertEquals("created", singleFlight.execute("getFileStatus", "/vol/missing", () -> "created"));
+
+        assertEquals(2L, metrics.snapshot().get("getFileStatusRpcsIssued"));
+    }
+
+    @Test
+    public void testErrorIsSharedWithTheCallersThatJoined() throws Exception {
+        SingleFlight singleFlight = new SingleFlight(new HdfsMountMetrics());
+        CountDownLatch joined = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(() -> singleFlight.execute("getFileStatus", "/vol/data", () -> {
+                try {
+                    joined.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new NoClassDefFoundError("org/apache/hadoop/hdfs/Missing");
+            }));
+            // Let the first call be in flight before joining it
+            Thread.sleep(200);
+            Future<String> second = executor.submit(() -> singleFlight.execute("getFileStatus", "/vol/data", () -> "status"));
+            Thread.sleep(200);
+            joined.countDown();
+
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(NoClassDefFoundError.class, failure.getCause());
+            assertInstanceOf(NoClassDefFoundError.class,
+                    assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS)).getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals("status", singleFlight.execute("getFileStatus", "/vol/data", () -> "status"));
+    }
+}
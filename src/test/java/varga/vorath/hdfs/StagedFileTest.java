@@ -0,0 +1,145 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+
+public class StagedFileTest {
+
+    private static final String VOLUME = "file:///volume";
+
+    @TempDir
+    java.nio.file.Path tempDir;
+
+    private FileSystem fs;
+    private Path file;
+    private HdfsMountMetrics metrics;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        fs = FileSystem.getLocal(new Configuration());
+        file = new Path(tempDir.resolve("remote.txt").toUri());
+        metrics = new HdfsMountMetrics();
+        try (FSDataOutputStream out = fs.create(file)) {
+            out.write("hello world".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private WriteStagingArea area(long quotaMb, long maxFileMb) {
+        return new WriteStagingArea(tempDir.resolve("staging").toString(), quotaMb, maxFileMb);
+    }
+
+    private static ByteBuffer bytes(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(StagedFile stagedFile, long position, int length) throws IOException {
+        ByteBuffer destination = ByteBuffer.allocate(length);
+        stagedFile.read(position, destination);
+        return new String(destination.array(), 0, destination.position(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testRandomWritesAreReadBackAndUploadedOnce() throws Exception {
+        WriteStagingArea area = area(16, 16);
+        StagedFile stagedFile = area.stage(VOLUME, fs, file, fs.getFileStatus(file).getLen(), metrics);
+
+        stagedFile.write(6, bytes("WORLD"));
+        stagedFile.write(0, bytes("J"));
+        assertEquals("Jello WORLD", read(stagedFile, 0, 64));
+        assertEquals("hello world", new String(Files.readAllBytes(java.nio.file.Path.of(file.toUri())), StandardCharsets.UTF_8));
+
+        stagedFile.upload(fs);
+        stagedFile.upload(fs);
+        stagedFile.close();
+
+        assertEquals("Jello WORLD", new String(Files.readAllBytes(java.nio.file.Path.of(file.toUri())), StandardCharsets.UTF_8));
+        assertEquals(1L, metrics.getStagedUploads().sum());
+        assertEquals(0L, area.snapshot().get("usedBytes"));
+        assertEquals(0L, area.snapshot().get("stagedFiles"));
+    }
+
+    @Test
+    public void testFailedUploadLeavesFileAndChangesInPlace() throws Exception {
+        FileSystem failing = spy(fs);
+        doThrow(new IOException("rename failed")).when(failing).rename(any(Path.class), any(Path.class));
+        StagedFile stagedFile = area(16, 16).stage(VOLUME, fs, file, fs.getFileStatus(file).getLen(), metrics);
+        stagedFile.write(0, bytes("J"));
+
+        assertThrows(IOException.class, () -> stagedFile.upload(failing));
+        assertEquals("hello world", new String(Files.readAllBytes(java.nio.file.Path.of(file.toUri())), StandardCharsets.UTF_8));
+        try (java.util.stream.Stream<java.nio.file.Path> files = Files.list(tempDir)) {
+            assertTrue(files.noneMatch(f -> f.getFileName().toString().contains(StagedFile.UPLOAD_INFIX)));
+        }
+
+        stagedFile.upload(fs);
+        stagedFile.close();
+        assertEquals("Jello world", new String(Files.readAllBytes(java.nio.file.Path.of(file.toUri())), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testWritePastEndLeavesZeroFilledHole() throws Exception {
+        StagedFile stagedFile = area(16, 16).stage(VOLUME, fs, file, 0, metrics);
+
+        stagedFile.write(4, bytes("x"));
+
+        assertEquals(5, stagedFile.getLength());
+        assertEquals("\0\0\0\0x", read(stagedFile, 0, 64));
+        assertEquals(-1, stagedFile.read(5, ByteBuffer.allocate(1)));
+        stagedFile.close();
+    }
+
+    @Test
+    public void testStagingIsBoundedByQuotaAndFileLimit() throws Exception {
+        WriteStagingArea area = area(2, 1);
+        StagedFile first = area.stage(VOLUME, fs, file, 0, metrics);
+        StagedFile second = area.stage(VOLUME, fs, file, 0, metrics);
+
+        assertThrows(WriteStagingArea.FileTooLargeException.class,
+                () -> first.write(1024 * 1024, bytes("x")));
+        first.write(1024 * 1024 - 1, bytes("x"));
+        second.write(1024 * 1024 - 1, bytes("x"));
+        StagedFile third = area.stage(VOLUME, fs, file, 0, metrics);
+        assertThrows(WriteStagingArea.QuotaExceededException.class, () -> third.write(0, bytes("x")));
+
+        first.close();
+        third.write(0, bytes("x"));
+        assertEquals(1L, area.snapshot().get("quotaRejections"));
+        second.close();
+        third.close();
+    }
+}
@@ -0,0 +1,137 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UploadQueueTest {
+
+    private ExecutorService executor;
+    private HdfsMountMetrics metrics;
+
+    @BeforeEach
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+        metrics = new HdfsMountMetrics();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testChunksAreWrittenInOrder() throws Exception {
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        UploadQueue queue = new UploadQueue(new FSDataOutputStream(written, null), executor,
+                new ByteBudget(4096), new ByteBudget(8192), metrics);
+        byte[] data = new byte[64 * 1024];
+        new Random(9).nextBytes(data);
+
+        for (int offset = 0; offset < data.length; offset += 1024) {
+            queue.submit(ByteBuffer.wrap(data, offset, 1024));
+        }
+        queue.awaitEmpty();
+
+        assertArrayEquals(data, written.toByteArray());
+        assertEquals(data.length, metrics.getBytesWritten().sum());
+        assertEquals(0L, metrics.getUploadQueueDepth().get());
+        assertEquals(0L, metrics.getUploadBytesInFlight().get());
+    }
+
+    @Test
+    public void testWritersBlockWhenBudgetIsExhausted() throws Exception {
+        CountDownLatch unblock = new CountDownLatch(1);
+        OutputStream slow = new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+        ByteBudget mountBudget = new ByteBudget(2048);
+        UploadQueue queue = new UploadQueue(new FSDataOutputStream(slow, null), executor, mountBudget,
+                new ByteBudget(1024 * 1024), metrics);
+
+        queue.submit(ByteBuffer.allocate(1024));
+        queue.submit(ByteBuffer.allocate(1024));
+        CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> {
+            try {
+                queue.submit(ByteBuffer.allocate(1024));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        Thread.sleep(100);
+        assertFalse(blocked.isDone());
+        assertEquals(2048L, mountBudget.getUsed());
+
+        unblock.countDown();
+        blocked.get(5, TimeUnit.SECONDS);
+        queue.awaitEmpty();
+        assertEquals(0L, mountBudget.getUsed());
+        assertEquals(1L, metrics.getUploadBackpressureWaits().sum());
+    }
+
+    @Test
+    public void testUploadErrorIsReportedToTheWriter() throws Exception {
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("pipeline failed");
+            }
+        };
+        ByteBudget nodeBudget = new ByteBudget(8192);
+        UploadQueue queue = new UploadQueue(new FSDataOutputStream(failing, null), executor, new ByteBudget(4096),
+                nodeBudget, metrics);
+
+        queue.submit(ByteBuffer.allocate(1024));
+
+        IOException e = assertThrows(IOException.class, queue::awaitEmpty);
+        assertTrue(e.getMessage().contains("pipeline failed"));
+        assertThrows(IOException.class, () -> queue.submit(ByteBuffer.allocate(1024)));
+        assertEquals(0L, nodeBudget.getUsed());
+    }
+}
@@ -0,0 +1,232 @@
+package varga.vorath.hdfs;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteJournalTest {
+
+    private static final String VOLUME = "hdfs://cluster/volume";
+
+    private static MiniDFSCluster cluster;
+    private static DistributedFileSystem fs;
+
+    @TempDir
+    java.nio.file.Path tempDir;
+
+    private Path file;
+
+    @BeforeAll
+    public static void setUpCluster() throws IOException {
+        System.setProperty("test.build.data", "target/test/data");
+        cluster = new MiniDFSCluster.Builder(new HdfsConfiguration()).numDataNodes(1).build();
+        cluster.waitActive();
+        fs = cluster.getFileSystem();
+    }
+
+    @AfterAll
+    public static void tearDownCluster() {
+        if (cluster != null) {
+            cluster.shutdown();
+        }
+    }
+
+    @BeforeEach
+    public void setUp(TestInfo testInfo) {
+        file = new Path("/" + testInfo.getTestMethod().orElseThrow().getName() + ".txt");
+    }
+
+    /**
+     * A journal over the same directory, as created when the plugin restarts.
+     */
+    private WriteJournal journal() {
+        return new WriteJournal(tempDir.resolve("journal").toString(), true, 64);
+    }
+
+    private static ByteBuffer bytes(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void write(Path path, String text) throws IOException {
+        try (FSDataOutputStream out = fs.create(path, true)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String read(Path path) throws IOException {
+        try (FSDataInputStream in = fs.open(path)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private long journalFiles() throws IOException {
+        try (Stream<java.nio.file.Path> files = Files.list(tempDir.resolve("journal"))) {
+            return files.count();
+        }
+    }
+
+    @Test
+    public void testReplayAppendsJournaledWritesMissingFromHdfs() throws IOException {
+        // Only the first write reached the DataNodes before the restart
+        write(file, "hello ");
+        StreamJournal stream = journal().openStream(VOLUME, file, 0);
+        stream.append(0, bytes("hello "));
+        stream.append(6, bytes("world"));
+
+        WriteJournal restarted = journal();
+        assertTrue(restarted.hasPendingFiles(VOLUME));
+        assertEquals(1L, restarted.snapshot().get("pendingReplays"));
+        restarted.replay(VOLUME, fs);
+
+        assertEquals("hello world", read(file));
+        assertFalse(restarted.hasPendingFiles(VOLUME));
+        assertEquals(0L, restarted.snapshot().get("pendingReplays"));
+        assertEquals(1L, restarted.snapshot().get("replayedFiles"));
+        assertEquals(5L, restarted.snapshot().get("replayedBytes"));
+        assertEquals(0L, journalFiles());
+    }
+
+    @Test
+    public void testReplayWritesHolesAsZeros() throws IOException {
+        // A sparse write past the end of the file, acknowledged but not uploaded before the restart
+        write(file, "ab");
+        StreamJournal stream = journal().openStream(VOLUME, file, 0);
+        stream.append(4, bytes("cd"));
+
+        WriteJournal restarted = journal();
+        restarted.replay(VOLUME, fs);
+
+        assertEquals("ab\0\0cd", read(file));
+        assertEquals(1L, restarted.snapshot().get("replayGaps"));
+        assertEquals(4L, restarted.snapshot().get("replayedBytes"));
+    }
+
+    @Test
+    public void testReplayFollowsRenameAndIgnoresTornRecord() throws IOException {
+        Path renamed = new Path(file + ".renamed");
+        write(renamed, "");
+        StreamJournal stream = journal().openStream(VOLUME, file, 0);
+        stream.append(0, bytes("kept"));
+        stream.moveTo(renamed);
+        stream.append(4, bytes(" torn"));
+
+        // A crash in the middle of the last record
+        java.nio.file.Path journalFile;
+        try (Stream<java.nio.file.Path> files = Files.list(tempDir.resolve("journal"))) {
+            journalFile = files.findFirst().orElseThrow();
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(journalFile.toFile(), "rw")) {
+            raf.setLength(raf.length() - 2);
+        }
+
+        journal().replay(VOLUME, fs);
+
+        assertEquals("kept", read(renamed));
+    }
+
+    @Test
+    public void testCheckpointDropsFlushedWrites() throws IOException {
+        WriteJournal journal = journal();
+        StreamJournal stream = journal.openStream(VOLUME, file, 0);
+        stream.append(0, bytes("flushed"));
+        stream.checkpoint(7);
+        write(file, "flushed and rewritten");
+
+        journal().replay(VOLUME, fs);
+
+        assertEquals("flushed and rewritten", read(file));
+        assertEquals(1L, journal.snapshot().get("checkpoints"));
+        assertEquals(0L, journalFiles());
+    }
+
+    @Test
+    public void testStagedFileChangesAreUploadedOnReplay() throws IOException {
+        write(file, "hello world");
+        java.nio.file.Path stagingDir = tempDir.resolve("staging");
+        WriteStagingArea area = new WriteStagingArea(stagingDir.toString(), 16, 16, journal());
+        StagedFile stagedFile = area.stage(VOLUME, fs, file, fs.getFileStatus(file).getLen(), new HdfsMountMetrics());
+        stagedFile.write(6, bytes("there"));
+
+        // The area of the restarted plugin keeps the staged copy for the journal
+        WriteJournal restarted = journal();
+        new WriteStagingArea(stagingDir.toString(), 16, 16, restarted);
+        restarted.replay(VOLUME, fs);
+
+        assertEquals("hello there", read(file));
+        try (Stream<java.nio.file.Path> files = Files.list(stagingDir)) {
+            assertEquals(0L, files.count());
+        }
+        assertEquals(0L, journalFiles());
+    }
+
+    @Test
+    public void testStagedFileClosedWithChangesIsReplayedOnNextMount() throws IOException {
+        write(file, "hello world");
+        WriteJournal journal = journal();
+        java.nio.file.Path stagingDir = tempDir.resolve("staging");
+        WriteStagingArea area = new WriteStagingArea(stagingDir.toString(), 16, 16, journal);
+        StagedFile stagedFile = area.stage(VOLUME, fs, file, fs.getFileStatus(file).getLen(), new HdfsMountMetrics());
+        stagedFile.write(6, bytes("there"));
+
+        // An unmount whose upload failed
+        stagedFile.close();
+        assertTrue(journal.hasPendingFiles(VOLUME));
+        journal.replay(VOLUME, fs);
+
+        assertEquals("hello there", read(file));
+        try (Stream<java.nio.file.Path> files = Files.list(stagingDir)) {
+            assertEquals(0L, files.count());
+        }
+        assertEquals(0L, journalFiles());
+    }
+
+    @Test
+    public void testUploadedStagedFileIsNotReplayed() throws IOException {
+        write(file, "hello world");
+        WriteStagingArea area = new WriteStagingArea(tempDir.resolve("staging").toString(), 16, 16, journal());
+        StagedFile stagedFile = area.stage(VOLUME, fs, file, fs.getFileStatus(file).getLen(), new HdfsMountMetrics());
+        stagedFile.write(6, bytes("there"));
+        stagedFile.upload(fs);
+
+        assertFalse(journal().hasPendingFiles(VOLUME));
+        stagedFile.close();
+    }
+}
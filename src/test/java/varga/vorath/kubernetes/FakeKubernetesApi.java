@@ -0,0 +1,313 @@
+package varga.vorath.kubernetes;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.kubernetes.client.openapi.ApiClient;
+import io.kubernetes.client.openapi.JSON;
+import io.kubernetes.client.util.ClientBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory Kubernetes API server for tests, serving the objects stored by path, such as
+ * {@code /api/v1/namespaces/default/secrets/hdfs-secret}.
+ * <p>
+ * Objects can be read, listed, created and replaced, with a conflict when the resourceVersion of a
+ * replacement is not the current one. Watches of a single object, selected by name, receive the events
+ * of its changes, and the errors sent by the test.
+ */
+public class FakeKubernetesApi implements AutoCloseable {
+
+    private static final String[] NO_QUERY = new String[0];
+    private static final Set<String> COLLECTIONS = Set.of("secrets", "persistentvolumes", "leases");
+
+    private final JSON json = new JSON();
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "fake-kubernetes-api");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, JsonObject> objects = new ConcurrentHashMap<>();
+    private final Map<String, List<BlockingQueue<String>>> watches = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> watchCounts = new ConcurrentHashMap<>();
+    private final Map<String, Runnable> interceptors = new ConcurrentHashMap<>();
+    private final AtomicLong resourceVersion = new AtomicLong();
+    private volatile boolean closed;
+
+    public FakeKubernetesApi() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    /**
+     * @return A client of this server.
+     */
+    public ApiClient apiClient() {
+        return new ClientBuilder().setBasePath("http://127.0.0.1:" + this.server.getAddress().getPort()).build();
+    }
+
+    /**
+     * Creates or replaces an object, with a new resourceVersion, and sends the event to its watches.
+     *
+     * @return The resourceVersion of the object.
+     */
+    public String put(String path, Object object) {
+        JsonObject stored = new JsonParser().parse(this.json.serialize(object)).getAsJsonObject();
+        String type = this.objects.containsKey(path) ? "MODIFIED" : "ADDED";
+        return store(path, stored, type);
+    }
+
+    /**
+     * Deletes an object, and sends the event to its watches.
+     */
+    public void delete(String path) {
+        JsonObject removed = this.objects.remove(path);
+        if (removed != null) {
+            notifyWatches(path, "DELETED", removed);
+        }
+    }
+
+    /**
+     * Sends an error to the watches of an object, such as 410 when their resourceVersion is too old.
+     */
+    public void sendWatchError(String path, int code, String message) {
+        JsonObject status = new JsonObject();
+        status.addProperty("kind", "Status");
+        status.addProperty("apiVersion", "v1");
+        status.addProperty("status", "Failure");
+        status.addProperty("message", message);
+        status.addProperty("code", code);
+        notifyWatches(path, "ERROR", status);
+    }
+
+    /**
+     * Runs an action before the next request with a method and path is served, such as a concurrent update.
+     */
+    public void beforeNext(String method, String path, Runnable action) {
+        this.interceptors.put(method + " " + path, action);
+    }
+
+    /**
+     * @return The object stored at a path, or null.
+     */
+    public <T> T get(String path, Type type) {
+        JsonObject object = this.objects.get(path);
+        return object != null ? this.json.deserialize(object.toString(), type) : null;
+    }
+
+    /**
+     * @return The number of requests received with a method and path, such as "GET" and the path of an object.
+     */
+    public int requests(String method, String path) {
+        AtomicInteger count = this.requests.get(method + " " + path);
+        return count != null ? count.get() : 0;
+    }
+
+    /**
+     * Waits until a number of watches of an object were started, since the server started.
+     *
+     * @return false if they did not start in time.
+     */
+    public boolean awaitWatches(String path, int count, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (this.watchCounts.getOrDefault(path, new AtomicInteger()).get() < count) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    private String store(String path, JsonObject object, String eventType) {
+        String version = String.valueOf(this.resourceVersion.incrementAndGet());
+        JsonObject metadata = object.has("metadata") ? object.getAsJsonObject("metadata") : new JsonObject();
+        metadata.addProperty("resourceVersion", version);
+        object.add("metadata", metadata);
+        this.objects.put(path, object);
+        notifyWatches(path, eventType, object);
+        return version;
+    }
+
+    private void notifyWatches(String path, String type, JsonObject object) {
+        JsonObject event = new JsonObject();
+        event.addProperty("type", type);
+        event.add("object", object);
+        for (BlockingQueue<String> watch : this.watches.getOrDefault(path, List.of())) {
+            watch.add(event + "\n");
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        String[] query = exchange.getRequestURI().getRawQuery() != null
+                ? exchange.getRequestURI().getRawQuery().split("&") : NO_QUERY;
+        this.requests.computeIfAbsent(method + " " + path, key -> new AtomicInteger()).incrementAndGet();
+        Runnable interceptor = this.interceptors.remove(method + " " + path);
+        if (interceptor != null) {
+            interceptor.run();
+        }
+        try (exchange) {
+            switch (method) {
+                case "GET" -> {
+                    String name = parameter(query, "fieldSelector");
+                    if ("true".equals(parameter(query, "watch"))) {
+                        watch(exchange, path + "/" + name.substring(name.indexOf('=') + 1));
+                    } else if (this.objects.containsKey(path)) {
+                        respond(exchange, 200, this.objects.get(path));
+                    } else if (COLLECTIONS.contains(path.substring(path.lastIndexOf('/') + 1))) {
+                        respond(exchange, 200, list(path));
+                    } else {
+                        respond(exchange, 404, status(404, "NotFound"));
+                    }
+                }
+                case "POST" -> {
+                    JsonObject object = body(exchange);
+                    String objectPath = path + "/" + object.getAsJsonObject("metadata").get("name").getAsString();
+                    if (this.objects.containsKey(objectPath)) {
+                        respond(exchange, 409, status(409, "AlreadyExists"));
+                    } else {
+                        store(objectPath, object, "ADDED");
+                        respond(exchange, 201, object);
+                    }
+                }
+                case "PUT" -> {
+                    JsonObject object = body(exchange);
+                    JsonObject current = this.objects.get(path);
+                    JsonObject metadata = object.getAsJsonObject("metadata");
+                    if (current == null) {
+                        respond(exchange, 404, status(404, "NotFound"));
+                    } else if (metadata.has("resourceVersion") && !metadata.get("resourceVersion").getAsString()
+                            .equals(current.getAsJsonObject("metadata").get("resourceVersion").getAsString())) {
+                        respond(exchange, 409, status(409, "Conflict"));
+                    } else {
+                        store(path, object, "MODIFIED");
+                        respond(exchange, 200, object);
+                    }
+                }
+                default -> respond(exchange, 405, status(405, "MethodNotAllowed"));
+            }
+        }
+    }
+
+    private JsonObject list(String path) {
+        JsonArray items = new JsonArray();
+        this.objects.forEach((objectPath, object) -> {
+            if (objectPath.startsWith(path + "/") && objectPath.indexOf('/', path.length() + 1) < 0) {
+                items.add(object);
+            }
+        });
+        JsonObject list = new JsonObject();
+        list.add("metadata", new JsonObject());
+        list.add("items", items);
+        return list;
+    }
+
+    private void watch(HttpExchange exchange, String path) throws IOException {
+        BlockingQueue<String> events = new LinkedBlockingQueue<>();
+        List<BlockingQueue<String>> pathWatches = this.watches.computeIfAbsent(path, key -> new CopyOnWriteArrayList<>());
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, 0);
+        pathWatches.add(events);
+        this.watchCounts.computeIfAbsent(path, key -> new AtomicInteger()).incrementAndGet();
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.flush();
+            while (!this.closed) {
+                String event = events.poll(50, TimeUnit.MILLISECONDS);
+                if (event != null) {
+                    out.write(event.getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // Closed by the client
+        } finally {
+            pathWatches.remove(events);
+        }
+    }
+
+    private static JsonObject body(HttpExchange exchange) throws IOException {
+        return new JsonParser().parse(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8))
+                .getAsJsonObject();
+    }
+
+    private static JsonObject status(int code, String reason) {
+        JsonObject status = new JsonObject();
+        status.addProperty("kind", "Status");
+        status.addProperty("apiVersion", "v1");
+        status.addProperty("status", "Failure");
+        status.addProperty("reason", reason);
+        status.addProperty("code", code);
+        return status;
+    }
+
+    private static void respond(HttpExchange exchange, int code, JsonObject body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static String parameter(String[] query, String name) {
+        for (String parameter : query) {
+            if (parameter.startsWith(name + "=")) {
+                return URLDecoder.decode(parameter.substring(name.length() + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,114 @@
+package varga.vorath.kubernetes;
+
+/*-
+ * #%L
+ * Vorath
+ * %%
+ * Copyright (C) 2025 - 2026 Varga Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import io.kubernetes.client.openapi.models.V1Lease;
+import io.kubernetes.client.openapi.models.V1LeaseSpec;
+import io.kubernetes.client.openapi.models.V1ObjectMeta;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KubernetesLeaseTest {
+
+    private static final String NAMESPACE = "default";
+    private static final String NAME = "hdfs-csi-token-issuer";
+    private static final String LEASE_PATH = "/apis/coordination.k8s.io/v1/namespaces/" + NAMESPACE + "/leases/" + NAME;
+
+    private FakeKubernetesApi api;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        api = new FakeKubernetesApi();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        api.close();
+    }
+
+    private KubernetesLease lease(String holder) {
+        return new KubernetesLease(api.apiClient(), NAMESPACE, NAME, holder, 60);
+    }
+
+    private V1Lease heldBy(String holder, OffsetDateTime renewTime) {
+        return new V1Lease()
+                .metadata(new V1ObjectMeta().name(NAME).namespace(NAMESPACE))
+                .spec(new V1LeaseSpec()
+                        .holderIdentity(holder)
+                        .leaseDurationSeconds(60)
+                        .acquireTime(renewTime)
+                        .renewTime(renewTime)
+                        .leaseTransitions(0));
+    }
+
+    private V1LeaseSpec stored() {
+        return api.<V1Lease>get(LEASE_PATH, V1Lease.class).getSpec();
+    }
+
+    @Test
+    public void testMissingLeaseIsCreated() {
+        assertTrue(lease("pod-a").tryAcquire());
+
+        assertEquals("pod-a", stored().getHolderIdentity());
+        assertEquals(0, stored().getLeaseTransitions());
+        assertEquals(60, stored().getLeaseDurationSeconds());
+    }
+
+    @Test
+    public void testLeaseHeldByAnotherInstanceIsNotTaken() {
+        KubernetesLease holder = lease("pod-a");
+        assertTrue(holder.tryAcquire());
+
+        assertFalse(lease("pod-b").tryAcquire());
+        // The holder renews it
+        assertTrue(holder.tryAcquire());
+        assertEquals("pod-a", stored().getHolderIdentity());
+    }
+
+    @Test
+    public void testExpiredLeaseIsTakenOver() {
+        api.put(LEASE_PATH, heldBy("pod-a", OffsetDateTime.now(ZoneOffset.UTC).minusSeconds(120)));
+
+        assertTrue(lease("pod-b").tryAcquire());
+
+        assertEquals("pod-b", stored().getHolderIdentity());
+        assertEquals(1, stored().getLeaseTransitions());
+        assertTrue(stored().getRenewTime().isAfter(OffsetDateTime.now(ZoneOffset.UTC).minusSeconds(60)));
+    }
+
+    @Test
+    public void testConcurrentTakeoverLosesTheRace() {
+        api.put(LEASE_PATH, heldBy("pod-a", OffsetDateTime.now(ZoneOffset.UTC).minusSeconds(120)));
+        // Another instance takes the Lease over between the read and the update
+        api.beforeNext("PUT", LEASE_PATH, () -> api.put(LEASE_PATH, heldBy("pod-c", OffsetDateTime.now(ZoneOffset.UTC))));
+
+        assertFalse(lease("pod-b").tryAcquire());
+
+        assertEquals("pod-c", stored().getHolderIdentity());
+    }
+}
@@ -29,8 +29,9 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
-import org.mockito.MockedStatic;
 import varga.vorath.hdfs.HdfsConnection;
+import varga.vorath.hdfs.HdfsConnectionRegistry;
+import varga.vorath.hdfs.HdfsMountOptions;
 import varga.vorath.hdfs.HdfsMountService;
 
 import java.io.IOException;
@@ -47,6 +48,7 @@ public class NodePublishVolumeHandlerTest {
     private static MiniDFSCluster cluster;
     private static HdfsConfiguration conf;
     private HdfsMountService hdfsMountService;
+    private HdfsConnectionRegistry connectionRegistry;
     private NodePublishVolumeHandler handler;
 
     @BeforeAll
@@ -67,7 +69,8 @@ public class NodePublishVolumeHandlerTest {
     @BeforeEach
     public void setUp() {
         hdfsMountService = mock(HdfsMountService.class);
-        handler = new NodePublishVolumeHandler(hdfsMountService);
+        connectionRegistry = mock(HdfsConnectionRegistry.class);
+        handler = new NodePublishVolumeHandler(hdfsMountService, connectionRegistry);
     }
 
     @Test
@@ -86,13 +89,11 @@ public class NodePublishVolumeHandlerTest {
         StreamObserver<Csi.NodePublishVolumeResponse> responseObserver = mock(StreamObserver.class);
 
         HdfsConnection mockConnection = mock(HdfsConnection.class);
-        try (MockedStatic<HdfsConnection> mockedHdfsConnection = mockStatic(HdfsConnection.class)) {
-            mockedHdfsConnection.when(() -> HdfsConnection.createHdfsConnection(anyString(), anyString(), any()))
-                    .thenReturn(mockConnection);
-
+        when(connectionRegistry.getConnection(anyString(), anyString(), any())).thenReturn(mockConnection);
+        try {
             handler.handleNodePublishVolume(request, responseObserver);
 
-            verify(hdfsMountService).mountVolume(eq(mockConnection), anyString(), eq(targetPath));
+            verify(hdfsMountService).mountVolume(eq(mockConnection), anyString(), eq(targetPath), any(HdfsMountOptions.class));
             verify(responseObserver).onNext(any());
             verify(responseObserver).onCompleted();
             